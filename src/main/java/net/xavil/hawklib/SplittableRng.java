@@ -26,6 +26,10 @@ public final class SplittableRng {
 		this.current = seed;
 	}
 
+	public long getSeedRaw() {
+		return this.current;
+	}
+
 	public void advance() {
 		// equivalent to `advanceWith(0)`
 		this.current = scramble(this.current);
@@ -0,0 +1,256 @@
+package net.xavil.hawklib.collections.impl;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import javax.annotation.Nullable;
+
+import net.xavil.hawklib.collections.interfaces.MutableCollection;
+
+/**
+ * An open-addressing hash map with primitive {@code long} keys. Unlike a
+ * {@link net.xavil.hawklib.collections.interfaces.MutableMap} keyed on boxed
+ * objects, lookups and insertions into this map do not allocate (aside from
+ * when the map needs to grow).
+ * <p>
+ * Collisions are resolved with linear probing, and removals use backward-shift
+ * deletion, so there are no graveyard markers to clean up.
+ * </p>
+ */
+public final class LongHashMap<V> implements MutableCollection {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private V[] values;
+	private boolean[] occupied;
+	private int mask;
+	private int size = 0;
+	private int growThreshold;
+
+	public interface EntryConsumer<V> {
+		void accept(long key, V value);
+	}
+
+	public interface EntryPredicate<V> {
+		boolean test(long key, V value);
+	}
+
+	public LongHashMap() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	public LongHashMap(int expectedSize) {
+		allocate(Math.max(DEFAULT_CAPACITY, nextPowerOfTwo((int) Math.ceil(expectedSize / LOAD_FACTOR))));
+	}
+
+	static int nextPowerOfTwo(int n) {
+		return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+	}
+
+	// murmur3's 64-bit finalizer; packed keys tend to have all their entropy in a
+	// handful of bit ranges, so we need to spread it out before masking.
+	static int slotFor(long key, int mask) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = ListUtil.makeTypedObjectArray(capacity);
+		this.occupied = new boolean[capacity];
+		this.mask = capacity - 1;
+		this.growThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public void clear() {
+		if (this.size == 0)
+			return;
+		Arrays.fill(this.occupied, false);
+		Arrays.fill(this.values, null);
+		this.size = 0;
+	}
+
+	private int find(long key) {
+		int slot = slotFor(key, this.mask);
+		while (this.occupied[slot]) {
+			if (this.keys[slot] == key)
+				return slot;
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	@Nullable
+	public V getOrNull(long key) {
+		final var slot = find(key);
+		return slot >= 0 ? this.values[slot] : null;
+	}
+
+	/**
+	 * Inserts a value into this map, replacing any value that was previously
+	 * associated with {@code key}.
+	 *
+	 * @return The previous value, or {@code null} if there was none.
+	 */
+	@Nullable
+	public V insert(long key, V value) {
+		int slot = slotFor(key, this.mask);
+		while (this.occupied[slot]) {
+			if (this.keys[slot] == key) {
+				final var old = this.values[slot];
+				this.values[slot] = value;
+				return old;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.occupied[slot] = true;
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		this.size += 1;
+		if (this.size > this.growThreshold)
+			rehash(2 * this.keys.length);
+		return null;
+	}
+
+	public V getOrInsertWith(long key, LongFunction<V> supplier) {
+		final var slot = find(key);
+		if (slot >= 0)
+			return this.values[slot];
+		final var value = supplier.apply(key);
+		insert(key, value);
+		return value;
+	}
+
+	/**
+	 * @return The value that was removed, or {@code null} if there was none.
+	 */
+	@Nullable
+	public V remove(long key) {
+		final var slot = find(key);
+		if (slot < 0)
+			return null;
+		final var old = this.values[slot];
+		removeSlot(slot);
+		return old;
+	}
+
+	// backward-shift deletion: walk the probe run following the removed slot, and
+	// pull back every entry that would no longer be reachable with a hole in the
+	// run.
+	private void removeSlot(int slot) {
+		int hole = slot;
+		int cur = (slot + 1) & this.mask;
+		while (this.occupied[cur]) {
+			final var home = slotFor(this.keys[cur], this.mask);
+			// distance from each entry's home slot, accounting for wraparound
+			final var curDist = (cur - home) & this.mask;
+			final var holeDist = (hole - home) & this.mask;
+			if (holeDist <= curDist) {
+				this.keys[hole] = this.keys[cur];
+				this.values[hole] = this.values[cur];
+				hole = cur;
+			}
+			cur = (cur + 1) & this.mask;
+		}
+		this.occupied[hole] = false;
+		this.values[hole] = null;
+		this.size -= 1;
+	}
+
+	private void rehash(int newCapacity) {
+		final var oldKeys = this.keys;
+		final var oldValues = this.values;
+		final var oldOccupied = this.occupied;
+		allocate(newCapacity);
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (!oldOccupied[i])
+				continue;
+			int slot = slotFor(oldKeys[i], this.mask);
+			while (this.occupied[slot])
+				slot = (slot + 1) & this.mask;
+			this.occupied[slot] = true;
+			this.keys[slot] = oldKeys[i];
+			this.values[slot] = oldValues[i];
+		}
+	}
+
+	// there is always at least one empty slot, since the load factor is below 1.
+	// Iterating starting after an empty slot means that entries moved by
+	// backward-shift deletion during iteration always land on or after the
+	// current position, so nothing is skipped or visited twice.
+	private int iterationStart() {
+		for (int i = 0; i < this.occupied.length; ++i) {
+			if (!this.occupied[i])
+				return (i + 1) & this.mask;
+		}
+		return 0;
+	}
+
+	public void forEach(EntryConsumer<V> consumer) {
+		for (int i = 0; i < this.keys.length; ++i) {
+			if (this.occupied[i])
+				consumer.accept(this.keys[i], this.values[i]);
+		}
+	}
+
+	public void forEachValue(Consumer<V> consumer) {
+		for (int i = 0; i < this.keys.length; ++i) {
+			if (this.occupied[i])
+				consumer.accept(this.values[i]);
+		}
+	}
+
+	/**
+	 * Removes all entries for which {@code predicate} returns false.
+	 */
+	public void retain(EntryPredicate<V> predicate) {
+		if (this.size == 0)
+			return;
+		int slot = iterationStart();
+		for (int visited = 0; visited < this.keys.length; ++visited) {
+			// a removal may shift another entry into this slot, so keep checking it
+			// until it's either empty or retained.
+			while (this.occupied[slot] && !predicate.test(this.keys[slot], this.values[slot]))
+				removeSlot(slot);
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	@Override
+	public void optimize() {
+		final var desired = Math.max(DEFAULT_CAPACITY, nextPowerOfTwo((int) Math.ceil(this.size / LOAD_FACTOR)));
+		if (desired < this.keys.length)
+			rehash(desired);
+	}
+
+	@Override
+	public String toString() {
+		final var builder = new StringBuilder();
+		builder.append("{");
+		forEach((key, value) -> {
+			if (builder.length() > 1)
+				builder.append(", ");
+			builder.append(key).append(": ").append(value);
+		});
+		builder.append("}");
+		return builder.toString();
+	}
+
+}
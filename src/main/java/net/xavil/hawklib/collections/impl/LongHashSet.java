@@ -0,0 +1,184 @@
+package net.xavil.hawklib.collections.impl;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+import net.xavil.hawklib.collections.interfaces.MutableCollection;
+
+/**
+ * An open-addressing hash set of primitive {@code long} values. See
+ * {@link LongHashMap} for details about the probing scheme.
+ */
+public final class LongHashSet implements MutableCollection {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private boolean[] occupied;
+	private int mask;
+	private int size = 0;
+	private int growThreshold;
+
+	public LongHashSet() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	public LongHashSet(int expectedSize) {
+		allocate(Math.max(DEFAULT_CAPACITY,
+				LongHashMap.nextPowerOfTwo((int) Math.ceil(expectedSize / LOAD_FACTOR))));
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.occupied = new boolean[capacity];
+		this.mask = capacity - 1;
+		this.growThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public void clear() {
+		if (this.size == 0)
+			return;
+		Arrays.fill(this.occupied, false);
+		this.size = 0;
+	}
+
+	private int find(long key) {
+		int slot = LongHashMap.slotFor(key, this.mask);
+		while (this.occupied[slot]) {
+			if (this.keys[slot] == key)
+				return slot;
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	public boolean contains(long key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * @return {@code true} if the value was not already present in this set.
+	 */
+	public boolean insert(long key) {
+		int slot = LongHashMap.slotFor(key, this.mask);
+		while (this.occupied[slot]) {
+			if (this.keys[slot] == key)
+				return false;
+			slot = (slot + 1) & this.mask;
+		}
+		this.occupied[slot] = true;
+		this.keys[slot] = key;
+		this.size += 1;
+		if (this.size > this.growThreshold)
+			rehash(2 * this.keys.length);
+		return true;
+	}
+
+	/**
+	 * @return {@code true} if the value was present in this set.
+	 */
+	public boolean remove(long key) {
+		final var slot = find(key);
+		if (slot < 0)
+			return false;
+		removeSlot(slot);
+		return true;
+	}
+
+	private void removeSlot(int slot) {
+		int hole = slot;
+		int cur = (slot + 1) & this.mask;
+		while (this.occupied[cur]) {
+			final var home = LongHashMap.slotFor(this.keys[cur], this.mask);
+			final var curDist = (cur - home) & this.mask;
+			final var holeDist = (hole - home) & this.mask;
+			if (holeDist <= curDist) {
+				this.keys[hole] = this.keys[cur];
+				hole = cur;
+			}
+			cur = (cur + 1) & this.mask;
+		}
+		this.occupied[hole] = false;
+		this.size -= 1;
+	}
+
+	private void rehash(int newCapacity) {
+		final var oldKeys = this.keys;
+		final var oldOccupied = this.occupied;
+		allocate(newCapacity);
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (!oldOccupied[i])
+				continue;
+			int slot = LongHashMap.slotFor(oldKeys[i], this.mask);
+			while (this.occupied[slot])
+				slot = (slot + 1) & this.mask;
+			this.occupied[slot] = true;
+			this.keys[slot] = oldKeys[i];
+		}
+	}
+
+	public void forEach(LongConsumer consumer) {
+		for (int i = 0; i < this.keys.length; ++i) {
+			if (this.occupied[i])
+				consumer.accept(this.keys[i]);
+		}
+	}
+
+	// see LongHashMap.iterationStart
+	private int iterationStart() {
+		for (int i = 0; i < this.occupied.length; ++i) {
+			if (!this.occupied[i])
+				return (i + 1) & this.mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * Removes all values for which {@code predicate} returns false.
+	 */
+	public void retain(LongPredicate predicate) {
+		if (this.size == 0)
+			return;
+		// see LongHashMap.retain
+		int slot = iterationStart();
+		for (int visited = 0; visited < this.keys.length; ++visited) {
+			while (this.occupied[slot] && !predicate.test(this.keys[slot]))
+				removeSlot(slot);
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	public void extend(LongHashSet other) {
+		other.forEach(this::insert);
+	}
+
+	@Override
+	public void optimize() {
+		final var desired = Math.max(DEFAULT_CAPACITY,
+				LongHashMap.nextPowerOfTwo((int) Math.ceil(this.size / LOAD_FACTOR)));
+		if (desired < this.keys.length)
+			rehash(desired);
+	}
+
+	@Override
+	public String toString() {
+		final var builder = new StringBuilder();
+		builder.append("{");
+		forEach(key -> {
+			if (builder.length() > 1)
+				builder.append(", ");
+			builder.append(key);
+		});
+		builder.append("}");
+		return builder.toString();
+	}
+
+}
@@ -25,21 +25,110 @@ public class Formulas {
 		return 2 * Math.PI * Math.sqrt(Math.pow(a, 3.0) / mu);
 	}
 
+	/**
+	 * The default convergence tolerance of {@link #solveKepler}, in radians of
+	 * eccentric anomaly.
+	 */
+	public static final double DEFAULT_KEPLER_TOLERANCE = 1e-12;
+	/**
+	 * Newton's method converges in a handful of iterations for every eccentricity
+	 * below 1 when started from a good guess, so this is only ever hit with a
+	 * tolerance that is smaller than the floating point precision allows.
+	 */
+	public static final int MAXIMUM_KEPLER_ITERATIONS = 32;
+
 	/**
 	 * @param meanAnomaly (rad) The mean anomaly.
 	 * @param e           (unitless) The eccentricity of the ellipse.
 	 * @return (rad) The true anomaly.
 	 */
-	// super stolen from
-	// https://github.com/RegrowthStudios/SoACode-Public/blob/c3ddd69355b534d5e70e2e6d0c489b4e93ab1ffe/SoA/OrbitComponentUpdater.cpp#L70
 	public static double calculateTrueAnomaly(double meanAnomaly, double e) {
-		final var iterationCount = 10;
-		var E = meanAnomaly;
-		for (var n = 0; n < iterationCount; ++n) {
-			double F = E - e * Math.sin(E) - meanAnomaly;
-			E -= F / (1 - e * Math.cos(E));
+		return calculateTrueAnomaly(meanAnomaly, e, DEFAULT_KEPLER_TOLERANCE);
+	}
+
+	/**
+	 * @param meanAnomaly (rad) The mean anomaly.
+	 * @param e           (unitless) The eccentricity of the ellipse.
+	 * @param tolerance   (rad) The convergence tolerance of the solver.
+	 * @return (rad) The true anomaly.
+	 */
+	public static double calculateTrueAnomaly(double meanAnomaly, double e, double tolerance) {
+		final var E = solveKepler(meanAnomaly, e, Double.NaN, tolerance);
+		return trueAnomalyFromEccentricAnomaly(E, e);
+	}
+
+	/**
+	 * @param eccentricAnomaly (rad) The eccentric anomaly.
+	 * @param e                (unitless) The eccentricity of the ellipse.
+	 * @return (rad) The true anomaly, in the range {@code [-pi, pi]}.
+	 */
+	public static double trueAnomalyFromEccentricAnomaly(double eccentricAnomaly, double e) {
+		return Math.atan2(Math.sqrt(1 - e * e) * Math.sin(eccentricAnomaly), Math.cos(eccentricAnomaly) - e);
+	}
+
+	/**
+	 * Solves Kepler's equation {@code M = E - e * sin(E)} for the eccentric
+	 * anomaly {@code E}.
+	 * <p>
+	 * The mean anomaly is first wrapped into {@code [-pi, pi]}, where the solution
+	 * is known to lie between {@code M} and {@code M + e * sign(M)}. Newton's
+	 * method is then run within that bracket, falling back to bisection whenever a
+	 * step would leave it, which keeps things from blowing up at high
+	 * eccentricities where the derivative gets close to zero near periapsis.
+	 * </p>
+	 * 
+	 * @param meanAnomaly  (rad) The mean anomaly.
+	 * @param e            (unitless) The eccentricity of the ellipse, in the
+	 *                     range {@code [0, 1)}.
+	 * @param initialGuess (rad) A guess for the eccentric anomaly, such as the
+	 *                     result of solving for the same orbit at a slightly
+	 *                     different time. May be {@code NaN}, in which case a
+	 *                     guess is made from the mean anomaly and eccentricity.
+	 *                     Guesses are expected to be in the range
+	 *                     {@code [-pi, pi]}, like the value returned by this
+	 *                     method, and are ignored if they are too far off.
+	 * @param tolerance    (rad) Iteration stops once a step changes the eccentric
+	 *                     anomaly by less than this.
+	 * @return (rad) The eccentric anomaly, in the range {@code [-pi, pi]}.
+	 */
+	// initial guess from Danby, "Fundamentals of Celestial Mechanics" (1988)
+	public static double solveKepler(double meanAnomaly, double e, double initialGuess, double tolerance) {
+		// Math.IEEEremainder() would do the same thing, but it is several times slower
+		// than the rest of the solve put together.
+		var M = meanAnomaly - 2 * Math.PI * Math.rint(meanAnomaly / (2 * Math.PI));
+
+		// solve for positive mean anomalies only, and flip the result back at the end,
+		// since the equation is odd.
+		final var flip = M < 0;
+		if (flip) {
+			M = -M;
+			initialGuess = -initialGuess;
+		}
+		// rounding can push M just past pi
+		M = Math.min(M, Math.PI);
+
+		var lo = M;
+		var hi = Math.min(M + e, Math.PI);
+		var E = initialGuess;
+		if (!(E >= lo && E <= hi))
+			E = Math.min(M + 0.85 * e, hi);
+
+		for (var n = 0; n < MAXIMUM_KEPLER_ITERATIONS; ++n) {
+			final var F = E - e * Math.sin(E) - M;
+			if (F > 0)
+				hi = E;
+			else
+				lo = E;
+			var next = E - F / (1 - e * Math.cos(E));
+			if (!(next >= lo && next <= hi))
+				next = 0.5 * (lo + hi);
+			final var step = Math.abs(next - E);
+			E = next;
+			if (step <= tolerance)
+				break;
 		}
-		return Math.atan2(Math.sqrt(1 - e * e) * Math.sin(E), Math.cos(E) - e);
+
+		return flip ? -E : E;
 	}
 
 	/**
@@ -2,6 +2,7 @@ package net.xavil.ultraviolet;
 
 import net.fabricmc.api.ClientModInitializer;
 import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.TextComponent;
 import net.xavil.hawklib.Disposable;
 import net.xavil.hawklib.client.HawkRendering;
 import net.xavil.hawklib.client.HawkTextureManager;
@@ -23,6 +24,8 @@ import net.xavil.ultraviolet.networking.ModNetworking;
 import net.xavil.ultraviolet.networking.s2c.ClientboundChangeSystemPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundDebugValueSetPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundOpenStarmapPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorElementsPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorStreamUnavailablePacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundSpaceStationInfoPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundStationJumpBeginPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundSyncCelestialTimePacket;
@@ -40,6 +43,8 @@ public class ClientMod implements ClientModInitializer {
 		ModNetworking.addClientboundHandler(ClientboundSyncCelestialTimePacket.class, CLIENT, ClientMod::handlePacket);
 		ModNetworking.addClientboundHandler(ClientboundSpaceStationInfoPacket.class, CLIENT, ClientMod::handlePacket);
 		ModNetworking.addClientboundHandler(ClientboundStationJumpBeginPacket.class, CLIENT, ClientMod::handlePacket);
+		ModNetworking.addClientboundHandler(ClientboundSectorElementsPacket.class, CLIENT, ClientMod::handlePacket);
+		ModNetworking.addClientboundHandler(ClientboundSectorStreamUnavailablePacket.class, CLIENT, ClientMod::handlePacket);
 		ModNetworking.addClientboundHandler(ClientboundDebugValueSetPacket.class, CLIENT, ClientConfig::applyPacket);
 
 		HawkRendering.LOAD_SHADERS_EVENT.register(acceptor -> {
@@ -112,7 +117,12 @@ public class ClientMod implements ClientModInitializer {
 
 	public static void handlePacket(ClientboundUniverseSyncPacket packet) {
 		final var universe = new ClientUniverse();
-		universe.updateFromInfoPacket(packet);
+		if (!universe.updateFromInfoPacket(packet)) {
+			universe.close();
+			CLIENT.getConnection().getConnection()
+					.disconnect(new TextComponent("Received an invalid universe from the server"));
+			return;
+		}
 		MinecraftClientAccessor.setUniverse(universe);
 		LevelAccessor.setUniverse(CLIENT.level, universe);
 		LevelAccessor.setWorldType(CLIENT.level, packet.worldType);
@@ -136,4 +146,12 @@ public class ClientMod implements ClientModInitializer {
 		MinecraftClientAccessor.getUniverse().applyPacket(packet);
 	}
 
+	public static void handlePacket(ClientboundSectorElementsPacket packet) {
+		MinecraftClientAccessor.getUniverse().applyPacket(packet);
+	}
+
+	public static void handlePacket(ClientboundSectorStreamUnavailablePacket packet) {
+		MinecraftClientAccessor.getUniverse().applyPacket(packet);
+	}
+
 }
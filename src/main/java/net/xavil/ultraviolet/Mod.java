@@ -40,17 +40,22 @@ import net.xavil.ultraviolet.common.universe.WorldType;
 import net.xavil.ultraviolet.common.universe.id.SystemNodeId;
 import net.xavil.ultraviolet.common.universe.station.SpaceStation;
 import net.xavil.ultraviolet.common.universe.system.CelestialNode;
+import net.xavil.ultraviolet.common.universe.system.CelestialNodeCodec;
 import net.xavil.ultraviolet.common.universe.system.PlanetaryCelestialNode;
+import net.xavil.ultraviolet.common.universe.universe.InterestManager;
 import net.xavil.ultraviolet.mixin.accessor.EntityAccessor;
 import net.xavil.ultraviolet.mixin.accessor.LevelAccessor;
 import net.xavil.ultraviolet.mixin.accessor.MinecraftServerAccessor;
 import net.xavil.ultraviolet.networking.ModNetworking;
 import net.xavil.ultraviolet.networking.c2s.ServerboundDebugValueSetPacket;
+import net.xavil.ultraviolet.networking.c2s.ServerboundSectorElementRequestPacket;
 import net.xavil.ultraviolet.networking.c2s.ServerboundStationJumpPacket;
 import net.xavil.ultraviolet.networking.c2s.ServerboundTeleportToLocationPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundChangeSystemPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundDebugValueSetPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundOpenStarmapPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorElementsPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorStreamUnavailablePacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundSpaceStationInfoPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundStationJumpBeginPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundSyncCelestialTimePacket;
@@ -80,6 +85,7 @@ public class Mod implements ModInitializer {
 		ModNetworking.addServerboundHandler(ServerboundTeleportToLocationPacket.class, Mod::handlePacket);
 		ModNetworking.addServerboundHandler(ServerboundStationJumpPacket.class, Mod::handlePacket);
 		ModNetworking.addServerboundHandler(ServerboundDebugValueSetPacket.class, Mod::handlePacket);
+		ModNetworking.addServerboundHandler(ServerboundSectorElementRequestPacket.class, Mod::handlePacket);
 
 		ModNetworking.REGISTER_PACKETS_EVENT.register(acceptor -> {
 			// @formatter:off
@@ -90,10 +96,13 @@ public class Mod implements ModInitializer {
 			acceptor.clientboundPlay.register(ClientboundSpaceStationInfoPacket.class, ClientboundSpaceStationInfoPacket::new);
 			acceptor.clientboundPlay.register(ClientboundStationJumpBeginPacket.class, ClientboundStationJumpBeginPacket::new);
 			acceptor.clientboundPlay.register(ClientboundDebugValueSetPacket.class, ClientboundDebugValueSetPacket::new);
+			acceptor.clientboundPlay.register(ClientboundSectorElementsPacket.class, ClientboundSectorElementsPacket::new);
+			acceptor.clientboundPlay.register(ClientboundSectorStreamUnavailablePacket.class, ClientboundSectorStreamUnavailablePacket::new);
 
 			acceptor.serverboundPlay.register(ServerboundTeleportToLocationPacket.class, ServerboundTeleportToLocationPacket::new);
 			acceptor.serverboundPlay.register(ServerboundStationJumpPacket.class, ServerboundStationJumpPacket::new);
 			acceptor.serverboundPlay.register(ServerboundDebugValueSetPacket.class, ServerboundDebugValueSetPacket::new);
+			acceptor.serverboundPlay.register(ServerboundSectorElementRequestPacket.class, ServerboundSectorElementRequestPacket::new);
 			// @formatter:on
 		});
 
@@ -179,6 +188,11 @@ public class Mod implements ModInitializer {
 			return;
 	}
 
+	public static void handlePacket(ServerPlayer sender, ServerboundSectorElementRequestPacket packet) {
+		final var universe = MinecraftServerAccessor.getUniverse(sender.server);
+		universe.sectorStreamer.handleRequest(sender, packet);
+	}
+
 	public static void handlePacket(ServerPlayer sender, ServerboundTeleportToLocationPacket packet) {
 		final var server = sender.server;
 		final var info = new PacketInfo(sender);
@@ -229,11 +243,18 @@ public class Mod implements ModInitializer {
 
 		// FIXME: verify that the system we want to jump to actually exists
 
+		// players in the system that the station is leaving should see it leave.
+		final var sourceSystem = InterestManager.systemOf(station.getLocation());
 		station.prepareForJump(packet.target, packet.isJumpInstant);
 
 		final var beginPacket = new ClientboundStationJumpBeginPacket(packet.stationId, packet.target,
 				packet.isJumpInstant);
-		server.getPlayerList().broadcastAll(beginPacket);
+		final var audience = InterestManager.Audience.station(packet.stationId, sourceSystem)
+				.or(InterestManager.Audience.station(packet.stationId, InterestManager.systemOf(station.getLocation())));
+		universe.interestManager.send(new StationJumpKey(packet.stationId), audience, beginPacket);
+	}
+
+	private record StationJumpKey(int stationId) {
 	}
 
 	private static class PacketInfo {
@@ -316,7 +337,8 @@ public class Mod implements ModInitializer {
 		syncPacket.startingSystemAge = ssg.systemAge;
 		syncPacket.startingSystemName = ssg.systemName;
 		syncPacket.startingId = ssg.getStartingSystemId();
-		syncPacket.startingSystemNbt = CelestialNode.writeNbt(ssg.startingSystem.rootNode);
+		syncPacket.startingSystemData = new CelestialNodeCodec(CelestialNodeCodec.Precision.DOUBLE)
+				.encodeToArray(ssg.startingSystem.rootNode);
 		// current info
 		syncPacket.worldType = EntityAccessor.getWorldType(player);
 		player.connection.send(syncPacket);
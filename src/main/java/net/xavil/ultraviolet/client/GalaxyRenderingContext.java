@@ -33,6 +33,8 @@ public class GalaxyRenderingContext implements Disposable {
 		this.params = params;
 	}
 
+	private static final int SAMPLE_BATCH_SIZE = 1024;
+
 	private double metersPerUnit = -1;
 	private int attemptCount = -1;
 	private int particleLimit = -1;
@@ -49,6 +51,7 @@ public class GalaxyRenderingContext implements Disposable {
 
 		final var samplePos = new Vec3.Mutable();
 		final var weights = new GalaxyRegionWeights();
+		final var batch = new GalaxyRegionWeights.Batch(SAMPLE_BATCH_SIZE);
 		int successfulPlacements = 0;
 		final var builder = BufferRenderer.IMMEDIATE_BUILDER
 				.beginGeneric(PrimitiveType.POINT_DUPLICATED,
@@ -65,9 +68,21 @@ public class GalaxyRenderingContext implements Disposable {
 			if (successfulPlacements >= this.particleLimit)
 				break;
 
+			// evaluate the mask field for a whole batch of sample positions at once
+			final var batchIndex = i % SAMPLE_BATCH_SIZE;
+			if (batchIndex == 0) {
+				batch.clear();
+				final var batchSize = Math.min(SAMPLE_BATCH_SIZE, this.attemptCount - i);
+				for (var j = 0; j < batchSize; ++j) {
+					Vec3.loadRandom(samplePos, rng, volumeMin, volumeMax);
+					batch.push(samplePos.x, samplePos.y, samplePos.z);
+				}
+				params.masks.evaluate(batch);
+			}
+
 			// density is specified in Tm^-3 (ie, number of stars per cubic terameter)
-			Vec3.loadRandom(samplePos, rng, volumeMin, volumeMax);
-			params.masks.evaluate(samplePos, weights);
+			Vec3.set(samplePos, batch.x[batchIndex], batch.y[batchIndex], batch.z[batchIndex]);
+			batch.load(batchIndex, weights);
 			weights.core *= Math.min(100, params.stellarDensityWeights.core);
 			weights.arms *= Math.min(100, params.stellarDensityWeights.arms);
 			weights.disc *= Math.min(100, params.stellarDensityWeights.disc);
@@ -8,6 +8,7 @@ import java.time.Instant;
 
 import net.minecraft.client.Minecraft;
 import net.xavil.hawklib.Disposable;
+import net.xavil.hawklib.collections.impl.VectorInt;
 import net.xavil.hawklib.client.camera.CachedCamera;
 import net.xavil.hawklib.client.camera.RenderMatricesSnapshot;
 import net.xavil.hawklib.client.flexible.BufferRenderer;
@@ -203,6 +204,7 @@ public final class StarRenderManager implements Disposable {
 		final Vec3.Mutable colorHolder = new Vec3.Mutable();
 		final GalaxySector.ElementHolder elem = new GalaxySector.ElementHolder();
 		final Vec3.Mutable toStar = new Vec3.Mutable();
+		final VectorInt visibleElements = new VectorInt();
 
 		final FlexibleVertexConsumer builder;
 		final CachedCamera camera;
@@ -244,10 +246,11 @@ public final class StarRenderManager implements Disposable {
 		final var actualOrigin = this.floatingOrigin;
 
 		final var levelSize = this.sectorTicket.info.radiusForLevel(sector.level);
-		for (int i = 0; i < sector.elements.size(); ++i) {
-			sector.elements.load(elem, i);
-			if (elem.systemPosTm.distanceTo(ctx.centerPos) > levelSize)
-				continue;
+		final var visibleElements = ctx.visibleElements;
+		visibleElements.clear();
+		sector.elements.index().collectWithinRadius(visibleElements, ctx.centerPos, levelSize);
+		for (int i = 0; i < visibleElements.size(); ++i) {
+			sector.elements.load(elem, visibleElements.get(i));
 
 			// too dim to notice, dont waste time on it. skips a lot of black holes that are
 			// present at higher octree levels.
@@ -3,6 +3,7 @@ package net.xavil.ultraviolet.client.screen.layer;
 import java.util.function.Consumer;
 
 import net.minecraft.util.Mth;
+import net.xavil.hawklib.Assert;
 import net.xavil.hawklib.collections.impl.VectorFloat;
 import net.xavil.hawklib.collections.impl.VectorInt;
 import net.xavil.hawklib.collections.interfaces.ImmutableListFloat;
@@ -90,6 +91,22 @@ public final class Histogram {
 		}
 	}
 
+	/**
+	 * Adds counts that were already sorted into bins elsewhere, using the same
+	 * mapping and number of bins as this histogram. The values of outliers are
+	 * not known, so only their counts are added.
+	 */
+	public void insertBinned(int[] binCounts, int outliersLoCount, int outliersHiCount) {
+		Assert.isEqual(binCounts.length, this.bins.size());
+		for (int i = 0; i < binCounts.length; ++i) {
+			this.bins.set(i, this.bins.get(i) + binCounts[i]);
+			this.total += binCounts[i];
+		}
+		this.outliersLoCount += outliersLoCount;
+		this.outliersHiCount += outliersHiCount;
+		this.total += outliersLoCount + outliersHiCount;
+	}
+
 	private static final char[] BAR_CHARS = { ' ', '▏', '▎', '▍', '▌', '▋', '▊', '▉', '█' };
 
 	private void makeBar(StringBuilder sb, double barPercent, int barLength) {
@@ -7,6 +7,7 @@ import net.xavil.hawklib.Maybe;
 import net.xavil.hawklib.client.screen.HawkScreen3d;
 import net.xavil.hawklib.client.screen.HawkScreen.Keypress;
 import net.xavil.hawklib.client.screen.HawkScreen.RenderContext;
+import net.xavil.ultraviolet.Mod;
 import net.xavil.ultraviolet.client.StarRenderManager;
 import net.xavil.ultraviolet.client.UltravioletShaders;
 import net.xavil.hawklib.client.HawkDrawStates;
@@ -24,19 +25,18 @@ import net.xavil.ultraviolet.client.screen.RenderHelper;
 import net.xavil.ultraviolet.client.screen.StarStatisticsScreen;
 import net.xavil.ultraviolet.common.config.ClientConfig;
 import net.xavil.ultraviolet.common.config.ConfigKey;
+import net.xavil.ultraviolet.common.universe.galaxy.ElementPicker;
 import net.xavil.ultraviolet.common.universe.galaxy.Galaxy;
 import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector;
-import net.xavil.ultraviolet.common.universe.galaxy.SectorPos;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorElementIndex;
 import net.xavil.ultraviolet.common.universe.galaxy.SectorTicketInfo;
 import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
 import net.xavil.ultraviolet.common.universe.id.SystemId;
 import net.xavil.hawklib.math.ColorRgba;
 import net.xavil.hawklib.math.Interval;
 import net.xavil.hawklib.math.Ray;
-import net.xavil.hawklib.math.matrices.Mat4;
 import net.xavil.hawklib.math.matrices.Vec2;
 import net.xavil.hawklib.math.matrices.Vec3;
-import net.xavil.hawklib.math.matrices.VecMath;
 
 public class ScreenLayerStars extends HawkScreen3d.Layer3d {
 	private final HawkScreen3d screen;
@@ -44,6 +44,11 @@ public class ScreenLayerStars extends HawkScreen3d.Layer3d {
 	private final StarRenderManager starRenderer;
 	private final Vec3 originOffset;
 	private boolean mapMode = true;
+	private final ElementPicker picker = new ElementPicker();
+
+	// the radius of the area around the cursor that stars can be selected from, in
+	// clip space.
+	private static final double SELECTION_RADIUS = 0.02;
 
 	public ScreenLayerStars(HawkScreen3d attachedScreen, Galaxy galaxy, Vec3 originOffset) {
 		super(attachedScreen, new CameraConfig(1e2, false, 1e9, false));
@@ -110,8 +115,16 @@ public class ScreenLayerStars extends HawkScreen3d.Layer3d {
 				return true;
 			}
 		} else if (keypress.keyCode == GLFW.GLFW_KEY_H) {
-			this.client.setScreen(new StarStatisticsScreen(this.screen, this.starRenderer.getSectorTicket(),
-					this.camera.posTm.xyz()));
+			if (keypress.hasModifiers(GLFW.GLFW_MOD_SHIFT)) {
+				// survey the stars that are currently loaded around the camera and dump the
+				// results to the log, without having to open the statistics screen.
+				final var survey = new StarSurvey();
+				survey.init(this.starRenderer.getSectorTicket());
+				StarSurvey.printSurvey(survey, Mod.LOGGER::info);
+			} else {
+				this.client.setScreen(new StarStatisticsScreen(this.screen, this.starRenderer.getSectorTicket(),
+						this.camera.posTm.xyz()));
+			}
 
 			return true;
 		}
@@ -120,115 +133,35 @@ public class ScreenLayerStars extends HawkScreen3d.Layer3d {
 	}
 
 	private Maybe<GalaxySectorId> pickElement(OrbitCamera.Cached camera, Vec2 mousePos) {
-		// @formatter:off
-		final var closest = new Object() {
-			double    depth       = Double.POSITIVE_INFINITY;
-			int       sectorIndex = -1;
-			SectorPos sectorPos   = null;
-		};
-		// @formatter:on
-
-		final var window = this.client.getWindow();
-		final var mouseX = 2.0 * mousePos.x / window.getGuiScaledWidth() - 1.0;
-		final var mouseY = 1.0 - 2.0 * mousePos.y / window.getGuiScaledHeight();
-		final var mousePosClip = new Vec2(mouseX, mouseY);
-
-		final var viewCenter = getStarViewCenterPos(camera);
-
-		final var mouseRay = camera.rayForPicking(window, mousePos);
-		// final var mouseRay = Ray.transform(new Ray(mousePosClip.xy0(), Vec3.ZN),
-		// 		Mat4.mul(camera.viewMatrix, camera.inverseProjectionMatrix));
-
-		// i swear to FUCK. WHY do i have to use the inverse view matrix here. this goes
-		// against everything i know to be true. crying. pissing. shitting. etc.
-		//
-		// like, i use the combined view-projection matrix as a shader uniform and it
-		// seems to work fine, and im doing the same sort of world pos -> clip pos that
-		// i do in those shaders, so why don't i get results that make sense?
-		final var viewProjMatrix = Mat4.mul(camera.projectionMatrix, camera.inverseViewMatrix);
-
-		final var selectionRadius = 0.02;
+		final var mouseRay = camera.rayForPicking(this.client.getWindow(), mousePos);
+
+		// the selection area is a small circle around the cursor in clip space, which
+		// is a cone in world space with its tip at the camera. Stars are tested
+		// against that cone directly, instead of projecting each one into clip space.
+		// Clip space is stretched to the window's aspect ratio, so the circle covers
+		// a wider angle along the window's longer axis, which is what the cone uses.
+		final var tanHalfFovX = 1.0 / camera.projectionMatrix.r0c0();
+		final var tanHalfFovY = 1.0 / camera.projectionMatrix.r1c1();
+		final var halfAngle = Math.atan(SELECTION_RADIUS * Math.max(tanHalfFovX, tanHalfFovY));
+		final var maxDistance = Math.abs(camera.farPlane) * camera.metersPerUnit / 1e12;
+		final var cone = new SectorElementIndex.Cone(camera.posTm, mouseRay.dir().normalize(), halfAngle,
+				maxDistance);
 
 		final var ticket = this.starRenderer.getSectorTicket();
+		this.picker.begin(cone, getStarViewCenterPos(camera));
 		ticket.info.enumerateAffectedSectors(pos -> {
-			final var sector = ticket.attachedManager.getSector(pos).unwrapOrNull();
-
-			// clip-space axis-aligned bounding rectangle containing the corners of the
-			// sector's world space bounding box, with a little bit of padding to account
-			// for the width of the selection column.
-
-			final var sectorMinWorld = sector.pos().minBound().mul(1e12 / camera.metersPerUnit);
-			final var sectorMaxWorld = sector.pos().maxBound().mul(1e12 / camera.metersPerUnit);
-			if (!mouseRay.intersectAabb(sectorMinWorld, sectorMaxWorld)) {
+			// coarse grained filter, dont consider any subsectors or elements of a sector
+			// that the selection cone does not pass through.
+			if (!this.picker.mayIntersect(pos))
 				return SectorTicketInfo.EnumerationAction.SKIP_CHILDREN;
-			}
-
-			// final double nx = sectorMinWorld.x, ny = sectorMinWorld.y, nz =
-			// sectorMinWorld.z;
-			// final double px = sectorMaxWorld.x, py = sectorMaxWorld.y, pz =
-			// sectorMaxWorld.z;
-
-			// double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
-			// double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
-
-			// final var min = VecMath.transformPerspective(viewProjMatrix, sectorMinWorld,
-			// 1);
-			// final var max = VecMath.transformPerspective(viewProjMatrix, sectorMaxWorld,
-			// 1);
-			// final var sectorBoundsX = new Interval(Math.min(min.x, max.x),
-			// Math.max(min.x, max.x))
-			// .expand(selectionRadius);
-			// final var sectorBoundsY = new Interval(Math.min(min.y, max.y),
-			// Math.max(min.y, max.y))
-			// .expand(selectionRadius);
-
-			// if (camera.pos.x < sectorMinWorld.x || camera.pos.x >= sectorMaxWorld.x
-			// || camera.pos.y < sectorMinWorld.y || camera.pos.y >= sectorMaxWorld.y
-			// || camera.pos.z < sectorMinWorld.z || camera.pos.z >= sectorMaxWorld.z) {
-			// }
-			// if (Math.min(min.z, max.z) > 1
-			// || !sectorBoundsX.contains(mousePosClip.x)
-			// || !sectorBoundsY.contains(mousePosClip.y))
-			// return SectorTicketInfo.EnumerationAction.SKIP_CHILDREN;
-
-			// coarse grained filters, dont consider any subsectors or elements of a sector
-			// that the selection ray does not interact with.
-			// if (Math.min(min.z, max.z) > 1
-			// || !sectorBoundsX.contains(mousePosClip.x)
-			// || !sectorBoundsY.contains(mousePosClip.y))
-
-			final var levelSize = ticket.info.radiusForLevel(sector.pos().level());
-
-			final var elem = new GalaxySector.ElementHolder();
-			final var point = new Vec3.Mutable(0, 0, 0);
-			for (int i = 0; i < sector.elements.size(); ++i) {
-				sector.elements.load(elem, i);
-
-				// don't consider points that are in the current sector but outside of the
-				// visual bubble around the 3d cursor position
-				if (elem.systemPosTm.distanceTo(viewCenter) > levelSize)
-					continue;
-
-				// project point into clip space
-				VecMath.transformPerspective(point, viewProjMatrix, elem.systemPosTm, 1);
-
-				// select the closest star in a asmall column around the cursor position
-				if (point.z > 1 || point.xy().distanceTo(mousePosClip) > selectionRadius)
-					continue;
-
-				if (point.z < closest.depth) {
-					closest.depth = point.z;
-					closest.sectorPos = sector.pos();
-					closest.sectorIndex = i;
-				}
-			}
-
+			final var sector = ticket.attachedManager.getSector(pos).unwrapOrNull();
+			// don't consider points that are in the current sector but outside of the
+			// visual bubble around the 3d cursor position
+			if (sector != null)
+				this.picker.addSector(sector, ticket.info.radiusForLevel(pos.level()));
 			return SectorTicketInfo.EnumerationAction.CONTINUE;
 		});
-
-		if (closest.sectorIndex == -1)
-			return Maybe.none();
-		return Maybe.some(GalaxySectorId.from(closest.sectorPos, closest.sectorIndex));
+		return this.picker.pick();
 	}
 
 	@Override
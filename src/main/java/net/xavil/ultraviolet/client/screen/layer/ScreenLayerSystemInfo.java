@@ -17,11 +17,15 @@ import net.xavil.hawklib.client.screen.HawkScreen.RenderContext;
 
 public class ScreenLayerSystemInfo extends HawkScreen.Layer2d {
 
+	private final Galaxy galaxy;
 	private final SystemTicket selectedSystemTicket;
 
 	public ScreenLayerSystemInfo(HawkScreen attachedScreen, Galaxy galaxy) {
 		super(attachedScreen);
+		this.galaxy = galaxy;
 		this.selectedSystemTicket = galaxy.sectorManager.createSystemTicket(disposer, null);
+		// only used for showing info about the system, not its layout
+		this.selectedSystemTicket.interest = SystemTicket.Interest.BACKGROUND;
 	}
 
 	private void drawInfo(PoseStack poseStack, @Nonnull GalaxySectorId selected) {
@@ -54,6 +58,16 @@ public class ScreenLayerSystemInfo extends HawkScreen.Layer2d {
 		holder.emit("System " + systemId, 0xffffffff);
 		final var system = this.selectedSystemTicket.get();
 		if (system == null) {
+			// the summary only needs the system's sector to be loaded, so we can show
+			// something useful while the full system is being generated.
+			final var summary = this.galaxy.getSystemSummary(selected).unwrapOrNull();
+			if (summary != null) {
+				holder.emit(String.format("§9§l§n%s§r", summary.name), 0xffffffff);
+				holder.height += 10;
+				holder.emit(String.format("§7%.2f M☉§r, §7%.2f L☉§r, §7%.2f K§r",
+						summary.massYg / Units.Yg_PER_Msol, summary.luminosityLsol, summary.temperatureK),
+						0xffffffff);
+			}
 			holder.emit("§c[generating]§r", 0xffffffff);
 			holder.height += 10;
 		} else {
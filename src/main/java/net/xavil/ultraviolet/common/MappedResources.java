@@ -0,0 +1,145 @@
+package net.xavil.ultraviolet.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nullable;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.xavil.hawklib.hash.FastHasher;
+import net.xavil.ultraviolet.Mod;
+
+/**
+ * Loads large binary resources by memory-mapping them, instead of reading them
+ * onto the heap.
+ * <p>
+ * Resources inside the mod jar can't be mapped directly, so each one is
+ * extracted to a file in the asset cache the first time it is loaded, and that
+ * file is mapped from then on. Cached files are named after the version of the
+ * mod and the modification time of the resource they were extracted from, so a
+ * new version of the mod gets fresh copies. The size of the resource isn't part
+ * of the name, since jars don't always know it up front.
+ * </p>
+ * <p>
+ * Buffers returned from here are shared and read-only. Only use absolute
+ * accesses on them if other threads might be reading them at the same time.
+ * </p>
+ */
+public final class MappedResources {
+
+	public static final boolean DISABLE_MAPPING = Boolean
+			.valueOf(System.getProperty("net.xavil.ultraviolet.disable_asset_mapping"));
+
+	private MappedResources() {
+	}
+
+	private static Path cacheDirectory() {
+		return FabricLoader.getInstance().getGameDir().resolve(Mod.MOD_ID).resolve("asset_cache");
+	}
+
+	/**
+	 * Loads a resource from the mod jar as a big-endian buffer. If the resource
+	 * can't be mapped for whatever reason, it is read onto the heap instead.
+	 *
+	 * @param name The name of the resource, relative to the root of the jar.
+	 * @return The contents of the resource, or {@code null} if it could not be
+	 *         loaded at all.
+	 */
+	@Nullable
+	public static ByteBuffer load(String name) {
+		final var url = MappedResources.class.getResource("/" + name);
+		if (url == null) {
+			Mod.LOGGER.error("resource '{}' does not exist", name);
+			return null;
+		}
+
+		if (!DISABLE_MAPPING) {
+			try {
+				return map(url, name);
+			} catch (IOException | UnsupportedOperationException ex) {
+				Mod.LOGGER.warn("failed to map resource '{}', reading it into memory instead", name);
+				ex.printStackTrace();
+			}
+		}
+
+		try (final var stream = url.openStream()) {
+			return ByteBuffer.wrap(stream.readAllBytes()).order(ByteOrder.BIG_ENDIAN);
+		} catch (IOException ex) {
+			Mod.LOGGER.error("failed to load resource '{}'", name);
+			ex.printStackTrace();
+			return null;
+		}
+	}
+
+	private static String modVersion() {
+		return FabricLoader.getInstance().getModContainer(Mod.MOD_ID)
+				.map(mod -> mod.getMetadata().getVersion().getFriendlyString())
+				.orElse("unknown");
+	}
+
+	private static ByteBuffer map(URL url, String name) throws IOException {
+		final var connection = url.openConnection();
+		final var hasher = FastHasher.create();
+		hasher.appendString(name);
+		hasher.appendString(modVersion());
+		hasher.appendLong(connection.getLastModified());
+
+		final var directory = cacheDirectory();
+		final var path = directory.resolve(String.format("%s.%016x", name, hasher.currentHash()));
+		// -1 if the size isn't known, in which case we have to trust that the file was
+		// extracted completely, which the atomic move in extract() makes sure of.
+		final var size = connection.getContentLengthLong();
+		if (!Files.isRegularFile(path) || (size >= 0 && Files.size(path) != size)) {
+			Files.createDirectories(directory);
+			try (final var stream = connection.getInputStream()) {
+				extract(stream, directory, path);
+			}
+			removeStaleCopies(directory, name, path);
+			Mod.LOGGER.info("extracted resource '{}' to '{}'", name, path);
+		}
+
+		// the mapping stays valid after the channel is closed
+		try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.BIG_ENDIAN);
+		}
+	}
+
+	// written to a temporary file and then moved into place, so that a crash or a
+	// second instance of the game can never see a partially written file.
+	private static void extract(InputStream stream, Path directory, Path path) throws IOException {
+		final var tempPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+		try {
+			Files.copy(stream, tempPath, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	private static void removeStaleCopies(Path directory, String name, Path current) {
+		try (final var paths = Files.newDirectoryStream(directory, name + ".*")) {
+			for (final var path : paths) {
+				if (path.equals(current) || path.toString().endsWith(".tmp"))
+					continue;
+				try {
+					Files.deleteIfExists(path);
+				} catch (IOException ex) {
+					// it might still be mapped by another instance of the game, in which case
+					// we'll get it next time.
+				}
+			}
+		} catch (IOException ex) {
+			Mod.LOGGER.warn("failed to remove old copies of resource '{}' from the asset cache", name);
+			ex.printStackTrace();
+		}
+	}
+
+}
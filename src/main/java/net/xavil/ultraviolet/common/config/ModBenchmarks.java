@@ -0,0 +1,77 @@
+package net.xavil.ultraviolet.common.config;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.TextComponent;
+import net.xavil.ultraviolet.Mod;
+import net.xavil.ultraviolet.common.config.benchmark.Benchmark;
+import net.xavil.ultraviolet.common.config.benchmark.BenchmarkReport;
+import net.xavil.ultraviolet.common.config.benchmark.KeplerBenchmark;
+import net.xavil.ultraviolet.common.config.benchmark.NodeCodecBenchmark;
+import net.xavil.ultraviolet.common.config.benchmark.NodeLookupBenchmark;
+import net.xavil.ultraviolet.common.config.benchmark.PacketsBenchmark;
+import net.xavil.ultraviolet.common.config.benchmark.PickingBenchmark;
+import net.xavil.ultraviolet.common.config.benchmark.PropagatorBenchmark;
+import net.xavil.ultraviolet.common.config.benchmark.TicketDiffBenchmark;
+
+/**
+ * Benchmarks for the parts of the mod that are too hot to guess about, run
+ * with {@code /ultraviolet benchmark}. Every benchmark works on synthetic
+ * data, so none of them need a galaxy or anything else to be loaded, and each
+ * one also checks that the code it measures agrees with a simpler reference.
+ * <p>
+ * Benchmarks run one at a time on a thread of their own, so that they neither
+ * stall the server nor skew each other's timings. Each {@link Benchmark} is run
+ * twice with the same seed, and only the second run is reported, so that the
+ * timings are of code that the JIT has already had a chance to compile.
+ * </p>
+ */
+public final class ModBenchmarks {
+
+	public static final List<Benchmark> BENCHMARKS = List.of(
+			new NodeLookupBenchmark(4000, 100000),
+			new PickingBenchmark(4, 1000, 1000),
+			new NodeCodecBenchmark(1000),
+			new PacketsBenchmark(10000),
+			new TicketDiffBenchmark(1000),
+			new PropagatorBenchmark(10000),
+			new KeplerBenchmark(100000));
+
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		final var thread = new Thread(runnable, "ultraviolet-benchmark");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private ModBenchmarks() {
+	}
+
+	/**
+	 * Runs {@code benchmark} in the background, once to warm up and once for real,
+	 * and reports its result to {@code source} once it finishes.
+	 */
+	public static void run(CommandSourceStack source, Benchmark benchmark) {
+		final var name = benchmark.name();
+		source.sendSuccess(new TextComponent("running benchmark '" + name + "'..."), false);
+		final var server = source.getServer();
+		EXECUTOR.execute(() -> {
+			String message;
+			try {
+				benchmark.run(new Random(0), new BenchmarkReport());
+				final var report = new BenchmarkReport();
+				benchmark.run(new Random(0), report);
+				message = name + ": " + report;
+			} catch (Throwable t) {
+				Mod.LOGGER.error("benchmark '{}' failed", name, t);
+				message = name + ": failed with " + t;
+			}
+			final var result = message;
+			server.execute(() -> source.sendSuccess(new TextComponent(result), false));
+		});
+	}
+
+}
@@ -20,6 +20,8 @@ import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.Entity;
 import net.xavil.ultraviolet.Mod;
 import net.xavil.ultraviolet.common.universe.WorldType;
+import net.xavil.ultraviolet.common.universe.galaxy.ElementArena;
+import net.xavil.ultraviolet.common.universe.galaxy.GenerationScheduler;
 import net.xavil.ultraviolet.common.universe.station.StationLocation;
 import net.xavil.ultraviolet.common.universe.station.StationLocation.OrbitingCelestialBody;
 import net.xavil.ultraviolet.common.universe.universe.ServerUniverse;
@@ -49,6 +51,11 @@ public final class ModDebugCommand {
 						.then(literal("move")
 								.then(argument("name", StringArgumentType.string())
 										.executes(ModDebugCommand::executeStationMove))))
+				.then(literal("generation")
+						.executes(ModDebugCommand::executeGenerationStats))
+				.then(literal("network")
+						.executes(ModDebugCommand::executeNetworkStats))
+				.then(createBenchmarkSubcommand())
 				.then(literal("time")
 						.then(literal("scale").then(argument("seconds_per_second", DoubleArgumentType.doubleArg())
 								.executes(ModDebugCommand::executeTimeScale)))
@@ -109,6 +116,38 @@ public final class ModDebugCommand {
 		return builder;
 	}
 
+	private static LiteralArgumentBuilder<CommandSourceStack> createBenchmarkSubcommand() {
+		final var builder = literal("benchmark");
+		for (final var benchmark : ModBenchmarks.BENCHMARKS) {
+			builder.then(literal(benchmark.name()).executes(ctx -> {
+				ModBenchmarks.run(ctx.getSource(), benchmark);
+				return 1;
+			}));
+		}
+		return builder;
+	}
+
+	private static int executeNetworkStats(CommandContext<CommandSourceStack> ctx) {
+		final var universe = MinecraftServerAccessor.getUniverse(ctx.getSource().getServer());
+		ctx.getSource().sendSuccess(new TextComponent("interest: " + universe.interestManager.debugSummary()), false);
+		return 1;
+	}
+
+	private static int executeGenerationStats(CommandContext<CommandSourceStack> ctx) {
+		final var scheduler = GenerationScheduler.get();
+		ctx.getSource().sendSuccess(new TextComponent("scheduler: " + scheduler.debugSummary()), false);
+		final var universe = MinecraftServerAccessor.getUniverse(ctx.getSource().getServer());
+		final var cache = universe.getSectorElementCache();
+		if (cache != null) {
+			ctx.getSource().sendSuccess(new TextComponent("sector cache: " + cache.debugSummary()), false);
+		} else {
+			ctx.getSource().sendSuccess(new TextComponent("sector cache: disabled"), false);
+		}
+		ctx.getSource().sendSuccess(new TextComponent("sector streaming: " + universe.sectorStreamer.debugSummary()), false);
+		ctx.getSource().sendSuccess(new TextComponent("element arena: " + ElementArena.get().debugSummary()), false);
+		return 1;
+	}
+
 	private static int executeTimeScale(CommandContext<CommandSourceStack> ctx) {
 		final var level = ctx.getSource().getLevel();
 		final var rate = DoubleArgumentType.getDouble(ctx, "seconds_per_second");
@@ -0,0 +1,28 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Random;
+
+/**
+ * A benchmark that can be run with {@code /ultraviolet benchmark <name>}. See
+ * {@link net.xavil.ultraviolet.common.config.ModBenchmarks} for how benchmarks
+ * are run.
+ */
+public interface Benchmark {
+
+	/**
+	 * @return The name of this benchmark's subcommand.
+	 */
+	String name();
+
+	/**
+	 * Runs this benchmark once, timing the code being measured with
+	 * a {@link BenchmarkReport.Timer}, and checking its output against a simpler
+	 * reference implementation with {@link BenchmarkReport#check}.
+	 *
+	 * @param random The source of all of the benchmark's synthetic data. Every run
+	 *               is handed an identically-seeded instance.
+	 * @param report The report to write results to.
+	 */
+	void run(Random random, BenchmarkReport report);
+
+}
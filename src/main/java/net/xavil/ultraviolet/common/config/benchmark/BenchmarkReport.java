@@ -0,0 +1,87 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+/**
+ * Collects the results of a single {@link Benchmark} run, and formats them
+ * into the one line that gets sent back to whoever ran it.
+ */
+public final class BenchmarkReport {
+
+	private final StringBuilder builder = new StringBuilder();
+	private int checkCount = 0, mismatchCount = 0;
+
+	/**
+	 * Adds a {@link String#format}-style section to the report. Sections are
+	 * separated by semicolons.
+	 */
+	public void add(String format, Object... args) {
+		if (!this.builder.isEmpty())
+			this.builder.append("; ");
+		this.builder.append(String.format(format, args));
+	}
+
+	/**
+	 * Records the outcome of comparing the measured code against its reference.
+	 *
+	 * @param matches Whether the two agreed.
+	 */
+	public void check(boolean matches) {
+		this.checkCount += 1;
+		if (!matches)
+			this.mismatchCount += 1;
+	}
+
+	public int mismatchCount() {
+		return this.mismatchCount;
+	}
+
+	@Override
+	public String toString() {
+		if (this.checkCount == 0)
+			return this.builder.toString();
+		return String.format("%s; %d of %d checks mismatched", this.builder, this.mismatchCount, this.checkCount);
+	}
+
+	public static String formatNs(double ns) {
+		if (ns < 1e3)
+			return String.format("%.1f ns", ns);
+		if (ns < 1e6)
+			return String.format("%.1f us", ns / 1e3);
+		return String.format("%.1f ms", ns / 1e6);
+	}
+
+	/**
+	 * Accumulates the time taken by some number of operations, which may be timed
+	 * either one at a time or in batches. Formats as the average time per
+	 * operation.
+	 */
+	public static final class Timer {
+		private long totalNs = 0, startNs = 0, opCount = 0;
+
+		public void start() {
+			this.startNs = System.nanoTime();
+		}
+
+		public void stop() {
+			stop(1);
+		}
+
+		/**
+		 * @param opCount The number of operations that were run since the last call to
+		 *                {@link #start()}.
+		 */
+		public void stop(int opCount) {
+			this.totalNs += System.nanoTime() - this.startNs;
+			this.opCount += opCount;
+		}
+
+		public double nsPerOp() {
+			return (double) this.totalNs / this.opCount;
+		}
+
+		@Override
+		public String toString() {
+			return formatNs(nsPerOp());
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Random;
+
+import net.xavil.hawklib.math.Formulas;
+import net.xavil.ultraviolet.common.universe.galaxy.OrbitalUpdateScheduler;
+import net.xavil.ultraviolet.common.universe.system.OrbitalPropagator;
+
+/**
+ * Solves Kepler's equation for random mean anomalies at a range of
+ * eccentricities with {@link Formulas#solveKepler}, both without a guess and
+ * warm-started from a nearby solution like {@link OrbitalPropagator} does, and
+ * with the fixed 10 Newton iterations that were used before it. Errors are
+ * measured against bisecting the equation down to the last bit, and residuals
+ * are how far {@code E - e * sin(E)} ends up from the mean anomaly. A solve
+ * counts as a mismatch if it is off by more than the solver's tolerance.
+ *
+ * @param sampleCount The number of solves to time for each eccentricity.
+ */
+public record KeplerBenchmark(int sampleCount) implements Benchmark {
+
+	private static final double[] ECCENTRICITIES = {
+			0, 0.1, 0.2, 0.3, 0.4, 0.5, 0.6, 0.7, 0.8, 0.9, 0.99, 0.999, 0.9999,
+	};
+	// (rad) how far the mean anomaly moves between the guess and the solve when
+	// warm-starting, about the most that a background orbit moves between updates.
+	private static final double WARM_START_STEP = OrbitalUpdateScheduler.BACKGROUND_MAXIMUM_ANGLE;
+
+	@Override
+	public String name() {
+		return "kepler";
+	}
+
+	@Override
+	public void run(Random random, BenchmarkReport report) {
+		final var meanAnomalies = new double[this.sampleCount];
+		final var guesses = new double[this.sampleCount];
+		final var expected = new double[this.sampleCount];
+		final var cold = new double[this.sampleCount];
+		final var warm = new double[this.sampleCount];
+		final var legacy = new double[this.sampleCount];
+		final var tolerance = Formulas.DEFAULT_KEPLER_TOLERANCE;
+		report.add("%d solves per eccentricity", this.sampleCount);
+		for (final var e : ECCENTRICITIES) {
+			for (int i = 0; i < this.sampleCount; ++i) {
+				meanAnomalies[i] = Math.PI * (2 * random.nextDouble() - 1);
+				guesses[i] = Formulas.solveKepler(meanAnomalies[i] - WARM_START_STEP, e, Double.NaN, tolerance);
+				expected[i] = solveByBisection(meanAnomalies[i], e);
+			}
+
+			final var coldTimer = new BenchmarkReport.Timer();
+			coldTimer.start();
+			for (int i = 0; i < this.sampleCount; ++i)
+				cold[i] = Formulas.solveKepler(meanAnomalies[i], e, Double.NaN, tolerance);
+			coldTimer.stop(this.sampleCount);
+
+			final var warmTimer = new BenchmarkReport.Timer();
+			warmTimer.start();
+			for (int i = 0; i < this.sampleCount; ++i)
+				warm[i] = Formulas.solveKepler(meanAnomalies[i], e, guesses[i], tolerance);
+			warmTimer.stop(this.sampleCount);
+
+			final var legacyTimer = new BenchmarkReport.Timer();
+			legacyTimer.start();
+			for (int i = 0; i < this.sampleCount; ++i)
+				legacy[i] = solveLegacy(meanAnomalies[i], e);
+			legacyTimer.stop(this.sampleCount);
+
+			double maxError = 0, maxResidual = 0, legacyMaxError = 0;
+			for (int i = 0; i < this.sampleCount; ++i) {
+				final var error = Math.max(Math.abs(cold[i] - expected[i]), Math.abs(warm[i] - expected[i]));
+				maxError = Math.max(maxError, error);
+				report.check(error <= tolerance);
+				final var residual = Math.max(
+						Math.abs(cold[i] - e * Math.sin(cold[i]) - meanAnomalies[i]),
+						Math.abs(warm[i] - e * Math.sin(warm[i]) - meanAnomalies[i]));
+				maxResidual = Math.max(maxResidual, residual);
+				// NaN if the legacy solver diverged, which is worth seeing.
+				legacyMaxError = Math.max(legacyMaxError, Math.abs(legacy[i] - expected[i]));
+			}
+
+			report.add("e=%s: error %.1e (residual %.1e), %s/solve cold, %s/solve warm; legacy %s/solve (error %.1e)",
+					e, maxError, maxResidual, coldTimer, warmTimer, legacyTimer, legacyMaxError);
+		}
+	}
+
+	// `E - e * sin(E)` only ever increases, so the solution can be narrowed down
+	// until the bracket around it can't shrink any further.
+	private static double solveByBisection(double meanAnomaly, double e) {
+		var M = meanAnomaly - 2 * Math.PI * Math.rint(meanAnomaly / (2 * Math.PI));
+		final var flip = M < 0;
+		if (flip)
+			M = -M;
+		M = Math.min(M, Math.PI);
+
+		var lo = M;
+		var hi = Math.min(M + e, Math.PI);
+		while (true) {
+			final var mid = 0.5 * (lo + hi);
+			if (mid <= lo || mid >= hi)
+				break;
+			if (mid - e * Math.sin(mid) - M > 0)
+				hi = mid;
+			else
+				lo = mid;
+		}
+		final var E = Math.abs(lo - e * Math.sin(lo) - M) <= Math.abs(hi - e * Math.sin(hi) - M) ? lo : hi;
+		return flip ? -E : E;
+	}
+
+	// what `Formulas.calculateTrueAnomaly` did before `Formulas.solveKepler` existed.
+	private static double solveLegacy(double meanAnomaly, double e) {
+		var E = meanAnomaly;
+		for (var n = 0; n < 10; ++n) {
+			final var F = E - e * Math.sin(E) - meanAnomaly;
+			E -= F / (1 - e * Math.cos(E));
+		}
+		return E;
+	}
+
+}
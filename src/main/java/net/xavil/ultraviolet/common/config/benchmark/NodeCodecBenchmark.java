@@ -0,0 +1,143 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import static net.xavil.ultraviolet.common.config.benchmark.SyntheticData.randomPlane;
+import static net.xavil.ultraviolet.common.config.benchmark.SyntheticData.randomShape;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.xavil.hawklib.math.Interval;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.ultraviolet.common.universe.system.BinaryCelestialNode;
+import net.xavil.ultraviolet.common.universe.system.CelestialNode;
+import net.xavil.ultraviolet.common.universe.system.CelestialNodeChild;
+import net.xavil.ultraviolet.common.universe.system.CelestialNodeCodec;
+import net.xavil.ultraviolet.common.universe.system.CelestialRing;
+import net.xavil.ultraviolet.common.universe.system.PlanetaryCelestialNode;
+import net.xavil.ultraviolet.common.universe.system.StellarCelestialNode;
+import net.xavil.ultraviolet.common.universe.system.UnaryCelestialNode;
+
+/**
+ * Round-trips randomly generated trees through both
+ * {@link CelestialNodeCodec} and NBT, comparing the encoded sizes and the time
+ * taken to write and read each tree back. A tree counts as a mismatch if it
+ * does not come back out of the codec exactly as it went in.
+ *
+ * @param treeCount The number of trees to round-trip.
+ */
+public record NodeCodecBenchmark(int treeCount) implements Benchmark {
+
+	@Override
+	public String name() {
+		return "node_codec";
+	}
+
+	@Override
+	public void run(Random random, BenchmarkReport report) {
+		final var codec = new CelestialNodeCodec(CelestialNodeCodec.Precision.DOUBLE);
+		final var floatCodec = new CelestialNodeCodec(CelestialNodeCodec.Precision.FLOAT);
+		final var buf = new FriendlyByteBuf(Unpooled.buffer());
+
+		final var nbtTimer = new BenchmarkReport.Timer();
+		final var codecTimer = new BenchmarkReport.Timer();
+		int nodeCount = 0;
+		long nbtBytes = 0, codecBytes = 0, floatCodecBytes = 0;
+		for (int i = 0; i < this.treeCount; ++i) {
+			final var root = randomNode(random, 3);
+			root.build();
+			nodeCount += countNodes(root);
+
+			nbtTimer.start();
+			buf.clear();
+			buf.writeNbt(CelestialNode.writeNbt(root));
+			nbtBytes += buf.readableBytes();
+			CelestialNode.readNbt(buf.readNbt());
+			nbtTimer.stop();
+
+			codecTimer.start();
+			final var encoded = codec.encode(root);
+			codecBytes += encoded.remaining();
+			final var decoded = CelestialNodeCodec.read(encoded);
+			codecTimer.stop();
+
+			floatCodecBytes += floatCodec.encode(root).remaining();
+
+			// compare the encoded bytes instead of the trees themselves, since every
+			// field of every node ends up in there.
+			final var expected = codec.encodeToArray(root);
+			report.check(decoded != null && Arrays.equals(expected, codec.encodeToArray(decoded)));
+		}
+
+		report.add("%d trees, %d nodes", this.treeCount, nodeCount);
+		report.add("nbt %d bytes, %s/tree", nbtBytes, nbtTimer);
+		report.add("codec %d bytes (%d as floats), %s/tree", codecBytes, floatCodecBytes, codecTimer);
+	}
+
+	private static int countNodes(CelestialNode node) {
+		int count = 1;
+		if (node instanceof BinaryCelestialNode binaryNode)
+			count += countNodes(binaryNode.getInner()) + countNodes(binaryNode.getOuter());
+		for (final var child : node.childNodes.iterable())
+			count += countNodes(child.node);
+		return count;
+	}
+
+	// NBT can't represent `OtherCelestialNode`s, so they're left out here.
+	private static CelestialNode randomNode(Random random, int depth) {
+		final CelestialNode node;
+		// 0 is a binary node, 1 is a star, and 2 is a planet.
+		final var kind = depth <= 0 ? 1 + random.nextInt(2) : random.nextInt(3);
+		if (kind == 0) {
+			final var binaryNode = new BinaryCelestialNode();
+			binaryNode.setInner(randomNode(random, depth - 1));
+			binaryNode.setOuter(randomNode(random, depth - 1));
+			binaryNode.orbitalPlane = randomPlane(random);
+			binaryNode.orbitalShapeInner = randomShape(random);
+			binaryNode.orbitalShapeOuter = randomShape(random);
+			binaryNode.phase = 2 * Math.PI * random.nextDouble();
+			node = binaryNode;
+		} else {
+			final UnaryCelestialNode unaryNode;
+			if (kind == 1) {
+				final var starNode = new StellarCelestialNode();
+				final var types = StellarCelestialNode.Type.values();
+				starNode.type = types[random.nextInt(types.length)];
+				starNode.luminosityLsol = Math.exp(10 * random.nextGaussian());
+				unaryNode = starNode;
+			} else {
+				final var planetNode = new PlanetaryCelestialNode();
+				final var types = PlanetaryCelestialNode.Type.values();
+				planetNode.type = types[random.nextInt(types.length)];
+				unaryNode = planetNode;
+			}
+			unaryNode.radius = 1e5 * random.nextDouble();
+			unaryNode.obliquityAngle = Math.PI * random.nextDouble();
+			unaryNode.rotationalRate = 1e-4 * random.nextGaussian();
+			unaryNode.temperature = 1e4 * random.nextDouble();
+			final var ringCount = random.nextInt(3);
+			for (int i = 0; i < ringCount; ++i) {
+				final var lower = 1e5 * random.nextDouble();
+				unaryNode.rings.push(new CelestialRing(randomPlane(random), random.nextDouble(),
+						new Interval(lower, lower + 1e5 * random.nextDouble()), 1e3 * random.nextDouble()));
+			}
+			node = unaryNode;
+		}
+
+		node.seed = random.nextLong();
+		node.explicitName = random.nextInt(4) == 0 ? "Node " + random.nextInt(1000) : null;
+		node.massYg = Math.exp(10 * random.nextGaussian());
+		Vec3.set(node.position, new Vec3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+		node.apsidalRate = 1e-9 * random.nextGaussian();
+		node.referencePlane = randomPlane(random);
+
+		final var childCount = depth <= 0 ? 0 : random.nextInt(4);
+		for (int i = 0; i < childCount; ++i) {
+			node.insertChild(new CelestialNodeChild<>(node, randomNode(random, depth - 1),
+					randomShape(random), randomPlane(random), 2 * Math.PI * random.nextDouble()));
+		}
+		return node;
+	}
+
+}
@@ -0,0 +1,98 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+import net.xavil.hawklib.math.matrices.Vec3i;
+import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorPos;
+
+/**
+ * Loads random sectors of a single root sector, and then compares
+ * {@link GalaxySector#lookupNode} against a lookup that probes every child on
+ * the way down, like it used to. Half of the lookups are for sectors that were
+ * loaded, and the other half are for random sectors, which may not be. A lookup
+ * counts as a mismatch if either walk finds a different node than probing does.
+ *
+ * @param loadCount   The number of random sectors to load.
+ * @param lookupCount The number of lookups to time.
+ */
+public record NodeLookupBenchmark(int loadCount, int lookupCount) implements Benchmark {
+
+	@Override
+	public String name() {
+		return "node_lookup";
+	}
+
+	@Override
+	public void run(Random random, BenchmarkReport report) {
+		final var root = new GalaxySector(Vec3i.ZERO);
+		final var loaded = new SectorPos[this.loadCount];
+		for (int i = 0; i < this.loadCount; ++i) {
+			loaded[i] = randomSectorPos(random);
+			root.load(loaded[i]);
+		}
+
+		final var targets = new SectorPos[this.lookupCount];
+		final var packedTargets = new long[this.lookupCount];
+		for (int i = 0; i < this.lookupCount; ++i) {
+			targets[i] = random.nextBoolean() ? loaded[random.nextInt(this.loadCount)] : randomSectorPos(random);
+			packedTargets[i] = targets[i].packed();
+		}
+
+		final var walked = new GalaxySector[this.lookupCount];
+		final var walkTimer = new BenchmarkReport.Timer();
+		walkTimer.start();
+		for (int i = 0; i < this.lookupCount; ++i)
+			walked[i] = root.lookupNode(targets[i]);
+		walkTimer.stop(this.lookupCount);
+
+		final var packedWalked = new GalaxySector[this.lookupCount];
+		final var packedWalkTimer = new BenchmarkReport.Timer();
+		packedWalkTimer.start();
+		for (int i = 0; i < this.lookupCount; ++i)
+			packedWalked[i] = root.lookupNode(packedTargets[i]);
+		packedWalkTimer.stop(this.lookupCount);
+
+		final var probed = new GalaxySector[this.lookupCount];
+		final var probeTimer = new BenchmarkReport.Timer();
+		probeTimer.start();
+		for (int i = 0; i < this.lookupCount; ++i)
+			probed[i] = lookupByProbing(root, targets[i]);
+		probeTimer.stop(this.lookupCount);
+
+		for (int i = 0; i < this.lookupCount; ++i)
+			report.check(walked[i] == probed[i] && packedWalked[i] == probed[i]);
+
+		report.add("%d loaded sectors, %d lookups", this.loadCount, this.lookupCount);
+		report.add("walk %s/lookup (%s packed), probing %s/lookup", walkTimer, packedWalkTimer, probeTimer);
+	}
+
+	private static SectorPos randomSectorPos(Random random) {
+		final var level = random.nextInt(GalaxySector.ROOT_LEVEL + 1);
+		final var count = 1 << (GalaxySector.ROOT_LEVEL - level);
+		return new SectorPos(level, new Vec3i(random.nextInt(count), random.nextInt(count), random.nextInt(count)));
+	}
+
+	@Nullable
+	private static GalaxySector lookupByProbing(GalaxySector node, SectorPos pos) {
+		if (pos.level() > node.level)
+			return null;
+		final var levelPos = pos.levelCoords().floorDiv((1 << node.level) / (1 << pos.level()));
+		if (node.x != levelPos.x || node.y != levelPos.y || node.z != levelPos.z)
+			return null;
+		if (pos.level() == node.level)
+			return node;
+		final var branch = node.branch();
+		if (branch == null)
+			return null;
+		for (int i = 0; i < 8; ++i) {
+			final var found = lookupByProbing(branch.child(i), pos);
+			if (found != null)
+				return found;
+		}
+		return null;
+	}
+
+}
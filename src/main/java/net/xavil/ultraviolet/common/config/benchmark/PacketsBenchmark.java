@@ -0,0 +1,184 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.IntTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.xavil.hawklib.math.Quat;
+import net.xavil.hawklib.math.matrices.Vec3i;
+import net.xavil.ultraviolet.common.universe.WorldType;
+import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
+import net.xavil.ultraviolet.common.universe.id.SystemId;
+import net.xavil.ultraviolet.common.universe.id.SystemNodeId;
+import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
+import net.xavil.ultraviolet.networking.ModPacket;
+import net.xavil.ultraviolet.networking.NetworkContext;
+import net.xavil.ultraviolet.networking.NetworkSerializers;
+import net.xavil.ultraviolet.networking.s2c.ClientboundChangeSystemPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundDebugValueSetPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundOpenStarmapPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSpaceStationInfoPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundStationJumpBeginPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSyncCelestialTimePacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundUniverseSyncPacket;
+
+/**
+ * Writes a random session's worth of clientbound packets over a simulated
+ * connection, once with the legacy encoding and once with the compact one of
+ * {@link NetworkSerializers}, and reports the average size of each kind of
+ * packet. The IDs in the packets are drawn from a small pool of nearby
+ * systems, like they would be in a real session. A packet counts as a mismatch
+ * if it does not come back out of the compact encoding exactly as it went in.
+ *
+ * @param packetCount The number of packets to write.
+ */
+public record PacketsBenchmark(int packetCount) implements Benchmark {
+
+	private static final String[] PACKET_NAMES = {
+			"change_system", "debug_value_set", "open_starmap", "space_station_info",
+			"station_jump_begin", "sync_celestial_time", "universe_sync",
+	};
+
+	private record RandomPacket(int kind, ModPacket<?> packet, Supplier<ModPacket<?>> factory) {
+	}
+
+	@Override
+	public String name() {
+		return "packets";
+	}
+
+	@Override
+	public void run(Random random, BenchmarkReport report) {
+		final var systems = new SystemId[16];
+		final var universeSector = new UniverseSectorId(new Vec3i(0, 0, 0), random.nextInt(4));
+		for (int i = 0; i < systems.length; ++i) {
+			final var coords = new Vec3i(random.nextInt(64) - 32, random.nextInt(8) - 4, random.nextInt(64) - 32);
+			final var galaxySector = GalaxySectorId.from(random.nextInt(8), coords, random.nextInt(1000));
+			systems[i] = new SystemId(universeSector, galaxySector);
+		}
+
+		final var packets = new RandomPacket[this.packetCount];
+		for (int i = 0; i < this.packetCount; ++i)
+			packets[i] = randomPacket(random, systems);
+
+		final var packetCounts = new int[PACKET_NAMES.length];
+		final var legacyBytes = new long[PACKET_NAMES.length];
+		final var compactBytes = new long[PACKET_NAMES.length];
+		final var legacyContext = new NetworkContext(false);
+		final var encodeContext = new NetworkContext(true);
+		final var decodeContext = new NetworkContext(true);
+		final var buf = new FriendlyByteBuf(Unpooled.buffer());
+		try {
+			for (final var packet : packets) {
+				packetCounts[packet.kind] += 1;
+
+				NetworkContext.set(legacyContext);
+				buf.clear();
+				packet.packet.write(buf);
+				legacyBytes[packet.kind] += buf.readableBytes();
+				final var expected = new byte[buf.readableBytes()];
+				buf.readBytes(expected);
+
+				NetworkContext.set(encodeContext);
+				buf.clear();
+				packet.packet.write(buf);
+				compactBytes[packet.kind] += buf.readableBytes();
+
+				NetworkContext.set(decodeContext);
+				final var decoded = packet.factory.get();
+				decoded.read(buf);
+
+				// compare the legacy encodings of both packets, since they contain every
+				// field that goes over the wire, and do not depend on any context.
+				NetworkContext.set(legacyContext);
+				buf.clear();
+				decoded.write(buf);
+				final var actual = new byte[buf.readableBytes()];
+				buf.readBytes(actual);
+				report.check(Arrays.equals(expected, actual));
+			}
+		} finally {
+			NetworkContext.clear();
+		}
+
+		report.add("%d packets: %.1f -> %.1f bytes/packet", this.packetCount,
+				(double) Arrays.stream(legacyBytes).sum() / this.packetCount,
+				(double) Arrays.stream(compactBytes).sum() / this.packetCount);
+		for (int i = 0; i < PACKET_NAMES.length; ++i) {
+			if (packetCounts[i] == 0)
+				continue;
+			report.add("%s %.1f -> %.1f", PACKET_NAMES[i],
+					(double) legacyBytes[i] / packetCounts[i],
+					(double) compactBytes[i] / packetCounts[i]);
+		}
+	}
+
+	private static SystemNodeId randomNodeId(Random random, SystemId[] systems) {
+		// favor the first few systems, like a player that stays around home would.
+		final var index = Math.min(systems.length - 1, (int) Math.abs(3 * random.nextGaussian()));
+		return new SystemNodeId(systems[index], random.nextInt(32));
+	}
+
+	private static WorldType randomWorldType(Random random, SystemId[] systems) {
+		return random.nextBoolean()
+				? new WorldType.SystemNode(randomNodeId(random, systems))
+				: new WorldType.Station(random.nextInt(16));
+	}
+
+	private static RandomPacket randomPacket(Random random, SystemId[] systems) {
+		final var kind = random.nextInt(PACKET_NAMES.length);
+		final ModPacket<?> packet;
+		final Supplier<ModPacket<?>> factory;
+		switch (kind) {
+			case 0 -> {
+				packet = new ClientboundChangeSystemPacket(randomWorldType(random, systems));
+				factory = ClientboundChangeSystemPacket::new;
+			}
+			case 1 -> {
+				packet = new ClientboundDebugValueSetPacket("debug_value", IntTag.valueOf(random.nextInt()), 0);
+				factory = ClientboundDebugValueSetPacket::new;
+			}
+			case 2 -> {
+				packet = new ClientboundOpenStarmapPacket(randomNodeId(random, systems));
+				factory = ClientboundOpenStarmapPacket::new;
+			}
+			case 3 -> {
+				final var stationPacket = new ClientboundSpaceStationInfoPacket();
+				stationPacket.id = random.nextInt(16);
+				stationPacket.name = "Station " + stationPacket.id;
+				stationPacket.orientation = Quat.IDENTITY;
+				stationPacket.locationNbt = new CompoundTag();
+				packet = stationPacket;
+				factory = ClientboundSpaceStationInfoPacket::new;
+			}
+			case 4 -> {
+				packet = new ClientboundStationJumpBeginPacket(random.nextInt(16), randomNodeId(random, systems),
+						random.nextBoolean());
+				factory = ClientboundStationJumpBeginPacket::new;
+			}
+			case 5 -> {
+				packet = new ClientboundSyncCelestialTimePacket(1e6 * random.nextDouble());
+				factory = ClientboundSyncCelestialTimePacket::new;
+			}
+			default -> {
+				final var syncPacket = new ClientboundUniverseSyncPacket();
+				syncPacket.commonSeed = random.nextLong();
+				syncPacket.uniqueSeed = random.nextLong();
+				syncPacket.startingSystemAge = 1e4 * random.nextDouble();
+				syncPacket.startingSystemName = "Starting System";
+				syncPacket.startingId = randomNodeId(random, systems);
+				syncPacket.startingSystemData = new byte[256];
+				random.nextBytes(syncPacket.startingSystemData);
+				syncPacket.worldType = randomWorldType(random, systems);
+				packet = syncPacket;
+				factory = ClientboundUniverseSyncPacket::new;
+			}
+		}
+		return new RandomPacket(kind, packet, factory);
+	}
+
+}
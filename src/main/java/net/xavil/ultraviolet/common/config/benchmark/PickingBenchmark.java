@@ -0,0 +1,165 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Random;
+
+import net.xavil.hawklib.Maybe;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.hawklib.math.matrices.Vec3i;
+import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
+import net.xavil.ultraviolet.common.universe.galaxy.ElementPicker;
+import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorElementIndex;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorPos;
+import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
+
+/**
+ * Measures how long {@link ElementPicker} takes over a single root sector
+ * filled with uniformly distributed synthetic elements, compared to testing
+ * every element of every sector. A pick counts as a mismatch if the two pick
+ * different elements.
+ *
+ * @param minLevel          Every sector from the root level down to this level
+ *                          is filled with elements.
+ * @param elementsPerSector The number of elements in each sector.
+ * @param pickCount         The number of random picks to time.
+ */
+public record PickingBenchmark(int minLevel, int elementsPerSector, int pickCount) implements Benchmark {
+
+	@Override
+	public String name() {
+		return "picking";
+	}
+
+	@Override
+	public void run(Random random, BenchmarkReport report) {
+		final var root = new GalaxySector(Vec3i.ZERO);
+		final var elem = new GalaxySector.ElementHolder();
+		int sectorCount = 0;
+		for (int level = GalaxySector.ROOT_LEVEL; level >= this.minLevel; --level) {
+			final var count = 1 << (GalaxySector.ROOT_LEVEL - level);
+			for (int x = 0; x < count; ++x) {
+				for (int y = 0; y < count; ++y) {
+					for (int z = 0; z < count; ++z) {
+						final var pos = new SectorPos(level, new Vec3i(x, y, z));
+						root.load(pos);
+						final var min = pos.minBound();
+						final var width = pos.width();
+						final var elements = new GalaxySector.PackedElements(min, false);
+						elements.reserve(this.elementsPerSector);
+						for (int i = 0; i < this.elementsPerSector; ++i) {
+							elem.systemPosTm.x = min.x + width * random.nextDouble();
+							elem.systemPosTm.y = min.y + width * random.nextDouble();
+							elem.systemPosTm.z = min.z + width * random.nextDouble();
+							elem.luminosityLsol = 1;
+							elements.push(elem);
+						}
+						// build the indices up front so that they aren't part of the timings.
+						elements.index();
+						root.lookupNode(pos).elements = elements;
+						sectorCount += 1;
+					}
+				}
+			}
+		}
+
+		final var picker = new ElementPicker();
+		final var viewRadii = new double[GalaxySector.ROOT_LEVEL + 1];
+		for (int level = 0; level <= GalaxySector.ROOT_LEVEL; ++level)
+			viewRadii[level] = 1.5 * GalaxySector.sizeForLevel(level);
+
+		final var pickerTimer = new BenchmarkReport.Timer();
+		final var bruteForceTimer = new BenchmarkReport.Timer();
+		long searchedSectors = 0;
+		for (int i = 0; i < this.pickCount; ++i) {
+			final var apex = new Vec3(
+					GalaxySector.ROOT_SIZE_Tm * random.nextDouble(),
+					GalaxySector.ROOT_SIZE_Tm * random.nextDouble(),
+					GalaxySector.ROOT_SIZE_Tm * random.nextDouble());
+			final var dir = new Vec3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+			final var cone = new SectorElementIndex.Cone(apex, dir, 0.01, 2 * GalaxySector.ROOT_SIZE_Tm);
+
+			pickerTimer.start();
+			picker.begin(cone, apex);
+			gatherSectors(picker, root, viewRadii);
+			final var picked = picker.pick();
+			pickerTimer.stop();
+			searchedSectors += picker.lastSearchedCount;
+
+			bruteForceTimer.start();
+			final var expected = pickBruteForce(root, cone, apex, viewRadii, elem);
+			bruteForceTimer.stop();
+
+			report.check(picked.equals(expected));
+		}
+
+		// the elements were never counted towards the element budget by a sector
+		// manager, but their slabs still need to go back to the pool.
+		releaseElements(root);
+
+		report.add("%d sectors, %d elements, %d picks",
+				sectorCount, sectorCount * this.elementsPerSector, this.pickCount);
+		report.add("picker %s/pick (%.1f sectors searched), brute force %s/pick",
+				pickerTimer, (double) searchedSectors / this.pickCount, bruteForceTimer);
+	}
+
+	private static void releaseElements(GalaxySector sector) {
+		if (sector.elements != null)
+			sector.elements.release();
+		final var branch = sector.branch();
+		if (branch != null) {
+			for (int i = 0; i < 8; ++i)
+				releaseElements(branch.child(i));
+		}
+	}
+
+	private static void gatherSectors(ElementPicker picker, GalaxySector sector, double[] viewRadii) {
+		if (!picker.mayIntersect(sector.pos()))
+			return;
+		picker.addSector(sector, viewRadii[sector.level]);
+		final var branch = sector.branch();
+		if (branch != null) {
+			for (int i = 0; i < 8; ++i)
+				gatherSectors(picker, branch.child(i), viewRadii);
+		}
+	}
+
+	private static Maybe<GalaxySectorId> pickBruteForce(GalaxySector sector, SectorElementIndex.Cone cone,
+			Vec3Access viewCenter, double[] viewRadii, GalaxySector.ElementHolder elem) {
+		final var best = new Object() {
+			double distanceSqr = Double.POSITIVE_INFINITY;
+			GalaxySectorId id = null;
+		};
+		pickBruteForce(sector, cone, viewCenter, viewRadii, elem, (candidate, index, distanceSqr) -> {
+			if (distanceSqr < best.distanceSqr) {
+				best.distanceSqr = distanceSqr;
+				best.id = GalaxySectorId.from(candidate.pos(), index);
+			}
+		});
+		return Maybe.fromNullable(best.id);
+	}
+
+	private interface BruteForceConsumer {
+		void accept(GalaxySector sector, int elementIndex, double distanceSqr);
+	}
+
+	private static void pickBruteForce(GalaxySector sector, SectorElementIndex.Cone cone, Vec3Access viewCenter,
+			double[] viewRadii, GalaxySector.ElementHolder elem, BruteForceConsumer consumer) {
+		if (sector.isComplete()) {
+			final var viewRadius = viewRadii[sector.level];
+			for (int i = 0; i < sector.elements.size(); ++i) {
+				sector.elements.load(elem, i);
+				if (elem.systemPosTm.distanceTo(viewCenter) > viewRadius)
+					continue;
+				final var distanceSqr = cone.containsPoint(elem.systemPosTm.x, elem.systemPosTm.y, elem.systemPosTm.z);
+				if (!Double.isNaN(distanceSqr))
+					consumer.accept(sector, i, distanceSqr);
+			}
+		}
+		final var branch = sector.branch();
+		if (branch != null) {
+			for (int i = 0; i < 8; ++i)
+				pickBruteForce(branch.child(i), cone, viewCenter, viewRadii, elem, consumer);
+		}
+	}
+
+}
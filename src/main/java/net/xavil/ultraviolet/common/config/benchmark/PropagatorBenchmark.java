@@ -0,0 +1,127 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Random;
+
+import net.xavil.hawklib.Units;
+import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.hawklib.math.OrbitalShape;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.ultraviolet.common.universe.galaxy.OrbitalUpdateScheduler;
+import net.xavil.ultraviolet.common.universe.system.CelestialNode;
+import net.xavil.ultraviolet.common.universe.system.CelestialNodeChild;
+import net.xavil.ultraviolet.common.universe.system.OrbitalPropagator;
+import net.xavil.ultraviolet.common.universe.system.PlanetaryCelestialNode;
+import net.xavil.ultraviolet.common.universe.system.StellarCelestialNode;
+
+/**
+ * Updates randomly generated systems of a few different sizes with
+ * {@link CelestialNode#updatePositions(double)}, and with an
+ * {@link OrbitalPropagator} both exactly and with the maximum angle that
+ * background systems are updated with. The errors are the furthest that any
+ * node ended up from where the tree put it, over every update.
+ *
+ * @param updateCount The number of updates to time for each system.
+ */
+public record PropagatorBenchmark(int updateCount) implements Benchmark {
+
+	private static final int[] NODE_COUNTS = { 1, 10, 100 };
+	// (s) an hour of celestial time passes between updates, which is enough for
+	// the fastest orbits to be evaluated on every update, but not the slowest.
+	private static final double TIME_STEP = 3600;
+
+	@Override
+	public String name() {
+		return "propagator";
+	}
+
+	@Override
+	public void run(Random random, BenchmarkReport report) {
+		report.add("%d updates per system", this.updateCount);
+		for (final var nodeCount : NODE_COUNTS) {
+			final var root = randomSystem(random, nodeCount);
+			final var nodes = new Vector<CelestialNode>();
+			root.visit(nodes::push);
+			final var expected = new Vec3[nodes.size()];
+			final var exact = new OrbitalPropagator(root);
+			final var background = new OrbitalPropagator(root);
+			final var maximumAngle = OrbitalUpdateScheduler.BACKGROUND_MAXIMUM_ANGLE;
+
+			// every update is checked against the tree right after it is made, since
+			// they all write to the same nodes.
+			double exactMaxErrorKm = 0, backgroundMaxErrorKm = 0;
+			long evaluatedCount = 0;
+			for (int i = 0; i < this.updateCount; ++i) {
+				final var time = i * TIME_STEP;
+				root.updatePositions(time);
+				for (int j = 0; j < nodes.size(); ++j)
+					expected[j] = new Vec3(nodes.get(j).position);
+				exact.update(time);
+				exactMaxErrorKm = Math.max(exactMaxErrorKm, maxDistanceTm(nodes, expected) * 1e9);
+				evaluatedCount += background.update(time, maximumAngle);
+				backgroundMaxErrorKm = Math.max(backgroundMaxErrorKm, maxDistanceTm(nodes, expected) * 1e9);
+			}
+			// the root node has no orbit of its own.
+			final var orbitCount = nodes.size() - 1;
+			final var evaluatedFraction = orbitCount > 0
+					? (double) evaluatedCount / (orbitCount * (long) this.updateCount)
+					: 0;
+
+			// timed separately, carrying on from where the checks above left off.
+			final var treeTimer = new BenchmarkReport.Timer();
+			treeTimer.start();
+			for (int i = this.updateCount; i < 2 * this.updateCount; ++i)
+				root.updatePositions(i * TIME_STEP);
+			treeTimer.stop(this.updateCount);
+
+			final var exactTimer = new BenchmarkReport.Timer();
+			exactTimer.start();
+			for (int i = this.updateCount; i < 2 * this.updateCount; ++i)
+				exact.update(i * TIME_STEP);
+			exactTimer.stop(this.updateCount);
+
+			final var backgroundTimer = new BenchmarkReport.Timer();
+			backgroundTimer.start();
+			for (int i = this.updateCount; i < 2 * this.updateCount; ++i)
+				background.update(i * TIME_STEP, maximumAngle);
+			backgroundTimer.stop(this.updateCount);
+
+			report.add(
+					"%d nodes: tree %s/update, propagator %s/update (%.3g km off), background %s/update (%.3g km off, %.0f%% evaluated)",
+					nodeCount, treeTimer, exactTimer, exactMaxErrorKm,
+					backgroundTimer, backgroundMaxErrorKm, 100 * evaluatedFraction);
+		}
+	}
+
+	private static double maxDistanceTm(Vector<CelestialNode> nodes, Vec3[] expected) {
+		double max = 0;
+		for (int i = 0; i < nodes.size(); ++i)
+			max = Math.max(max, nodes.get(i).position.distanceTo(expected[i]));
+		return max;
+	}
+
+	// a star with `nodeCount - 1` planets and moons, each orbiting a random node
+	// that came before it.
+	private static CelestialNode randomSystem(Random random, int nodeCount) {
+		final var star = new StellarCelestialNode();
+		star.massYg = Units.Yg_PER_Msol * (0.5 + random.nextDouble());
+		final var parents = new Vector<CelestialNode>();
+		parents.push(star);
+		final var types = PlanetaryCelestialNode.Type.values();
+		for (int i = 1; i < nodeCount; ++i) {
+			final var parent = parents.get(random.nextInt(parents.size()));
+			final var isPlanet = parent == star;
+			final var massYg = Units.Yg_PER_Mearth * (isPlanet ? 100 : 0.01) * random.nextDouble();
+			final var child = new PlanetaryCelestialNode(types[random.nextInt(types.length)], massYg);
+			final var semiMajorTm = Units.Tm_PER_au * (isPlanet
+					? 0.1 + 30 * random.nextDouble()
+					: 0.001 + 0.01 * random.nextDouble());
+			final var shape = new OrbitalShape(0.3 * random.nextDouble(), semiMajorTm);
+			parent.insertChild(new CelestialNodeChild<>(parent, child, shape, SyntheticData.randomPlane(random),
+					2 * Math.PI * random.nextDouble()));
+			parents.push(child);
+		}
+		star.build();
+		return star;
+	}
+
+}
@@ -0,0 +1,27 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Random;
+
+import net.xavil.hawklib.math.OrbitalPlane;
+import net.xavil.hawklib.math.OrbitalShape;
+
+/**
+ * Random data that more than one benchmark needs.
+ */
+public final class SyntheticData {
+
+	private SyntheticData() {
+	}
+
+	public static OrbitalPlane randomPlane(Random random) {
+		return OrbitalPlane.fromOrbitalElements(
+				random.nextDouble() * Math.PI,
+				random.nextDouble() * 2 * Math.PI,
+				random.nextDouble() * 2 * Math.PI);
+	}
+
+	public static OrbitalShape randomShape(Random random) {
+		return new OrbitalShape(random.nextDouble(), 1e3 * random.nextDouble());
+	}
+
+}
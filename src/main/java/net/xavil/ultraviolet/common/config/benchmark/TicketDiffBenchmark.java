@@ -0,0 +1,102 @@
+package net.xavil.ultraviolet.common.config.benchmark;
+
+import java.util.Random;
+
+import net.xavil.hawklib.collections.impl.LongHashSet;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorManager;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorTicketInfo;
+
+/**
+ * Moves a visual sector ticket by a few different distances, and compares
+ * {@link SectorTicketInfo.Multi#diffIncrementally} against enumerating every
+ * sector affected by the moved ticket and diffing that against the sectors
+ * affected by the old one, like {@link SectorManager} does when it can't diff
+ * incrementally. A move counts as a mismatch if the two disagree about which
+ * sectors entered or left the ticket.
+ *
+ * @param moveCount The number of moves to time for each distance.
+ */
+public record TicketDiffBenchmark(int moveCount) implements Benchmark {
+
+	// how far the ticket moves between updates, in units of `GalaxySector.BASE_SIZE_Tm`.
+	private static final double[] MOVE_DISTANCES = { 0.1, 1, 10 };
+
+	@Override
+	public String name() {
+		return "ticket_diff";
+	}
+
+	@Override
+	public void run(Random random, BenchmarkReport report) {
+		final var prevSectors = new LongHashSet();
+		final var nextSectors = new LongHashSet();
+		final var fullEntering = new LongHashSet();
+		final var fullLeaving = new LongHashSet();
+		final var incrementalEntering = new LongHashSet();
+		final var incrementalLeaving = new LongHashSet();
+		report.add("%d moves per distance", this.moveCount);
+		for (final var moveDistance : MOVE_DISTANCES) {
+			final var distance = moveDistance * GalaxySector.BASE_SIZE_Tm;
+			final var fullTimer = new BenchmarkReport.Timer();
+			final var incrementalTimer = new BenchmarkReport.Timer();
+			long changedSectors = 0;
+			for (int i = 0; i < this.moveCount; ++i) {
+				final var prevCenter = new Vec3(
+						GalaxySector.ROOT_SIZE_Tm * random.nextGaussian(),
+						GalaxySector.ROOT_SIZE_Tm * random.nextGaussian(),
+						GalaxySector.ROOT_SIZE_Tm * random.nextGaussian());
+				final var dir = new Vec3(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()).normalize();
+				final var prev = SectorTicketInfo.visual(prevCenter);
+				final var next = SectorTicketInfo.visual(prevCenter.add(dir.mul(distance)));
+
+				prevSectors.clear();
+				nextSectors.clear();
+				fullEntering.clear();
+				fullLeaving.clear();
+				incrementalEntering.clear();
+				incrementalLeaving.clear();
+
+				// the sector manager already knows which sectors the old ticket affected, so
+				// this isn't part of the timings.
+				prev.enumerateAllAffectedSectors(pos -> prevSectors.insert(pos.packed()));
+
+				fullTimer.start();
+				next.enumerateAllAffectedSectors(pos -> nextSectors.insert(pos.packed()));
+				prevSectors.forEach(sector -> {
+					if (!nextSectors.contains(sector))
+						fullLeaving.insert(sector);
+				});
+				nextSectors.forEach(sector -> {
+					if (!prevSectors.contains(sector))
+						fullEntering.insert(sector);
+				});
+				fullTimer.stop();
+
+				incrementalTimer.start();
+				SectorTicketInfo.Multi.diffIncrementally(prev, next,
+						incrementalEntering::insert, incrementalLeaving::insert);
+				incrementalTimer.stop();
+
+				changedSectors += fullEntering.size() + fullLeaving.size();
+				report.check(sameSectors(fullEntering, incrementalEntering)
+						&& sameSectors(fullLeaving, incrementalLeaving));
+			}
+			report.add("%.1f sectors: full %s/move, incremental %s/move (%.1f changed)",
+					moveDistance, fullTimer, incrementalTimer, (double) changedSectors / this.moveCount);
+		}
+	}
+
+	private static boolean sameSectors(LongHashSet a, LongHashSet b) {
+		if (a.size() != b.size())
+			return false;
+		final var missing = new int[] { 0 };
+		a.forEach(sector -> {
+			if (!b.contains(sector))
+				missing[0] += 1;
+		});
+		return missing[0] == 0;
+	}
+
+}
@@ -10,16 +10,16 @@ import net.xavil.hawklib.Rng;
 import net.xavil.hawklib.SplittableRng;
 import net.xavil.hawklib.Units;
 import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.hawklib.hash.Hasher;
 import net.xavil.ultraviolet.Mod;
 import net.xavil.ultraviolet.common.NameTemplate;
 import net.xavil.ultraviolet.common.universe.GalaxyParameters;
-import net.xavil.ultraviolet.common.universe.ScalarField;
 import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
 import net.xavil.ultraviolet.common.universe.system.StarSystem;
+import net.xavil.ultraviolet.common.universe.system.StarSystemSummary;
 import net.xavil.ultraviolet.common.universe.system.StellarCelestialNode;
 import net.xavil.ultraviolet.common.universe.system.StellarProperties;
 import net.xavil.hawklib.math.Interval;
-import net.xavil.hawklib.math.matrices.Vec3;
 
 public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 
@@ -30,8 +30,10 @@ public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 	// the maximum amount of times a star will be rerolled in a different location
 	// before giving up
 	public static final int MAXIMUM_STAR_PLACEMENT_ATTEMPTS = 16;
-	// the amount of samples used to determine the average sector density
-	public static final int DENSITY_SAMPLE_COUNT = 32;
+	// the amount of star placement attempts that are evaluated together. Larger
+	// batches are cheaper per candidate, but evaluate more candidates that end up
+	// being thrown away when an earlier one in the batch is accepted.
+	public static final int STAR_PLACEMENT_BATCH_SIZE = 4;
 
 	public BaseGalaxyGenerationLayer(Galaxy parentGalaxy, GalaxyParameters densityFields) {
 		super(parentGalaxy);
@@ -205,7 +207,6 @@ public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 		public final Context ctx;
 
 		public final GalaxyRegionWeights.Field maskField;
-		public final ScalarField stellarDensity;
 		public final double averageSectorDensity;
 		public final int starAttemptCount;
 		public final Imf imf;
@@ -226,64 +227,16 @@ public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 			this.imf = Imf.SALTPETER;
 			this.massRange = getMassRangeForLevel(ctx.level);
 
-			final var galaxyParams = ctx.galaxy.parameters;
-
 			final var subdiv = subdivisionsPerLevel(ctx.level);
-			this.maskField = InterpolatedMaskField.create(galaxyParams.masks, ctx.volumeMin, ctx.volumeMax, subdiv);
-
-			final var tmpPos = new Vec3.Mutable();
-			final var tmpMasks = new GalaxyRegionWeights();
-			// this.stellarDensity = InterpolatedField.create((x, y, z) -> {
-			// Vec3.set(tmpPos, x, y, z);
-			// galaxyParams.masks.evaluate(tmpPos, tmpMasks);
-			// return GalaxyRegionWeights.dot(tmpMasks, galaxyParams.stellarDensityWeights);
-			// }, ctx.volumeMin, ctx.volumeMax, subdiv);
-			this.stellarDensity = (x, y, z) -> {
-				Vec3.set(tmpPos, x, y, z);
-				galaxyParams.masks.evaluate(tmpPos, tmpMasks);
-				return GalaxyRegionWeights.dot(tmpMasks, galaxyParams.stellarDensityWeights);
-			};
-
-			// since we're using trilinear interpolation, there's likely an analytic
-			// solution to the average density of the sector. but i forgor all of my high
-			// school calculus and dont know how to find it.
-			final var sampleRng = rng.rng("density_sample");
-			double sectorDensitySum = 0.0;
-			for (var i = 0; i < DENSITY_SAMPLE_COUNT; ++i) {
-				final var lenX = ctx.volumeMax.x - ctx.volumeMin.x;
-				final var lenY = ctx.volumeMax.y - ctx.volumeMin.y;
-				final var lenZ = ctx.volumeMax.z - ctx.volumeMin.z;
-
-				// final double lx = ctx.volumeMin.x - lenX, hx = ctx.volumeMax.x + lenX;
-				// final double ly = ctx.volumeMin.y - lenY, hy = ctx.volumeMax.y + lenY;
-				// final double lz = ctx.volumeMin.z - lenZ, hz = ctx.volumeMax.z + lenZ;
-				final double lx = ctx.volumeMin.x, hx = ctx.volumeMax.x;
-				final double ly = ctx.volumeMin.y, hy = ctx.volumeMax.y;
-				final double lz = ctx.volumeMin.z, hz = ctx.volumeMax.z;
-
-				final double tx = sampleRng.uniformDouble(lx, hx),
-						ty = sampleRng.uniformDouble(ly, hy),
-						tz = sampleRng.uniformDouble(lz, hz);
-
-				sectorDensitySum += stellarDensity.sample(tx, ty, tz);
-			}
-
-			// this.averageSectorDensity = Math.max(0, sectorDensitySum /
-			// DENSITY_SAMPLE_COUNT);
-			// final var sectorSideLengths = ctx.volumeMax.sub(ctx.volumeMin);
-			// final var sectorVolume = sectorSideLengths.x * sectorSideLengths.y *
-			// sectorSideLengths.z;
+			this.maskField = InterpolatedMaskField.create(ctx.maskField, ctx.volumeMin, ctx.volumeMax, subdiv);
 
-			// the amount of stars expected to be contained within the volume of this
-			// sector, including all its subsectors.
-			// double starsPerSector = sectorVolume * this.averageSectorDensity;
-			// starsPerSector *= LEVEL_COVERAGE_INTERVALS[ctx.level].size();
-			// starsPerSector *= LEVEL_MASS_T_INTERVALS[ctx.level].size();
-			// starsPerSector /= 8;
+			// the average density is looked up from a per-galaxy pyramid of sector
+			// densities, built by integrating the trilinear interpolation of a lattice of
+			// density samples, instead of by sampling the density field at random points
+			// inside every sector.
+			final var sectorDensity = ctx.galaxy.densityPyramid.averageDensity(ctx.pos);
 
-			// int starAttemptCount = Mth.floor(starsPerSector);
-
-			this.averageSectorDensity = Math.max(0, sectorDensitySum / DENSITY_SAMPLE_COUNT);
+			this.averageSectorDensity = Math.max(0, sectorDensity);
 			final var sectorSideLengths = ctx.volumeMax.sub(ctx.volumeMin).mul(Units.pc_PER_Tm);
 			final var sectorVolume = sectorSideLengths.x * sectorSideLengths.y * sectorSideLengths.z;
 			final var sectorMass = this.averageSectorDensity * sectorVolume;
@@ -335,6 +288,12 @@ public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 		}
 	}
 
+	@Override
+	public void appendGenerationHash(Hasher hasher) {
+		super.appendGenerationHash(hasher);
+		StellarProperties.appendApproximationHash(hasher);
+	}
+
 	@Override
 	public void generateInto(Context ctx, GalaxySector.PackedElements elements) {
 		final var rng = new SplittableRng(ctx.galaxy.info.seed);
@@ -358,6 +317,9 @@ public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 		elements.reserve(info.starAttemptCount);
 
 		final var masks = new GalaxyRegionWeights();
+		final var candidates = new GalaxyRegionWeights.Batch(STAR_PLACEMENT_BATCH_SIZE);
+		final var candidateSeeds = new long[STAR_PLACEMENT_BATCH_SIZE];
+		final var candidateDensities = new double[STAR_PLACEMENT_BATCH_SIZE];
 		final var galaxyParams = ctx.galaxy.parameters;
 		final var densityWeights = galaxyParams.stellarDensityWeights;
 
@@ -380,31 +342,58 @@ public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 			// I still do wonder if this is correct for more complicated cases than a simple
 			// "on or off" density field, as it generally causes placement attempts to
 			// "migrate" towards areas of higher densities.
-			for (var j = 0; j < MAXIMUM_STAR_PLACEMENT_ATTEMPTS; ++j) {
-				rng.advance();
-
-				elem.systemPosTm.x = rng.uniformDouble("x", ctx.volumeMin.x, ctx.volumeMax.x);
-				elem.systemPosTm.y = rng.uniformDouble("y", ctx.volumeMin.y, ctx.volumeMax.y);
-				elem.systemPosTm.z = rng.uniformDouble("z", ctx.volumeMin.z, ctx.volumeMax.z);
-
-				info.maskField.evaluate(elem.systemPosTm, masks);
-				masks.core *= densityWeights.core;
-				masks.arms *= densityWeights.arms;
-				masks.disc *= densityWeights.disc;
-				masks.halo *= densityWeights.halo;
-
-				final var density = info.averageSectorDensity * rng.uniformDouble("density");
-				if (density < masks.totalWeight())
-					break;
+			//
+			// Candidate positions are drawn and evaluated a few at a time, so the mask
+			// field can work through them in one go. `SplittableRng` draws only depend on
+			// its current seed, so we remember the seed each candidate was drawn with and
+			// rewind to the accepted one afterwards, which makes this produce exactly the
+			// same stars as trying each candidate one by one.
+			int attempt = 0, chosen = -1;
+			while (chosen < 0) {
+				final var count = Math.min(STAR_PLACEMENT_BATCH_SIZE, MAXIMUM_STAR_PLACEMENT_ATTEMPTS - attempt);
+				candidates.clear();
+				for (int j = 0; j < count; ++j) {
+					rng.advance();
+					candidateSeeds[j] = rng.getSeedRaw();
+					candidates.push(
+							rng.uniformDouble("x", ctx.volumeMin.x, ctx.volumeMax.x),
+							rng.uniformDouble("y", ctx.volumeMin.y, ctx.volumeMax.y),
+							rng.uniformDouble("z", ctx.volumeMin.z, ctx.volumeMax.z));
+					candidateDensities[j] = info.averageSectorDensity * rng.uniformDouble("density");
+				}
+
+				info.maskField.evaluate(candidates);
+				for (int j = 0; j < count; ++j) {
+					final var density = candidateDensities[j];
+					if (density < candidates.dot(j, densityWeights)) {
+						chosen = j;
+						break;
+					}
+				}
+
+				attempt += count;
+				// if every attempt fails, we keep the last one.
+				if (chosen < 0 && attempt >= MAXIMUM_STAR_PLACEMENT_ATTEMPTS)
+					chosen = count - 1;
 			}
 
+			rng.setSeedRaw(candidateSeeds[chosen]);
+			elem.systemPosTm.x = candidates.x[chosen];
+			elem.systemPosTm.y = candidates.y[chosen];
+			elem.systemPosTm.z = candidates.z[chosen];
+			candidates.load(chosen, masks);
+			masks.core *= densityWeights.core;
+			masks.arms *= densityWeights.arms;
+			masks.disc *= densityWeights.disc;
+			masks.halo *= densityWeights.halo;
+
 			final var sfh = galaxyParams.pickSfh(masks, rng.uniformDouble("age_weight"));
 			final var age = galaxyParams.galaxyAge - sfh.pick(rng.uniformDouble("age"));
 			elem.systemAgeMyr = age;
 
 			// FIXME: hardcoded metallicity
 			final var metallicity = getSystemMetallicity(elem.systemSeed);
-			starProps.load(rng, elem.massYg, elem.systemAgeMyr, metallicity);
+			starProps.loadApproximate(rng, elem.massYg, elem.systemAgeMyr, metallicity);
 			elem.massYg = starProps.massYg;
 			elem.luminosityLsol = starProps.luminosityLsol;
 			elem.temperatureK = starProps.temperatureK;
@@ -439,4 +428,14 @@ public class BaseGalaxyGenerationLayer extends GalaxyGenerationLayer {
 		return new StarSystem(name, this.parentGalaxy, elem, node, metallicity);
 	}
 
+	@Override
+	public StarSystemSummary generateSystemSummary(GalaxySector sector, GalaxySectorId id,
+			GalaxySector.ElementHolder elem) {
+		// this must draw the name in the same way as `generateFullSystem()`
+		final var rng = new SplittableRng(elem.systemSeed);
+		final var metallicity = getSystemMetallicity(elem.systemSeed);
+		final var name = NameTemplate.SECTOR_NAME.generate(rng.rng("name"));
+		return new StarSystemSummary(name, elem, metallicity);
+	}
+
 }
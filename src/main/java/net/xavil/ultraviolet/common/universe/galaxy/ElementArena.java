@@ -0,0 +1,184 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.xavil.hawklib.collections.impl.Vector;
+
+/**
+ * Hands out off-heap slabs for {@link GalaxySector.PackedElements}, so that the
+ * elements of loaded sectors do not count towards GC pressure. Slabs come in
+ * power-of-two size classes and are pooled once their owners are collected.
+ * <p>
+ * All sector elements in the JVM share one memory budget. The arena itself
+ * never refuses an allocation; instead, {@link SectorManager} evicts the least
+ * recently enumerated sectors once the budget is exceeded, since their
+ * elements can always be regenerated or read back from the sector cache.
+ * </p>
+ * <p>
+ * All methods are safe to call from any thread.
+ * </p>
+ */
+public final class ElementArena {
+
+	public static final boolean DISABLE_OFF_HEAP_ELEMENTS = Boolean
+			.valueOf(System.getProperty("net.xavil.ultraviolet.disable_off_heap_elements"));
+	public static final long BUDGET_BYTES = Long.getLong(
+			"net.xavil.ultraviolet.element_memory_budget_bytes", 256L * 1024 * 1024);
+
+	// the smallest slab is 4 KiB, and sectors are never anywhere near 2^31 bytes.
+	private static final int MIN_SIZE_CLASS = 12;
+	private static final int MAX_SIZE_CLASS = 30;
+
+	private static ElementArena instance = null;
+
+	public static synchronized ElementArena get() {
+		if (instance == null)
+			instance = new ElementArena(BUDGET_BYTES);
+		return instance;
+	}
+
+	/**
+	 * A single slab handed out by {@link ElementArena#allocate(Object, int)}.
+	 */
+	public static final class Slab implements Runnable {
+		public final ByteBuffer buffer;
+		private final ElementArena arena;
+		private final int sizeClass;
+		private Cleaner.Cleanable cleanable;
+		private boolean released = false;
+
+		private Slab(ElementArena arena, ByteBuffer buffer, int sizeClass) {
+			this.arena = arena;
+			this.buffer = buffer;
+			this.sizeClass = sizeClass;
+		}
+
+		public int capacityBytes() {
+			return this.buffer.capacity();
+		}
+
+		/**
+		 * Stops counting this slab against the budget, but leaves its memory
+		 * untouched until its owner is collected, since other threads may still be
+		 * reading from it.
+		 */
+		public void release() {
+			this.arena.release(this);
+		}
+
+		/**
+		 * Releases this slab and returns it to the pool immediately. The owner must
+		 * guarantee that nothing will read from or write to this slab again.
+		 */
+		public void free() {
+			this.cleanable.clean();
+		}
+
+		// called at most once, either by free() or by the cleaner once the owner has
+		// been collected.
+		@Override
+		public void run() {
+			this.arena.release(this);
+			this.arena.returnToPool(this.buffer, this.sizeClass);
+		}
+	}
+
+	public final long budgetBytes;
+	private final Cleaner cleaner = Cleaner.create();
+	// free slabs, indexed by size class
+	private final Vector<ByteBuffer>[] pools;
+	// the total size of all slabs that have not been released
+	private long residentBytes = 0;
+	private long pooledBytes = 0;
+	private long allocatedCount = 0, reusedCount = 0, evictedCount = 0;
+
+	@SuppressWarnings("unchecked")
+	private ElementArena(long budgetBytes) {
+		this.budgetBytes = budgetBytes;
+		this.pools = new Vector[MAX_SIZE_CLASS + 1];
+		for (int i = 0; i < this.pools.length; ++i)
+			this.pools[i] = new Vector<>();
+	}
+
+	private static int sizeClass(int bytes) {
+		final var sizeClass = Math.max(MIN_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(Math.max(bytes, 1) - 1));
+		if (sizeClass > MAX_SIZE_CLASS)
+			throw new IllegalArgumentException("slab of " + bytes + " bytes is too large");
+		return sizeClass;
+	}
+
+	/**
+	 * The size of the slab that would be handed out for an allocation of
+	 * {@code bytes} bytes.
+	 */
+	public static int slabBytes(int bytes) {
+		return 1 << sizeClass(bytes);
+	}
+
+	/**
+	 * Allocates a slab of at least {@code bytes} bytes, in native byte order. The
+	 * slab is returned to the pool once {@code owner} becomes unreachable, or when
+	 * {@link Slab#free()} is called, whichever happens first.
+	 * <p>
+	 * The contents of the returned slab are unspecified.
+	 * </p>
+	 */
+	public Slab allocate(Object owner, int bytes) {
+		final var sizeClass = sizeClass(bytes);
+		ByteBuffer buffer;
+		synchronized (this) {
+			buffer = this.pools[sizeClass].popOrNull();
+			if (buffer != null) {
+				this.pooledBytes -= buffer.capacity();
+				this.reusedCount += 1;
+			} else {
+				this.allocatedCount += 1;
+			}
+			this.residentBytes += 1L << sizeClass;
+		}
+		if (buffer == null)
+			buffer = ByteBuffer.allocateDirect(1 << sizeClass).order(ByteOrder.nativeOrder());
+		final var slab = new Slab(this, buffer, sizeClass);
+		slab.cleanable = this.cleaner.register(owner, slab);
+		return slab;
+	}
+
+	private synchronized void release(Slab slab) {
+		if (slab.released)
+			return;
+		slab.released = true;
+		this.residentBytes -= slab.buffer.capacity();
+	}
+
+	private synchronized void returnToPool(ByteBuffer buffer, int sizeClass) {
+		// keep at most a quarter of the budget around in the pool. Anything past that
+		// is left to the GC, which frees the underlying memory once the buffer itself
+		// is collected.
+		if (this.pooledBytes + buffer.capacity() > this.budgetBytes / 4)
+			return;
+		buffer.clear();
+		this.pools[sizeClass].push(buffer);
+		this.pooledBytes += buffer.capacity();
+	}
+
+	synchronized void recordEviction() {
+		this.evictedCount += 1;
+	}
+
+	public synchronized long residentBytes() {
+		return this.residentBytes;
+	}
+
+	public synchronized boolean isOverBudget() {
+		return this.residentBytes > this.budgetBytes;
+	}
+
+	public synchronized String debugSummary() {
+		return String.format("%d / %d bytes resident, %d bytes pooled, %d allocated, %d reused, %d evictions",
+				this.residentBytes, this.budgetBytes, this.pooledBytes, this.allocatedCount, this.reusedCount,
+				this.evictedCount);
+	}
+
+}
@@ -0,0 +1,139 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.util.Arrays;
+
+import net.xavil.hawklib.Maybe;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
+import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
+
+/**
+ * Finds the element nearest to the viewer inside of a selection cone, like the
+ * one under the mouse cursor when clicking on a star.
+ * <p>
+ * Sectors are gathered first, and then searched in order of their distance
+ * from the apex of the cone. Once an element has been found, every sector that
+ * is entirely farther away than it can be skipped without looking at any of
+ * its elements. Elements are tested against the cone in galaxy space using
+ * each sector's {@link SectorElementIndex}, so nothing is allocated per
+ * element.
+ * </p>
+ * <p>
+ * Instances may be reused between picks, but are not thread-safe.
+ * </p>
+ */
+public final class ElementPicker {
+
+	private SectorElementIndex.Cone cone = null;
+	private Vec3Access viewCenter = Vec3.ZERO;
+	private final NearestElements nearest = new NearestElements();
+
+	// sectors to search, sorted by the squared distance from the apex of the cone
+	// to their bounds.
+	private int candidateCount = 0;
+	private GalaxySector[] candidates = new GalaxySector[16];
+	private double[] candidateDistancesSqr = new double[16];
+	private double[] candidateViewRadii = new double[16];
+
+	// stats from the last call to pick(), for debugging
+	public int lastCandidateCount = 0, lastSearchedCount = 0;
+
+	/**
+	 * Starts gathering sectors for a new pick.
+	 *
+	 * @param cone       The selection cone, in galaxy space.
+	 * @param viewCenter The point that each sector's view radius is measured from.
+	 *                   See {@link #addSector(GalaxySector, double)}.
+	 */
+	public void begin(SectorElementIndex.Cone cone, Vec3Access viewCenter) {
+		this.cone = cone;
+		this.viewCenter = viewCenter;
+		for (int i = 0; i < this.candidateCount; ++i)
+			this.candidates[i] = null;
+		this.candidateCount = 0;
+	}
+
+	private static double distanceSqrToBox(double x, double y, double z,
+			double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		final var dx = Math.max(0, Math.max(minX - x, x - maxX));
+		final var dy = Math.max(0, Math.max(minY - y, y - maxY));
+		final var dz = Math.max(0, Math.max(minZ - z, z - maxZ));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Whether the selection cone passes through the bounds of the sector at
+	 * {@code pos}. Nothing in a sector that this returns {@code false} for can be
+	 * picked, and neither can anything in any of its descendants.
+	 */
+	public boolean mayIntersect(SectorPos pos) {
+		final var width = GalaxySector.sizeForLevel(pos.level());
+		final var coords = pos.levelCoords();
+		final double minX = coords.x * width, minY = coords.y * width, minZ = coords.z * width;
+		return this.cone.mayIntersectBox(minX, minY, minZ, minX + width, minY + width, minZ + width);
+	}
+
+	/**
+	 * Adds a sector to be searched. Incomplete sectors are ignored.
+	 *
+	 * @param viewRadius (Tm) Only elements within this distance of the view center
+	 *                   may be picked from this sector.
+	 */
+	public void addSector(GalaxySector sector, double viewRadius) {
+		if (!sector.isComplete())
+			return;
+
+		final var width = GalaxySector.sizeForLevel(sector.level);
+		final double minX = sector.x * width, minY = sector.y * width, minZ = sector.z * width;
+		final double maxX = minX + width, maxY = minY + width, maxZ = minZ + width;
+		final var center = this.viewCenter;
+		if (distanceSqrToBox(center.x(), center.y(), center.z(), minX, minY, minZ, maxX, maxY, maxZ)
+				> viewRadius * viewRadius)
+			return;
+		final var cone = this.cone;
+		final var distanceSqr = distanceSqrToBox(cone.x, cone.y, cone.z, minX, minY, minZ, maxX, maxY, maxZ);
+
+		if (this.candidateCount == this.candidates.length) {
+			final var newLength = 2 * this.candidates.length;
+			this.candidates = Arrays.copyOf(this.candidates, newLength);
+			this.candidateDistancesSqr = Arrays.copyOf(this.candidateDistancesSqr, newLength);
+			this.candidateViewRadii = Arrays.copyOf(this.candidateViewRadii, newLength);
+		}
+
+		// insertion sort, since there are usually only a few hundred candidates at most
+		int i = this.candidateCount++;
+		for (; i > 0 && this.candidateDistancesSqr[i - 1] > distanceSqr; --i) {
+			this.candidates[i] = this.candidates[i - 1];
+			this.candidateDistancesSqr[i] = this.candidateDistancesSqr[i - 1];
+			this.candidateViewRadii[i] = this.candidateViewRadii[i - 1];
+		}
+		this.candidates[i] = sector;
+		this.candidateDistancesSqr[i] = distanceSqr;
+		this.candidateViewRadii[i] = viewRadius;
+	}
+
+	/**
+	 * Searches the sectors that were added since the last call to
+	 * {@link #begin(SectorElementIndex.Cone, Vec3Access)}.
+	 *
+	 * @return The element inside the cone that is nearest to its apex, if there is
+	 *         any.
+	 */
+	public Maybe<GalaxySectorId> pick() {
+		this.nearest.reset(1, this.cone.maxDistance);
+		this.lastCandidateCount = this.candidateCount;
+		this.lastSearchedCount = 0;
+		for (int i = 0; i < this.candidateCount; ++i) {
+			// candidates are sorted, so every remaining sector is at least this far away.
+			if (this.candidateDistancesSqr[i] >= this.nearest.worstDistanceSqr())
+				break;
+			final var sector = this.candidates[i];
+			sector.elements.index().findNearestInCone(this.nearest, sector, this.cone,
+					this.viewCenter, this.candidateViewRadii[i]);
+			this.lastSearchedCount += 1;
+		}
+		this.nearest.finish();
+		return this.nearest.size() == 0 ? Maybe.none() : Maybe.some(this.nearest.id(0));
+	}
+
+}
@@ -1,15 +1,19 @@
 package net.xavil.ultraviolet.common.universe.galaxy;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.util.profiling.ProfilerFiller;
 import net.xavil.hawklib.Disposable;
 import net.xavil.hawklib.Maybe;
 import net.xavil.hawklib.SplittableRng;
 import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.hawklib.hash.FastHasher;
 import net.xavil.ultraviolet.common.universe.GalaxyParameters;
 import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
 import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
 import net.xavil.ultraviolet.common.universe.system.CelestialNode;
 import net.xavil.ultraviolet.common.universe.system.StarSystem;
+import net.xavil.ultraviolet.common.universe.system.StarSystemSummary;
 import net.xavil.ultraviolet.common.universe.universe.Universe;
 import net.xavil.hawklib.math.Interval;
 import net.xavil.hawklib.math.matrices.Vec3;
@@ -18,6 +22,10 @@ public class Galaxy {
 
 	public static final Interval METALLICITY_RANGE = new Interval(1.42857e-06, 4.51753e-02);
 
+	// bump this whenever a change is made that causes different sector elements to
+	// be generated, so that stale entries in the sector cache are not used.
+	public static final int GENERATOR_VERSION = 3;
+
 	public static class Info {
 		public final GalaxyType type;
 		public final long seed;
@@ -46,8 +54,10 @@ public class Galaxy {
 	public final GalaxyParameters parameters;
 	public final Info info;
 	public final UniverseSectorId galaxyId;
+	public final SectorDensityPyramid densityPyramid;
 
 	private final Vector<GalaxyGenerationLayer> generationLayers = new Vector<>();
+	private volatile long generationFingerprint;
 
 	public final SectorManager sectorManager = new SectorManager(this);
 
@@ -56,10 +66,29 @@ public class Galaxy {
 		this.galaxyId = galaxyId;
 		this.info = info;
 		this.parameters = densityFields;
+		this.densityPyramid = new SectorDensityPyramid(densityFields);
 
 		addGenerationLayer(new BaseGalaxyGenerationLayer(this, densityFields));
 	}
 
+	/**
+	 * A hash of everything that influences the output of
+	 * {@link #generateSectorElements(SectorPos)}, including the galaxy seed, the
+	 * generator version, and the generation layers attached to this galaxy.
+	 */
+	public long generationFingerprint() {
+		return this.generationFingerprint;
+	}
+
+	private void updateGenerationFingerprint() {
+		final var hasher = FastHasher.withSeed(GENERATOR_VERSION);
+		hasher.appendLong(this.info.seed);
+		for (final var layer : this.generationLayers.iterable()) {
+			layer.appendGenerationHash(hasher);
+		}
+		this.generationFingerprint = hasher.currentHash();
+	}
+
 	public void addGenerationLayer(GalaxyGenerationLayer layer) {
 		// for (final var other : this.generationLayers.iterable()) {
 		// if (other.layerId == layer.layerId) {
@@ -72,14 +101,16 @@ public class Galaxy {
 		layer.layerId = this.generationLayers.size();
 		this.generationLayers.reserveExact(1);
 		this.generationLayers.push(layer);
+		updateGenerationFingerprint();
 	}
 
 	public void tick(ProfilerFiller profiler) {
 		this.sectorManager.tick(profiler);
 	}
 
-	public void generateSectorElements(GalaxySector.PackedElements out, SectorPos pos) {
-		final var ctx = new GalaxyGenerationLayer.Context(this, pos);
+	public void generateSectorElements(GalaxySector.PackedElements out, SectorPos pos,
+			@Nullable SharedMaskField sharedMaskField) {
+		final var ctx = new GalaxyGenerationLayer.Context(this, pos, sharedMaskField);
 
 		for (int i = 0; i < this.generationLayers.size(); ++i) {
 			final var genLayer = this.generationLayers.get(i);
@@ -89,9 +120,40 @@ public class Galaxy {
 		out.shrinkToFit();
 	}
 
+	/**
+	 * Generates the elements for the given sector, or loads them from the sector
+	 * cache if they were generated previously.
+	 */
 	public GalaxySector.PackedElements generateSectorElements(SectorPos pos) {
+		return generateSectorElements(pos, null);
+	}
+
+	/**
+	 * Like {@link #generateSectorElements(SectorPos)}, but samples the galaxy's
+	 * mask field through {@code sharedMaskField}, which is typically shared
+	 * between every sector in a root sector that is being generated in the same
+	 * batch. The output is identical either way.
+	 */
+	public GalaxySector.PackedElements generateSectorElements(SectorPos pos,
+			@Nullable SharedMaskField sharedMaskField) {
+		final var cache = this.parentUniverse.getSectorElementCache();
+		var elements = cache == null ? null : cache.load(this, pos);
+		if (elements == null) {
+			elements = generateSectorElementsUncached(pos, sharedMaskField);
+			if (cache != null)
+				cache.store(this, pos, elements);
+		}
+		return elements;
+	}
+
+	public GalaxySector.PackedElements generateSectorElementsUncached(SectorPos pos) {
+		return generateSectorElementsUncached(pos, null);
+	}
+
+	public GalaxySector.PackedElements generateSectorElementsUncached(SectorPos pos,
+			@Nullable SharedMaskField sharedMaskField) {
 		final var elements = new GalaxySector.PackedElements(pos.minBound(), false);
-		generateSectorElements(elements, pos);
+		generateSectorElements(elements, pos, sharedMaskField);
 		return elements;
 	}
 
@@ -99,6 +161,12 @@ public class Galaxy {
 		return this.generationLayers.get(elem.generationLayer).generateFullSystem(sector, id, elem);
 	}
 
+	@Nullable
+	public StarSystemSummary generateSystemSummary(GalaxySector sector, GalaxySectorId id,
+			GalaxySector.ElementHolder elem) {
+		return this.generationLayers.get(elem.generationLayer).generateSystemSummary(sector, id, elem);
+	}
+
 	public Maybe<StarSystem> loadSystem(Disposable.Multi disposer, GalaxySectorId id) {
 		final var systemTicket = this.sectorManager.createSystemTicket(disposer, id);
 		return this.sectorManager.forceLoad(systemTicket);
@@ -108,6 +176,10 @@ public class Galaxy {
 		return this.sectorManager.getSystem(id);
 	}
 
+	public Maybe<StarSystemSummary> getSystemSummary(GalaxySectorId id) {
+		return this.sectorManager.getSystemSummary(id);
+	}
+
 	public Maybe<Vec3> getSystemPos(GalaxySectorId id) {
 		final var elem = new GalaxySector.ElementHolder();
 		if (this.sectorManager.loadElement(elem, id)) {
@@ -1,7 +1,11 @@
 package net.xavil.ultraviolet.common.universe.galaxy;
 
+import javax.annotation.Nullable;
+
+import net.xavil.hawklib.hash.Hasher;
 import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
 import net.xavil.ultraviolet.common.universe.system.StarSystem;
+import net.xavil.ultraviolet.common.universe.system.StarSystemSummary;
 import net.xavil.hawklib.math.matrices.Vec3;
 
 public abstract class GalaxyGenerationLayer {
@@ -24,18 +28,51 @@ public abstract class GalaxyGenerationLayer {
 		public final int level;
 		public final Vec3 volumeMin;
 		public final Vec3 volumeMax;
+		/**
+		 * The galaxy's mask field, shared with other sectors in the same root sector
+		 * that are being generated at around the same time.
+		 */
+		public final GalaxyRegionWeights.Field maskField;
 
 		public Context(Galaxy galaxy, SectorPos pos) {
+			this(galaxy, pos, null);
+		}
+
+		public Context(Galaxy galaxy, SectorPos pos, @Nullable SharedMaskField sharedMaskField) {
 			this.galaxy = galaxy;
 			this.pos = pos;
 			this.level = pos.level();
 			this.volumeMin = pos.minBound();
 			this.volumeMax = pos.maxBound();
+			this.maskField = sharedMaskField != null ? sharedMaskField : galaxy.parameters.masks;
 		}
 	}
 
+	/**
+	 * Appends everything that influences what this layer generates to
+	 * {@code hasher}. Used to key the sector cache, so layers whose output depends
+	 * on more than the galaxy seed must override this.
+	 */
+	public void appendGenerationHash(Hasher hasher) {
+		hasher.appendString(getClass().getName());
+		hasher.appendInt(this.layerId);
+	}
+
 	public abstract void generateInto(Context ctx, GalaxySector.PackedElements elements);
 
 	public abstract StarSystem generateFullSystem(GalaxySector sector, GalaxySectorId id, GalaxySector.ElementHolder elem);
 
+	/**
+	 * Generates the parts of a star system that don't require its full node tree.
+	 * Layers that generate lots of systems should override this with something
+	 * that doesn't call {@link #generateFullSystem}, which is what the default
+	 * implementation does.
+	 */
+	@Nullable
+	public StarSystemSummary generateSystemSummary(GalaxySector sector, GalaxySectorId id,
+			GalaxySector.ElementHolder elem) {
+		final var system = generateFullSystem(sector, id, elem);
+		return system == null ? null : new StarSystemSummary(system.name, elem, system.metallicity);
+	}
+
 }
@@ -1,6 +1,7 @@
 package net.xavil.ultraviolet.common.universe.galaxy;
 
 import net.minecraft.util.Mth;
+import net.xavil.hawklib.math.matrices.Vec3;
 import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
 
 public final class GalaxyRegionWeights {
@@ -8,6 +9,90 @@ public final class GalaxyRegionWeights {
 	@FunctionalInterface
 	public interface Field {
 		void evaluate(Vec3Access pos, GalaxyRegionWeights outMasks);
+
+		/**
+		 * Evaluates this field at the first {@link Batch#size} positions of
+		 * {@code batch}, writing the results into its weight arrays.
+		 * <p>
+		 * The default implementation just evaluates each position one by one.
+		 * Implementations that are sampled a lot should override this with a plain
+		 * loop over the batch's arrays.
+		 * </p>
+		 *
+		 * @param batch The positions to evaluate, and the place to put the results.
+		 */
+		default void evaluate(Batch batch) {
+			final var pos = new Vec3.Mutable();
+			final var masks = new GalaxyRegionWeights();
+			for (int i = 0; i < batch.size; ++i) {
+				Vec3.set(pos, batch.x[i], batch.y[i], batch.z[i]);
+				evaluate(pos, masks);
+				batch.store(i, masks);
+			}
+		}
+	}
+
+	/**
+	 * A structure-of-arrays set of sample positions and the weights evaluated at
+	 * each of them.
+	 */
+	public static final class Batch {
+		public final double[] x, y, z;
+		public final double[] core, arms, disc, halo;
+		public int size = 0;
+
+		public Batch(int capacity) {
+			this.x = new double[capacity];
+			this.y = new double[capacity];
+			this.z = new double[capacity];
+			this.core = new double[capacity];
+			this.arms = new double[capacity];
+			this.disc = new double[capacity];
+			this.halo = new double[capacity];
+		}
+
+		public int capacity() {
+			return this.x.length;
+		}
+
+		public void clear() {
+			this.size = 0;
+		}
+
+		public void push(double x, double y, double z) {
+			this.x[this.size] = x;
+			this.y[this.size] = y;
+			this.z[this.size] = z;
+			this.size += 1;
+		}
+
+		public void load(int i, GalaxyRegionWeights out) {
+			out.core = this.core[i];
+			out.arms = this.arms[i];
+			out.disc = this.disc[i];
+			out.halo = this.halo[i];
+		}
+
+		public void store(int i, GalaxyRegionWeights in) {
+			this.core[i] = in.core;
+			this.arms[i] = in.arms;
+			this.disc[i] = in.disc;
+			this.halo[i] = in.halo;
+		}
+
+		/**
+		 * @return The dot product of the weights at index {@code i} and
+		 *         {@code weights}, computed in the same order as
+		 *         {@link GalaxyRegionWeights#dot(GalaxyRegionWeights, GalaxyRegionWeights)}.
+		 */
+		public double dot(int i, GalaxyRegionWeights weights) {
+			double res = 0.0;
+			res += this.core[i] * weights.core;
+			res += this.arms[i] * weights.arms;
+			res += this.disc[i] * weights.disc;
+			res += this.halo[i] * weights.halo;
+			return res;
+		}
 	}
 
 	public double core, arms, disc, halo;
@@ -31,4 +116,4 @@ public final class GalaxyRegionWeights {
 		res += a.halo * b.halo;
 		return res;
 	}
-}
\ No newline at end of file
+}
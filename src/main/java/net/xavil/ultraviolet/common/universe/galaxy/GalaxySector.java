@@ -1,5 +1,9 @@
 package net.xavil.ultraviolet.common.universe.galaxy;
 
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 import javax.annotation.Nullable;
@@ -88,12 +92,57 @@ public final class GalaxySector {
 	public final int x, y, z;
 	public volatile PackedElements elements = null;
 	private Branch branch = null;
+	// the last tick on which this sector was enumerated by its sector manager, used
+	// to decide which sectors to evict when element memory runs low.
+	long lastEnumeratedTick = -1;
 
 	public record Branch(
 			GalaxySector nnn, GalaxySector nnp,
 			GalaxySector npn, GalaxySector npp,
 			GalaxySector pnn, GalaxySector pnp,
 			GalaxySector ppn, GalaxySector ppp) {
+
+		/**
+		 * @param index A child index, as returned by {@link GalaxySector#childIndex}.
+		 */
+		public GalaxySector child(int index) {
+			return switch (index) {
+				case 0 -> this.nnn;
+				case 1 -> this.nnp;
+				case 2 -> this.npn;
+				case 3 -> this.npp;
+				case 4 -> this.pnn;
+				case 5 -> this.pnp;
+				case 6 -> this.ppn;
+				case 7 -> this.ppp;
+				default -> throw new IllegalArgumentException("invalid child index " + index);
+			};
+		}
+
+		private boolean mayUnload() {
+			return this.nnn.weakReferenceCount <= 0 && this.nnp.weakReferenceCount <= 0
+					&& this.npn.weakReferenceCount <= 0 && this.npp.weakReferenceCount <= 0
+					&& this.pnn.weakReferenceCount <= 0 && this.pnp.weakReferenceCount <= 0
+					&& this.ppn.weakReferenceCount <= 0 && this.ppp.weakReferenceCount <= 0;
+		}
+	}
+
+	/**
+	 * Finds which child of a node on level {@code parentLevel} contains the target
+	 * sector, laid out the same way as the fields of {@link Branch}, where the x
+	 * bit is the most significant.
+	 */
+	private static int childIndex(int parentLevel, int targetLevel, int x, int y, int z) {
+		final var shift = parentLevel - 1 - targetLevel;
+		return (((x >> shift) & 1) << 2) | (((y >> shift) & 1) << 1) | ((z >> shift) & 1);
+	}
+
+	// whether the target sector is this node or one of its descendants
+	private boolean contains(int targetLevel, int x, int y, int z) {
+		if (targetLevel > this.level)
+			return false;
+		final var shift = this.level - targetLevel;
+		return this.x == (x >> shift) && this.y == (y >> shift) && this.z == (z >> shift);
 	}
 
 	public GalaxySector(Vec3i coords) {
@@ -152,33 +201,38 @@ public final class GalaxySector {
 	 * @param pos The position of the target sector.
 	 */
 	public void load(SectorPos pos) {
-		Assert.isGreaterOrEqual(this.level, pos.level());
+		final var coords = pos.levelCoords();
+		load(pos.level(), coords.x, coords.y, coords.z);
+	}
+
+	/**
+	 * Same as {@link #load(SectorPos)}, but with a packed sector position (see
+	 * {@link SectorPos#pack(int, int, int, int)}).
+	 */
+	public void load(long packedPos) {
+		load(SectorPos.unpackLevel(packedPos),
+				SectorPos.unpackX(packedPos), SectorPos.unpackY(packedPos), SectorPos.unpackZ(packedPos));
+	}
+
+	private void load(int targetLevel, int x, int y, int z) {
+		Assert.isGreaterOrEqual(this.level, targetLevel);
 
-		// this is basically `pos` but in the coorinate system for the level that this
-		// node is on.
-		final var levelPos = pos.levelCoords().floorDiv((1 << this.level) / (1 << pos.level()));
 		// bail if our target node is not a descendant of this node
-		if (this.x != levelPos.x || this.y != levelPos.y || this.z != levelPos.z)
+		if (!contains(targetLevel, x, y, z))
 			return;
 
 		// if execution has gotten to this point, we know that the target sector was
 		// either this sector, or contained somewhere in this sector's bounds. This
 		// marks all the ancestors of the target node with an additional weak count.
-		this.weakReferenceCount += 1;
-
-		if (pos.level() == this.level) {
-			this.strongReferenceCount += 1;
-		} else {
-			createChildren();
-			this.branch.nnn.load(pos);
-			this.branch.nnp.load(pos);
-			this.branch.npn.load(pos);
-			this.branch.npp.load(pos);
-			this.branch.pnn.load(pos);
-			this.branch.pnp.load(pos);
-			this.branch.ppn.load(pos);
-			this.branch.ppp.load(pos);
+		GalaxySector node = this;
+		while (true) {
+			node.weakReferenceCount += 1;
+			if (node.level == targetLevel)
+				break;
+			node.createChildren();
+			node = node.branch.child(childIndex(node.level, targetLevel, x, y, z));
 		}
+		node.strongReferenceCount += 1;
 	}
 
 	public static final class InvalidUnloadException extends RuntimeException {
@@ -196,54 +250,70 @@ public final class GalaxySector {
 	 * @return Whether the current node is allowed to be unloaded.
 	 */
 	public boolean unload(SectorPos pos) {
-		Assert.isGreaterOrEqual(this.level, pos.level());
+		final var coords = pos.levelCoords();
+		return unload(pos.level(), coords.x, coords.y, coords.z);
+	}
+
+	/**
+	 * Same as {@link #unload(SectorPos)}, but with a packed sector position (see
+	 * {@link SectorPos#pack(int, int, int, int)}).
+	 */
+	public boolean unload(long packedPos) {
+		return unload(SectorPos.unpackLevel(packedPos),
+				SectorPos.unpackX(packedPos), SectorPos.unpackY(packedPos), SectorPos.unpackZ(packedPos));
+	}
+
+	private boolean unload(int targetLevel, int x, int y, int z) {
+		Assert.isGreaterOrEqual(this.level, targetLevel);
 
-		// this is basically `pos` but in the coorinate system for the level that this
-		// node is on.
-		final var levelPos = pos.levelCoords().floorDiv((1 << this.level) / (1 << pos.level()));
 		// bail if our target node is not a descendant of this node
-		if (this.x != levelPos.x || this.y != levelPos.y || this.z != levelPos.z)
+		if (!contains(targetLevel, x, y, z))
 			return this.weakReferenceCount <= 0;
 
-		if (this.weakReferenceCount <= 0) {
-			// sectors with a weak count of zero should not have any loaded subsectors, so
-			// trying to unload one of them recursively doesn't make any sense. This may
-			// indicate a double free, or a free of a subnode that was not ever loaded.
-			Mod.LOGGER.error(
-					"tried to transitively unload sector with weak count of {}. level {}, pos ({}, {}, {})",
-					this.weakReferenceCount, this.level, this.x, this.y, this.z);
-			throw new InvalidUnloadException(this);
-		}
-
-		if (this.level != pos.level() && this.branch != null) {
-			boolean mayUnload = true;
-			mayUnload &= this.branch.nnn.unload(pos);
-			mayUnload &= this.branch.nnp.unload(pos);
-			mayUnload &= this.branch.npn.unload(pos);
-			mayUnload &= this.branch.npp.unload(pos);
-			mayUnload &= this.branch.pnn.unload(pos);
-			mayUnload &= this.branch.pnp.unload(pos);
-			mayUnload &= this.branch.ppn.unload(pos);
-			mayUnload &= this.branch.ppp.unload(pos);
-			if (mayUnload)
-				this.branch = null;
-		}
-
-		if (pos.level() == this.level) {
+		// walk down to the target first, so that we can validate the whole path before
+		// we start modifying any reference counts.
+		final var path = new GalaxySector[ROOT_LEVEL + 1];
+		int pathLength = 0;
+		GalaxySector node = this;
+		while (true) {
+			if (node.weakReferenceCount <= 0) {
+				// sectors with a weak count of zero should not have any loaded subsectors, so
+				// trying to unload one of them recursively doesn't make any sense. This may
+				// indicate a double free, or a free of a subnode that was not ever loaded.
+				Mod.LOGGER.error(
+						"tried to transitively unload sector with weak count of {}. level {}, pos ({}, {}, {})",
+						node.weakReferenceCount, node.level, node.x, node.y, node.z);
+				throw new InvalidUnloadException(node);
+			}
+			path[pathLength++] = node;
+			if (node.level == targetLevel || node.branch == null)
+				break;
+			node = node.branch.child(childIndex(node.level, targetLevel, x, y, z));
+		}
+
+		final var target = path[pathLength - 1];
+		if (target.level == targetLevel) {
 			// we're the target node that's being unloaded... and we're already unloaded!
 			// This is likely caused by a double free.
-			if (this.strongReferenceCount <= 0) {
+			if (target.strongReferenceCount <= 0) {
 				Mod.LOGGER.error(
 						"tried to transitively unload sector with strong count of {}. level {}, pos ({}, {}, {})",
-						this.strongReferenceCount, this.level, this.x, this.y, this.z);
-				throw new InvalidUnloadException(this);
+						target.strongReferenceCount, target.level, target.x, target.y, target.z);
+				throw new InvalidUnloadException(target);
 			}
-			if (this.strongReferenceCount <= 0)
-				this.elements = null;
-			this.strongReferenceCount -= 1;
+			if (target.strongReferenceCount <= 0)
+				target.elements = null;
+			target.strongReferenceCount -= 1;
 		}
 
-		this.weakReferenceCount -= 1;
+		// release our weak counts from the bottom up, so that each ancestor can tell
+		// whether its entire branch may be collected.
+		for (int i = pathLength - 1; i >= 0; --i) {
+			final var cur = path[i];
+			if (cur.level != targetLevel && cur.branch != null && cur.branch.mayUnload())
+				cur.branch = null;
+			cur.weakReferenceCount -= 1;
+		}
 
 		return this.weakReferenceCount <= 0;
 	}
@@ -305,34 +375,48 @@ public final class GalaxySector {
 		}
 	}
 
+	/**
+	 * Finds the node for the given sector position, by walking straight down the
+	 * tree towards it.
+	 * 
+	 * @return The node at {@code pos}, or {@code null} if it is not contained in
+	 *         this sector or if its parent has not been split.
+	 */
+	@Nullable
 	public GalaxySector lookupNode(SectorPos pos) {
-		if (pos.level() > this.level)
-			return null;
-
-		// this is basically `pos` but in the coorinate system for the level that this
-		// node is on.
-		final var levelPos = pos.levelCoords().floorDiv((1 << this.level) / (1 << pos.level()));
-		// bail if our target node is not a descendant of this node
-		if (this.x != levelPos.x || this.y != levelPos.y || this.z != levelPos.z)
-			return null;
+		final var coords = pos.levelCoords();
+		return lookupNode(pos.level(), coords.x, coords.y, coords.z);
+	}
 
-		if (pos.level() == this.level)
-			return this;
+	/**
+	 * Same as {@link #lookupNode(SectorPos)}, but with a packed sector position (see
+	 * {@link SectorPos#pack(int, int, int, int)}).
+	 */
+	@Nullable
+	public GalaxySector lookupNode(long packedPos) {
+		return lookupNode(SectorPos.unpackLevel(packedPos),
+				SectorPos.unpackX(packedPos), SectorPos.unpackY(packedPos), SectorPos.unpackZ(packedPos));
+	}
 
-		if (this.branch != null) {
-			// @formatter:off
-			final var nnn = this.branch.nnn.lookupNode(pos); if (nnn != null) return nnn;
-			final var nnp = this.branch.nnp.lookupNode(pos); if (nnp != null) return nnp;
-			final var npn = this.branch.npn.lookupNode(pos); if (npn != null) return npn;
-			final var npp = this.branch.npp.lookupNode(pos); if (npp != null) return npp;
-			final var pnn = this.branch.pnn.lookupNode(pos); if (pnn != null) return pnn;
-			final var pnp = this.branch.pnp.lookupNode(pos); if (pnp != null) return pnp;
-			final var ppn = this.branch.ppn.lookupNode(pos); if (ppn != null) return ppn;
-			final var ppp = this.branch.ppp.lookupNode(pos); if (ppp != null) return ppp;
-			// @formatter:on
+	@Nullable
+	private GalaxySector lookupNode(int targetLevel, int x, int y, int z) {
+		if (!contains(targetLevel, x, y, z))
+			return null;
+		GalaxySector node = this;
+		while (node.level != targetLevel) {
+			if (node.branch == null)
+				return null;
+			node = node.branch.child(childIndex(node.level, targetLevel, x, y, z));
 		}
+		return node;
+	}
 
-		return null;
+	/**
+	 * The children of this sector, or {@code null} if it has not been split.
+	 */
+	@Nullable
+	public Branch branch() {
+		return this.branch;
 	}
 
 	public void loadElement(ElementHolder out, int subnodeIndex) {
@@ -373,24 +457,41 @@ public final class GalaxySector {
 	public static final class PackedElements {
 		public static final int FLOAT_ELEMENT_COUNT = 7;
 		public static final int INT_ELEMENT_COUNT = 3;
+		public static final int BYTES_PER_ELEMENT = Float.BYTES * FLOAT_ELEMENT_COUNT
+				+ Integer.BYTES * INT_ELEMENT_COUNT;
 
 		public final Vec3 sectorOrigin;
 
 		// NOTE: position is stored relative to `sectorOrigin`
 		// x y z age mass luminosity temperature
-		private float[] floatBuffer = null;
+		private FloatBuffer floatBuffer = null;
 		// generationlayer systemseed:systemseed
-		private int[] intBuffer = null;
+		private IntBuffer intBuffer = null;
 
-		// let's hope the overhead here isnt too bad...
+		// only allocated once the first named element is stored, since most elements
+		// that may have names never actually get one.
 		private final boolean hasNames;
+		@Nullable
 		private String[] names = null;
 
+		// element buffers without names live off-heap, in a slab from the element
+		// arena. `floatBuffer` and `intBuffer` are views into `slab` in that case.
+		private final boolean offHeap;
+		@Nullable
+		private ElementArena.Slab slab = null;
+
 		private int size = 0, capacity = 0;
 
+		// built from the positions in `floatBuffer` the first time it is needed, and
+		// thrown away whenever any of them change.
+		private volatile SectorElementIndex index = null;
+		// same deal as `index`
+		private volatile SectorSummary summary = null;
+
 		public PackedElements(Vec3 sectorOrigin, boolean hasNames) {
 			this.sectorOrigin = sectorOrigin;
 			this.hasNames = hasNames;
+			this.offHeap = !hasNames && !ElementArena.DISABLE_OFF_HEAP_ELEMENTS;
 		}
 
 		public int size() {
@@ -403,37 +504,44 @@ public final class GalaxySector {
 
 		public ElementHolder load(ElementHolder out, int i) {
 			int fi = i * FLOAT_ELEMENT_COUNT;
-			out.systemPosTm.x = this.floatBuffer[fi++] + this.sectorOrigin.x;
-			out.systemPosTm.y = this.floatBuffer[fi++] + this.sectorOrigin.y;
-			out.systemPosTm.z = this.floatBuffer[fi++] + this.sectorOrigin.z;
-			out.systemAgeMyr = this.floatBuffer[fi++];
-			out.massYg = this.floatBuffer[fi++];
-			out.luminosityLsol = this.floatBuffer[fi++];
-			out.temperatureK = this.floatBuffer[fi++];
+			out.systemPosTm.x = this.floatBuffer.get(fi++) + this.sectorOrigin.x;
+			out.systemPosTm.y = this.floatBuffer.get(fi++) + this.sectorOrigin.y;
+			out.systemPosTm.z = this.floatBuffer.get(fi++) + this.sectorOrigin.z;
+			out.systemAgeMyr = this.floatBuffer.get(fi++);
+			out.massYg = this.floatBuffer.get(fi++);
+			out.luminosityLsol = this.floatBuffer.get(fi++);
+			out.temperatureK = this.floatBuffer.get(fi++);
 			int li = i * INT_ELEMENT_COUNT;
-			out.generationLayer = this.intBuffer[li++];
-			out.systemSeed = (long) this.intBuffer[li++];
-			out.systemSeed |= ((long) this.intBuffer[li++]) << 32;
+			out.generationLayer = this.intBuffer.get(li++);
+			out.systemSeed = (long) this.intBuffer.get(li++);
+			out.systemSeed |= ((long) this.intBuffer.get(li++)) << 32;
 			if (this.hasNames) {
-				out.name = this.names[i];
+				out.name = this.names == null ? null : this.names[i];
 			}
+			// the slab goes back to the pool once we're collected, so we need to stay
+			// alive until we're done reading from it.
+			Reference.reachabilityFence(this);
 			return out;
 		}
 
 		public void store(ElementHolder in, int i) {
+			this.index = null;
+			this.summary = null;
 			int fi = i * FLOAT_ELEMENT_COUNT;
-			this.floatBuffer[fi++] = (float) (in.systemPosTm.x - this.sectorOrigin.x);
-			this.floatBuffer[fi++] = (float) (in.systemPosTm.y - this.sectorOrigin.y);
-			this.floatBuffer[fi++] = (float) (in.systemPosTm.z - this.sectorOrigin.z);
-			this.floatBuffer[fi++] = (float) in.systemAgeMyr;
-			this.floatBuffer[fi++] = (float) in.massYg;
-			this.floatBuffer[fi++] = (float) in.luminosityLsol;
-			this.floatBuffer[fi++] = (float) in.temperatureK;
+			this.floatBuffer.put(fi++, (float) (in.systemPosTm.x - this.sectorOrigin.x));
+			this.floatBuffer.put(fi++, (float) (in.systemPosTm.y - this.sectorOrigin.y));
+			this.floatBuffer.put(fi++, (float) (in.systemPosTm.z - this.sectorOrigin.z));
+			this.floatBuffer.put(fi++, (float) in.systemAgeMyr);
+			this.floatBuffer.put(fi++, (float) in.massYg);
+			this.floatBuffer.put(fi++, (float) in.luminosityLsol);
+			this.floatBuffer.put(fi++, (float) in.temperatureK);
 			int li = i * INT_ELEMENT_COUNT;
-			this.intBuffer[li++] = in.generationLayer;
-			this.intBuffer[li++] = (int) (in.systemSeed);
-			this.intBuffer[li++] = (int) (in.systemSeed >>> 32);
-			if (this.hasNames) {
+			this.intBuffer.put(li++, in.generationLayer);
+			this.intBuffer.put(li++, (int) (in.systemSeed));
+			this.intBuffer.put(li++, (int) (in.systemSeed >>> 32));
+			if (this.hasNames && (this.names != null || in.name != null)) {
+				if (this.names == null)
+					this.names = new String[this.capacity];
 				this.names[i] = in.name;
 			}
 		}
@@ -446,11 +554,17 @@ public final class GalaxySector {
 
 		public void storeSequence(PackedElements other, int i) {
 			Assert.isLesserOrEqual(other.size + i, this.capacity);
-
-			System.arraycopy(other.floatBuffer, 0, this.floatBuffer, i, FLOAT_ELEMENT_COUNT * other.size);
-			System.arraycopy(other.intBuffer, 0, this.intBuffer, i, INT_ELEMENT_COUNT * other.size);
-			if (this.hasNames && other.hasNames) {
+			this.index = null;
+			this.summary = null;
+
+			this.floatBuffer.put(FLOAT_ELEMENT_COUNT * i, other.floatBuffer, 0, FLOAT_ELEMENT_COUNT * other.size);
+			this.intBuffer.put(INT_ELEMENT_COUNT * i, other.intBuffer, 0, INT_ELEMENT_COUNT * other.size);
+			if (this.hasNames && other.names != null) {
+				if (this.names == null)
+					this.names = new String[this.capacity];
 				System.arraycopy(other.names, 0, this.names, i, other.size);
+			} else if (this.names != null) {
+				Arrays.fill(this.names, i, i + other.size, null);
 			}
 		}
 
@@ -459,31 +573,180 @@ public final class GalaxySector {
 			if (desiredCapacity <= this.capacity)
 				return;
 			if (this.capacity == 0) {
-				this.floatBuffer = new float[FLOAT_ELEMENT_COUNT * requestedSlots];
-				this.intBuffer = new int[INT_ELEMENT_COUNT * requestedSlots];
-				this.names = new String[requestedSlots];
-				this.capacity = requestedSlots;
+				resize(requestedSlots);
 			} else {
-				final var newCapacity = Math.max(2 * this.capacity, desiredCapacity);
-				this.floatBuffer = Arrays.copyOf(this.floatBuffer, FLOAT_ELEMENT_COUNT * newCapacity);
-				this.intBuffer = Arrays.copyOf(this.intBuffer, INT_ELEMENT_COUNT * newCapacity);
-				this.names = Arrays.copyOf(this.names, newCapacity);
-				this.capacity = newCapacity;
+				resize(Math.max(2 * this.capacity, desiredCapacity));
 			}
 		}
 
+		// reallocates the element buffers to hold at least `newCapacity` elements,
+		// copying over every element that has been written so far.
+		private void resize(int newCapacity) {
+			final FloatBuffer newFloatBuffer;
+			final IntBuffer newIntBuffer;
+			ElementArena.Slab newSlab = null;
+			// empty sectors are common, and aren't worth a whole slab.
+			if (this.offHeap && newCapacity > 0) {
+				newSlab = ElementArena.get().allocate(this, BYTES_PER_ELEMENT * newCapacity);
+				// use up the whole slab, since it's rounded up to a power of two anyways.
+				newCapacity = newSlab.capacityBytes() / BYTES_PER_ELEMENT;
+				final var floatBytes = Float.BYTES * FLOAT_ELEMENT_COUNT * newCapacity;
+				final var intBytes = Integer.BYTES * INT_ELEMENT_COUNT * newCapacity;
+				final var buf = newSlab.buffer;
+				newFloatBuffer = buf.slice(0, floatBytes).order(buf.order()).asFloatBuffer();
+				newIntBuffer = buf.slice(floatBytes, intBytes).order(buf.order()).asIntBuffer();
+			} else {
+				newFloatBuffer = FloatBuffer.allocate(FLOAT_ELEMENT_COUNT * newCapacity);
+				newIntBuffer = IntBuffer.allocate(INT_ELEMENT_COUNT * newCapacity);
+			}
+
+			final var copiedSize = Math.min(this.size, newCapacity);
+			if (copiedSize > 0) {
+				newFloatBuffer.put(0, this.floatBuffer, 0, FLOAT_ELEMENT_COUNT * copiedSize);
+				newIntBuffer.put(0, this.intBuffer, 0, INT_ELEMENT_COUNT * copiedSize);
+			}
+			if (this.names != null)
+				this.names = Arrays.copyOf(this.names, newCapacity);
+
+			// nothing else could have seen the old slab, since we're still being written
+			// to, so it can go straight back into the pool.
+			if (this.slab != null)
+				this.slab.free();
+			this.slab = newSlab;
+			this.floatBuffer = newFloatBuffer;
+			this.intBuffer = newIntBuffer;
+			this.capacity = newCapacity;
+		}
+
 		public void markWritten(int usedSlots) {
 			this.size += usedSlots;
+			this.index = null;
+			this.summary = null;
+		}
+
+		/**
+		 * Gets the spatial index over the positions of these elements, building it if
+		 * it has not been built yet. The index is only valid until these elements
+		 * are modified.
+		 * <p>
+		 * This may be called from multiple threads at once, in which case the index
+		 * might be built more than once, but all callers will see a valid index.
+		 * </p>
+		 */
+		public SectorElementIndex index() {
+			var index = this.index;
+			if (index == null) {
+				index = SectorElementIndex.build(this.sectorOrigin, this.floatBuffer, FLOAT_ELEMENT_COUNT, this.size);
+				this.index = index;
+			}
+			Reference.reachabilityFence(this);
+			return index;
+		}
+
+		/**
+		 * Gets the statistics of all of these elements, computing them if they have
+		 * not been computed yet. Like {@link #index()}, this may be called from
+		 * multiple threads at once.
+		 */
+		public SectorSummary summary() {
+			var summary = this.summary;
+			if (summary == null) {
+				summary = SectorSummary.of(this);
+				this.summary = summary;
+			}
+			return summary;
+		}
+
+		public boolean hasNames() {
+			return this.hasNames;
+		}
+
+		/**
+		 * Whether these elements are stored off-heap, in memory that counts towards
+		 * the {@link ElementArena} budget.
+		 */
+		public boolean isOffHeap() {
+			return this.offHeap;
+		}
+
+		/**
+		 * The amount of off-heap memory that these elements occupy, in bytes.
+		 */
+		public int residentBytes() {
+			return this.slab == null ? 0 : this.slab.capacityBytes();
+		}
+
+		/**
+		 * Stops counting these elements towards the {@link ElementArena} budget. This
+		 * should be called when these elements are dropped by their sector. They
+		 * remain readable by anyone still holding on to them, and their memory is
+		 * reused once they are collected.
+		 */
+		public void release() {
+			if (this.slab != null)
+				this.slab.release();
+		}
+
+		/**
+		 * The amount of bytes that {@link #writeTo(ByteBuffer)} will write for this
+		 * element buffer.
+		 */
+		public int serializedSize() {
+			return Integer.BYTES + this.size * BYTES_PER_ELEMENT;
+		}
+
+		/**
+		 * Writes the raw element buffers into {@code out}, starting at its current
+		 * position. Names are not written, so this should only be used with element
+		 * buffers that do not have names.
+		 */
+		public void writeTo(ByteBuffer out) {
+			Assert.isFalse(this.hasNames);
+			out.putInt(this.size);
+			if (this.size == 0)
+				return;
+			out.asFloatBuffer().put(0, this.floatBuffer, 0, FLOAT_ELEMENT_COUNT * this.size);
+			out.position(out.position() + Float.BYTES * FLOAT_ELEMENT_COUNT * this.size);
+			out.asIntBuffer().put(0, this.intBuffer, 0, INT_ELEMENT_COUNT * this.size);
+			out.position(out.position() + Integer.BYTES * INT_ELEMENT_COUNT * this.size);
+		}
+
+		/**
+		 * Reads element buffers that were previously written with
+		 * {@link #writeTo(ByteBuffer)}.
+		 * 
+		 * @return The read elements, or {@code null} if the data in {@code in} was
+		 *         malformed.
+		 */
+		@Nullable
+		public static PackedElements readFrom(Vec3 sectorOrigin, ByteBuffer in) {
+			if (in.remaining() < Integer.BYTES)
+				return null;
+			final var size = in.getInt();
+			final var expectedBytes = (long) size * BYTES_PER_ELEMENT;
+			if (size < 0 || in.remaining() != expectedBytes)
+				return null;
+
+			final var elements = new PackedElements(sectorOrigin, false);
+			if (size == 0)
+				return elements;
+			elements.reserve(size);
+			elements.floatBuffer.put(0, in.asFloatBuffer(), 0, FLOAT_ELEMENT_COUNT * size);
+			in.position(in.position() + Float.BYTES * FLOAT_ELEMENT_COUNT * size);
+			elements.intBuffer.put(0, in.asIntBuffer(), 0, INT_ELEMENT_COUNT * size);
+			in.position(in.position() + Integer.BYTES * INT_ELEMENT_COUNT * size);
+			elements.markWritten(size);
+			return elements;
 		}
 
 		public void shrinkToFit() {
-			if (this.floatBuffer != null)
-				this.floatBuffer = Arrays.copyOf(this.floatBuffer, FLOAT_ELEMENT_COUNT * this.size);
-			if (this.intBuffer != null)
-				this.intBuffer = Arrays.copyOf(this.intBuffer, INT_ELEMENT_COUNT * this.size);
-			if (this.names != null)
-				this.names = Arrays.copyOf(this.names, this.size);
-			this.capacity = this.size;
+			if (this.capacity == this.size)
+				return;
+			// off-heap slabs come in powers of two, so there's only something to gain
+			// here if the elements would fit in a smaller slab.
+			if (this.slab != null && this.size > 0 && ElementArena.slabBytes(BYTES_PER_ELEMENT * this.size) == this.slab.capacityBytes())
+				return;
+			resize(this.size);
 		}
 
 	}
@@ -6,9 +6,7 @@ import net.xavil.hawklib.SplittableRng;
 import net.xavil.hawklib.Units;
 import net.xavil.hawklib.collections.impl.Vector;
 import net.xavil.ultraviolet.common.universe.GalaxyParameters;
-import net.xavil.ultraviolet.common.universe.ScalarField;
 import net.xavil.hawklib.math.Interval;
-import net.xavil.hawklib.math.Sdf;
 import net.xavil.hawklib.math.matrices.Vec3;
 import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
 
@@ -41,23 +39,46 @@ public enum GalaxyType {
 			public final double spokeSize, spokeDensity, spokeAngle;
 			public final boolean isMajor;
 
+			// derived from the above, so that evaluating a spoke doesn't need to allocate
+			// anything.
+			private final double size, density;
+			private final double ax, ay, az;
+			private final double bax, bay, baz, baLengthSquared;
+
 			public Spoke(SplittableRng rng, Params params, boolean isMajor) {
 				this.spokeSize = rng.uniformDouble("spoke_size");
 				this.spokeDensity = rng.uniformDouble("spoke_density");
 				this.spokeAngle = rng.uniformDouble("spoke_angle");
 				this.isMajor = isMajor;
-			}
 
-			public double evaluate(Params params, Vec3Access pos) {
-				final var size = Mth.lerp(this.spokeSize, 1.2, 1.5) * params.discHeightFactor * params.radius;
-				final var density = Mth.lerp(this.spokeDensity, 1.0, 2.0);
+				this.size = Mth.lerp(this.spokeSize, 1.2, 1.5) * params.discHeightFactor * params.radius;
+				this.density = Mth.lerp(this.spokeDensity, 1.0, 2.0);
 
 				final var angleY = 2.0 * Math.PI * this.spokeAngle;
 				final var p = Vec3.ZP.mul(params.radius).rotateY(angleY);
 
-				var spoke = Sdf.capsule(pos, p.neg(), p, 0);
-				spoke = Math.pow(spoke / size, 2);
-				spoke = density * Math.pow(0.01 / density, spoke);
+				// the spoke is a capsule going from `-p` to `p`
+				final var a = p.neg();
+				final var ba = p.sub(a);
+				this.ax = a.x;
+				this.ay = a.y;
+				this.az = a.z;
+				this.bax = ba.x;
+				this.bay = ba.y;
+				this.baz = ba.z;
+				this.baLengthSquared = ba.lengthSquared();
+			}
+
+			public double evaluate(double x, double y, double z) {
+				// inlined version of `Sdf.capsule(pos, -p, p, 0)`
+				final double pax = x - this.ax, pay = y - this.ay, paz = z - this.az;
+				final var paDotBa = pax * this.bax + pay * this.bay + paz * this.baz;
+				final var h = Mth.clamp(paDotBa / this.baLengthSquared, 0.0, 1.0);
+				final double dx = pax - this.bax * h, dy = pay - this.bay * h, dz = paz - this.baz * h;
+
+				var spoke = Math.sqrt(dx * dx + dy * dy + dz * dz);
+				spoke = Math.pow(spoke / this.size, 2);
+				spoke = this.density * Math.pow(0.01 / this.density, spoke);
 
 				if (!this.isMajor)
 					spoke *= 0.1;
@@ -71,6 +92,8 @@ public enum GalaxyType {
 
 			private final Vector<Spoke> spokes = new Vector<>();
 			private final double spiralFactor;
+			private final Params params;
+			private final Spoke[] spokeArray;
 
 			public DensityField(SplittableRng rng, Params params) {
 				// "spokes" of higher star densities that are often (i think) home to active
@@ -82,6 +105,7 @@ public enum GalaxyType {
 				if (rng.chance("reverse_spiral", 0.5))
 					spiralFactor *= -1.0;
 				this.spiralFactor = spiralFactor;
+				this.params = params;
 
 				rng.push("major_spokes");
 				for (int i = 0; i < majorSpokeCount; ++i) {
@@ -95,31 +119,57 @@ public enum GalaxyType {
 					this.spokes.push(new Spoke(rng, params, false));
 				}
 				rng.pop();
+
+				this.spokeArray = this.spokes.toArray(Spoke.class);
+			}
+
+			public void evaluate(Vec3Access pos, GalaxyRegionWeights masks) {
+				evaluate(pos.x(), pos.y(), pos.z(), masks);
 			}
 
-			public void evaluate(Params params, Vec3Access pos, GalaxyRegionWeights masks) {
-				final var centerDist = Sdf.sphere(pos, Vec3.ZERO, 0) / params.radius;
-				final var galaxyMask = Math.max(0, 1 - pos.length() / params.radius);
+			public void evaluate(GalaxyRegionWeights.Batch batch) {
+				final var masks = new GalaxyRegionWeights();
+				for (int i = 0; i < batch.size; ++i) {
+					evaluate(batch.x[i], batch.y[i], batch.z[i], masks);
+					batch.store(i, masks);
+				}
+			}
+
+			// this is written in terms of plain doubles rather than `Vec3`s so that it
+			// doesn't allocate, which matters quite a bit when it's being evaluated for
+			// entire batches of positions.
+			private void evaluate(double x, double y, double z, GalaxyRegionWeights masks) {
+				final var radius = this.params.radius;
+				final var squish = this.params.galaxySquish;
+
+				final var length = Math.sqrt(x * x + y * y + z * z);
+				final var centerDist = length / radius;
+				final var galaxyMask = Math.max(0, 1 - length / radius);
 
 				// core
-				final var corePos = pos.mul(params.galaxySquish.mul(1, 0.9, 1));
-				final var coreDist = Sdf.sphere(corePos, 0) / params.radius;
+				final double cx = x * squish.x, cy = y * (squish.y * 0.9), cz = z * squish.z;
+				final var coreDist = Math.sqrt(cx * cx + cy * cy + cz * cz) / radius;
 				masks.core = Math.pow(10, -22.0 * coreDist);
 
 				// halo
 				masks.halo = Math.max(0, 1 - centerDist / 2.5);
 
 				// disc
-				final var discPos = pos.mul(params.galaxySquish);
-				final var discDist = Math.abs(Sdf.plane(discPos, Vec3.YP) / params.radius);
+				final double dx = x * squish.x, dy = y * squish.y, dz = z * squish.z;
+				final var discDist = Math.abs(dy / radius);
 				masks.disc = Math.pow(10, -30.0 * discDist);
 				masks.disc *= galaxyMask;
 
-				// spiral arms
-				Vec3 spokePos = pos.mul(params.galaxySquish);
-				spokePos = ScalarField.spiralAboutY(spokePos, this.spiralFactor, 1.2 * params.radius);
-				for (final var spoke : this.spokes.iterable()) {
-					masks.arms += spoke.evaluate(params, spokePos);
+				// spiral arms, see `ScalarField.spiralAboutY`
+				final var len = Math.sqrt(dx * dx + dz * dz) / (1.2 * radius);
+				final var angle = 2.0 * Math.PI * this.spiralFactor * Math.pow(1.0 - len, 2.0);
+				final double c = Math.cos(angle), s = Math.sin(angle);
+				final var sx = dx * c + dz * s;
+				final var sz = dz * c - dx * s;
+
+				masks.arms = 0;
+				for (final var spoke : this.spokeArray) {
+					masks.arms += spoke.evaluate(sx, dy, sz);
 				}
 
 				// final var exclusionRadius = params.galacticCoreSizeFactor * params.radius;
@@ -135,7 +185,17 @@ public enum GalaxyType {
 			final var params = new Params(rng);
 			final var df = new DensityField(rng, params);
 
-			final GalaxyRegionWeights.Field maskField = (pos, masks) -> df.evaluate(params, pos, masks);
+			final var maskField = new GalaxyRegionWeights.Field() {
+				@Override
+				public void evaluate(Vec3Access pos, GalaxyRegionWeights masks) {
+					df.evaluate(pos, masks);
+				}
+
+				@Override
+				public void evaluate(GalaxyRegionWeights.Batch batch) {
+					df.evaluate(batch);
+				}
+			};
 
 			final var ageDomain = new Interval(0, info.ageMyr);
 			final var coreSfh = ProbabilityDistribution.interpolate(age -> {
@@ -0,0 +1,161 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import net.xavil.ultraviolet.Mod;
+
+/**
+ * A dedicated thread pool for sector and star system generation, so that we're
+ * not flooding {@link java.util.concurrent.ForkJoinPool#commonPool()} and
+ * competing with everything else in the JVM.
+ *
+ * Work is ordered by a priority value, where lower values are run first. Tasks
+ * whose futures were completed or cancelled before they reached the front of
+ * the queue are dropped without running.
+ */
+public final class GenerationScheduler {
+
+	public static final int THREAD_COUNT = Integer.getInteger("net.xavil.ultraviolet.generation_threads",
+			Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+	// priority used for work that something is directly waiting on, like system
+	// generation for a system ticket.
+	public static final double PRIORITY_URGENT = Double.NEGATIVE_INFINITY;
+
+	private static GenerationScheduler instance = null;
+
+	public static synchronized GenerationScheduler get() {
+		if (instance == null)
+			instance = new GenerationScheduler(THREAD_COUNT);
+		return instance;
+	}
+
+	public final class Task<T> implements Runnable, Comparable<Task<?>> {
+		public final CompletableFuture<T> future = new CompletableFuture<>();
+		private final Supplier<T> supplier;
+		private final double priority;
+		private final long sequence;
+		private final long submitTime;
+		private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+		private Task(double priority, Supplier<T> supplier) {
+			this.supplier = supplier;
+			this.priority = priority;
+			this.sequence = nextSequence.getAndIncrement();
+			this.submitTime = System.nanoTime();
+		}
+
+		@Override
+		public int compareTo(Task<?> other) {
+			final var cmp = Double.compare(this.priority, other.priority);
+			return cmp != 0 ? cmp : Long.compare(this.sequence, other.sequence);
+		}
+
+		/**
+		 * Runs this task on the current thread if no worker has picked it up yet. This
+		 * is useful for when the current thread would otherwise block waiting for
+		 * {@link #future} to complete.
+		 */
+		public void runInline() {
+			run();
+		}
+
+		@Override
+		public void run() {
+			if (!this.claimed.compareAndSet(false, true))
+				return;
+			if (this.future.isDone()) {
+				droppedCount.incrementAndGet();
+				return;
+			}
+
+			final var startTime = System.nanoTime();
+			totalWaitNanos.addAndGet(startTime - this.submitTime);
+			try {
+				this.future.complete(this.supplier.get());
+			} catch (Throwable t) {
+				this.future.completeExceptionally(t);
+			}
+			totalRunNanos.addAndGet(System.nanoTime() - startTime);
+			completedCount.incrementAndGet();
+		}
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicLong nextSequence = new AtomicLong();
+
+	private final AtomicLong submittedCount = new AtomicLong();
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong totalRunNanos = new AtomicLong();
+
+	private long lastSampleTime = System.nanoTime();
+	private long lastSampleCompleted = 0;
+
+	private GenerationScheduler(int threadCount) {
+		final var threadIndex = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<>(), runnable -> {
+					final var thread = new Thread(runnable, "ultraviolet-gen-" + threadIndex.getAndIncrement());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.NORM_PRIORITY - 1);
+					thread.setUncaughtExceptionHandler((t, ex) -> {
+						Mod.LOGGER.error("uncaught exception in generation thread '{}'", t.getName());
+						ex.printStackTrace();
+					});
+					return thread;
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+		Mod.LOGGER.info("started generation scheduler with {} threads", threadCount);
+	}
+
+	public <T> Task<T> submit(double priority, Supplier<T> supplier) {
+		final var task = new Task<>(priority, supplier);
+		this.submittedCount.incrementAndGet();
+		this.executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * @return An executor that schedules its work with the given priority. Mainly
+	 *         useful for {@link CompletableFuture}'s async methods, which will skip
+	 *         running their functions if their futures were cancelled in the
+	 *         meantime.
+	 */
+	public Executor executor(double priority) {
+		return runnable -> submit(priority, () -> {
+			runnable.run();
+			return null;
+		});
+	}
+
+	public int queueDepth() {
+		return this.executor.getQueue().size();
+	}
+
+	public synchronized String debugSummary() {
+		final var now = System.nanoTime();
+		final var completed = this.completedCount.get();
+		final var elapsedSeconds = (now - this.lastSampleTime) / 1e9;
+		final var throughput = (completed - this.lastSampleCompleted) / Math.max(elapsedSeconds, 1e-9);
+		this.lastSampleTime = now;
+		this.lastSampleCompleted = completed;
+
+		final var avgWaitMs = completed == 0 ? 0 : this.totalWaitNanos.get() / (1e6 * completed);
+		final var avgRunMs = completed == 0 ? 0 : this.totalRunNanos.get() / (1e6 * completed);
+		return String.format(
+				"%d threads, %d queued, %d submitted, %d completed, %d dropped, %.1f tasks/s since last query, avg wait %.2fms, avg run %.2fms",
+				this.executor.getMaximumPoolSize(), queueDepth(), this.submittedCount.get(), completed,
+				this.droppedCount.get(), throughput, avgWaitMs, avgRunMs);
+	}
+
+}
@@ -27,14 +27,24 @@ public class InterpolatedMaskField implements GalaxyRegionWeights.Field {
 			this.pnp = new GalaxyRegionWeights();
 			this.ppn = new GalaxyRegionWeights();
 			this.ppp = new GalaxyRegionWeights();
-			field.evaluate(new Vec3(min.x, min.y, min.z), this.nnn);
-			field.evaluate(new Vec3(min.x, min.y, max.z), this.nnp);
-			field.evaluate(new Vec3(min.x, max.y, min.z), this.npn);
-			field.evaluate(new Vec3(min.x, max.y, max.z), this.npp);
-			field.evaluate(new Vec3(max.x, min.y, min.z), this.pnn);
-			field.evaluate(new Vec3(max.x, min.y, max.z), this.pnp);
-			field.evaluate(new Vec3(max.x, max.y, min.z), this.ppn);
-			field.evaluate(new Vec3(max.x, max.y, max.z), this.ppp);
+			final var corners = new GalaxyRegionWeights.Batch(8);
+			corners.push(min.x, min.y, min.z);
+			corners.push(min.x, min.y, max.z);
+			corners.push(min.x, max.y, min.z);
+			corners.push(min.x, max.y, max.z);
+			corners.push(max.x, min.y, min.z);
+			corners.push(max.x, min.y, max.z);
+			corners.push(max.x, max.y, min.z);
+			corners.push(max.x, max.y, max.z);
+			field.evaluate(corners);
+			corners.load(0, this.nnn);
+			corners.load(1, this.nnp);
+			corners.load(2, this.npn);
+			corners.load(3, this.npp);
+			corners.load(4, this.pnn);
+			corners.load(5, this.pnp);
+			corners.load(6, this.ppn);
+			corners.load(7, this.ppp);
 			this.invLerpFactorX = 1.0 / (this.max.x - this.min.x);
 			this.invLerpFactorY = 1.0 / (this.max.y - this.min.y);
 			this.invLerpFactorZ = 1.0 / (this.max.z - this.min.z);
@@ -61,37 +71,21 @@ public class InterpolatedMaskField implements GalaxyRegionWeights.Field {
 		}
 
 		public void interpolate(double tx, double ty, double tz, GalaxyRegionWeights masks) {
-			// trilinear interpolation
-			final var xnnCore = this.nnn.core + tx * (this.pnn.core - this.nnn.core);
-			final var xpnCore = this.npn.core + tx * (this.ppn.core - this.npn.core);
-			final var xnpCore = this.nnp.core + tx * (this.pnp.core - this.nnp.core);
-			final var xppCore = this.npp.core + tx * (this.ppp.core - this.npp.core);
-			final var xnnArms = this.nnn.arms + tx * (this.pnn.arms - this.nnn.arms);
-			final var xpnArms = this.npn.arms + tx * (this.ppn.arms - this.npn.arms);
-			final var xnpArms = this.nnp.arms + tx * (this.pnp.arms - this.nnp.arms);
-			final var xppArms = this.npp.arms + tx * (this.ppp.arms - this.npp.arms);
-			final var xnnDisc = this.nnn.disc + tx * (this.pnn.disc - this.nnn.disc);
-			final var xpnDisc = this.npn.disc + tx * (this.ppn.disc - this.npn.disc);
-			final var xnpDisc = this.nnp.disc + tx * (this.pnp.disc - this.nnp.disc);
-			final var xppDisc = this.npp.disc + tx * (this.ppp.disc - this.npp.disc);
-			final var xnnHalo = this.nnn.halo + tx * (this.pnn.halo - this.nnn.halo);
-			final var xpnHalo = this.npn.halo + tx * (this.ppn.halo - this.npn.halo);
-			final var xnpHalo = this.nnp.halo + tx * (this.pnp.halo - this.nnp.halo);
-			final var xppHalo = this.npp.halo + tx * (this.ppp.halo - this.npp.halo);
-
-			final var ynCore = xnnCore + ty * (xpnCore - xnnCore);
-			final var ypCore = xnpCore + ty * (xppCore - xnpCore);
-			final var ynArms = xnnArms + ty * (xpnArms - xnnArms);
-			final var ypArms = xnpArms + ty * (xppArms - xnpArms);
-			final var ynDisc = xnnDisc + ty * (xpnDisc - xnnDisc);
-			final var ypDisc = xnpDisc + ty * (xppDisc - xnpDisc);
-			final var ynHalo = xnnHalo + ty * (xpnHalo - xnnHalo);
-			final var ypHalo = xnpHalo + ty * (xppHalo - xnpHalo);
-
-			masks.core = ynCore + tz * (ypCore - ynCore);
-			masks.arms = ynArms + tz * (ypArms - ynArms);
-			masks.disc = ynDisc + tz * (ypDisc - ynDisc);
-			masks.halo = ynHalo + tz * (ypHalo - ynHalo);
+			// @formatter:off
+			masks.core = trilerp(tx, ty, tz, this.nnn.core, this.nnp.core, this.npn.core, this.npp.core, this.pnn.core, this.pnp.core, this.ppn.core, this.ppp.core);
+			masks.arms = trilerp(tx, ty, tz, this.nnn.arms, this.nnp.arms, this.npn.arms, this.npp.arms, this.pnn.arms, this.pnp.arms, this.ppn.arms, this.ppp.arms);
+			masks.disc = trilerp(tx, ty, tz, this.nnn.disc, this.nnp.disc, this.npn.disc, this.npp.disc, this.pnn.disc, this.pnp.disc, this.ppn.disc, this.ppp.disc);
+			masks.halo = trilerp(tx, ty, tz, this.nnn.halo, this.nnp.halo, this.npn.halo, this.npp.halo, this.pnn.halo, this.pnp.halo, this.ppn.halo, this.ppp.halo);
+			// @formatter:on
+		}
+
+		public void interpolate(double tx, double ty, double tz, GalaxyRegionWeights.Batch batch, int i) {
+			// @formatter:off
+			batch.core[i] = trilerp(tx, ty, tz, this.nnn.core, this.nnp.core, this.npn.core, this.npp.core, this.pnn.core, this.pnp.core, this.ppn.core, this.ppp.core);
+			batch.arms[i] = trilerp(tx, ty, tz, this.nnn.arms, this.nnp.arms, this.npn.arms, this.npp.arms, this.pnn.arms, this.pnp.arms, this.ppn.arms, this.ppp.arms);
+			batch.disc[i] = trilerp(tx, ty, tz, this.nnn.disc, this.nnp.disc, this.npn.disc, this.npp.disc, this.pnn.disc, this.pnp.disc, this.ppn.disc, this.ppp.disc);
+			batch.halo[i] = trilerp(tx, ty, tz, this.nnn.halo, this.nnp.halo, this.npn.halo, this.npp.halo, this.pnn.halo, this.pnp.halo, this.ppn.halo, this.ppp.halo);
+			// @formatter:on
 		}
 
 		@Override
@@ -102,6 +96,29 @@ public class InterpolatedMaskField implements GalaxyRegionWeights.Field {
 			interpolate(tx, ty, tz, masks);
 		}
 
+		@Override
+		public void evaluate(GalaxyRegionWeights.Batch batch) {
+			for (int i = 0; i < batch.size; ++i) {
+				final var tx = this.invLerpFactorX * (batch.x[i] - this.min.x);
+				final var ty = this.invLerpFactorY * (batch.y[i] - this.min.y);
+				final var tz = this.invLerpFactorZ * (batch.z[i] - this.min.z);
+				interpolate(tx, ty, tz, batch, i);
+			}
+		}
+
+	}
+
+	// trilinear interpolation of a single channel
+	private static double trilerp(double tx, double ty, double tz,
+			double nnn, double nnp, double npn, double npp,
+			double pnn, double pnp, double ppn, double ppp) {
+		final var xnn = nnn + tx * (pnn - nnn);
+		final var xpn = npn + tx * (ppn - npn);
+		final var xnp = nnp + tx * (pnp - nnp);
+		final var xpp = npp + tx * (ppp - npp);
+		final var yn = xnn + ty * (xpn - xnn);
+		final var yp = xnp + ty * (xpp - xnp);
+		return yn + tz * (yp - yn);
 	}
 
 	private static int idx(int size, int x, int y, int z) {
@@ -116,20 +133,25 @@ public class InterpolatedMaskField implements GalaxyRegionWeights.Field {
 	private InterpolatedMaskField(GalaxyRegionWeights.Field field, Vec3 min, Vec3 max, int subdivisions) {
 		final int sl = subdivisions + 1, gl = sl + 1;
 
-		final var grid = new GalaxyRegionWeights[gl * gl * gl];
-		final var pos = new Vec3.Mutable();
+		final var samples = new GalaxyRegionWeights.Batch(gl * gl * gl);
 		for (int x = 0; x < gl; ++x) {
 			for (int y = 0; y < gl; ++y) {
 				for (int z = 0; z < gl; ++z) {
-					pos.x = Mth.lerp(x / (double) gl, min.x, max.x);
-					pos.y = Mth.lerp(y / (double) gl, min.y, max.y);
-					pos.z = Mth.lerp(z / (double) gl, min.z, max.z);
-					final var masks = new GalaxyRegionWeights();
-					field.evaluate(pos, masks);
-					grid[idx(gl, x, y, z)] = masks;
+					samples.push(
+							Mth.lerp(x / (double) gl, min.x, max.x),
+							Mth.lerp(y / (double) gl, min.y, max.y),
+							Mth.lerp(z / (double) gl, min.z, max.z));
 				}
 			}
 		}
+		field.evaluate(samples);
+
+		// pushed in the same order as `idx()` lays them out
+		final var grid = new GalaxyRegionWeights[gl * gl * gl];
+		for (int i = 0; i < grid.length; ++i) {
+			grid[i] = new GalaxyRegionWeights();
+			samples.load(i, grid[i]);
+		}
 
 		this.cubes = new Cube[sl * sl * sl];
 		for (int x = 0; x < sl; ++x) {
@@ -182,4 +204,17 @@ public class InterpolatedMaskField implements GalaxyRegionWeights.Field {
 		interpolate(tx, ty, tz, masks);
 	}
 
-}
\ No newline at end of file
+	@Override
+	public void evaluate(GalaxyRegionWeights.Batch batch) {
+		final var scale = this.subdivisions + 1;
+		for (int i = 0; i < batch.size; ++i) {
+			final var tx = this.invLerpFactorX * (batch.x[i] - this.min.x) * scale;
+			final var ty = this.invLerpFactorY * (batch.y[i] - this.min.y) * scale;
+			final var tz = this.invLerpFactorZ * (batch.z[i] - this.min.z) * scale;
+			final int ix = Mth.floor(tx), iy = Mth.floor(ty), iz = Mth.floor(tz);
+			this.cubes[idx(scale, ix, iy, iz)]
+					.interpolate(tx - ix, ty - iy, tz - iz, batch, i);
+		}
+	}
+
+}
@@ -0,0 +1,142 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import net.xavil.hawklib.Assert;
+import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
+
+/**
+ * Holds the k nearest galaxy elements found so far by a nearest neighbor
+ * query, such as {@link SectorManager#findNearestElements}. Instances may be
+ * reused between queries to avoid allocating.
+ * <p>
+ * While a query is running, the elements are kept in a max-heap ordered by
+ * distance, so that the farthest one can be replaced cheaply. Once the query is
+ * done, they are sorted from nearest to farthest.
+ * </p>
+ */
+public final class NearestElements {
+
+	private int limit = 0;
+	private int size = 0;
+	private double maxDistanceSqr = Double.POSITIVE_INFINITY;
+	private double[] distancesSqr = new double[0];
+	private GalaxySector[] sectors = new GalaxySector[0];
+	private int[] elementIndices = new int[0];
+
+	/**
+	 * Clears this set and prepares it for a new query.
+	 *
+	 * @param limit       The maximum number of elements to keep.
+	 * @param maxDistance (Tm) Elements farther than this are never accepted.
+	 */
+	public void reset(int limit, double maxDistance) {
+		Assert.isGreater(limit, 0);
+		if (this.distancesSqr.length < limit) {
+			this.distancesSqr = new double[limit];
+			this.sectors = new GalaxySector[limit];
+			this.elementIndices = new int[limit];
+		}
+		// let go of any sectors from the last query, so they can be collected.
+		for (int i = 0; i < this.size; ++i)
+			this.sectors[i] = null;
+		this.limit = limit;
+		this.size = 0;
+		this.maxDistanceSqr = maxDistance * maxDistance;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * The squared distance that an element must be closer than to be accepted by
+	 * {@link #offer(GalaxySector, int, double)}.
+	 */
+	public double worstDistanceSqr() {
+		return this.size < this.limit ? this.maxDistanceSqr : this.distancesSqr[0];
+	}
+
+	/**
+	 * @return Whether the element was accepted.
+	 */
+	public boolean offer(GalaxySector sector, int elementIndex, double distanceSqr) {
+		if (distanceSqr >= worstDistanceSqr())
+			return false;
+		if (this.size < this.limit) {
+			this.size += 1;
+			siftUp(this.size - 1, sector, elementIndex, distanceSqr);
+		} else {
+			siftDown(0, this.size, sector, elementIndex, distanceSqr);
+		}
+		return true;
+	}
+
+	private void set(int i, GalaxySector sector, int elementIndex, double distanceSqr) {
+		this.distancesSqr[i] = distanceSqr;
+		this.sectors[i] = sector;
+		this.elementIndices[i] = elementIndex;
+	}
+
+	private void move(int to, int from) {
+		set(to, this.sectors[from], this.elementIndices[from], this.distancesSqr[from]);
+	}
+
+	private void siftUp(int i, GalaxySector sector, int elementIndex, double distanceSqr) {
+		while (i > 0) {
+			final var parent = (i - 1) / 2;
+			if (this.distancesSqr[parent] >= distanceSqr)
+				break;
+			move(i, parent);
+			i = parent;
+		}
+		set(i, sector, elementIndex, distanceSqr);
+	}
+
+	private void siftDown(int i, int size, GalaxySector sector, int elementIndex, double distanceSqr) {
+		while (true) {
+			var child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && this.distancesSqr[child + 1] > this.distancesSqr[child])
+				child += 1;
+			if (this.distancesSqr[child] <= distanceSqr)
+				break;
+			move(i, child);
+			i = child;
+		}
+		set(i, sector, elementIndex, distanceSqr);
+	}
+
+	/**
+	 * Sorts the held elements from nearest to farthest. This must be called
+	 * before any of the accessors are used, and no more elements may be offered
+	 * afterwards until {@link #reset(int, double)} is called.
+	 */
+	public void finish() {
+		// heapsort, which leaves the max-heap in ascending order.
+		for (int end = this.size - 1; end > 0; --end) {
+			final var sector = this.sectors[end];
+			final var elementIndex = this.elementIndices[end];
+			final var distanceSqr = this.distancesSqr[end];
+			move(end, 0);
+			siftDown(0, end, sector, elementIndex, distanceSqr);
+		}
+		this.limit = this.size;
+	}
+
+	public GalaxySector sector(int i) {
+		return this.sectors[i];
+	}
+
+	public int elementIndex(int i) {
+		return this.elementIndices[i];
+	}
+
+	public double distance(int i) {
+		return Math.sqrt(this.distancesSqr[i]);
+	}
+
+	public GalaxySectorId id(int i) {
+		return GalaxySectorId.from(this.sectors[i].pos(), this.elementIndices[i]);
+	}
+
+}
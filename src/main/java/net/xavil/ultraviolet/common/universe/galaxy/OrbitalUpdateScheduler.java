@@ -0,0 +1,173 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.util.Comparator;
+
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.xavil.hawklib.Units;
+import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.ultraviolet.common.universe.system.OrbitalPropagator;
+import net.xavil.ultraviolet.common.universe.system.StarSystem;
+
+/**
+ * Decides how precisely, and how often, each loaded system has the positions
+ * of its celestial bodies updated.
+ * <p>
+ * Systems are scheduled every tick along with the highest
+ * {@link SystemTicket.Interest} of any ticket keeping them loaded, and their
+ * distance to the nearest observed system. Observed systems are updated every
+ * tick. Background systems are only due for an update every few ticks, more
+ * often the closer they are to an observer, and due systems are updated most
+ * overdue first with whatever is left of {@link #TICK_BUDGET_NS}. Every
+ * background system that isn't updated on a tick, whether it wasn't due or
+ * didn't fit in the budget, has its positions extrapolated from its last
+ * update instead, so nothing ever stands still.
+ * </p>
+ * <p>
+ * Within a system, the interest picks the maximum angle passed to
+ * {@link OrbitalPropagator#update(double, double)}, so fast inner orbits are
+ * evaluated every time the system is updated, and slow outer orbits are
+ * extrapolated most of the time.
+ * </p>
+ */
+public final class OrbitalUpdateScheduler {
+
+	// how much time may be spent updating systems each tick, in total, before
+	// background systems start getting extrapolated instead.
+	public static final long TICK_BUDGET_NS = 1000L * Integer.getInteger(
+			"net.xavil.ultraviolet.orbital_update_budget_us", 2000);
+
+	// (rad) orbits are extrapolated until they have moved this far along their
+	// orbit, which puts them off by about `semiMajor * angle^2`.
+	public static final double OBSERVED_MAXIMUM_ANGLE = 1e-4;
+	public static final double BACKGROUND_MAXIMUM_ANGLE = 1e-3;
+
+	// (Tm) background systems are updated one tick less often for every this much
+	// distance between them and the nearest observed system.
+	public static final double INTERVAL_DISTANCE_STEP_Tm = 10 * Units.Tm_PER_ly;
+	// (ticks) the longest that a background system goes between updates, which is
+	// also the interval used when nothing is being observed at all.
+	public static final int MAXIMUM_BACKGROUND_INTERVAL = 20;
+
+	/**
+	 * The scheduling state of a single system, which should be kept around for as
+	 * long as the system is loaded.
+	 */
+	public static final class Entry {
+		// the scheduler tick that the system was last updated on, or -1 if it never
+		// has been.
+		private long lastUpdatedTick = -1;
+		private StarSystem system;
+		private int interval;
+
+		private double overdueness(long tick) {
+			return this.lastUpdatedTick < 0
+					? Double.POSITIVE_INFINITY
+					: (tick - this.lastUpdatedTick) / (double) this.interval;
+		}
+	}
+
+	private final Vector<Entry> observed = new Vector<>();
+	private final Vector<Entry> background = new Vector<>();
+	private final Vector<Entry> due = new Vector<>();
+	private long tickCount = 0;
+
+	// stats from the last call to run(), for debugging
+	public int lastUpdatedCount = 0, lastExtrapolatedCount = 0, lastSkippedCount = 0, lastEvaluatedOrbitCount = 0;
+
+	/**
+	 * Schedules {@code system} to be updated on the next call to
+	 * {@link #run(ProfilerFiller, double)}.
+	 *
+	 * @param entry              The system's scheduling state.
+	 * @param observerDistanceTm The distance between the system and the nearest
+	 *                           observed system, or infinity if nothing is being
+	 *                           observed.
+	 */
+	public void schedule(Entry entry, StarSystem system, SystemTicket.Interest interest, double observerDistanceTm) {
+		entry.system = system;
+		if (interest == SystemTicket.Interest.OBSERVED) {
+			entry.interval = 1;
+			this.observed.push(entry);
+		} else {
+			entry.interval = backgroundInterval(observerDistanceTm);
+			this.background.push(entry);
+		}
+	}
+
+	/**
+	 * @return The number of ticks between updates of a background system that is
+	 *         {@code observerDistanceTm} away from the nearest observer.
+	 */
+	public static int backgroundInterval(double observerDistanceTm) {
+		if (!(observerDistanceTm < MAXIMUM_BACKGROUND_INTERVAL * INTERVAL_DISTANCE_STEP_Tm))
+			return MAXIMUM_BACKGROUND_INTERVAL;
+		return Math.min(MAXIMUM_BACKGROUND_INTERVAL, 1 + (int) (observerDistanceTm / INTERVAL_DISTANCE_STEP_Tm));
+	}
+
+	/**
+	 * Updates the systems that were scheduled since the last call to this method.
+	 *
+	 * @param time The total elapsed celestial time, in seconds.
+	 */
+	public void run(ProfilerFiller profiler, double time) {
+		this.lastUpdatedCount = this.lastExtrapolatedCount = this.lastSkippedCount = this.lastEvaluatedOrbitCount = 0;
+		this.tickCount += 1;
+		final var tick = this.tickCount;
+		final var start = System.nanoTime();
+
+		// every system needs this, even if it isn't updated, so that positions don't
+		// get interpolated between the last two updates over and over again.
+		profiler.push("store");
+		this.observed.forEach(entry -> entry.system.storeLastPositions());
+		this.background.forEach(entry -> entry.system.storeLastPositions());
+
+		profiler.popPush("observed");
+		for (int i = 0; i < this.observed.size(); ++i) {
+			update(this.observed.get(i), time, OBSERVED_MAXIMUM_ANGLE);
+		}
+
+		profiler.popPush("background");
+		for (int i = 0; i < this.background.size(); ++i) {
+			final var entry = this.background.get(i);
+			if (entry.overdueness(tick) >= 1)
+				this.due.push(entry);
+			else
+				extrapolate(entry, time);
+		}
+		this.due.sort(Comparator.comparingDouble((Entry entry) -> entry.overdueness(tick)).reversed());
+		for (int i = 0; i < this.due.size(); ++i) {
+			final var entry = this.due.get(i);
+			if (System.nanoTime() - start > TICK_BUDGET_NS) {
+				this.lastSkippedCount += 1;
+				extrapolate(entry, time);
+			} else {
+				update(entry, time, BACKGROUND_MAXIMUM_ANGLE);
+			}
+		}
+		profiler.pop();
+
+		this.observed.clear();
+		this.background.clear();
+		this.due.clear();
+	}
+
+	private void update(Entry entry, double time, double maximumAngle) {
+		this.lastEvaluatedOrbitCount += entry.system.updatePositions(time, maximumAngle);
+		this.lastUpdatedCount += 1;
+		entry.lastUpdatedTick = this.tickCount;
+	}
+
+	private void extrapolate(Entry entry, double time) {
+		entry.system.extrapolatePositions(time);
+		this.lastExtrapolatedCount += 1;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"OrbitalUpdateScheduler[updated: %d, extrapolated: %d (%d over budget), evaluated orbits: %d]",
+				this.lastUpdatedCount, this.lastExtrapolatedCount, this.lastSkippedCount,
+				this.lastEvaluatedOrbitCount);
+	}
+
+}
@@ -0,0 +1,169 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import net.xavil.hawklib.collections.impl.LongHashMap;
+import net.xavil.hawklib.collections.impl.LongHashSet;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.ultraviolet.Mod;
+import net.xavil.ultraviolet.networking.c2s.ServerboundSectorElementRequestPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorElementsPacket;
+
+/**
+ * Fetches sector elements from the server's {@link SectorElementStreamer}
+ * instead of generating them locally. Any sector that the server refuses to
+ * send, or sends in a form we can't read, is generated locally instead, so
+ * every request eventually completes either way. Once the server refuses to
+ * stream this galaxy at all, every sector is generated locally from then on.
+ */
+public final class RemoteSectorElements implements SectorManager.ElementSource {
+
+	public static final boolean ENABLED = Boolean
+			.valueOf(System.getProperty("net.xavil.ultraviolet.stream_sector_elements"));
+
+	// the server only needs to hear about the focus point moving when it would
+	// actually change which sectors are sent first.
+	private static final double FOCUS_UPDATE_DISTANCE = GalaxySector.BASE_SIZE_Tm;
+
+	private static final class Request {
+		public final SectorPos pos;
+		public final double priority;
+		public final CompletableFuture<GalaxySector.PackedElements> future = new CompletableFuture<>();
+
+		public Request(SectorPos pos, double priority) {
+			this.pos = pos;
+			this.priority = priority;
+		}
+	}
+
+	private final Galaxy galaxy;
+	private final Consumer<ServerboundSectorElementRequestPacket> sender;
+
+	// keyed by packed sector position
+	private final LongHashMap<Request> pending = new LongHashMap<>();
+	private final LongHashSet unsentRequests = new LongHashSet();
+	private final LongHashSet unsentCancellations = new LongHashSet();
+	@Nullable
+	private Vec3 lastSentFocusPos = null;
+	private boolean unavailable = false;
+
+	public RemoteSectorElements(Galaxy galaxy, Consumer<ServerboundSectorElementRequestPacket> sender) {
+		this.galaxy = galaxy;
+		this.sender = sender;
+	}
+
+	@Override
+	public CompletableFuture<GalaxySector.PackedElements> request(SectorPos pos, double priority) {
+		if (this.unavailable) {
+			// the sector manager cancels the future itself if the sector is unloaded, so
+			// there's no need to keep track of it here.
+			final var request = new Request(pos, priority);
+			complete(request, 0, null);
+			return request.future;
+		}
+		final var key = pos.packed();
+		final var existing = this.pending.getOrNull(key);
+		if (existing != null)
+			return existing.future;
+		final var request = new Request(pos, priority);
+		this.pending.insert(key, request);
+		this.unsentCancellations.remove(key);
+		this.unsentRequests.insert(key);
+		return request.future;
+	}
+
+	@Override
+	public void cancel(long packedPos) {
+		final var request = this.pending.remove(packedPos);
+		if (request == null)
+			return;
+		request.future.cancel(false);
+		// no need to tell the server about requests it has never seen.
+		if (!this.unsentRequests.remove(packedPos))
+			this.unsentCancellations.insert(packedPos);
+	}
+
+	@Override
+	public void tick(@Nullable Vec3 focusPos) {
+		if (this.unavailable)
+			return;
+		final var focusMoved = focusPos != null && (this.lastSentFocusPos == null
+				|| focusPos.distanceTo(this.lastSentFocusPos) > FOCUS_UPDATE_DISTANCE);
+		if (this.unsentRequests.size() == 0 && this.unsentCancellations.size() == 0 && !focusMoved)
+			return;
+
+		// anything that doesn't fit is sent next tick.
+		final var requested = drain(this.unsentRequests, ServerboundSectorElementRequestPacket.MAX_KEYS);
+		final var cancelled = drain(this.unsentCancellations, ServerboundSectorElementRequestPacket.MAX_KEYS);
+		if (focusMoved)
+			this.lastSentFocusPos = focusPos;
+		this.sender.accept(new ServerboundSectorElementRequestPacket(this.galaxy.galaxyId,
+				this.galaxy.generationFingerprint(), focusMoved ? focusPos : null, requested, cancelled));
+	}
+
+	private static long[] drain(LongHashSet set, int limit) {
+		final var res = new long[Math.min(set.size(), limit)];
+		final var count = new int[] { 0 };
+		set.retain(key -> {
+			if (count[0] >= res.length)
+				return true;
+			res[count[0]++] = key;
+			return false;
+		});
+		return res;
+	}
+
+	public void accept(ClientboundSectorElementsPacket packet) {
+		final var request = this.pending.remove(packet.sectorKey);
+		// already cancelled, or generated locally in the meantime.
+		if (request == null)
+			return;
+
+		complete(request, packet.uncompressedSize, packet.data);
+	}
+
+	/**
+	 * Called when the server refuses to stream this galaxy. Every sector that is
+	 * still pending, and every sector that's requested later, is generated
+	 * locally.
+	 */
+	public void streamUnavailable() {
+		if (this.unavailable)
+			return;
+		Mod.LOGGER.info("server refused to stream sectors of galaxy {}, generating them locally",
+				this.galaxy.galaxyId);
+		this.unavailable = true;
+		this.pending.forEachValue(request -> complete(request, 0, null));
+		this.pending.clear();
+		this.unsentRequests.clear();
+		this.unsentCancellations.clear();
+	}
+
+	// decodes `data` on a generation thread, or generates the sector locally if
+	// there is no data or it could not be decoded.
+	private void complete(Request request, int uncompressedSize, @Nullable byte[] data) {
+		GenerationScheduler.get().submit(request.priority, () -> {
+			GalaxySector.PackedElements elements = null;
+			if (data != null) {
+				elements = SectorElementStreamer.decode(request.pos, uncompressedSize, data);
+				if (elements == null)
+					Mod.LOGGER.warn("received malformed elements for sector {}, generating locally",
+							request.pos);
+			}
+			if (elements == null)
+				elements = this.galaxy.generateSectorElements(request.pos);
+			// the sector manager may have generated the sector itself while we were busy.
+			if (!request.future.complete(elements))
+				elements.release();
+			return null;
+		});
+	}
+
+	public int pendingCount() {
+		return this.pending.size();
+	}
+
+}
@@ -0,0 +1,213 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import net.xavil.hawklib.collections.impl.LongHashMap;
+import net.xavil.ultraviolet.common.universe.GalaxyParameters;
+
+/**
+ * Average stellar densities for every sector in a galaxy, built lazily one root
+ * sector at a time.
+ * <p>
+ * For each root sector, the galaxy's stellar density is sampled on a lattice
+ * whose cells are sectors of level {@link #BASE_LEVEL}. Within a cell, density
+ * is taken to be the trilinear interpolation of the cell's corners, which is
+ * the same approximation {@link InterpolatedMaskField} makes. The average of a
+ * trilinear function over a box is its value at the center of the box, so:
+ * <ul>
+ * <li>A base cell's average is the mean of its 8 corners.</li>
+ * <li>A sector above the base level averages its 8 children, since they all
+ * have the same volume. These are precomputed level by level, forming a
+ * pyramid.</li>
+ * <li>A sector below the base level takes the base cell's interpolated value at
+ * the sector's center.</li>
+ * </ul>
+ * Once a root sector is built, looking up the average density of any sector
+ * within it does a constant amount of work.
+ * </p>
+ */
+public final class SectorDensityPyramid {
+
+	// sectors of this level are the cells of the density lattice. Each root sector
+	// has `(2^(ROOT_LEVEL - BASE_LEVEL) + 1)^3` lattice points, which is 729 for
+	// a base level of 4.
+	public static final int BASE_LEVEL = 4;
+	// once this many root sectors have been built, they are all thrown away, so
+	// that flying across the galaxy can't grow this without bound. Each root sector
+	// takes up a bit more than 10 KiB.
+	public static final int MAXIMUM_ROOT_COUNT = 1024;
+
+	private static final int CELLS_PER_AXIS = 1 << (GalaxySector.ROOT_LEVEL - BASE_LEVEL);
+	private static final int LATTICE_PER_AXIS = CELLS_PER_AXIS + 1;
+
+	private final GalaxyParameters params;
+	private final LongHashMap<RootDensity> roots = new LongHashMap<>();
+
+	private static final class RootDensity {
+		// stellar density at each lattice point
+		public final double[] lattice = new double[LATTICE_PER_AXIS * LATTICE_PER_AXIS * LATTICE_PER_AXIS];
+		// `averages[level - BASE_LEVEL]` holds the average density of every sector of
+		// `level` within this root sector.
+		public final double[][] averages = new double[GalaxySector.ROOT_LEVEL - BASE_LEVEL + 1][];
+	}
+
+	public SectorDensityPyramid(GalaxyParameters params) {
+		this.params = params;
+	}
+
+	private static int idx(int size, int x, int y, int z) {
+		return size * size * x + size * y + z;
+	}
+
+	/**
+	 * @return The average stellar density of the sector at {@code pos}, in the
+	 *         same units as {@link GalaxyParameters#sampleDensity}.
+	 */
+	public double averageDensity(SectorPos pos) {
+		return averageDensity(pos.level(), pos.levelCoords().x, pos.levelCoords().y, pos.levelCoords().z);
+	}
+
+	public double averageDensity(long packedPos) {
+		return averageDensity(
+				SectorPos.unpackLevel(packedPos),
+				SectorPos.unpackX(packedPos),
+				SectorPos.unpackY(packedPos),
+				SectorPos.unpackZ(packedPos));
+	}
+
+	private double averageDensity(int level, int x, int y, int z) {
+		final var rootShift = GalaxySector.ROOT_LEVEL - level;
+		final var root = getOrBuildRoot(x >> rootShift, y >> rootShift, z >> rootShift);
+
+		if (level >= BASE_LEVEL) {
+			// coordinates relative to the root sector
+			final var localMask = (1 << rootShift) - 1;
+			final var averages = root.averages[level - BASE_LEVEL];
+			return averages[idx(1 << rootShift, x & localMask, y & localMask, z & localMask)];
+		}
+
+		// find the base cell containing this sector, and where the center of this
+		// sector lies within it.
+		final var cellShift = BASE_LEVEL - level;
+		final var cellMask = (1 << cellShift) - 1;
+		final var localMask = CELLS_PER_AXIS - 1;
+		final int cx = (x >> cellShift) & localMask, cy = (y >> cellShift) & localMask,
+				cz = (z >> cellShift) & localMask;
+		final var invSubdivisions = 1.0 / (1 << cellShift);
+		final var tx = ((x & cellMask) + 0.5) * invSubdivisions;
+		final var ty = ((y & cellMask) + 0.5) * invSubdivisions;
+		final var tz = ((z & cellMask) + 0.5) * invSubdivisions;
+
+		final var l = root.lattice;
+		final var nnn = l[idx(LATTICE_PER_AXIS, cx + 0, cy + 0, cz + 0)];
+		final var nnp = l[idx(LATTICE_PER_AXIS, cx + 0, cy + 0, cz + 1)];
+		final var npn = l[idx(LATTICE_PER_AXIS, cx + 0, cy + 1, cz + 0)];
+		final var npp = l[idx(LATTICE_PER_AXIS, cx + 0, cy + 1, cz + 1)];
+		final var pnn = l[idx(LATTICE_PER_AXIS, cx + 1, cy + 0, cz + 0)];
+		final var pnp = l[idx(LATTICE_PER_AXIS, cx + 1, cy + 0, cz + 1)];
+		final var ppn = l[idx(LATTICE_PER_AXIS, cx + 1, cy + 1, cz + 0)];
+		final var ppp = l[idx(LATTICE_PER_AXIS, cx + 1, cy + 1, cz + 1)];
+
+		final var xnn = nnn + tx * (pnn - nnn);
+		final var xpn = npn + tx * (ppn - npn);
+		final var xnp = nnp + tx * (pnp - nnp);
+		final var xpp = npp + tx * (ppp - npp);
+		final var yn = xnn + ty * (xpn - xnn);
+		final var yp = xnp + ty * (xpp - xnp);
+		return yn + tz * (yp - yn);
+	}
+
+	private RootDensity getOrBuildRoot(int rx, int ry, int rz) {
+		final var key = SectorPos.pack(GalaxySector.ROOT_LEVEL, rx, ry, rz);
+		synchronized (this.roots) {
+			final var root = this.roots.getOrNull(key);
+			if (root != null)
+				return root;
+		}
+
+		// building happens outside of the lock so that sectors in other root sectors
+		// can still be looked up in the meantime. If two threads race to build the
+		// same root sector, they both build the same thing, and the first one wins.
+		final var root = buildRoot(rx, ry, rz);
+
+		synchronized (this.roots) {
+			final var existing = this.roots.getOrNull(key);
+			if (existing != null)
+				return existing;
+			if (this.roots.size() >= MAXIMUM_ROOT_COUNT)
+				this.roots.clear();
+			this.roots.insert(key, root);
+		}
+		return root;
+	}
+
+	private RootDensity buildRoot(int rx, int ry, int rz) {
+		final var root = new RootDensity();
+		final var baseWidth = GalaxySector.sizeForLevel(BASE_LEVEL);
+
+		// lattice points are pushed in the same order as `idx()` lays them out
+		final var samples = new GalaxyRegionWeights.Batch(root.lattice.length);
+		for (int x = 0; x < LATTICE_PER_AXIS; ++x) {
+			for (int y = 0; y < LATTICE_PER_AXIS; ++y) {
+				for (int z = 0; z < LATTICE_PER_AXIS; ++z) {
+					samples.push(
+							(rx * CELLS_PER_AXIS + x) * baseWidth,
+							(ry * CELLS_PER_AXIS + y) * baseWidth,
+							(rz * CELLS_PER_AXIS + z) * baseWidth);
+				}
+			}
+		}
+		this.params.masks.evaluate(samples);
+		for (int i = 0; i < samples.size; ++i) {
+			root.lattice[i] = samples.dot(i, this.params.stellarDensityWeights);
+		}
+
+		// base cells
+		final var l = root.lattice;
+		final var base = new double[CELLS_PER_AXIS * CELLS_PER_AXIS * CELLS_PER_AXIS];
+		for (int x = 0; x < CELLS_PER_AXIS; ++x) {
+			for (int y = 0; y < CELLS_PER_AXIS; ++y) {
+				for (int z = 0; z < CELLS_PER_AXIS; ++z) {
+					double sum = 0.0;
+					sum += l[idx(LATTICE_PER_AXIS, x + 0, y + 0, z + 0)];
+					sum += l[idx(LATTICE_PER_AXIS, x + 0, y + 0, z + 1)];
+					sum += l[idx(LATTICE_PER_AXIS, x + 0, y + 1, z + 0)];
+					sum += l[idx(LATTICE_PER_AXIS, x + 0, y + 1, z + 1)];
+					sum += l[idx(LATTICE_PER_AXIS, x + 1, y + 0, z + 0)];
+					sum += l[idx(LATTICE_PER_AXIS, x + 1, y + 0, z + 1)];
+					sum += l[idx(LATTICE_PER_AXIS, x + 1, y + 1, z + 0)];
+					sum += l[idx(LATTICE_PER_AXIS, x + 1, y + 1, z + 1)];
+					base[idx(CELLS_PER_AXIS, x, y, z)] = sum / 8.0;
+				}
+			}
+		}
+		root.averages[0] = base;
+
+		// sum children into parents, all the way up to the root sector itself
+		for (int level = BASE_LEVEL + 1; level <= GalaxySector.ROOT_LEVEL; ++level) {
+			final var children = root.averages[level - BASE_LEVEL - 1];
+			final var cs = 1 << (GalaxySector.ROOT_LEVEL - level + 1);
+			final var ps = cs / 2;
+			final var parents = new double[ps * ps * ps];
+			for (int x = 0; x < ps; ++x) {
+				for (int y = 0; y < ps; ++y) {
+					for (int z = 0; z < ps; ++z) {
+						final int lx = 2 * x, ly = 2 * y, lz = 2 * z;
+						double sum = 0.0;
+						sum += children[idx(cs, lx + 0, ly + 0, lz + 0)];
+						sum += children[idx(cs, lx + 0, ly + 0, lz + 1)];
+						sum += children[idx(cs, lx + 0, ly + 1, lz + 0)];
+						sum += children[idx(cs, lx + 0, ly + 1, lz + 1)];
+						sum += children[idx(cs, lx + 1, ly + 0, lz + 0)];
+						sum += children[idx(cs, lx + 1, ly + 0, lz + 1)];
+						sum += children[idx(cs, lx + 1, ly + 1, lz + 0)];
+						sum += children[idx(cs, lx + 1, ly + 1, lz + 1)];
+						parents[idx(ps, x, y, z)] = sum / 8.0;
+					}
+				}
+			}
+			root.averages[level - BASE_LEVEL] = parents;
+		}
+
+		return root;
+	}
+
+}
@@ -0,0 +1,472 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.ultraviolet.Mod;
+
+/**
+ * A persistent, on-disk cache of generated {@link GalaxySector.PackedElements}.
+ *
+ * Sectors are grouped into region files, where each region file holds a cube of
+ * {@link #REGION_SIZE}<sup>3</sup> sectors that all share the same level.
+ * Region files live in a directory named after the galaxy's generation
+ * fingerprint (see {@link Galaxy#generationFingerprint()}), so changing the
+ * galaxy seed, the set of generation layers, or the generator version will
+ * never serve stale data.
+ *
+ * Each region file starts with a header, followed by a slot table containing an
+ * offset, length, and CRC32 checksum for each sector in the region. A rewritten
+ * sector reuses its old payload space when the new payload fits, and is
+ * appended to the end of the file otherwise; once a region accumulates enough
+ * unreferenced space, it is compacted. Payloads are memory-mapped when read. A
+ * payload whose checksum does not match is treated as a cache miss, and a
+ * region file with a malformed header is discarded entirely.
+ *
+ * When the total size of all region files exceeds the configured budget, the
+ * least-recently-used region files are deleted until the cache is back under
+ * budget.
+ */
+public final class SectorElementCache {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(Mod.MOD_ID + "/SectorCache");
+
+	// bump this whenever the layout of region files changes.
+	public static final int FORMAT_VERSION = 1;
+	// "UVSC"
+	private static final int MAGIC = 0x55565343;
+
+	public static final int REGION_SIZE_BITS = 3;
+	public static final int REGION_SIZE = 1 << REGION_SIZE_BITS;
+	public static final int SLOTS_PER_REGION = REGION_SIZE * REGION_SIZE * REGION_SIZE;
+
+	// magic, format version, generator version, level, region x, region y, region
+	// z, galaxy fingerprint
+	private static final int PREAMBLE_BYTES = 7 * Integer.BYTES + Long.BYTES;
+	// payload offset, payload length, payload crc32
+	private static final int SLOT_BYTES = Long.BYTES + 2 * Integer.BYTES;
+	private static final int HEADER_BYTES = PREAMBLE_BYTES + SLOTS_PER_REGION * SLOT_BYTES;
+
+	// when evicting, we evict down to this fraction of the budget, so that we
+	// aren't running an eviction pass every time a new sector is written.
+	private static final double EVICTION_TARGET_FRACTION = 0.75;
+
+	public static final long DEFAULT_MAX_SIZE_BYTES = 512L * 1024 * 1024;
+
+	// regions aren't compacted until they have at least this much unused space, so
+	// that small regions aren't rewritten over and over again.
+	private static final long COMPACTION_MIN_UNUSED_BYTES = 256L * 1024;
+
+	// accesses to a single region file are serialized through one of these locks,
+	// picked by the hash of the region file's path.
+	private final Object[] regionLocks = new Object[64];
+	private final Object evictionLock = new Object();
+
+	private final Path rootDirectory;
+	private final long maxSizeBytes;
+	private final AtomicLong currentSizeBytes = new AtomicLong();
+
+	private long hits = 0, misses = 0, corruptions = 0;
+
+	private SectorElementCache(Path rootDirectory, long maxSizeBytes) {
+		this.rootDirectory = rootDirectory;
+		this.maxSizeBytes = maxSizeBytes;
+		for (int i = 0; i < this.regionLocks.length; ++i)
+			this.regionLocks[i] = new Object();
+	}
+
+	/**
+	 * Opens (and creates, if needed) a sector cache rooted at the given directory.
+	 *
+	 * @return The new cache, or {@code null} if the cache directory could not be
+	 *         used.
+	 */
+	@Nullable
+	public static SectorElementCache open(Path rootDirectory, long maxSizeBytes) {
+		try {
+			Files.createDirectories(rootDirectory);
+			final var cache = new SectorElementCache(rootDirectory, maxSizeBytes);
+			cache.currentSizeBytes.set(cache.computeDirectorySize());
+			LOGGER.info("opened sector cache at '{}' ({} / {} bytes used)", rootDirectory,
+					cache.currentSizeBytes.get(), maxSizeBytes);
+			return cache;
+		} catch (IOException ex) {
+			LOGGER.error("failed to open sector cache at '{}', sector caching will be disabled.", rootDirectory, ex);
+			return null;
+		}
+	}
+
+	private long computeDirectorySize() throws IOException {
+		long total = 0;
+		try (final var files = regionFiles()) {
+			for (final var path : (Iterable<Path>) files::iterator) {
+				try {
+					total += Files.size(path);
+				} catch (IOException ex) {
+				}
+			}
+		}
+		return total;
+	}
+
+	private Stream<Path> regionFiles() throws IOException {
+		return Files.walk(this.rootDirectory).filter(path -> path.toString().endsWith(".uvsc"));
+	}
+
+	private Object lockFor(Path regionPath) {
+		return this.regionLocks[Math.floorMod(regionPath.hashCode(), this.regionLocks.length)];
+	}
+
+	private Path regionPath(long fingerprint, int level, int rx, int ry, int rz) {
+		final var galaxyDir = this.rootDirectory.resolve(String.format("%016x", fingerprint));
+		return galaxyDir.resolve(String.format("L%d.%d.%d.%d.uvsc", level, rx, ry, rz));
+	}
+
+	private static int slotIndex(SectorPos pos) {
+		final var mask = REGION_SIZE - 1;
+		final var lx = pos.levelCoords().x & mask;
+		final var ly = pos.levelCoords().y & mask;
+		final var lz = pos.levelCoords().z & mask;
+		return (lx << (2 * REGION_SIZE_BITS)) | (ly << REGION_SIZE_BITS) | lz;
+	}
+
+	private static boolean validateHeader(ByteBuffer header, long fingerprint, int level, int rx, int ry, int rz) {
+		if (header.getInt(0) != MAGIC)
+			return false;
+		if (header.getInt(4) != FORMAT_VERSION)
+			return false;
+		if (header.getInt(8) != Galaxy.GENERATOR_VERSION)
+			return false;
+		if (header.getInt(12) != level)
+			return false;
+		if (header.getInt(16) != rx || header.getInt(20) != ry || header.getInt(24) != rz)
+			return false;
+		return header.getLong(28) == fingerprint;
+	}
+
+	private static ByteBuffer createHeader(long fingerprint, int level, int rx, int ry, int rz) {
+		final var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(FORMAT_VERSION);
+		header.putInt(Galaxy.GENERATOR_VERSION);
+		header.putInt(level);
+		header.putInt(rx).putInt(ry).putInt(rz);
+		header.putLong(fingerprint);
+		// slot table is already zeroed, which marks every slot as empty.
+		header.position(0);
+		return header;
+	}
+
+	/**
+	 * Looks up the elements for the given sector.
+	 *
+	 * @return The cached elements, or {@code null} if the sector was not in the
+	 *         cache, or if its cache entry was corrupted.
+	 */
+	@Nullable
+	public GalaxySector.PackedElements load(Galaxy galaxy, SectorPos pos) {
+		final var fingerprint = galaxy.generationFingerprint();
+		final var rx = pos.levelCoords().x >> REGION_SIZE_BITS;
+		final var ry = pos.levelCoords().y >> REGION_SIZE_BITS;
+		final var rz = pos.levelCoords().z >> REGION_SIZE_BITS;
+		final var path = regionPath(fingerprint, pos.level(), rx, ry, rz);
+
+		synchronized (lockFor(path)) {
+			try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				if (channel.size() < HEADER_BYTES) {
+					markCorrupted(path, pos);
+					return null;
+				}
+				final var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				if (!validateHeader(header, fingerprint, pos.level(), rx, ry, rz)) {
+					markCorrupted(path, pos);
+					return null;
+				}
+
+				final var slotOffset = PREAMBLE_BYTES + slotIndex(pos) * SLOT_BYTES;
+				final var payloadOffset = header.getLong(slotOffset);
+				final var payloadLength = header.getInt(slotOffset + Long.BYTES);
+				final var payloadCrc = header.getInt(slotOffset + Long.BYTES + Integer.BYTES);
+				if (payloadOffset == 0) {
+					recordMiss();
+					return null;
+				}
+				if (payloadOffset < HEADER_BYTES || payloadLength < 0
+						|| payloadOffset + payloadLength > channel.size()) {
+					markCorrupted(path, pos);
+					return null;
+				}
+
+				final var payload = channel.map(FileChannel.MapMode.READ_ONLY, payloadOffset, payloadLength)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				final var crc = new CRC32();
+				crc.update(payload.duplicate());
+				if ((int) crc.getValue() != payloadCrc) {
+					// NOTE: the slot will be overwritten the next time this sector is stored.
+					LOGGER.warn("sector cache entry for {} in '{}' failed its checksum, regenerating.", pos, path);
+					recordCorruption();
+					return null;
+				}
+
+				final var elements = GalaxySector.PackedElements.readFrom(pos.minBound(), payload);
+				if (elements == null) {
+					recordCorruption();
+					return null;
+				}
+				recordHit();
+				touchRegion(path);
+				return elements;
+			} catch (NoSuchFileException ex) {
+				recordMiss();
+				return null;
+			} catch (IOException ex) {
+				LOGGER.error("failed to read sector cache entry for {} from '{}'", pos, path, ex);
+				recordMiss();
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Stores the elements for the given sector in the cache, replacing any elements
+	 * that were there previously.
+	 */
+	public void store(Galaxy galaxy, SectorPos pos, GalaxySector.PackedElements elements) {
+		// names are not part of the cache format, and the sectors that have them are
+		// cheap to generate anyways.
+		if (elements.hasNames())
+			return;
+
+		final var fingerprint = galaxy.generationFingerprint();
+		final var rx = pos.levelCoords().x >> REGION_SIZE_BITS;
+		final var ry = pos.levelCoords().y >> REGION_SIZE_BITS;
+		final var rz = pos.levelCoords().z >> REGION_SIZE_BITS;
+		final var path = regionPath(fingerprint, pos.level(), rx, ry, rz);
+
+		final var payload = ByteBuffer.allocate(elements.serializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+		elements.writeTo(payload);
+		payload.flip();
+		final var crc = new CRC32();
+		crc.update(payload.duplicate());
+
+		long sizeDelta = 0;
+		synchronized (lockFor(path)) {
+			try {
+				Files.createDirectories(path.getParent());
+				final long prevSize;
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+				try (final var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+						StandardOpenOption.CREATE)) {
+					prevSize = channel.size();
+					boolean headerValid = false;
+					if (prevSize >= HEADER_BYTES) {
+						readFully(channel, header, 0);
+						headerValid = validateHeader(header, fingerprint, pos.level(), rx, ry, rz);
+					}
+					if (!headerValid) {
+						if (prevSize != 0)
+							LOGGER.warn("discarding malformed sector cache region '{}'", path);
+						channel.truncate(0);
+						header = createHeader(fingerprint, pos.level(), rx, ry, rz);
+						writeFully(channel, header.duplicate(), 0);
+					}
+
+					// the new payload goes where the old one was if it fits, so that rewriting a
+					// sector doesn't leave its old payload behind. If we crash while overwriting
+					// it, the old checksum won't match, and the sector is just regenerated.
+					final var slotOffset = PREAMBLE_BYTES + slotIndex(pos) * SLOT_BYTES;
+					final var oldOffset = header.getLong(slotOffset);
+					final var oldLength = header.getInt(slotOffset + Long.BYTES);
+					final var payloadLength = payload.remaining();
+					final var payloadOffset = oldOffset >= HEADER_BYTES && payloadLength <= oldLength
+							&& oldOffset + oldLength <= channel.size() ? oldOffset : channel.size();
+					writeFully(channel, payload, payloadOffset);
+
+					// the slot is only updated after the payload is fully written, so a crash
+					// midway through will at worst leave some garbage at the end of the file.
+					header.putLong(slotOffset, payloadOffset);
+					header.putInt(slotOffset + Long.BYTES, payloadLength);
+					header.putInt(slotOffset + Long.BYTES + Integer.BYTES, (int) crc.getValue());
+					writeFully(channel, header.duplicate().position(slotOffset).limit(slotOffset + SLOT_BYTES),
+							slotOffset);
+				}
+
+				if (shouldCompact(header, Files.size(path)))
+					compact(path, header);
+				// negative if the region was discarded or compacted.
+				sizeDelta = Files.size(path) - prevSize;
+			} catch (IOException ex) {
+				LOGGER.error("failed to write sector cache entry for {} to '{}'", pos, path, ex);
+			}
+		}
+
+		if (this.currentSizeBytes.addAndGet(sizeDelta) > this.maxSizeBytes)
+			evict();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0)
+				throw new IOException("unexpected end of file");
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		final var start = buf.position();
+		while (buf.hasRemaining())
+			channel.write(buf, position + buf.position() - start);
+	}
+
+	// payloads that no longer fit where they were are appended instead, which leaves
+	// their old space unused. Regions are compacted once most of their payload space
+	// is unused.
+	private static boolean shouldCompact(ByteBuffer header, long fileSize) {
+		long liveBytes = 0;
+		for (int i = 0; i < SLOTS_PER_REGION; ++i) {
+			final var slotOffset = PREAMBLE_BYTES + i * SLOT_BYTES;
+			if (header.getLong(slotOffset) != 0)
+				liveBytes += header.getInt(slotOffset + Long.BYTES);
+		}
+		final var unusedBytes = fileSize - HEADER_BYTES - liveBytes;
+		return unusedBytes > COMPACTION_MIN_UNUSED_BYTES && unusedBytes > liveBytes;
+	}
+
+	// copies every live payload into a fresh file, which is then moved into place,
+	// so that nothing ever sees a partially compacted region.
+	private static void compact(Path path, ByteBuffer header) throws IOException {
+		final var newHeader = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		newHeader.put(header.duplicate().clear());
+		final var tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (final var in = FileChannel.open(path, StandardOpenOption.READ);
+					final var out = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+				long nextOffset = HEADER_BYTES;
+				for (int i = 0; i < SLOTS_PER_REGION; ++i) {
+					final var slotOffset = PREAMBLE_BYTES + i * SLOT_BYTES;
+					final var payloadOffset = header.getLong(slotOffset);
+					final var payloadLength = header.getInt(slotOffset + Long.BYTES);
+					if (payloadOffset == 0)
+						continue;
+					// corrupted slots would be misses anyways, so they're dropped.
+					if (payloadOffset < HEADER_BYTES || payloadLength < 0 || payloadOffset + payloadLength > in.size()) {
+						newHeader.put(slotOffset, new byte[SLOT_BYTES]);
+						continue;
+					}
+					final var payload = ByteBuffer.allocate(payloadLength);
+					readFully(in, payload, payloadOffset);
+					payload.flip();
+					writeFully(out, payload, nextOffset);
+					newHeader.putLong(slotOffset, nextOffset);
+					nextOffset += payloadLength;
+				}
+				writeFully(out, newHeader.clear(), 0);
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.debug("compacted sector cache region '{}'", path);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	// region file modification times double as our LRU access times.
+	private void touchRegion(Path path) {
+		try {
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException ex) {
+		}
+	}
+
+	private void markCorrupted(Path path, SectorPos pos) {
+		LOGGER.warn("sector cache region '{}' is malformed, discarding it. (while loading {})", path, pos);
+		recordCorruption();
+		deleteRegion(path);
+	}
+
+	private void deleteRegion(Path path) {
+		try {
+			final var size = Files.size(path);
+			if (Files.deleteIfExists(path))
+				this.currentSizeBytes.addAndGet(-size);
+		} catch (IOException ex) {
+			// the file may still be mapped on some platforms; we'll try again later.
+		}
+	}
+
+	private record RegionInfo(Path path, long lastAccess) {
+	}
+
+	/**
+	 * Deletes the least-recently-used region files until the cache is comfortably
+	 * under its size budget.
+	 */
+	private void evict() {
+		synchronized (this.evictionLock) {
+			if (this.currentSizeBytes.get() <= this.maxSizeBytes)
+				return;
+
+			final var regions = new Vector<RegionInfo>();
+			try (final var files = regionFiles()) {
+				for (final var path : (Iterable<Path>) files::iterator) {
+					try {
+						final var lastAccess = Files.getLastModifiedTime(path).toMillis();
+						regions.push(new RegionInfo(path, lastAccess));
+					} catch (IOException ex) {
+					}
+				}
+			} catch (IOException ex) {
+				LOGGER.error("failed to enumerate sector cache regions for eviction", ex);
+				return;
+			}
+			regions.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+
+			final var target = (long) (EVICTION_TARGET_FRACTION * this.maxSizeBytes);
+			int evicted = 0;
+			for (final var region : regions.iterable()) {
+				if (this.currentSizeBytes.get() <= target)
+					break;
+				synchronized (lockFor(region.path)) {
+					deleteRegion(region.path);
+				}
+				evicted += 1;
+			}
+			LOGGER.debug("evicted {} sector cache regions, {} bytes remain", evicted, this.currentSizeBytes.get());
+		}
+	}
+
+	private synchronized void recordHit() {
+		this.hits += 1;
+	}
+
+	private synchronized void recordMiss() {
+		this.misses += 1;
+	}
+
+	private synchronized void recordCorruption() {
+		this.corruptions += 1;
+		this.misses += 1;
+	}
+
+	public synchronized String debugSummary() {
+		return String.format("%d hits, %d misses, %d corrupt, %d / %d bytes",
+				this.hits, this.misses, this.corruptions, this.currentSizeBytes.get(), this.maxSizeBytes);
+	}
+
+}
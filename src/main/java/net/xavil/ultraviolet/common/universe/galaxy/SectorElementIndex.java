@@ -0,0 +1,528 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.nio.FloatBuffer;
+import java.util.function.IntPredicate;
+
+import javax.annotation.Nullable;
+
+import net.xavil.hawklib.collections.impl.VectorInt;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
+
+/**
+ * A k-d tree over the positions of the elements in a single
+ * {@link GalaxySector.PackedElements}, used for answering spatial queries
+ * without looking at every element in a sector.
+ * <p>
+ * The tree is implicit: element slots are reordered so that, for any range of
+ * slots {@code [lo, hi)} that makes up a node, the slot in the middle of the
+ * range is the split point, everything before it lies on the negative side of
+ * the split plane, and everything after it lies on the positive side. Ranges
+ * that are at most {@link #LEAF_SIZE} long are not split any further and are
+ * scanned linearly instead.
+ * </p>
+ * <p>
+ * Indices are immutable once built, and may be queried from any thread.
+ * </p>
+ */
+public final class SectorElementIndex {
+
+	public static final int LEAF_SIZE = 8;
+
+	@FunctionalInterface
+	public interface Visitor {
+		/**
+		 * @param elementIndex The index of the element in the sector's
+		 *                     {@link GalaxySector.PackedElements}.
+		 * @param distanceSqr  The squared distance from the query origin to the
+		 *                     element, in Tm^2.
+		 */
+		void accept(int elementIndex, double distanceSqr);
+	}
+
+	private final Vec3 origin;
+	private final int size;
+	// the element index stored in each slot of the tree
+	private final int[] elementIndices;
+	// x y z, relative to `origin`, for each slot of the tree
+	private final float[] positions;
+	// the axis that each split slot divides its node along
+	private final byte[] splitAxes;
+	// tight bounds of every element in the tree, relative to `origin`
+	private final float minX, minY, minZ, maxX, maxY, maxZ;
+
+	private SectorElementIndex(Vec3 origin, FloatBuffer buffer, int stride, int size) {
+		this.origin = origin;
+		this.size = size;
+		this.elementIndices = new int[size];
+		this.positions = new float[3 * size];
+		this.splitAxes = new byte[size];
+
+		for (int i = 0; i < size; ++i)
+			this.elementIndices[i] = i;
+		build(buffer, stride, 0, size);
+
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; ++i) {
+			final var bi = this.elementIndices[i] * stride;
+			final float x = buffer.get(bi), y = buffer.get(bi + 1), z = buffer.get(bi + 2);
+			this.positions[3 * i + 0] = x;
+			this.positions[3 * i + 1] = y;
+			this.positions[3 * i + 2] = z;
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			minZ = Math.min(minZ, z);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			maxZ = Math.max(maxZ, z);
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+
+	/**
+	 * Builds an index over packed element positions.
+	 *
+	 * @param origin The point that the positions in {@code buffer} are relative
+	 *               to.
+	 * @param buffer A buffer where every element starts with its x, y, and z
+	 *               coordinates.
+	 * @param stride The number of floats between the start of each element.
+	 * @param size   The number of elements in {@code buffer}.
+	 */
+	public static SectorElementIndex build(Vec3 origin, FloatBuffer buffer, int stride, int size) {
+		return new SectorElementIndex(origin, buffer, stride, size);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	private void build(FloatBuffer buffer, int stride, int lo, int hi) {
+		if (hi - lo <= LEAF_SIZE)
+			return;
+
+		// split along the longest side of this node, so that nodes stay roughly cubic
+		// even though elements are not uniformly distributed.
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for (int i = lo; i < hi; ++i) {
+			final var bi = this.elementIndices[i] * stride;
+			minX = Math.min(minX, buffer.get(bi));
+			minY = Math.min(minY, buffer.get(bi + 1));
+			minZ = Math.min(minZ, buffer.get(bi + 2));
+			maxX = Math.max(maxX, buffer.get(bi));
+			maxY = Math.max(maxY, buffer.get(bi + 1));
+			maxZ = Math.max(maxZ, buffer.get(bi + 2));
+		}
+		final float ex = maxX - minX, ey = maxY - minY, ez = maxZ - minZ;
+		final int axis = ex >= ey && ex >= ez ? 0 : ey >= ez ? 1 : 2;
+
+		final var mid = (lo + hi) >>> 1;
+		select(buffer, stride, axis, lo, hi, mid);
+		this.splitAxes[mid] = (byte) axis;
+		build(buffer, stride, lo, mid);
+		build(buffer, stride, mid + 1, hi);
+	}
+
+	// partially sorts the slots in [lo, hi) along `axis` such that the slot at `k`
+	// is in its sorted position, everything before it is not greater, and
+	// everything after it is not less.
+	private void select(FloatBuffer buffer, int stride, int axis, int lo, int hi, int k) {
+		final var indices = this.elementIndices;
+		while (hi - lo > 1) {
+			final var pivot = buffer.get(indices[(lo + hi) >>> 1] * stride + axis);
+			int i = lo, j = hi - 1;
+			while (i <= j) {
+				while (buffer.get(indices[i] * stride + axis) < pivot)
+					i += 1;
+				while (buffer.get(indices[j] * stride + axis) > pivot)
+					j -= 1;
+				if (i <= j) {
+					final var tmp = indices[i];
+					indices[i++] = indices[j];
+					indices[j--] = tmp;
+				}
+			}
+			if (k <= j)
+				hi = j + 1;
+			else if (k >= i)
+				lo = i;
+			else
+				break;
+		}
+	}
+
+	private static double distanceSqrToBox(double x, double y, double z,
+			double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		final var dx = Math.max(0, Math.max(minX - x, x - maxX));
+		final var dy = Math.max(0, Math.max(minY - y, y - maxY));
+		final var dz = Math.max(0, Math.max(minZ - z, z - maxZ));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private double distanceSqr(int slot, double x, double y, double z) {
+		final var dx = this.positions[3 * slot + 0] - x;
+		final var dy = this.positions[3 * slot + 1] - y;
+		final var dz = this.positions[3 * slot + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * The squared distance from {@code pos} to the closest point on the bounds of
+	 * this index. Zero if {@code pos} is inside the bounds.
+	 */
+	public double distanceSqrToBounds(Vec3Access pos) {
+		return distanceSqrToBox(
+				pos.x() - this.origin.x, pos.y() - this.origin.y, pos.z() - this.origin.z,
+				this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ);
+	}
+
+	// =============== radius queries ===============
+
+	/**
+	 * Visits every element within {@code radius} of {@code center}, in no
+	 * particular order.
+	 */
+	public void visitWithinRadius(Vec3Access center, double radius, Visitor visitor) {
+		if (this.size == 0)
+			return;
+		final var x = center.x() - this.origin.x;
+		final var y = center.y() - this.origin.y;
+		final var z = center.z() - this.origin.z;
+		visitWithinRadius(0, this.size, x, y, z, radius * radius, visitor,
+				this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ);
+	}
+
+	/**
+	 * Pushes the index of every element within {@code radius} of {@code center}
+	 * into {@code out}, in no particular order.
+	 */
+	public void collectWithinRadius(VectorInt out, Vec3Access center, double radius) {
+		visitWithinRadius(center, radius, (elementIndex, distanceSqr) -> out.push(elementIndex));
+	}
+
+	private void visitWithinRadius(int lo, int hi, double x, double y, double z, double radiusSqr, Visitor visitor,
+			double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		if (distanceSqrToBox(x, y, z, minX, minY, minZ, maxX, maxY, maxZ) > radiusSqr)
+			return;
+
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; ++i) {
+				final var distanceSqr = distanceSqr(i, x, y, z);
+				if (distanceSqr <= radiusSqr)
+					visitor.accept(this.elementIndices[i], distanceSqr);
+			}
+			return;
+		}
+
+		final var mid = (lo + hi) >>> 1;
+		final var distanceSqr = distanceSqr(mid, x, y, z);
+		if (distanceSqr <= radiusSqr)
+			visitor.accept(this.elementIndices[mid], distanceSqr);
+
+		final var split = this.positions[3 * mid + this.splitAxes[mid]];
+		// @formatter:off
+		switch (this.splitAxes[mid]) {
+			case 0 -> {
+				visitWithinRadius(lo, mid, x, y, z, radiusSqr, visitor, minX, minY, minZ, split, maxY, maxZ);
+				visitWithinRadius(mid + 1, hi, x, y, z, radiusSqr, visitor, split, minY, minZ, maxX, maxY, maxZ);
+			}
+			case 1 -> {
+				visitWithinRadius(lo, mid, x, y, z, radiusSqr, visitor, minX, minY, minZ, maxX, split, maxZ);
+				visitWithinRadius(mid + 1, hi, x, y, z, radiusSqr, visitor, minX, split, minZ, maxX, maxY, maxZ);
+			}
+			default -> {
+				visitWithinRadius(lo, mid, x, y, z, radiusSqr, visitor, minX, minY, minZ, maxX, maxY, split);
+				visitWithinRadius(mid + 1, hi, x, y, z, radiusSqr, visitor, minX, minY, split, maxX, maxY, maxZ);
+			}
+		}
+		// @formatter:on
+	}
+
+	// =============== nearest neighbor queries ===============
+
+	/**
+	 * Offers every element of this index that might be one of the nearest
+	 * elements to {@code center} to {@code out}. Elements that are farther away
+	 * than the farthest element {@code out} would currently accept are skipped
+	 * without being looked at.
+	 *
+	 * @param sector The sector that this index belongs to, which is recorded
+	 *               alongside each accepted element.
+	 * @param filter Only elements whose index passes this filter are offered.
+	 */
+	public void findNearest(NearestElements out, GalaxySector sector, Vec3Access center,
+			@Nullable IntPredicate filter) {
+		if (this.size == 0)
+			return;
+		final var x = center.x() - this.origin.x;
+		final var y = center.y() - this.origin.y;
+		final var z = center.z() - this.origin.z;
+		findNearest(0, this.size, x, y, z, out, sector, filter,
+				this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ);
+	}
+
+	private void offer(int slot, double x, double y, double z, NearestElements out, GalaxySector sector,
+			@Nullable IntPredicate filter) {
+		final var distanceSqr = distanceSqr(slot, x, y, z);
+		if (distanceSqr >= out.worstDistanceSqr())
+			return;
+		final var elementIndex = this.elementIndices[slot];
+		if (filter == null || filter.test(elementIndex))
+			out.offer(sector, elementIndex, distanceSqr);
+	}
+
+	private void findNearest(int lo, int hi, double x, double y, double z,
+			NearestElements out, GalaxySector sector, @Nullable IntPredicate filter,
+			double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		if (distanceSqrToBox(x, y, z, minX, minY, minZ, maxX, maxY, maxZ) >= out.worstDistanceSqr())
+			return;
+
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; ++i)
+				offer(i, x, y, z, out, sector, filter);
+			return;
+		}
+
+		final var mid = (lo + hi) >>> 1;
+		offer(mid, x, y, z, out, sector, filter);
+
+		// descend into the side of the split that contains the query point first, so
+		// that the other side is more likely to be pruned.
+		final var axis = this.splitAxes[mid];
+		final var split = this.positions[3 * mid + axis];
+		final var nearLow = (axis == 0 ? x : axis == 1 ? y : z) < split;
+		for (int side = 0; side < 2; ++side) {
+			final var low = nearLow == (side == 0);
+			final int childLo = low ? lo : mid + 1, childHi = low ? mid : hi;
+			// @formatter:off
+			switch (axis) {
+				case 0 -> findNearest(childLo, childHi, x, y, z, out, sector, filter,
+						low ? minX : split, minY, minZ, low ? split : maxX, maxY, maxZ);
+				case 1 -> findNearest(childLo, childHi, x, y, z, out, sector, filter,
+						minX, low ? minY : split, minZ, maxX, low ? split : maxY, maxZ);
+				default -> findNearest(childLo, childHi, x, y, z, out, sector, filter,
+						minX, minY, low ? minZ : split, maxX, maxY, low ? split : maxZ);
+			}
+			// @formatter:on
+		}
+	}
+
+	// =============== cone queries ===============
+
+	/**
+	 * Visits every element inside of {@code cone}, in no particular order.
+	 */
+	public void visitInCone(Cone cone, Visitor visitor) {
+		if (this.size == 0)
+			return;
+		final var local = cone.relativeTo(this.origin);
+		visitInCone(0, this.size, local, visitor,
+				this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ);
+	}
+
+	/**
+	 * A cone with a finite length, for finding elements that are close to a ray,
+	 * as seen from the start of the ray.
+	 */
+	public static final class Cone {
+		public final double x, y, z;
+		public final double dx, dy, dz;
+		public final double halfAngle, maxDistance;
+		private final double cos, sin, tanSqr, maxDistanceSqr;
+
+		/**
+		 * @param apex        The tip of the cone.
+		 * @param direction   The direction that the cone opens towards. Must be
+		 *                    normalized.
+		 * @param halfAngle   (rad) The angle between the axis of the cone and its
+		 *                    sides. Must be less than pi/2.
+		 * @param maxDistance Elements farther away from {@code apex} than this are
+		 *                    not inside of the cone.
+		 */
+		public Cone(Vec3Access apex, Vec3Access direction, double halfAngle, double maxDistance) {
+			this(apex.x(), apex.y(), apex.z(), direction.x(), direction.y(), direction.z(), halfAngle, maxDistance);
+		}
+
+		private Cone(double x, double y, double z, double dx, double dy, double dz,
+				double halfAngle, double maxDistance) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.dx = dx;
+			this.dy = dy;
+			this.dz = dz;
+			this.halfAngle = halfAngle;
+			this.maxDistance = maxDistance;
+			this.cos = Math.cos(halfAngle);
+			this.sin = Math.sin(halfAngle);
+			final var tan = Math.tan(halfAngle);
+			this.tanSqr = tan * tan;
+			this.maxDistanceSqr = maxDistance * maxDistance;
+		}
+
+		private Cone relativeTo(Vec3 origin) {
+			return new Cone(this.x - origin.x, this.y - origin.y, this.z - origin.z,
+					this.dx, this.dy, this.dz, this.halfAngle, this.maxDistance);
+		}
+
+		/**
+		 * Whether this cone might overlap an axis-aligned box. This only looks at the
+		 * bounding sphere of the box, so it may return {@code true} for boxes that
+		 * are near the cone but do not touch it.
+		 */
+		public boolean mayIntersectBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+			final double hx = 0.5 * (maxX - minX), hy = 0.5 * (maxY - minY), hz = 0.5 * (maxZ - minZ);
+			final var radius = Math.sqrt(hx * hx + hy * hy + hz * hz);
+			return mayIntersectSphere(minX + hx, minY + hy, minZ + hz, radius);
+		}
+
+		// points behind the apex are considered to be closer to the sides of the cone
+		// than they really are, which is fine, since this only needs to be
+		// conservative.
+		private boolean mayIntersectSphere(double cx, double cy, double cz, double radius) {
+			final double vx = cx - this.x, vy = cy - this.y, vz = cz - this.z;
+			final var distanceSqr = vx * vx + vy * vy + vz * vz;
+			if (Math.sqrt(distanceSqr) - radius > this.maxDistance)
+				return false;
+			final var along = vx * this.dx + vy * this.dy + vz * this.dz;
+			final var perpendicular = Math.sqrt(Math.max(0, distanceSqr - along * along));
+			return perpendicular * this.cos - along * this.sin <= radius;
+		}
+
+		/**
+		 * @return The squared distance from the apex to the given point if it is
+		 *         inside of this cone, or {@code NaN} if it is not.
+		 */
+		public double containsPoint(double px, double py, double pz) {
+			final double vx = px - this.x, vy = py - this.y, vz = pz - this.z;
+			final var distanceSqr = vx * vx + vy * vy + vz * vz;
+			if (distanceSqr > this.maxDistanceSqr)
+				return Double.NaN;
+			final var along = vx * this.dx + vy * this.dy + vz * this.dz;
+			if (along <= 0 || distanceSqr - along * along > along * along * this.tanSqr)
+				return Double.NaN;
+			return distanceSqr;
+		}
+	}
+
+	private void visitInCone(int lo, int hi, Cone cone, Visitor visitor,
+			double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		if (!cone.mayIntersectBox(minX, minY, minZ, maxX, maxY, maxZ))
+			return;
+
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; ++i)
+				visitIfInCone(i, cone, visitor);
+			return;
+		}
+
+		final var mid = (lo + hi) >>> 1;
+		visitIfInCone(mid, cone, visitor);
+
+		final var split = this.positions[3 * mid + this.splitAxes[mid]];
+		// @formatter:off
+		switch (this.splitAxes[mid]) {
+			case 0 -> {
+				visitInCone(lo, mid, cone, visitor, minX, minY, minZ, split, maxY, maxZ);
+				visitInCone(mid + 1, hi, cone, visitor, split, minY, minZ, maxX, maxY, maxZ);
+			}
+			case 1 -> {
+				visitInCone(lo, mid, cone, visitor, minX, minY, minZ, maxX, split, maxZ);
+				visitInCone(mid + 1, hi, cone, visitor, minX, split, minZ, maxX, maxY, maxZ);
+			}
+			default -> {
+				visitInCone(lo, mid, cone, visitor, minX, minY, minZ, maxX, maxY, split);
+				visitInCone(mid + 1, hi, cone, visitor, minX, minY, split, maxX, maxY, maxZ);
+			}
+		}
+		// @formatter:on
+	}
+
+	/**
+	 * Offers the elements inside of {@code cone} that are nearest to its apex to
+	 * {@code out}. Nodes are visited nearest first, and nodes that are farther
+	 * from the apex than the farthest element {@code out} would currently accept
+	 * are skipped.
+	 *
+	 * @param sector The sector that this index belongs to, which is recorded
+	 *               alongside each accepted element.
+	 * @param center Only elements within {@code radius} of this point are
+	 *               considered.
+	 * @param radius May be {@link Double#POSITIVE_INFINITY} to consider every
+	 *               element in the cone.
+	 */
+	public void findNearestInCone(NearestElements out, GalaxySector sector, Cone cone,
+			Vec3Access center, double radius) {
+		if (this.size == 0)
+			return;
+		final var local = cone.relativeTo(this.origin);
+		final var cx = center.x() - this.origin.x;
+		final var cy = center.y() - this.origin.y;
+		final var cz = center.z() - this.origin.z;
+		findNearestInCone(0, this.size, local, cx, cy, cz, radius * radius, out, sector,
+				this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ);
+	}
+
+	private void findNearestInCone(int lo, int hi, Cone cone, double cx, double cy, double cz, double radiusSqr,
+			NearestElements out, GalaxySector sector,
+			double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		if (distanceSqrToBox(cone.x, cone.y, cone.z, minX, minY, minZ, maxX, maxY, maxZ) >= out.worstDistanceSqr())
+			return;
+		if (distanceSqrToBox(cx, cy, cz, minX, minY, minZ, maxX, maxY, maxZ) > radiusSqr)
+			return;
+		if (!cone.mayIntersectBox(minX, minY, minZ, maxX, maxY, maxZ))
+			return;
+
+		if (hi - lo <= LEAF_SIZE) {
+			for (int i = lo; i < hi; ++i)
+				offerIfInCone(i, cone, cx, cy, cz, radiusSqr, out, sector);
+			return;
+		}
+
+		final var mid = (lo + hi) >>> 1;
+		offerIfInCone(mid, cone, cx, cy, cz, radiusSqr, out, sector);
+
+		final var axis = this.splitAxes[mid];
+		final var split = this.positions[3 * mid + axis];
+		final var nearLow = (axis == 0 ? cone.x : axis == 1 ? cone.y : cone.z) < split;
+		for (int side = 0; side < 2; ++side) {
+			final var low = nearLow == (side == 0);
+			final int childLo = low ? lo : mid + 1, childHi = low ? mid : hi;
+			// @formatter:off
+			switch (axis) {
+				case 0 -> findNearestInCone(childLo, childHi, cone, cx, cy, cz, radiusSqr, out, sector,
+						low ? minX : split, minY, minZ, low ? split : maxX, maxY, maxZ);
+				case 1 -> findNearestInCone(childLo, childHi, cone, cx, cy, cz, radiusSqr, out, sector,
+						minX, low ? minY : split, minZ, maxX, low ? split : maxY, maxZ);
+				default -> findNearestInCone(childLo, childHi, cone, cx, cy, cz, radiusSqr, out, sector,
+						minX, minY, low ? minZ : split, maxX, maxY, low ? split : maxZ);
+			}
+			// @formatter:on
+		}
+	}
+
+	private void offerIfInCone(int slot, Cone cone, double cx, double cy, double cz, double radiusSqr,
+			NearestElements out, GalaxySector sector) {
+		if (distanceSqr(slot, cx, cy, cz) > radiusSqr)
+			return;
+		final var distanceSqr = cone.containsPoint(
+				this.positions[3 * slot + 0], this.positions[3 * slot + 1], this.positions[3 * slot + 2]);
+		if (!Double.isNaN(distanceSqr))
+			out.offer(sector, this.elementIndices[slot], distanceSqr);
+	}
+
+	private void visitIfInCone(int slot, Cone cone, Visitor visitor) {
+		final var distanceSqr = cone.containsPoint(
+				this.positions[3 * slot + 0], this.positions[3 * slot + 1], this.positions[3 * slot + 2]);
+		if (!Double.isNaN(distanceSqr))
+			visitor.accept(this.elementIndices[slot], distanceSqr);
+	}
+
+}
@@ -0,0 +1,338 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.xavil.hawklib.Disposable;
+import net.xavil.hawklib.collections.impl.LongHashMap;
+import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.hawklib.collections.interfaces.MutableMap;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.ultraviolet.Mod;
+import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
+import net.xavil.ultraviolet.common.universe.universe.GalaxyTicket;
+import net.xavil.ultraviolet.common.universe.universe.ServerUniverse;
+import net.xavil.ultraviolet.networking.c2s.ServerboundSectorElementRequestPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorElementsPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorStreamUnavailablePacket;
+
+/**
+ * Streams generated sector elements to clients that asked for them (see
+ * {@link RemoteSectorElements}), so that they don't have to generate every
+ * sector themselves.
+ * <p>
+ * Sectors are produced by {@link Galaxy#generateSectorElements(SectorPos)} on
+ * the generation threads, which means that each sector is usually generated
+ * once per server and read from the sector cache after that. Each player gets a
+ * fixed amount of bytes per tick, which is spent on the finished sectors that
+ * are closest to the point that they're looking at.
+ * </p>
+ */
+public final class SectorElementStreamer implements Disposable {
+
+	public static final boolean DISABLE_SECTOR_STREAMING = Boolean
+			.valueOf(System.getProperty("net.xavil.ultraviolet.disable_sector_streaming"));
+	public static final int BYTES_PER_TICK = Integer.getInteger(
+			"net.xavil.ultraviolet.sector_stream_bytes_per_tick", 128 * 1024);
+	public static final int MAX_PENDING_REQUESTS = Integer.getInteger(
+			"net.xavil.ultraviolet.sector_stream_max_pending", 4096);
+
+	// unused allowance is carried over into the next few ticks, but not forever, so
+	// that a player who was idle for a while can't cause a huge burst.
+	private static final int MAX_ALLOWANCE_TICKS = 4;
+	// the largest sector payload that a client will decompress. Real sectors are
+	// nowhere near this.
+	private static final int MAX_UNCOMPRESSED_BYTES = 64 * 1024 * 1024;
+	// the least amount of ticks between a player's stream being replaced by one for
+	// a different galaxy. Clients only switch galaxies when the player does, so
+	// anything faster than this is refused rather than tearing the stream down again.
+	private static final int MIN_TICKS_BETWEEN_STREAMS = 20;
+
+	private record Payload(int uncompressedSize, @Nullable byte[] data) {
+		// tells the client to generate the sector itself
+		static final Payload UNAVAILABLE = new Payload(0, null);
+	}
+
+	private static final class Request {
+		public final SectorPos pos;
+		public final CompletableFuture<Payload> future;
+		public double priority;
+
+		public Request(SectorPos pos, CompletableFuture<Payload> future) {
+			this.pos = pos;
+			this.future = future;
+		}
+	}
+
+	private final class Stream {
+		public final ServerPlayer player;
+		public final UniverseSectorId galaxyId;
+		public final Galaxy galaxy;
+		// keeps the galaxy loaded for as long as we're streaming it. Only ever created
+		// for galaxies that are already loaded, so this never causes any generation.
+		public final GalaxyTicket galaxyTicket;
+		public final long createdTick;
+		public Vec3 focusPos = Vec3.ZERO;
+		public long allowanceBytes = 0;
+		// keyed by packed sector position
+		public final LongHashMap<Request> requests = new LongHashMap<>();
+
+		public Stream(ServerPlayer player, Galaxy galaxy) {
+			this.player = player;
+			this.galaxyId = galaxy.galaxyId;
+			this.galaxy = galaxy;
+			this.galaxyTicket = universe.sectorManager.createGalaxyTicketManual(galaxy.galaxyId);
+			this.createdTick = currentTick;
+		}
+
+		public void close() {
+			this.requests.forEachValue(request -> request.future.cancel(false));
+			this.requests.clear();
+			this.galaxyTicket.close();
+		}
+	}
+
+	private final ServerUniverse universe;
+	private final MutableMap<UUID, Stream> streams = MutableMap.hashMap();
+	private long sentSectorCount = 0, sentBytes = 0, refusedCount = 0;
+	private long currentTick = 0;
+
+	public SectorElementStreamer(ServerUniverse universe) {
+		this.universe = universe;
+	}
+
+	@Override
+	public void close() {
+		this.streams.values().forEach(Stream::close);
+		this.streams.clear();
+	}
+
+	public void handleRequest(ServerPlayer player, ServerboundSectorElementRequestPacket packet) {
+		if (packet.galaxyId == null || packet.requested == null || packet.cancelled == null)
+			return;
+
+		// packets from a remote client can't be this large, since they would have
+		// failed to decode, but ones from the integrated server's client are never
+		// encoded at all.
+		if (packet.requested.length > ServerboundSectorElementRequestPacket.MAX_KEYS
+				|| packet.cancelled.length > ServerboundSectorElementRequestPacket.MAX_KEYS) {
+			Mod.LOGGER.warn("refusing oversized sector request from {} ({} requested, {} cancelled)",
+					player.getGameProfile().getName(), packet.requested.length, packet.cancelled.length);
+			refuseStream(player, packet.galaxyId, packet.requested.length);
+			return;
+		}
+
+		// the client will generate every sector we refuse to send by itself.
+		final var stream = DISABLE_SECTOR_STREAMING ? null : getOrCreateStream(player, packet.galaxyId);
+		if (stream == null || stream.galaxy.generationFingerprint() != packet.generationFingerprint) {
+			refuseStream(player, packet.galaxyId, packet.requested.length);
+			return;
+		}
+
+		if (packet.focusPos != null)
+			stream.focusPos = packet.focusPos;
+		for (final var key : packet.cancelled) {
+			final var request = stream.requests.remove(key);
+			if (request != null)
+				request.future.cancel(false);
+		}
+		for (final var key : packet.requested) {
+			if (stream.requests.containsKey(key))
+				continue;
+			if (stream.requests.size() >= MAX_PENDING_REQUESTS) {
+				sendUnavailable(player, packet.galaxyId, key);
+				continue;
+			}
+			final var pos = SectorPos.unpack(key);
+			stream.requests.insert(key, new Request(pos, submit(stream.galaxy, pos, stream.focusPos)));
+		}
+	}
+
+	/**
+	 * @return The player's stream for {@code galaxyId}, or null if the galaxy is
+	 *         not loaded here, or if the player's stream was replaced too recently
+	 *         to be replaced again.
+	 */
+	@Nullable
+	private Stream getOrCreateStream(ServerPlayer player, UniverseSectorId galaxyId) {
+		final var uuid = player.getUUID();
+		final var existing = this.streams.get(uuid).unwrapOrNull();
+		if (existing != null) {
+			if (existing.galaxyId.equals(galaxyId))
+				return existing;
+			if (this.currentTick - existing.createdTick < MIN_TICKS_BETWEEN_STREAMS)
+				return null;
+		}
+
+		// requests come straight from the client, so we must not generate galaxies on
+		// their behalf. Any galaxy that a player is actually in is loaded already.
+		final var galaxy = this.universe.sectorManager.getGalaxy(galaxyId).unwrapOrNull();
+		if (galaxy == null)
+			return null;
+
+		if (existing != null)
+			existing.close();
+		final var stream = new Stream(player, galaxy);
+		this.streams.insert(uuid, stream);
+		return stream;
+	}
+
+	private CompletableFuture<Payload> submit(Galaxy galaxy, SectorPos pos, Vec3 focusPos) {
+		final var priority = SectorManager.generationPriority(pos, focusPos);
+		// this goes through the sector cache rather than reading elements of sectors
+		// that are loaded here, since those may be evicted while we're encoding them.
+		return GenerationScheduler.get().submit(priority, () -> {
+			final var elements = galaxy.generateSectorElements(pos);
+			try {
+				return encode(elements);
+			} finally {
+				elements.release();
+			}
+		}).future;
+	}
+
+	// tells the client to stop asking for sectors of this galaxy, and to generate all
+	// of them by itself, which is a single packet no matter how much it asked for.
+	private void refuseStream(ServerPlayer player, UniverseSectorId galaxyId, int requestedCount) {
+		this.refusedCount += requestedCount;
+		player.connection.send(new ClientboundSectorStreamUnavailablePacket(galaxyId));
+	}
+
+	private void sendUnavailable(ServerPlayer player, UniverseSectorId galaxyId, long key) {
+		this.refusedCount += 1;
+		player.connection.send(new ClientboundSectorElementsPacket(galaxyId, key, 0, null));
+	}
+
+	public void tick(ProfilerFiller profiler) {
+		this.currentTick += 1;
+		if (this.streams.isEmpty())
+			return;
+		profiler.push("sector_streaming");
+		this.streams.retain((uuid, stream) -> {
+			if (stream.player.hasDisconnected()) {
+				stream.close();
+				return false;
+			}
+			tickStream(stream);
+			return true;
+		});
+		profiler.pop();
+	}
+
+	private void tickStream(Stream stream) {
+		stream.allowanceBytes = Math.min(stream.allowanceBytes + BYTES_PER_TICK,
+				(long) MAX_ALLOWANCE_TICKS * BYTES_PER_TICK);
+		if (stream.allowanceBytes <= 0)
+			return;
+
+		final var ready = new Vector<Request>();
+		stream.requests.forEachValue(request -> {
+			if (request.future.isDone()) {
+				request.priority = SectorManager.generationPriority(request.pos, stream.focusPos);
+				ready.push(request);
+			}
+		});
+		ready.sort(Comparator.comparingDouble(request -> request.priority));
+
+		// the last sector sent in a tick may overdraw the allowance, so that sectors
+		// larger than a single tick's allowance still get sent eventually.
+		for (final var request : ready.iterable()) {
+			if (stream.allowanceBytes <= 0)
+				break;
+			final var key = request.pos.packed();
+			stream.requests.remove(key);
+
+			Payload payload;
+			try {
+				payload = request.future.join();
+			} catch (Throwable t) {
+				Mod.LOGGER.error("failed to prepare sector {} for streaming", request.pos);
+				t.printStackTrace();
+				payload = Payload.UNAVAILABLE;
+			}
+
+			if (payload.data == null) {
+				sendUnavailable(stream.player, stream.galaxyId, key);
+				continue;
+			}
+			stream.player.connection.send(new ClientboundSectorElementsPacket(stream.galaxyId, key,
+					payload.uncompressedSize, payload.data));
+			stream.allowanceBytes -= payload.data.length;
+			this.sentSectorCount += 1;
+			this.sentBytes += payload.data.length;
+		}
+	}
+
+	public String debugSummary() {
+		return String.format("%d streams, %d sectors sent (%d bytes), %d refused",
+				this.streams.size(), this.sentSectorCount, this.sentBytes, this.refusedCount);
+	}
+
+	// =============== encoding ===============
+
+	private static Payload encode(GalaxySector.PackedElements elements) {
+		// names are not part of the serialized format.
+		if (elements.hasNames())
+			return Payload.UNAVAILABLE;
+
+		final var raw = ByteBuffer.allocate(elements.serializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+		elements.writeTo(raw);
+		raw.flip();
+
+		final var deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(raw);
+			deflater.finish();
+			var out = new byte[Math.max(64, raw.limit() / 2)];
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == out.length)
+					out = Arrays.copyOf(out, 2 * out.length);
+				length += deflater.deflate(out, length, out.length - length);
+			}
+			return new Payload(raw.limit(), Arrays.copyOf(out, length));
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Reads elements that were sent in a {@link ClientboundSectorElementsPacket}.
+	 *
+	 * @return The decoded elements, or {@code null} if the data was malformed.
+	 */
+	@Nullable
+	public static GalaxySector.PackedElements decode(SectorPos pos, int uncompressedSize, byte[] data) {
+		if (uncompressedSize < 0 || uncompressedSize > MAX_UNCOMPRESSED_BYTES)
+			return null;
+		final var raw = ByteBuffer.allocate(uncompressedSize).order(ByteOrder.LITTLE_ENDIAN);
+		final var inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			while (raw.hasRemaining() && !inflater.finished()) {
+				if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					return null;
+			}
+			if (!inflater.finished() || raw.hasRemaining())
+				return null;
+		} catch (DataFormatException ex) {
+			return null;
+		} finally {
+			inflater.end();
+		}
+		raw.flip();
+		return GalaxySector.PackedElements.readFrom(pos.minBound(), raw);
+	}
+
+}
@@ -1,9 +1,12 @@
 package net.xavil.ultraviolet.common.universe.galaxy;
 
+import java.util.Comparator;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.util.profiling.InactiveProfiler;
 import net.minecraft.util.profiling.ProfilerFiller;
 import net.xavil.hawklib.Assert;
@@ -12,15 +15,50 @@ import net.xavil.hawklib.Maybe;
 import net.xavil.ultraviolet.Mod;
 import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
 import net.xavil.ultraviolet.common.universe.system.StarSystem;
+import net.xavil.ultraviolet.common.universe.system.StarSystemSummary;
+import net.xavil.hawklib.collections.impl.LongHashMap;
+import net.xavil.hawklib.collections.impl.LongHashSet;
 import net.xavil.hawklib.collections.impl.Vector;
 import net.xavil.hawklib.collections.interfaces.MutableList;
-import net.xavil.hawklib.collections.interfaces.MutableMap;
 import net.xavil.hawklib.collections.interfaces.MutableSet;
 import net.xavil.hawklib.math.matrices.Vec3;
 import net.xavil.hawklib.math.matrices.Vec3i;
+import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
 
 public final class SectorManager {
 
+	/**
+	 * Somewhere other than the local generator that sector elements can be
+	 * fetched from, like a server that streams the sectors it has already
+	 * generated to its clients. All methods are called from the thread that owns
+	 * the {@link SectorManager}.
+	 */
+	public interface ElementSource {
+		/**
+		 * Starts fetching the elements of the sector at {@code pos}. The returned
+		 * future must eventually be completed, either with the fetched elements, or
+		 * by falling back to generating them locally.
+		 * 
+		 * @param priority The local generation priority of the sector, where lower
+		 *                 values are more important.
+		 */
+		CompletableFuture<GalaxySector.PackedElements> request(SectorPos pos, double priority);
+
+		/**
+		 * Called when a requested sector is no longer needed, or when it was generated
+		 * locally in the meantime.
+		 */
+		void cancel(long packedPos);
+
+		/**
+		 * Called once per tick, after new requests have been made.
+		 * 
+		 * @param focusPos The point that sectors should be fetched around, or null if
+		 *                 there is no such point.
+		 */
+		void tick(@Nullable Vec3 focusPos);
+	}
+
 	public final class SectorTicketTracker {
 		/**
 		 * This specific ticket instance is shared with the outside world, which can
@@ -33,17 +71,17 @@ public final class SectorManager {
 		 */
 		private SectorTicketInfo currentInfo = null;
 		/**
-		 * The current set of sectors covered by currentInfo
+		 * The current set of sectors covered by currentInfo, in their packed form.
 		 */
-		private MutableSet<SectorPos> currentSectors = MutableSet.hashSet();
+		private LongHashSet currentSectors = new LongHashSet();
 		// scratch space
-		private MutableSet<SectorPos> newSectors = MutableSet.hashSet();
+		private LongHashSet newSectors = new LongHashSet();
 
 		public SectorTicketTracker(SectorTicket<?> loanedTicket) {
 			this.loanedTicket = loanedTicket;
 		}
 
-		public void update(MutableSet<SectorPos> toLoad, MutableSet<SectorPos> toUnload) {
+		public void update(LongHashSet toLoad, LongHashSet toUnload) {
 			final var cur = this.currentInfo;
 			final var next = this.loanedTicket.info;
 			if (Objects.equals(cur, next))
@@ -53,13 +91,31 @@ public final class SectorManager {
 
 			if (cur == null && next != null) {
 				// empty -> full
-				this.loanedTicket.info.enumerateAllAffectedSectors(toLoad::insert);
+				next.enumerateAllAffectedSectors(sector -> {
+					final var key = sector.packed();
+					this.currentSectors.insert(key);
+					toLoad.insert(key);
+				});
 			} else if (cur != null && next == null) {
 				// full -> empty
-				this.loanedTicket.info.enumerateAllAffectedSectors(toUnload::insert);
+				release(toUnload);
+			} else if (cur instanceof SectorTicketInfo.Multi prevMulti
+					&& next instanceof SectorTicketInfo.Multi nextMulti
+					&& SectorTicketInfo.Multi.canDiffIncrementally(prevMulti, nextMulti)) {
+				// full -> full, but we only need to look at the sectors that actually changed.
+				// Going through `currentSectors` here keeps us consistent with what we
+				// actually loaded, even if the diff disagrees with it due to rounding at a
+				// sector boundary.
+				SectorTicketInfo.Multi.diffIncrementally(prevMulti, nextMulti, sector -> {
+					if (this.currentSectors.insert(sector))
+						toLoad.insert(sector);
+				}, sector -> {
+					if (this.currentSectors.remove(sector))
+						toUnload.insert(sector);
+				});
 			} else {
 				// full -> full
-				this.loanedTicket.info.enumerateAllAffectedSectors(this.newSectors::insert);
+				this.loanedTicket.info.enumerateAllAffectedSectors(sector -> this.newSectors.insert(sector.packed()));
 
 				// find differences between previously-loaded sectors and newly-loaded sectors
 				this.currentSectors.forEach(sector -> {
@@ -79,6 +135,14 @@ public final class SectorManager {
 			}
 			this.currentInfo = next != null ? next.clone() : null;
 		}
+
+		/**
+		 * Marks every sector this ticket is currently keeping loaded for unloading.
+		 */
+		public void release(LongHashSet toUnload) {
+			this.currentSectors.forEach(toUnload::insert);
+			this.currentSectors.clear();
+		}
 	}
 
 	public final class SystemTicketTracker {
@@ -89,7 +153,7 @@ public final class SectorManager {
 			this.loanedTicket = loanedTicket;
 		}
 
-		public void update(MutableSet<SectorPos> sectorsToLoad, MutableSet<SectorPos> sectorsToUnload,
+		public void update(LongHashSet sectorsToLoad, LongHashSet sectorsToUnload,
 				MutableSet<GalaxySectorId> toLoad, MutableSet<GalaxySectorId> toUnload) {
 			final var cur = this.currentId;
 			final var next = this.loanedTicket.id;
@@ -100,16 +164,16 @@ public final class SectorManager {
 			if (cur != null && next != null) {
 				toLoad.insert(next);
 				toUnload.insert(cur);
-				if (!Objects.equals(cur.sectorPos(), next.sectorPos())) {
-					sectorsToLoad.insert(next.sectorPos());
-					sectorsToUnload.insert(cur.sectorPos());
+				if (cur.sectorKey() != next.sectorKey()) {
+					sectorsToLoad.insert(next.sectorKey());
+					sectorsToUnload.insert(cur.sectorKey());
 				}
 			} else if (cur == null && next != null) {
 				toLoad.insert(next);
-				sectorsToLoad.insert(next.sectorPos());
+				sectorsToLoad.insert(next.sectorKey());
 			} else if (cur != null && next == null) {
 				toUnload.insert(cur);
-				sectorsToUnload.insert(cur.sectorPos());
+				sectorsToUnload.insert(cur.sectorKey());
 			}
 
 			this.currentId = next;
@@ -123,59 +187,140 @@ public final class SectorManager {
 		public final GalaxySector sector;
 
 		public final class SectorFutures {
+			public final GalaxySector sector;
+			// null if the elements are being fetched from `source` instead of being
+			// generated locally.
+			@Nullable
+			public final GenerationScheduler.Task<GalaxySector.PackedElements> elementTask;
+			@Nullable
+			public final ElementSource source;
 			public final CompletableFuture<GalaxySector.PackedElements> elementFuture;
 			public final CompletableFuture<GalaxySector> sectorFuture;
 
 			public SectorFutures(Galaxy galaxy, GalaxySector sector) {
-				this.elementFuture = new CompletableFuture<>();
-				this.elementFuture.completeAsync(() -> galaxy.generateSectorElements(sector.pos()));
+				this.sector = sector;
+				final var pos = sector.pos();
+				this.source = remoteElementSource;
+				if (this.source != null) {
+					this.elementTask = null;
+					this.elementFuture = this.source.request(pos, generationPriority(pos));
+				} else {
+					final var sharedMaskField = sharedMaskField();
+					this.elementTask = GenerationScheduler.get().submit(generationPriority(pos),
+							() -> galaxy.generateSectorElements(pos, sharedMaskField));
+					this.elementFuture = this.elementTask.future;
+				}
 				this.sectorFuture = new CompletableFuture<>();
 			}
+
+			public GalaxySector.PackedElements join() {
+				// if the generation thread hasnt gotten around to this sector yet, then we
+				// might as well do the work ourselves instead of waiting around.
+				if (this.elementTask != null) {
+					this.elementTask.runInline();
+				} else if (!this.elementFuture.isDone()) {
+					// the elements might be arriving through packets that are handled on this
+					// very thread, so waiting for them here could block forever.
+					final var pos = this.sector.pos();
+					final var elements = galaxy.generateSectorElements(pos, sharedMaskField());
+					// the source may have completed the future from another thread while we
+					// were generating, in which case ours are not needed.
+					if (!this.elementFuture.complete(elements))
+						elements.release();
+					this.source.cancel(pos.packed());
+				}
+				return this.elementFuture.join();
+			}
 		}
 
-		public final MutableMap<SectorPos, SectorFutures> sectorFutures = MutableMap
-				.hashMap();
+		// keyed by packed sector position
+		public final LongHashMap<SectorFutures> sectorFutures = new LongHashMap<>();
+		// packed positions of loaded sectors whose elements were evicted, and which
+		// have not been regenerated yet.
+		public final LongHashSet evictedSectors = new LongHashSet();
+		// shared by every sector in this slot that is generated while any other sector
+		// in this slot is still generating, which is the common case when a ticket
+		// first loads an area. Dropped once there is nothing left generating so that
+		// we're not holding on to samples forever.
+		private SharedMaskField sharedMaskField = null;
 
 		public SectorSlot(Vec3i coords) {
 			this.sector = new GalaxySector(coords);
 		}
 
-		private boolean isSectorLoaded(SectorPos pos) {
-			final var sector = this.sector.lookupNode(pos);
+		private SharedMaskField sharedMaskField() {
+			if (this.sharedMaskField == null)
+				this.sharedMaskField = new SharedMaskField(galaxy.parameters.masks);
+			return this.sharedMaskField;
+		}
+
+		private void releaseSharedMaskFieldIfIdle() {
+			if (this.sectorFutures.isEmpty())
+				this.sharedMaskField = null;
+		}
+
+		private boolean isSectorLoaded(long key) {
+			final var sector = this.sector.lookupNode(key);
 			return sector != null && sector.isLoaded();
 		}
 
-		public void load(SectorPos pos) {
-			final var isInitialLoad = !isSectorLoaded(pos);
-			this.sector.load(pos);
+		public void load(long key) {
+			final var isInitialLoad = !isSectorLoaded(key);
+			this.sector.load(key);
 			if (!isInitialLoad)
 				return;
-			final var sector = this.sector.lookupNode(pos);
+			final var sector = this.sector.lookupNode(key);
 			if (sector == null) {
-				Mod.LOGGER.error("tried to generate sector that was not marked as loaded. ({})", pos);
+				Mod.LOGGER.error("tried to generate sector that was not marked as loaded. ({})", SectorPos.unpack(key));
 				return;
 			}
 
-			final var prev = sectorFutures.insert(pos, new SectorFutures(galaxy, sector));
-			Assert.isTrue(prev.isNone());
+			final var prev = sectorFutures.insert(key, new SectorFutures(galaxy, sector));
+			Assert.isTrue(prev == null);
 		}
 
-		public boolean unload(SectorPos pos) {
-			final var futures = this.sectorFutures.remove(pos).unwrapOrNull();
-			if (futures != null)
+		/**
+		 * Starts generating the elements of a sector again if they were evicted, now
+		 * that something is looking at it.
+		 */
+		public void regenerateIfEvicted(long key) {
+			if (!this.evictedSectors.remove(key))
+				return;
+			final var prev = sectorFutures.insert(key, new SectorFutures(galaxy, this.sector.lookupNode(key)));
+			Assert.isTrue(prev == null);
+		}
+
+		public boolean unload(long key) {
+			final var futures = this.sectorFutures.remove(key);
+			if (futures != null) {
 				futures.elementFuture.cancel(false);
+				if (futures.source != null)
+					futures.source.cancel(key);
+			}
+			releaseSharedMaskFieldIfIdle();
 
-			final var sector = this.sector.lookupNode(pos);
+			final var sector = this.sector.lookupNode(key);
 			if (sector != null) {
 				try {
-					return this.sector.unload(pos);
+					final var mayUnload = this.sector.unload(key);
+					if (!sector.isLoaded()) {
+						// nothing wants this sector anymore, so let its elements stop counting
+						// against the element memory budget right away instead of waiting for
+						// the node to be collected.
+						this.evictedSectors.remove(key);
+						final var elements = sector.elements;
+						sector.elements = null;
+						if (elements != null)
+							elements.release();
+					}
+					return mayUnload;
 				} catch (GalaxySector.InvalidUnloadException ex) {
 				}
 			}
 
 			// prevent unloads of non-existent sectors from completely fucking up the
 			// reference counts of its would-be parent sectors.
-			Mod.LOGGER.error("tried to unload sector that was not marked as loaded. ({})", pos);
+			Mod.LOGGER.error("tried to unload sector that was not marked as loaded. ({})", SectorPos.unpack(key));
 			return !this.sector.isLoadedTransitively();
 		}
 	}
@@ -186,6 +331,9 @@ public final class SectorManager {
 
 		public boolean generationFailed = false;
 		public boolean isLoaded = false;
+		// the last tick on which an observing ticket referred to this system
+		public long lastObservedTick = -1;
+		public final OrbitalUpdateScheduler.Entry orbitalUpdates = new OrbitalUpdateScheduler.Entry();
 		public StarSystem system;
 		public CompletableFuture<Maybe<StarSystem>> waitingFuture = null;
 
@@ -198,16 +346,29 @@ public final class SectorManager {
 			if (this.system != null || this.waitingFuture != null || this.generationFailed)
 				return;
 
-			final var sectorPos = this.id.sectorPos();
-			final var sectorSlot = sectorMap.get(sectorPos.rootCoords()).unwrap();
+			// this system might have been unloaded recently, in which case we don't need
+			// to generate it again.
+			final var cached = systemCache.getFullSystem(this.id);
+			if (cached != null) {
+				this.system = cached;
+				this.isLoaded = true;
+				return;
+			}
+
+			final var sectorKey = this.id.sectorKey();
+			final var sectorSlot = sectorMap.getOrNull(SectorPos.rootKey(sectorKey));
+			Assert.isTrue(sectorSlot != null);
 
-			final var futures = sectorSlot.sectorFutures.getOrNull(sectorPos);
+			final var executor = GenerationScheduler.get().executor(GenerationScheduler.PRIORITY_URGENT);
+			sectorSlot.regenerateIfEvicted(sectorKey);
+			final var futures = sectorSlot.sectorFutures.getOrNull(sectorKey);
 			if (futures != null) {
-				this.waitingFuture = futures.sectorFuture.thenApplyAsync(sector -> generateSystem(sector, this.id));
+				this.waitingFuture = futures.sectorFuture.thenApplyAsync(sector -> generateSystem(sector, this.id),
+						executor);
 			} else {
-				final var sector = sectorSlot.sector.lookupNode(sectorPos);
+				final var sector = sectorSlot.sector.lookupNode(sectorKey);
 				if (sector != null && sector.isComplete()) {
-					this.waitingFuture = CompletableFuture.supplyAsync(() -> generateSystem(sector, this.id));
+					this.waitingFuture = CompletableFuture.supplyAsync(() -> generateSystem(sector, this.id), executor);
 				} else {
 					Mod.LOGGER.warn("sector generation failure caused system {} generation to fail", this.id);
 				}
@@ -219,6 +380,9 @@ public final class SectorManager {
 			if (this.referenceCount == 0) {
 				if (this.waitingFuture != null)
 					this.waitingFuture.cancel(false);
+				// keep the system around for a while in case it's loaded again soon
+				if (this.system != null)
+					systemCache.insertFullSystem(this.id, this.system);
 				return true;
 			}
 			return false;
@@ -227,21 +391,99 @@ public final class SectorManager {
 
 	public final Galaxy galaxy;
 
-	private final MutableMap<Vec3i, SectorSlot> sectorMap = MutableMap.hashMap();
+	// keyed by the packed position of each root sector (see SectorPos.rootKey())
+	private final LongHashMap<SectorSlot> sectorMap = new LongHashMap<>();
 	private final MutableList<SectorTicketTracker> trackedTickets = new Vector<>();
-	private final MutableList<SectorTicketInfo> removedTickets = new Vector<>();
-
-	private final MutableMap<GalaxySectorId, SystemSlot> systemMap = MutableMap.hashMap();
+	private final MutableList<SectorTicketTracker> removedTickets = new Vector<>();
+
+	// GalaxySectorId does not fit in a single long, so systems are looked up by the
+	// sector they're in first. There's almost never more than a few loaded systems
+	// per sector, so the per-sector lists are just scanned linearly.
+	private final LongHashMap<Vector<SystemSlot>> systemMap = new LongHashMap<>();
+	public final StarSystemCache systemCache = new StarSystemCache();
+	public final OrbitalUpdateScheduler orbitalUpdates = new OrbitalUpdateScheduler();
+	private long tickCount = 0;
 	private final MutableList<SystemTicketTracker> trackedSystemTickets = new Vector<>();
 	private final MutableList<SystemTicket> removedSystemTickets = new Vector<>();
 
 	private final MutableSet<SectorTicket<?>> allSectorTickets = MutableSet.identityHashSet();
 	private final MutableSet<SystemTicket> allSystemTickets = MutableSet.identityHashSet();
 
+	// scratch space for applyTickets(), reused between calls.
+	private final MutableSet<GalaxySectorId> systemsToLoad = MutableSet.hashSet();
+	private final MutableSet<GalaxySectorId> systemsToUnload = MutableSet.hashSet();
+	private final LongHashSet sectorsToLoad = new LongHashSet();
+	private final LongHashSet sectorsToUnload = new LongHashSet();
+
+	@Nullable
+	private ElementSource remoteElementSource = null;
+
 	public SectorManager(Galaxy galaxy) {
 		this.galaxy = galaxy;
 	}
 
+	/**
+	 * Makes sectors that are loaded from now on fetch their elements from
+	 * {@code source} instead of generating them locally, or go back to generating
+	 * them locally if {@code source} is null.
+	 */
+	public void setRemoteElementSource(@Nullable ElementSource source) {
+		this.remoteElementSource = source;
+	}
+
+	@Nullable
+	public ElementSource getRemoteElementSource() {
+		return this.remoteElementSource;
+	}
+
+	/**
+	 * Determines the order in which sectors are generated. Sectors are prioritized
+	 * by their distance to the nearest sector ticket center, measured in units of
+	 * the sector's own size and biased towards higher levels, so that coarse
+	 * sectors are generated before fine sectors at the same distance. Lower values
+	 * are generated first.
+	 */
+	private double generationPriority(SectorPos pos) {
+		double priority = Double.POSITIVE_INFINITY;
+		for (final var tracker : this.trackedTickets.iterable()) {
+			if (tracker.loanedTicket.info instanceof SectorTicketInfo.Multi multi) {
+				priority = Math.min(priority, generationPriority(pos, multi.centerPos));
+			} else {
+				// single sector tickets are typically something that is being waited on
+				// directly.
+				priority = Math.min(priority, -pos.level());
+			}
+		}
+		if (priority == Double.POSITIVE_INFINITY)
+			priority = -pos.level();
+		return priority;
+	}
+
+	/**
+	 * The generation priority of the sector at {@code pos} when there is a single
+	 * sector ticket centered at {@code focusPos}.
+	 * 
+	 * @see #generationPriority(SectorPos)
+	 */
+	public static double generationPriority(SectorPos pos, Vec3Access focusPos) {
+		final var halfWidth = 0.5 * pos.width();
+		final var min = pos.minBound();
+		final double cx = min.x + halfWidth, cy = min.y + halfWidth, cz = min.z + halfWidth;
+		final double dx = cx - focusPos.x(), dy = cy - focusPos.y(), dz = cz - focusPos.z();
+		return Math.sqrt(dx * dx + dy * dy + dz * dz) / pos.width() - pos.level();
+	}
+
+	// the center of the first multi-sector ticket, which is usually whatever the
+	// player is looking at.
+	@Nullable
+	private Vec3 focusPos() {
+		for (final var tracker : this.trackedTickets.iterable()) {
+			if (tracker.loanedTicket.info instanceof SectorTicketInfo.Multi multi)
+				return multi.centerPos;
+		}
+		return null;
+	}
+
 	public int getReferenceCount() {
 		return this.trackedTickets.size() + this.trackedSystemTickets.size();
 	}
@@ -263,11 +505,15 @@ public final class SectorManager {
 	}
 
 	public void forceLoad(ProfilerFiller profiler, SectorTicket<?> sectorTicket) {
-		sectorTicket.info.enumerateAllAffectedSectors(pos -> this.sectorMap.get(pos.rootCoords()).ifSome(slot -> {
-			final var futures = slot.sectorFutures.getOrNull(pos);
+		sectorTicket.info.enumerateAllAffectedSectors(pos -> {
+			final var slot = this.sectorMap.getOrNull(pos.rootKey());
+			if (slot == null)
+				return;
+			slot.regenerateIfEvicted(pos.packed());
+			final var futures = slot.sectorFutures.getOrNull(pos.packed());
 			if (futures != null)
-				futures.elementFuture.join();
-		}));
+				futures.join();
+		});
 		applyFinished();
 	}
 
@@ -293,18 +539,22 @@ public final class SectorManager {
 		if (systemTicket.id == null)
 			return Maybe.none();
 
-		final var systemSlot = this.systemMap.get(systemTicket.id).unwrap();
+		final var systemSlot = getSystemSlot(systemTicket.id);
+		Assert.isTrue(systemSlot != null);
 
 		// ticket's system is already loaded!
 		if (systemSlot.system != null)
 			return Maybe.some(systemSlot.system);
 
 		final var sectorPos = systemTicket.id.sectorPos();
-		final var sectorSlot = this.sectorMap.get(sectorPos.rootCoords()).unwrap();
+		final var sectorSlot = this.sectorMap.getOrNull(sectorPos.rootKey());
+		Assert.isTrue(sectorSlot != null);
 		final var sector = sectorSlot.sector.lookupNode(sectorPos);
 		if (!sector.isComplete()) {
-			final var futures = sectorSlot.sectorFutures.get(sectorPos).unwrap();
-			futures.elementFuture.join();
+			sectorSlot.regenerateIfEvicted(sectorPos.packed());
+			final var futures = sectorSlot.sectorFutures.getOrNull(sectorPos.packed());
+			Assert.isTrue(futures != null);
+			futures.join();
 			applyFinished();
 		}
 		if (sector.elements.size() <= systemTicket.id.elementIndex()) {
@@ -319,23 +569,79 @@ public final class SectorManager {
 
 	public void tick(ProfilerFiller profiler) {
 		tickGeneration(profiler);
-		final var time = this.galaxy.parentUniverse.getCelestialTime();
-		this.systemMap.values().forEach(slot -> {
-			if (slot.system != null) {
-				slot.system.rootNode.visit(node -> {
-					Vec3.set(node.lastPosition, node.position);
-				});
-				slot.system.rootNode.updatePositions(time);
+		profiler.push("orbits");
+		this.tickCount += 1;
+		final var observerPositions = new Vector<Vec3>();
+		this.trackedSystemTickets.forEach(tracker -> {
+			if (tracker.currentId == null || tracker.loanedTicket.interest != SystemTicket.Interest.OBSERVED)
+				return;
+			final var slot = getSystemSlot(tracker.currentId);
+			if (slot != null) {
+				slot.lastObservedTick = this.tickCount;
+				if (slot.system != null)
+					observerPositions.push(slot.system.pos);
 			}
 		});
+		this.systemMap.forEachValue(slots -> slots.forEach(slot -> {
+			if (slot.system != null) {
+				final var interest = slot.lastObservedTick == this.tickCount
+						? SystemTicket.Interest.OBSERVED
+						: SystemTicket.Interest.BACKGROUND;
+				double observerDistance = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < observerPositions.size(); ++i)
+					observerDistance = Math.min(observerDistance, slot.system.pos.distanceTo(observerPositions.get(i)));
+				this.orbitalUpdates.schedule(slot.orbitalUpdates, slot.system, interest, observerDistance);
+			}
+		}));
+		this.orbitalUpdates.run(profiler, this.galaxy.parentUniverse.getCelestialTime());
+		profiler.pop();
+	}
+
+	@Nullable
+	private SystemSlot getSystemSlot(GalaxySectorId id) {
+		final var slots = this.systemMap.getOrNull(id.sectorKey());
+		if (slots == null)
+			return null;
+		for (int i = 0; i < slots.size(); ++i) {
+			final var slot = slots.get(i);
+			if (slot.id.packedInfo() == id.packedInfo())
+				return slot;
+		}
+		return null;
+	}
+
+	private SystemSlot getOrCreateSystemSlot(GalaxySectorId id) {
+		final var slots = this.systemMap.getOrInsertWith(id.sectorKey(), key -> new Vector<>());
+		for (int i = 0; i < slots.size(); ++i) {
+			final var slot = slots.get(i);
+			if (slot.id.packedInfo() == id.packedInfo())
+				return slot;
+		}
+		final var slot = new SystemSlot(id);
+		slots.push(slot);
+		return slot;
+	}
+
+	private void removeSystemSlot(SystemSlot slot) {
+		final var key = slot.id.sectorKey();
+		final var slots = this.systemMap.getOrNull(key);
+		if (slots == null)
+			return;
+		slots.retain(other -> other != slot);
+		if (slots.isEmpty())
+			this.systemMap.remove(key);
 	}
 
 	public void applyTickets(ProfilerFiller profiler) {
 		profiler.push("collect");
-		final var systemsToLoad = MutableSet.<GalaxySectorId>hashSet();
-		final var systemsToUnload = MutableSet.<GalaxySectorId>hashSet();
-		final var sectorsToLoad = MutableSet.<SectorPos>hashSet();
-		final var sectorsToUnload = MutableSet.<SectorPos>hashSet();
+		final var systemsToLoad = this.systemsToLoad;
+		final var systemsToUnload = this.systemsToUnload;
+		final var sectorsToLoad = this.sectorsToLoad;
+		final var sectorsToUnload = this.sectorsToUnload;
+		systemsToLoad.clear();
+		systemsToUnload.clear();
+		sectorsToLoad.clear();
+		sectorsToUnload.clear();
 
 		for (final var ticket : this.trackedSystemTickets.iterable())
 			ticket.update(sectorsToLoad, sectorsToUnload, systemsToLoad, systemsToUnload);
@@ -347,37 +653,37 @@ public final class SectorManager {
 		this.removedSystemTickets.clear();
 
 		// unload removed sectors
-		sectorsToUnload.extend(this.removedTickets.iter().flatMap(SectorTicketInfo::allAffectedSectors));
+		for (final var tracker : this.removedTickets.iterable())
+			tracker.release(sectorsToUnload);
 		this.removedTickets.clear();
 
 		profiler.popPush("load");
-		sectorsToLoad.forEach(pos -> {
-			final var slot = this.sectorMap.entry(pos.rootCoords()).orInsertWithKey(SectorSlot::new);
-			slot.load(pos);
-		});
-		systemsToLoad.forEach(id -> {
-			final var slot = this.systemMap.entry(id).orInsertWithKey(SystemSlot::new);
-			slot.load();
+		sectorsToLoad.forEach(key -> {
+			final var slot = this.sectorMap.getOrInsertWith(SectorPos.rootKey(key),
+					rootKey -> new SectorSlot(SectorPos.unpack(rootKey).levelCoords()));
+			slot.load(key);
 		});
+		systemsToLoad.forEach(id -> getOrCreateSystemSlot(id).load());
 
 		profiler.popPush("unload");
 		systemsToUnload.forEach(id -> {
-			final var slot = this.systemMap.get(id).unwrapOrNull();
+			final var slot = getSystemSlot(id);
 			if (slot != null) {
 				if (slot.unload())
-					this.systemMap.remove(id);
+					removeSystemSlot(slot);
 			} else {
 				Mod.LOGGER.error("tried to unload system that did not have a system slot. ({})", id);
 			}
 		});
-		sectorsToUnload.forEach(pos -> {
-			final var slot = this.sectorMap.get(pos.rootCoords()).unwrapOrNull();
+		sectorsToUnload.forEach(key -> {
+			final var rootKey = SectorPos.rootKey(key);
+			final var slot = this.sectorMap.getOrNull(rootKey);
 			if (slot != null) {
-				if (slot.unload(pos))
-					this.sectorMap.remove(pos.rootCoords());
+				if (slot.unload(key))
+					this.sectorMap.remove(rootKey);
 			} else {
 				Mod.LOGGER.error("tried to unload sector that did not have a sector slot. ({}, root {})",
-						pos, pos.rootCoords());
+						SectorPos.unpack(key), SectorPos.unpack(rootKey));
 			}
 		});
 
@@ -387,25 +693,33 @@ public final class SectorManager {
 	public void tickGeneration(ProfilerFiller profiler) {
 		profiler.push("apply");
 		applyTickets(profiler);
+		if (this.remoteElementSource != null) {
+			profiler.popPush("remote");
+			this.remoteElementSource.tick(focusPos());
+		}
 		profiler.popPush("drain");
 		applyFinished();
+		profiler.popPush("evict");
+		evictElementsIfOverBudget();
 		profiler.pop();
 	}
 
 	private void applyFinished() {
-		for (final var slot : this.sectorMap.values().iterable()) {
-			slot.sectorFutures.retain((pos, futures) -> {
+		this.sectorMap.forEachValue(slot -> {
+			slot.sectorFutures.retain((key, futures) -> {
 				if (!futures.elementFuture.isDone())
 					return true;
-				final var sector = slot.sector.lookupNode(pos);
-				if (sector != null)
-					sector.elements = futures.elementFuture.getNow(null);
-				futures.sectorFuture.complete(sector);
+				futures.sector.elements = futures.elementFuture.getNow(null);
+				// don't let freshly generated sectors be evicted before anything has had
+				// a chance to look at them.
+				futures.sector.lastEnumeratedTick = this.tickCount;
+				futures.sectorFuture.complete(futures.sector);
 				return false;
 			});
-		}
+			slot.releaseSharedMaskFieldIfIdle();
+		});
 
-		for (final var slot : this.systemMap.values().iterable()) {
+		this.systemMap.forEachValue(slots -> slots.forEach(slot -> {
 			if (slot.waitingFuture != null && slot.waitingFuture.isDone()) {
 				final var systemOpt = slot.waitingFuture.join();
 				if (systemOpt.isNone()) {
@@ -417,16 +731,22 @@ public final class SectorManager {
 				slot.waitingFuture = null;
 				slot.isLoaded = true;
 			}
-		}
+		}));
 	}
 
 	private Maybe<StarSystem> generateSystem(GalaxySector sector, GalaxySectorId id) {
-		if (id.elementIndex() >= sector.elements.size())
+		// this runs on a generation thread, so the sector might have been unloaded out
+		// from under us in the meantime.
+		final var elements = sector.elements;
+		if (elements == null || id.elementIndex() >= elements.size())
 			return Maybe.none();
 		try {
 			final var elem = new GalaxySector.ElementHolder();
-			sector.elements.load(elem, id.elementIndex());
-			return Maybe.some(this.galaxy.generateFullSystem(sector, id, elem));
+			elements.load(elem, id.elementIndex());
+			final var system = this.galaxy.generateFullSystem(sector, id, elem);
+			if (system != null)
+				this.systemCache.insertFullSystem(id, system);
+			return Maybe.fromNullable(system);
 		} catch (Throwable t) {
 			Mod.LOGGER.error("failed to generate system because of an exception!");
 			t.printStackTrace();
@@ -435,18 +755,18 @@ public final class SectorManager {
 	}
 
 	public boolean isLoaded(SectorPos pos) {
-		final var slot = this.sectorMap.get(pos.rootCoords());
-		if (slot.isNone())
+		final var slot = this.sectorMap.getOrNull(pos.rootKey());
+		if (slot == null)
 			return false;
-		final var sector = slot.unwrap().sector.lookupNode(pos);
+		final var sector = slot.sector.lookupNode(pos);
 		return sector == null ? false : sector.isLoaded();
 	}
 
 	public boolean isComplete(SectorPos pos) {
-		final var slot = this.sectorMap.get(pos.rootCoords());
-		if (slot.isNone())
+		final var slot = this.sectorMap.getOrNull(pos.rootKey());
+		if (slot == null)
 			return false;
-		final var sector = slot.unwrap().sector.lookupNode(pos);
+		final var sector = slot.sector.lookupNode(pos);
 		return sector == null ? false : sector.isComplete();
 	}
 
@@ -469,9 +789,12 @@ public final class SectorManager {
 			Mod.LOGGER.warn("tried removing sector ticket for '{}', but it was already removed.", ticket.info);
 			return;
 		}
-		this.trackedTickets.retain(tracker -> tracker.loanedTicket != ticket);
-		if (ticket.info != null)
-			this.removedTickets.push(ticket.info);
+		this.trackedTickets.retain(tracker -> {
+			if (tracker.loanedTicket != ticket)
+				return true;
+			this.removedTickets.push(tracker);
+			return false;
+		});
 		applyTickets(InactiveProfiler.INSTANCE);
 	}
 
@@ -500,27 +823,56 @@ public final class SectorManager {
 	}
 
 	public Maybe<GalaxySector> getSector(SectorPos pos) {
-		final var slot = this.sectorMap.get(pos.rootCoords());
-		return slot.map(s -> s.sector.lookupNode(pos)).filter(sector -> sector.isComplete());
+		final var slot = this.sectorMap.getOrNull(pos.rootKey());
+		if (slot == null)
+			return Maybe.none();
+		return Maybe.fromNullable(slot.sector.lookupNode(pos)).filter(sector -> sector.isComplete());
 	}
 
 	public boolean loadElement(GalaxySector.ElementHolder out, GalaxySectorId id) {
-		final var slot = this.sectorMap.getOrNull(id.sectorPos().rootCoords());
+		final var slot = this.sectorMap.getOrNull(SectorPos.rootKey(id.sectorKey()));
 		if (slot == null)
 			return false;
-		final var sector = slot.sector.lookupNode(id.sectorPos());
-		if (!sector.isComplete())
+		final var sector = slot.sector.lookupNode(id.sectorKey());
+		if (sector == null || !sector.isComplete())
 			return false;
 		sector.loadElement(out, id.elementIndex());
 		return true;
 	}
 
+	/**
+	 * Gets the summary of a system, which does not require generating the system
+	 * itself. This only requires that the sector containing the system has been
+	 * generated.
+	 */
+	public Maybe<StarSystemSummary> getSystemSummary(GalaxySectorId id) {
+		final var cached = this.systemCache.getSummary(id);
+		if (cached != null)
+			return Maybe.some(cached);
+
+		final var slot = this.sectorMap.getOrNull(SectorPos.rootKey(id.sectorKey()));
+		if (slot == null)
+			return Maybe.none();
+		final var sector = slot.sector.lookupNode(id.sectorKey());
+		if (sector == null || !sector.isComplete() || id.elementIndex() >= sector.elements.size())
+			return Maybe.none();
+
+		final var elem = new GalaxySector.ElementHolder();
+		sector.loadElement(elem, id.elementIndex());
+		final var summary = this.galaxy.generateSystemSummary(sector, id, elem);
+		if (summary == null)
+			return Maybe.none();
+		this.systemCache.insertSummary(id, summary);
+		return Maybe.some(summary);
+	}
+
 	public Maybe<StarSystem> getSystem(GalaxySectorId id) {
-		return this.systemMap.get(id).flatMap(sys -> Maybe.fromNullable(sys.system));
+		final var slot = getSystemSlot(id);
+		return slot == null ? Maybe.none() : Maybe.fromNullable(slot.system);
 	}
 
 	public boolean isSystemLoaded(GalaxySectorId id) {
-		final var slot = this.systemMap.get(id).unwrapOrNull();
+		final var slot = getSystemSlot(id);
 		if (slot == null)
 			return false;
 		return slot.isLoaded;
@@ -529,11 +881,195 @@ public final class SectorManager {
 	public void enumerate(SectorTicket<?> ticket, Consumer<GalaxySector> sectorConsumer) {
 		if (ticket.info == null)
 			return;
-		ticket.info.enumerateAllAffectedSectors(pos -> this.sectorMap.get(pos.rootCoords()).ifSome(slot -> {
+		ticket.info.enumerateAllAffectedSectors(pos -> {
+			final var slot = this.sectorMap.getOrNull(pos.rootKey());
+			if (slot == null)
+				return;
 			final var sector = slot.sector.lookupNode(pos);
-			if (sector != null && sector.isComplete())
+			if (sector == null)
+				return;
+			sector.lastEnumeratedTick = this.tickCount;
+			if (sector.isComplete())
 				sectorConsumer.accept(sector);
-		}));
+			else if (sector.isLoaded())
+				slot.regenerateIfEvicted(pos.packed());
+		});
+	}
+
+	// =============== eviction ===============
+
+	/**
+	 * Drops the off-heap elements of the least recently enumerated sectors until
+	 * the {@link ElementArena} is back under budget. Evicted sectors stay loaded,
+	 * but are incomplete until they are enumerated again, at which point their
+	 * elements are regenerated, which is usually just a read from the sector
+	 * cache.
+	 */
+	private void evictElementsIfOverBudget() {
+		final var arena = ElementArena.get();
+		if (!arena.isOverBudget())
+			return;
+
+		final var candidates = new Vector<GalaxySector>();
+		this.sectorMap.forEachValue(slot -> gatherEvictionCandidates(candidates, slot.sector));
+		candidates.sort(Comparator.comparingLong(sector -> sector.lastEnumeratedTick));
+
+		for (final var sector : candidates.iterable()) {
+			if (!arena.isOverBudget())
+				break;
+			final var key = SectorPos.pack(sector.level, sector.x, sector.y, sector.z);
+			final var slot = this.sectorMap.getOrNull(SectorPos.rootKey(key));
+			final var elements = sector.elements;
+			sector.elements = null;
+			elements.release();
+			slot.evictedSectors.insert(key);
+			arena.recordEviction();
+		}
+	}
+
+	private void gatherEvictionCandidates(MutableList<GalaxySector> out, GalaxySector sector) {
+		// sectors that were enumerated this tick are in active use, and sectors that
+		// have systems generating from them are still being read from other threads.
+		if (sector.isComplete() && sector.elements.isOffHeap() && sector.lastEnumeratedTick < this.tickCount
+				&& !hasPendingSystems(SectorPos.pack(sector.level, sector.x, sector.y, sector.z)))
+			out.push(sector);
+		final var branch = sector.branch();
+		if (branch != null) {
+			for (int i = 0; i < 8; ++i)
+				gatherEvictionCandidates(out, branch.child(i));
+		}
+	}
+
+	private boolean hasPendingSystems(long sectorKey) {
+		final var slots = this.systemMap.getOrNull(sectorKey);
+		if (slots == null)
+			return false;
+		for (int i = 0; i < slots.size(); ++i) {
+			if (slots.get(i).waitingFuture != null)
+				return true;
+		}
+		return false;
+	}
+
+	@FunctionalInterface
+	public interface ElementVisitor {
+		/**
+		 * @param distance (Tm) The distance from the query origin to the element.
+		 */
+		void accept(GalaxySector sector, int elementIndex, double distance);
+	}
+
+	@FunctionalInterface
+	public interface ElementFilter {
+		boolean test(GalaxySector sector, int elementIndex);
+	}
+
+	// the squared distance from `pos` to the bounds of `sector`. Every element of a
+	// sector and its descendants lies within its bounds, so subtrees that are too
+	// far away can be skipped entirely.
+	private static double distanceSqrToSector(GalaxySector sector, Vec3Access pos) {
+		final var width = GalaxySector.sizeForLevel(sector.level);
+		final double minX = sector.x * width, minY = sector.y * width, minZ = sector.z * width;
+		final var dx = Math.max(0, Math.max(minX - pos.x(), pos.x() - (minX + width)));
+		final var dy = Math.max(0, Math.max(minY - pos.y(), pos.y() - (minY + width)));
+		final var dz = Math.max(0, Math.max(minZ - pos.z(), pos.z() - (minZ + width)));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Visits every element in every complete sector that is within {@code radius}
+	 * of {@code center}, in no particular order.
+	 */
+	public void forEachElementWithinRadius(Vec3Access center, double radius, ElementVisitor visitor) {
+		this.sectorMap.forEachValue(slot -> forEachElementWithinRadius(slot.sector, center, radius, visitor));
+	}
+
+	private static void forEachElementWithinRadius(GalaxySector sector, Vec3Access center, double radius,
+			ElementVisitor visitor) {
+		if (distanceSqrToSector(sector, center) > radius * radius)
+			return;
+		if (sector.isComplete()) {
+			sector.elements.index().visitWithinRadius(center, radius,
+					(elementIndex, distanceSqr) -> visitor.accept(sector, elementIndex, Math.sqrt(distanceSqr)));
+		}
+		final var branch = sector.branch();
+		if (branch != null) {
+			for (int i = 0; i < 8; ++i)
+				forEachElementWithinRadius(branch.child(i), center, radius, visitor);
+		}
+	}
+
+	/**
+	 * Finds the elements in complete sectors that are nearest to {@code center}.
+	 * The results are placed into {@code out}, sorted from nearest to farthest.
+	 *
+	 * @param limit       The maximum number of elements to find.
+	 * @param maxDistance (Tm) Elements farther away than this are ignored.
+	 * @param filter      Only elements that pass this filter are considered.
+	 */
+	public void findNearestElements(NearestElements out, Vec3Access center, int limit, double maxDistance,
+			@Nullable ElementFilter filter) {
+		out.reset(limit, maxDistance);
+		this.sectorMap.forEachValue(slot -> findNearestElements(slot.sector, out, center, filter));
+		out.finish();
+	}
+
+	/**
+	 * Finds the single element in a complete sector that is nearest to
+	 * {@code center}.
+	 * 
+	 * @see #findNearestElements(NearestElements, Vec3Access, int, double,
+	 *      ElementFilter)
+	 */
+	public Maybe<GalaxySectorId> findNearestElement(Vec3Access center, double maxDistance,
+			@Nullable ElementFilter filter) {
+		final var nearest = new NearestElements();
+		findNearestElements(nearest, center, 1, maxDistance, filter);
+		return nearest.size() == 0 ? Maybe.none() : Maybe.some(nearest.id(0));
+	}
+
+	private static void findNearestElements(GalaxySector sector, NearestElements out, Vec3Access center,
+			@Nullable ElementFilter filter) {
+		if (distanceSqrToSector(sector, center) >= out.worstDistanceSqr())
+			return;
+		if (sector.isComplete()) {
+			final var index = sector.elements.index();
+			if (index.distanceSqrToBounds(center) < out.worstDistanceSqr()) {
+				index.findNearest(out, sector, center,
+						filter == null ? null : elementIndex -> filter.test(sector, elementIndex));
+			}
+		}
+		final var branch = sector.branch();
+		if (branch != null) {
+			for (int i = 0; i < 8; ++i)
+				findNearestElements(branch.child(i), out, center, filter);
+		}
+	}
+
+	/**
+	 * Visits every element in every complete sector that is inside of
+	 * {@code cone}, in no particular order. The distance passed to
+	 * {@code visitor} is the distance from the apex of the cone.
+	 */
+	public void forEachElementInCone(SectorElementIndex.Cone cone, ElementVisitor visitor) {
+		this.sectorMap.forEachValue(slot -> forEachElementInCone(slot.sector, cone, visitor));
+	}
+
+	private static void forEachElementInCone(GalaxySector sector, SectorElementIndex.Cone cone,
+			ElementVisitor visitor) {
+		final var width = GalaxySector.sizeForLevel(sector.level);
+		final double minX = sector.x * width, minY = sector.y * width, minZ = sector.z * width;
+		if (!cone.mayIntersectBox(minX, minY, minZ, minX + width, minY + width, minZ + width))
+			return;
+		if (sector.isComplete()) {
+			sector.elements.index().visitInCone(cone,
+					(elementIndex, distanceSqr) -> visitor.accept(sector, elementIndex, Math.sqrt(distanceSqr)));
+		}
+		final var branch = sector.branch();
+		if (branch != null) {
+			for (int i = 0; i < 8; ++i)
+				forEachElementInCone(branch.child(i), cone, visitor);
+		}
 	}
 
 }
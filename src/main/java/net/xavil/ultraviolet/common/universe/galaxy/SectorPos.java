@@ -11,6 +11,72 @@ import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
 
 public record SectorPos(int level, Vec3i levelCoords) implements Hashable {
 
+	// packed layout, from most to least significant bit:
+	// [63] unused, [60, 63) level, [40, 60) x, [20, 40) y, [0, 20) z
+	//
+	// each coordinate is stored as a 20-bit two's complement integer, so packing
+	// only round-trips for coordinates in [-2^19, 2^19). At level 0, that's
+	// roughly 5 million light years in each direction, which is well outside of
+	// any galaxy we generate.
+	public static final int COORD_BITS = 20;
+	public static final long COORD_MASK = (1L << COORD_BITS) - 1;
+	public static final int COORD_MIN = -(1 << (COORD_BITS - 1));
+	public static final int COORD_MAX = (1 << (COORD_BITS - 1)) - 1;
+
+	public static long pack(int level, int x, int y, int z) {
+		return ((long) (level & 7) << 60)
+				| ((x & COORD_MASK) << 40)
+				| ((y & COORD_MASK) << 20)
+				| ((z & COORD_MASK) << 0);
+	}
+
+	public static int unpackLevel(long packed) {
+		return (int) (packed >>> 60) & 7;
+	}
+
+	// shift the field all the way up and then back down to sign-extend it
+	public static int unpackX(long packed) {
+		return (int) (packed << 4 >> 44);
+	}
+
+	public static int unpackY(long packed) {
+		return (int) (packed << 24 >> 44);
+	}
+
+	public static int unpackZ(long packed) {
+		return (int) (packed << 44 >> 44);
+	}
+
+	public static SectorPos unpack(long packed) {
+		return new SectorPos(unpackLevel(packed),
+				new Vec3i(unpackX(packed), unpackY(packed), unpackZ(packed)));
+	}
+
+	/**
+	 * Finds the packed position of the root sector that contains the sector
+	 * described by {@code packed}, without unpacking it into a {@link SectorPos}.
+	 * Root keys are used to look up {@link GalaxySector} trees.
+	 */
+	public static long rootKey(long packed) {
+		final var shift = GalaxySector.ROOT_LEVEL - unpackLevel(packed);
+		return pack(GalaxySector.ROOT_LEVEL,
+				unpackX(packed) >> shift,
+				unpackY(packed) >> shift,
+				unpackZ(packed) >> shift);
+	}
+
+	public long packed() {
+		return pack(this.level, this.levelCoords.x, this.levelCoords.y, this.levelCoords.z);
+	}
+
+	public long rootKey() {
+		final var shift = GalaxySector.ROOT_LEVEL - this.level;
+		return pack(GalaxySector.ROOT_LEVEL,
+				this.levelCoords.x >> shift,
+				this.levelCoords.y >> shift,
+				this.levelCoords.z >> shift);
+	}
+
 	public static SectorPos fromPos(int level, Vec3Access pos) {
 		return new SectorPos(level, GalaxySector.levelCoordsForPos(level, pos));
 	}
@@ -0,0 +1,165 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.util.Arrays;
+
+import net.xavil.hawklib.Units;
+
+/**
+ * Aggregate statistics over a set of galaxy elements, such as all the elements
+ * in a sector. Summaries can be merged with {@link #add(SectorSummary)}, so the
+ * statistics of a large region can be found by combining the summaries of the
+ * sectors inside of it, instead of looking at every element again.
+ */
+public final class SectorSummary {
+
+	// these are just based on temperature, not on actual spectra
+	public static final String[] CLASS_NAMES = { "O", "B", "A", "F", "G", "K", "M", "L" };
+	public static final int CLASS_COUNT = CLASS_NAMES.length;
+	// (K) the lowest temperature of each class in `CLASS_NAMES`, except the last,
+	// which has no lower bound.
+	private static final double[] CLASS_MIN_TEMPERATURES = { 30000, 10000, 7500, 6000, 5200, 3700, 2400 };
+
+	public static final int BIN_COUNT = 32;
+
+	/**
+	 * Maps values onto the bins of a {@link Bins}.
+	 */
+	public record Scale(boolean logarithmic, double min, double max) {
+		/**
+		 * @return The bin index for {@code value}, -1 if it is below
+		 *         {@link #min}, or {@link SectorSummary#BIN_COUNT} if it is at or
+		 *         above {@link #max}.
+		 */
+		public int bin(double value) {
+			final double t;
+			if (this.logarithmic) {
+				final var lmin = Math.log(this.min) / Math.log(10);
+				final var lmax = Math.log(this.max) / Math.log(10);
+				t = (Math.log(value) / Math.log(10) - lmin) / (lmax - lmin);
+			} else {
+				t = (value - this.min) / (this.max - this.min);
+			}
+			if (t < 0)
+				return -1;
+			if (t >= 1)
+				return BIN_COUNT;
+			return (int) Math.floor(t * BIN_COUNT);
+		}
+	}
+
+	// @formatter:off
+	public static final Scale MASS_SCALE        = new Scale(true,  1e-3, 1e3);   // (Msol)
+	public static final Scale TEMPERATURE_SCALE = new Scale(false, 0,    60000); // (K)
+	public static final Scale LUMINOSITY_SCALE  = new Scale(true,  1e-3, 1e5);   // (Lsol)
+	public static final Scale AGE_SCALE         = new Scale(false, 0,    10000); // (Myr)
+	// @formatter:on
+
+	public static final class Bins {
+		public final Scale scale;
+		public final int[] counts = new int[BIN_COUNT];
+		public int outliersLoCount = 0, outliersHiCount = 0;
+
+		public Bins(Scale scale) {
+			this.scale = scale;
+		}
+
+		public void insert(double value) {
+			final var bin = this.scale.bin(value);
+			if (bin < 0)
+				this.outliersLoCount += 1;
+			else if (bin >= BIN_COUNT)
+				this.outliersHiCount += 1;
+			else
+				this.counts[bin] += 1;
+		}
+
+		public void reset() {
+			Arrays.fill(this.counts, 0);
+			this.outliersLoCount = this.outliersHiCount = 0;
+		}
+
+		public void add(Bins other) {
+			for (int i = 0; i < BIN_COUNT; ++i)
+				this.counts[i] += other.counts[i];
+			this.outliersLoCount += other.outliersLoCount;
+			this.outliersHiCount += other.outliersHiCount;
+		}
+	}
+
+	public int totalCount = 0;
+	public final int[] counts = new int[CLASS_COUNT];
+	public final double[] totalMassMsol = new double[CLASS_COUNT];
+	public final double[] totalTemperatureK = new double[CLASS_COUNT];
+	public final double[] totalLuminosityLsol = new double[CLASS_COUNT];
+	public final double[] totalAgeMyr = new double[CLASS_COUNT];
+
+	public final Bins massBins = new Bins(MASS_SCALE);
+	public final Bins temperatureBins = new Bins(TEMPERATURE_SCALE);
+	public final Bins luminosityBins = new Bins(LUMINOSITY_SCALE);
+	public final Bins ageBins = new Bins(AGE_SCALE);
+
+	/**
+	 * Summarizes every element in {@code elements}.
+	 */
+	public static SectorSummary of(GalaxySector.PackedElements elements) {
+		final var summary = new SectorSummary();
+		final var elem = new GalaxySector.ElementHolder();
+		for (int i = 0; i < elements.size(); ++i) {
+			elements.load(elem, i);
+			summary.insert(elem);
+		}
+		return summary;
+	}
+
+	public static int spectralClass(double temperatureK) {
+		for (int i = 0; i < CLASS_MIN_TEMPERATURES.length; ++i) {
+			if (temperatureK >= CLASS_MIN_TEMPERATURES[i])
+				return i;
+		}
+		return CLASS_COUNT - 1;
+	}
+
+	public void insert(GalaxySector.ElementHolder elem) {
+		final var massMsol = Units.Msol_PER_Yg * elem.massYg;
+		final var c = spectralClass(elem.temperatureK);
+		this.totalCount += 1;
+		this.counts[c] += 1;
+		this.totalMassMsol[c] += massMsol;
+		this.totalTemperatureK[c] += elem.temperatureK;
+		this.totalLuminosityLsol[c] += elem.luminosityLsol;
+		this.totalAgeMyr[c] += elem.systemAgeMyr;
+		this.massBins.insert(massMsol);
+		this.temperatureBins.insert(elem.temperatureK);
+		this.luminosityBins.insert(elem.luminosityLsol);
+		this.ageBins.insert(elem.systemAgeMyr);
+	}
+
+	public void reset() {
+		this.totalCount = 0;
+		Arrays.fill(this.counts, 0);
+		Arrays.fill(this.totalMassMsol, 0);
+		Arrays.fill(this.totalTemperatureK, 0);
+		Arrays.fill(this.totalLuminosityLsol, 0);
+		Arrays.fill(this.totalAgeMyr, 0);
+		this.massBins.reset();
+		this.temperatureBins.reset();
+		this.luminosityBins.reset();
+		this.ageBins.reset();
+	}
+
+	public void add(SectorSummary other) {
+		this.totalCount += other.totalCount;
+		for (int i = 0; i < CLASS_COUNT; ++i) {
+			this.counts[i] += other.counts[i];
+			this.totalMassMsol[i] += other.totalMassMsol[i];
+			this.totalTemperatureK[i] += other.totalTemperatureK[i];
+			this.totalLuminosityLsol[i] += other.totalLuminosityLsol[i];
+			this.totalAgeMyr[i] += other.totalAgeMyr[i];
+		}
+		this.massBins.add(other.massBins);
+		this.temperatureBins.add(other.temperatureBins);
+		this.luminosityBins.add(other.luminosityBins);
+		this.ageBins.add(other.ageBins);
+	}
+
+}
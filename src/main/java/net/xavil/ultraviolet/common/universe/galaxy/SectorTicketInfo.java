@@ -1,6 +1,8 @@
 package net.xavil.ultraviolet.common.universe.galaxy;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 import net.xavil.hawklib.collections.interfaces.ImmutableSet;
 import net.xavil.hawklib.collections.interfaces.MutableSet;
@@ -173,6 +175,131 @@ public abstract sealed class SectorTicketInfo {
 			}
 		}
 
+		/**
+		 * Determines whether {@link #diffIncrementally(Multi, Multi, LongConsumer, LongConsumer)}
+		 * may be used to find the difference between the sectors affected by two
+		 * tickets. This is the case when both tickets have the same radii, and when
+		 * the radii never shrink as the level increases, which guarantees that every
+		 * sector that touches its level's sphere also has a parent that touches its
+		 * own level's sphere.
+		 */
+		public static boolean canDiffIncrementally(Multi prev, Multi next) {
+			if (prev.baseRadius != next.baseRadius || !Arrays.equals(prev.scales, next.scales))
+				return false;
+			for (int level = 1; level <= GalaxySector.ROOT_LEVEL; ++level) {
+				if (next.radiusForLevel(level) < next.radiusForLevel(level - 1))
+					return false;
+			}
+			return true;
+		}
+
+		// the range of sector z coordinates in a single column of sectors that
+		// intersect a sphere. `min > max` if no sectors intersect.
+		private static final class ColumnSpan {
+			int min, max;
+
+			void compute(Vec3 center, double radius, double width, int x, int y) {
+				final double dx = axisDistance(center.x, x * width, (x + 1) * width);
+				final double dy = axisDistance(center.y, y * width, (y + 1) * width);
+				final double remaining = radius * radius - dx * dx - dy * dy;
+				if (remaining < 0) {
+					this.min = 1;
+					this.max = 0;
+					return;
+				}
+				final double h = Math.sqrt(remaining);
+				this.min = (int) Math.ceil((center.z - h) / width) - 1;
+				this.max = (int) Math.floor((center.z + h) / width);
+				// correct for the sector just below the sphere only touching it when the
+				// lower bound lands exactly on a sector boundary.
+				if (axisDistance(center.z, this.min * width, (this.min + 1) * width) > h)
+					this.min += 1;
+			}
+
+			boolean isEmpty() {
+				return this.min > this.max;
+			}
+		}
+
+		// emits every sector in `a` that is not in `b`, without walking the part of
+		// the column that they share.
+		private static void emitDifference(int level, int x, int y, ColumnSpan a, ColumnSpan b,
+				LongConsumer consumer) {
+			if (a.isEmpty())
+				return;
+			if (b.isEmpty()) {
+				for (int z = a.min; z <= a.max; ++z)
+					consumer.accept(SectorPos.pack(level, x, y, z));
+				return;
+			}
+			final int lowerEnd = Math.min(a.max, b.min - 1);
+			for (int z = a.min; z <= lowerEnd; ++z)
+				consumer.accept(SectorPos.pack(level, x, y, z));
+			final int upperStart = Math.max(a.min, b.max + 1);
+			for (int z = upperStart; z <= a.max; ++z)
+				consumer.accept(SectorPos.pack(level, x, y, z));
+		}
+
+		private static double axisDistance(double p, double min, double max) {
+			if (p < min)
+				return min - p;
+			if (p > max)
+				return p - max;
+			return 0;
+		}
+
+		/**
+		 * Finds the sectors that are affected by {@code next} but not by {@code prev},
+		 * and the sectors that are affected by {@code prev} but not by {@code next},
+		 * without enumerating every sector affected by either ticket. Instead, each
+		 * level is scanned column-by-column, and only the ends of each column are
+		 * compared, so the cost of this scales with the cross-sectional area of the
+		 * ticket plus the number of changed sectors, rather than with its volume.
+		 * Sectors are reported in their packed form (see {@link SectorPos#pack}), so
+		 * that this does not allocate.
+		 * 
+		 * Only valid if {@link #canDiffIncrementally(Multi, Multi)} returns true.
+		 */
+		public static void diffIncrementally(Multi prev, Multi next,
+				LongConsumer entering, LongConsumer leaving) {
+			final var prevSpan = new ColumnSpan();
+			final var nextSpan = new ColumnSpan();
+			for (int level = 0; level <= GalaxySector.ROOT_LEVEL; ++level) {
+				final var width = GalaxySector.sizeForLevel(level);
+				final var radius = next.radiusForLevel(level);
+
+				final int pMinX = (int) Math.ceil((prev.centerPos.x - radius) / width) - 1;
+				final int pMaxX = (int) Math.floor((prev.centerPos.x + radius) / width);
+				final int pMinY = (int) Math.ceil((prev.centerPos.y - radius) / width) - 1;
+				final int pMaxY = (int) Math.floor((prev.centerPos.y + radius) / width);
+				final int nMinX = (int) Math.ceil((next.centerPos.x - radius) / width) - 1;
+				final int nMaxX = (int) Math.floor((next.centerPos.x + radius) / width);
+				final int nMinY = (int) Math.ceil((next.centerPos.y - radius) / width) - 1;
+				final int nMaxY = (int) Math.floor((next.centerPos.y + radius) / width);
+
+				// columns that `next` may cover. these are compared against `prev` directly.
+				for (int x = nMinX; x <= nMaxX; ++x) {
+					for (int y = nMinY; y <= nMaxY; ++y) {
+						nextSpan.compute(next.centerPos, radius, width, x, y);
+						prevSpan.compute(prev.centerPos, radius, width, x, y);
+						emitDifference(level, x, y, nextSpan, prevSpan, entering);
+						emitDifference(level, x, y, prevSpan, nextSpan, leaving);
+					}
+				}
+
+				// columns that only `prev` may cover; everything in them is leaving.
+				for (int x = pMinX; x <= pMaxX; ++x) {
+					for (int y = pMinY; y <= pMaxY; ++y) {
+						if (x >= nMinX && x <= nMaxX && y >= nMinY && y <= nMaxY)
+							continue;
+						prevSpan.compute(prev.centerPos, radius, width, x, y);
+						for (int z = prevSpan.min; z <= prevSpan.max; ++z)
+							leaving.accept(SectorPos.pack(level, x, y, z));
+					}
+				}
+			}
+		}
+
 		@Override
 		public boolean equals(Object obj) {
 			if (obj instanceof Multi other) {
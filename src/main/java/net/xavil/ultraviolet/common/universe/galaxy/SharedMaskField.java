@@ -0,0 +1,85 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
+
+/**
+ * A memoizing wrapper around a galaxy's mask field, meant to be shared between
+ * every sector being generated within a single root sector.
+ * <p>
+ * Each sector builds an {@link InterpolatedMaskField} by sampling the mask field
+ * on a small lattice spanning its bounds, and neighbouring sectors, as well as
+ * sectors and their descendants, share a lot of those lattice points. Samples
+ * are only reused for positions that are exactly equal, so generation using
+ * this field produces exactly the same output as generation using the
+ * underlying field directly.
+ * </p>
+ */
+public final class SharedMaskField implements GalaxyRegionWeights.Field {
+
+	// once this many samples are stored, new samples are still evaluated but not
+	// remembered, so that a root sector with lots of fine sectors being generated
+	// can't grow this without bound.
+	public static final int MAXIMUM_SAMPLE_COUNT = 1 << 15;
+
+	private record SampleKey(double x, double y, double z) {
+	}
+
+	private final GalaxyRegionWeights.Field field;
+	private final ConcurrentHashMap<SampleKey, GalaxyRegionWeights> samples = new ConcurrentHashMap<>();
+
+	public SharedMaskField(GalaxyRegionWeights.Field field) {
+		this.field = field;
+	}
+
+	@Override
+	public void evaluate(Vec3Access pos, GalaxyRegionWeights outMasks) {
+		final var key = new SampleKey(pos.x(), pos.y(), pos.z());
+		var sample = this.samples.get(key);
+		if (sample == null) {
+			sample = new GalaxyRegionWeights();
+			this.field.evaluate(pos, sample);
+			if (this.samples.size() < MAXIMUM_SAMPLE_COUNT)
+				this.samples.putIfAbsent(key, sample);
+		}
+		outMasks.core = sample.core;
+		outMasks.arms = sample.arms;
+		outMasks.disc = sample.disc;
+		outMasks.halo = sample.halo;
+	}
+
+	@Override
+	public void evaluate(GalaxyRegionWeights.Batch batch) {
+		// gather up every sample we haven't seen yet so that the underlying field can
+		// evaluate them all in one go.
+		GalaxyRegionWeights.Batch misses = null;
+		int[] missIndices = null;
+		for (int i = 0; i < batch.size; ++i) {
+			final var sample = this.samples.get(new SampleKey(batch.x[i], batch.y[i], batch.z[i]));
+			if (sample != null) {
+				batch.store(i, sample);
+				continue;
+			}
+			if (misses == null) {
+				misses = new GalaxyRegionWeights.Batch(batch.size);
+				missIndices = new int[batch.size];
+			}
+			missIndices[misses.size] = i;
+			misses.push(batch.x[i], batch.y[i], batch.z[i]);
+		}
+
+		if (misses == null)
+			return;
+
+		this.field.evaluate(misses);
+		for (int j = 0; j < misses.size; ++j) {
+			final var sample = new GalaxyRegionWeights();
+			misses.load(j, sample);
+			batch.store(missIndices[j], sample);
+			if (this.samples.size() < MAXIMUM_SAMPLE_COUNT)
+				this.samples.putIfAbsent(new SampleKey(misses.x[j], misses.y[j], misses.z[j]), sample);
+		}
+	}
+
+}
@@ -20,6 +20,7 @@ import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector.ElementHolder;
 import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector.PackedElements;
 import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
 import net.xavil.ultraviolet.common.universe.system.StarSystem;
+import net.xavil.ultraviolet.common.universe.system.StarSystemSummary;
 import net.xavil.ultraviolet.common.universe.system.StellarCelestialNode;
 
 public class StarCatalogGalaxyGenerationLayer extends GalaxyGenerationLayer {
@@ -139,10 +140,14 @@ public class StarCatalogGalaxyGenerationLayer extends GalaxyGenerationLayer {
 		elements.markWritten(sector.size());
 	}
 
+	private static double guessMass(ElementHolder elem) {
+		return Units.Yg_PER_Msol * Math.pow(elem.luminosityLsol, 1.0 / 3.5);
+	}
+
 	@Override
 	public StarSystem generateFullSystem(GalaxySector sector, GalaxySectorId id, ElementHolder elem) {
 		final var node = new StellarCelestialNode();
-		elem.massYg = Units.Yg_PER_Msol * Math.pow(elem.luminosityLsol, 1.0 / 3.5);
+		elem.massYg = guessMass(elem);
 		node.luminosityLsol = elem.luminosityLsol;
 		node.massYg = elem.massYg;
 		node.temperature = elem.temperatureK;
@@ -157,4 +162,10 @@ public class StarCatalogGalaxyGenerationLayer extends GalaxyGenerationLayer {
 		return new StarSystem("idk", this.parentGalaxy, elem, rootNode, 1.42857e-02);
 	}
 
+	@Override
+	public StarSystemSummary generateSystemSummary(GalaxySector sector, GalaxySectorId id, ElementHolder elem) {
+		elem.massYg = guessMass(elem);
+		return new StarSystemSummary("idk", elem, 1.42857e-02);
+	}
+
 }
@@ -0,0 +1,109 @@
+package net.xavil.ultraviolet.common.universe.galaxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
+import net.xavil.ultraviolet.common.universe.system.StarSystem;
+import net.xavil.ultraviolet.common.universe.system.StarSystemSummary;
+
+/**
+ * A two-tier, size-bounded cache of star systems, shared by everything that
+ * loads systems through a single {@link SectorManager}.
+ * <p>
+ * The first tier holds {@link StarSystemSummary}s, which are small and cheap to
+ * make, so lots of them can be kept around. The second tier holds fully
+ * generated {@link StarSystem}s, which can be rather large, so only a handful
+ * of the most recently used ones are kept. Systems stay in the second tier
+ * after every ticket referencing them has been removed, so that flipping back
+ * and forth between systems in the system map does not regenerate them each
+ * time.
+ * </p>
+ * <p>
+ * All methods are safe to call from any thread.
+ * </p>
+ */
+public final class StarSystemCache {
+
+	public static final int SUMMARY_CAPACITY = Integer.getInteger(
+			"net.xavil.ultraviolet.system_summary_cache_size", 4096);
+	public static final int FULL_SYSTEM_CAPACITY = Integer.getInteger(
+			"net.xavil.ultraviolet.system_cache_size", 64);
+
+	private static final class LruMap<V> extends LinkedHashMap<GalaxySectorId, V> {
+		private final int capacity;
+
+		public LruMap(int capacity) {
+			// iterates in access order, so the eldest entry is the least recently used one
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<GalaxySectorId, V> eldest) {
+			return size() > this.capacity;
+		}
+	}
+
+	private final LruMap<StarSystemSummary> summaries;
+	private final LruMap<StarSystem> fullSystems;
+
+	private long summaryHits = 0, summaryMisses = 0;
+	private long fullSystemHits = 0, fullSystemMisses = 0;
+
+	public StarSystemCache() {
+		this(SUMMARY_CAPACITY, FULL_SYSTEM_CAPACITY);
+	}
+
+	public StarSystemCache(int summaryCapacity, int fullSystemCapacity) {
+		this.summaries = new LruMap<>(summaryCapacity);
+		this.fullSystems = new LruMap<>(fullSystemCapacity);
+	}
+
+	@Nullable
+	public synchronized StarSystemSummary getSummary(GalaxySectorId id) {
+		final var summary = this.summaries.get(id);
+		if (summary != null)
+			this.summaryHits += 1;
+		else
+			this.summaryMisses += 1;
+		return summary;
+	}
+
+	public synchronized void insertSummary(GalaxySectorId id, StarSystemSummary summary) {
+		this.summaries.put(id, summary);
+	}
+
+	@Nullable
+	public synchronized StarSystem getFullSystem(GalaxySectorId id) {
+		final var system = this.fullSystems.get(id);
+		if (system != null)
+			this.fullSystemHits += 1;
+		else
+			this.fullSystemMisses += 1;
+		return system;
+	}
+
+	/**
+	 * Inserts a fully generated system into the cache, or marks it as the most
+	 * recently used system if it is already present.
+	 */
+	public synchronized void insertFullSystem(GalaxySectorId id, StarSystem system) {
+		this.fullSystems.put(id, system);
+	}
+
+	public synchronized void clear() {
+		this.summaries.clear();
+		this.fullSystems.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("StarSystemCache[summaries: %d/%d (%d hits, %d misses), systems: %d/%d (%d hits, %d misses)]",
+				this.summaries.size(), this.summaries.capacity, this.summaryHits, this.summaryMisses,
+				this.fullSystems.size(), this.fullSystems.capacity, this.fullSystemHits, this.fullSystemMisses);
+	}
+
+}
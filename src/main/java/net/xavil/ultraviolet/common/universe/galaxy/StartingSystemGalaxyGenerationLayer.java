@@ -8,6 +8,7 @@ import net.xavil.ultraviolet.common.universe.system.CelestialNode;
 import net.xavil.ultraviolet.common.universe.system.StarSystem;
 import net.xavil.ultraviolet.common.universe.system.StellarCelestialNode;
 import net.xavil.hawklib.SplittableRng;
+import net.xavil.hawklib.hash.Hasher;
 import net.xavil.hawklib.math.Interval;
 import net.xavil.hawklib.math.matrices.Vec3;
 
@@ -103,8 +104,18 @@ public class StartingSystemGalaxyGenerationLayer extends GalaxyGenerationLayer {
 
 	private void findElementIndex() {
 		chooseStartingLocation();
+		// NOTE: this bypasses the sector cache, since generating the sector is what
+		// determines our element index.
 		if (this.elementIndex == -1)
-			this.parentGalaxy.generateSectorElements(this.startingSystemSectorPos);
+			this.parentGalaxy.generateSectorElementsUncached(this.startingSystemSectorPos);
+	}
+
+	@Override
+	public void appendGenerationHash(Hasher hasher) {
+		super.appendGenerationHash(hasher);
+		hasher.appendLong(this.parentGalaxy.parentUniverse.getUniqueUniverseSeed());
+		hasher.appendString(this.systemName);
+		hasher.appendDouble(this.systemAge);
 	}
 
 	@Override
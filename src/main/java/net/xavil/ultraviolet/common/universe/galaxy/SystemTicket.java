@@ -9,8 +9,27 @@ import net.xavil.ultraviolet.common.universe.system.StarSystem;
 
 public final class SystemTicket implements Disposable {
 
+	/**
+	 * How closely the holder of a ticket is looking at the system it keeps
+	 * loaded, which determines how often and how precisely the positions of the
+	 * system's celestial bodies are updated. When several tickets refer to the
+	 * same system, the highest interest wins.
+	 */
+	public enum Interest {
+		/**
+		 * The system only needs to be kept loaded, and its positions only need to be
+		 * roughly right. Updated with whatever time is left over each tick.
+		 */
+		BACKGROUND,
+		/**
+		 * Someone is looking at or is inside of the system. Updated every tick.
+		 */
+		OBSERVED,
+	}
+
 	public final SectorManager attachedManager;
 	public GalaxySectorId id;
+	public Interest interest = Interest.OBSERVED;
 
 	public SystemTicket(SectorManager attachedManager, GalaxySectorId id) {
 		this.attachedManager = attachedManager;
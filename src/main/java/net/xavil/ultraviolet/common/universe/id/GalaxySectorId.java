@@ -49,6 +49,14 @@ public record GalaxySectorId(Vec3i levelCoords, int packedInfo) {
 		return new SectorPos(level(), levelCoords());
 	}
 
+	/**
+	 * @return The packed form of {@link #sectorPos()}, as described by
+	 *         {@link SectorPos#pack(int, int, int, int)}.
+	 */
+	public long sectorKey() {
+		return SectorPos.pack(level(), this.levelCoords.x, this.levelCoords.y, this.levelCoords.z);
+	}
+
 	public String uniqueName() {
 		final var x = Util.escapeMinus(this.levelCoords.x);
 		final var y = Util.escapeMinus(this.levelCoords.x);
@@ -1,11 +1,12 @@
 package net.xavil.ultraviolet.common.universe.station;
 
+import javax.annotation.Nullable;
+
 import com.mojang.serialization.Codec;
 
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtOps;
 import net.minecraft.nbt.Tag;
-import net.xavil.hawklib.Assert;
 import net.xavil.hawklib.Disposable;
 import net.xavil.hawklib.Maybe;
 import net.xavil.hawklib.Units;
@@ -14,6 +15,7 @@ import net.xavil.ultraviolet.common.universe.galaxy.SystemTicket;
 import net.xavil.ultraviolet.common.universe.id.SystemId;
 import net.xavil.ultraviolet.common.universe.id.SystemNodeId;
 import net.xavil.ultraviolet.common.universe.system.BinaryCelestialNode;
+import net.xavil.ultraviolet.common.universe.system.OrbitalPropagator;
 import net.xavil.ultraviolet.common.universe.system.PlanetaryCelestialNode;
 import net.xavil.ultraviolet.common.universe.system.StellarCelestialNode;
 import net.xavil.ultraviolet.common.universe.universe.Universe;
@@ -29,6 +31,12 @@ public abstract sealed class StationLocation implements Disposable {
 
 	public abstract boolean isJump();
 
+	/**
+	 * @return The system that the station is in, or is on its way to.
+	 */
+	@Nullable
+	public abstract SystemId getSystem();
+
 	private static <T> Tag encodeNbt(Codec<T> codec, T value) {
 		return codec.encodeStart(NbtOps.INSTANCE, value).getOrThrow(false, Mod.LOGGER::error);
 	}
@@ -48,10 +56,12 @@ public abstract sealed class StationLocation implements Disposable {
 		private Vec3 systemPos;
 		private Vec3 pos;
 		private boolean needsLoading = true;
+		private OrbitalPropagator.Query positionQuery = null;
 
 		private OrbitingCelestialBody(Universe universe, SystemTicket ticket, SystemNodeId id) {
 			this.id = id;
 			this.ticket = ticket;
+			this.ticket.interest = SystemTicket.Interest.BACKGROUND;
 			update(universe);
 		}
 
@@ -64,6 +74,7 @@ public abstract sealed class StationLocation implements Disposable {
 						.map(galaxy -> galaxy.sectorManager.createSystemTicketManual(id.galaxySector()))
 						.unwrap();
 			}
+			this.ticket.interest = SystemTicket.Interest.BACKGROUND;
 
 			if (nbt.contains("plane"))
 				this.plane = decodeNbt(OrbitalPlane.CODEC, nbt.get("plane"));
@@ -117,13 +128,16 @@ public abstract sealed class StationLocation implements Disposable {
 			if (!this.ticket.isLoaded())
 				return;
 
-			final var node = universe.getSystemNode(id).unwrapOrNull();
+			final var system = universe.getSystem(id.system()).unwrapOrNull();
+			if (system == null)
+				return;
+			// building the system's propagator also sets up the reference plane of each
+			// node, which we need below.
+			this.positionQuery = system.newPositionQuery();
+			final var node = system.rootNode.lookup(id.nodeId());
 			if (node == null)
 				return;
 
-			final var time = universe.getCelestialTime();
-			node.updatePositions(time);
-
 			this.systemPos = universe.getSystemPos(id.system()).unwrap();
 
 			double semiMajor = 1.0;
@@ -147,11 +161,22 @@ public abstract sealed class StationLocation implements Disposable {
 			tryLoad(universe);
 			if (this.needsLoading)
 				return this;
+			final var system = universe.getSystem(this.id.system()).unwrapOrNull();
+			if (system == null)
+				return this;
+			if (this.positionQuery == null || this.positionQuery.rootNode() != system.rootNode)
+				this.positionQuery = system.newPositionQuery();
+			final var node = system.rootNode.lookup(this.id.nodeId());
+			if (node == null)
+				return this;
+
+			// find where the node is now without moving the node itself, since its
+			// position is only updated every so often when nobody is looking.
 			final var time = universe.getCelestialTime();
-			final var localPos = universe.getSystemNode(this.id)
-					.map(node -> node.getOrbitalPosition(new Vec3.Mutable(), this.plane, this.shape, false, time, 0)
-							.xyz())
-					.unwrapOrNull();
+			final var nodePos = new Vec3.Mutable();
+			this.positionQuery.position(nodePos, this.id.nodeId(), time);
+			final var localPos = node.getOrbitalPosition(new Vec3.Mutable(), nodePos, this.plane, this.shape, false,
+					time, 0);
 			this.pos = this.systemPos.add(localPos);
 			return this;
 		}
@@ -165,11 +190,20 @@ public abstract sealed class StationLocation implements Disposable {
 		public boolean isJump() {
 			return false;
 		}
+
+		@Override
+		public SystemId getSystem() {
+			return this.id.system();
+		}
 	}
 
 	// the station is currently jumping between star systems
 	public static final class JumpingSystem extends StationLocation {
 		private Vec3 sourcePos;
+		// where the station goes back to if the target system can't be generated.
+		// Jumps saved before this was tracked don't have one.
+		@Nullable
+		private SystemId sourceSystem;
 		private StationLocation targetLocation;
 		private double distanceTravelled = 0.0;
 
@@ -177,13 +211,12 @@ public abstract sealed class StationLocation implements Disposable {
 		private Vec3 pos;
 
 		private JumpingSystem(Universe universe, SystemTicket ticket, StationLocation current, SystemNodeId target) {
-			this.sourcePos = current.getPos();
-			Assert.isTrue(ticket.isLoaded());
-			final var id = target;
-			final var dest = new StationLocation.OrbitingCelestialBody(universe, ticket, id);
-			dest.forceLoad(universe);
-			this.targetLocation = dest;
-			this.targetNode = id;
+			this.sourcePos = this.pos = current.getPos();
+			this.sourceSystem = current.getSystem();
+			// the target system keeps generating in the background while we wait for it,
+			// see isTargetReady().
+			this.targetLocation = new StationLocation.OrbitingCelestialBody(universe, ticket, target);
+			this.targetNode = target;
 		}
 
 		public static Maybe<JumpingSystem> create(Universe universe, StationLocation current, SystemNodeId target) {
@@ -191,37 +224,54 @@ public abstract sealed class StationLocation implements Disposable {
 				final var galaxy = universe.loadGalaxy(disposer, target.universeSector()).unwrapOrNull();
 				if (galaxy == null)
 					return Maybe.none();
+				// this starts generating the target system, but does not wait for it, so
+				// that initiating a jump to a system that nobody has visited yet doesn't
+				// stall the server.
 				final var ticket = galaxy.sectorManager.createSystemTicketManual(target.galaxySector());
-				if (ticket.forceLoad().isNone())
-					return Maybe.none();
 				return Maybe.some(new JumpingSystem(universe, ticket, current, target));
 			}
 		}
 
 		private JumpingSystem(Universe universe, CompoundTag nbt) {
 			this.sourcePos = decodeNbt(Vec3.CODEC, nbt.get("src_pos"));
+			if (nbt.contains("src_system"))
+				this.sourceSystem = decodeNbt(SystemId.CODEC, nbt.get("src_system"));
 			this.targetLocation = fromNbt(universe, nbt.getCompound("target"));
 			this.distanceTravelled = nbt.getDouble("travelled");
 			this.targetNode = decodeNbt(SystemNodeId.CODEC, nbt.get("target_node"));
+			this.pos = this.sourcePos;
 		}
 
 		public void writeNbt(CompoundTag nbt) {
 			nbt.put("src_pos", encodeNbt(Vec3.CODEC, this.sourcePos));
+			if (this.sourceSystem != null)
+				nbt.put("src_system", encodeNbt(SystemId.CODEC, this.sourceSystem));
 			nbt.put("target", toNbt(this.targetLocation));
 			nbt.putDouble("travelled", this.distanceTravelled);
 			nbt.put("target_node", encodeNbt(SystemNodeId.CODEC, this.targetNode));
 		}
 
+		/**
+		 * @return Whether the position of the target has been determined yet. The
+		 *         station does not move until it has.
+		 */
+		public boolean isTargetReady() {
+			return this.targetLocation.getPos() != null;
+		}
+
 		@Override
 		public Vec3 getPos() {
 			return this.pos;
 		}
 
 		public void travel(double distance) {
-			this.distanceTravelled += distance;
+			if (isTargetReady())
+				this.distanceTravelled += distance;
 		}
 
 		public double getCompletion() {
+			if (!isTargetReady())
+				return 0;
 			final var target = this.targetLocation.getPos();
 			final var totalDistance = this.sourcePos.distanceTo(target);
 			return this.distanceTravelled / totalDistance;
@@ -234,6 +284,20 @@ public abstract sealed class StationLocation implements Disposable {
 		@Override
 		public StationLocation update(Universe universe) {
 			this.targetLocation.update(universe);
+			// the target system has been generated, but we still don't know where to go,
+			// either because it failed to generate or because the node doesn't exist.
+			if (this.targetLocation instanceof OrbitingCelestialBody target && target.ticket.isLoaded()
+					&& !isTargetReady()) {
+				final var fallback = fallbackLocation(universe);
+				// keep jumping until there's somewhere sensible to stop.
+				if (fallback == null)
+					return this;
+				Mod.LOGGER.error("jump target {} could not be generated, abandoning jump", this.targetNode);
+				close();
+				return fallback;
+			}
+			if (!isTargetReady())
+				return this;
 			final var completion = getCompletion();
 			if (completion >= 1.0)
 				return this.targetLocation;
@@ -241,14 +305,45 @@ public abstract sealed class StationLocation implements Disposable {
 			return this;
 		}
 
+		/**
+		 * @return Where the station ends up when the jump has to be abandoned, or null
+		 *         if that can't be determined yet. Stations go back to where they
+		 *         started if they can. Jumps saved without a source system instead
+		 *         orbit the target system's root node, or sit at the target system's
+		 *         position if the system itself could not be generated.
+		 */
+		@Nullable
+		private StationLocation fallbackLocation(Universe universe) {
+			if (this.sourceSystem != null)
+				return new SystemRelative(this.sourceSystem, this.sourcePos);
+			final var targetSystem = this.targetNode.system();
+			final var system = universe.getSystem(targetSystem).unwrapOrNull();
+			if (system != null) {
+				final var rootId = new SystemNodeId(targetSystem, system.rootNode.getId());
+				final var orbit = OrbitingCelestialBody.createDefault(universe, rootId).unwrapOrNull();
+				if (orbit != null)
+					return orbit;
+			}
+			final var systemPos = universe.getSystemPos(targetSystem).unwrapOrNull();
+			return systemPos == null ? null : new SystemRelative(targetSystem, systemPos);
+		}
+
+		// not called when the jump completes, since the target location is handed off
+		// to the station then.
 		@Override
 		public void close() {
+			this.targetLocation.close();
 		}
 
 		@Override
 		public boolean isJump() {
 			return true;
 		}
+
+		@Override
+		public SystemId getSystem() {
+			return this.targetNode.system();
+		}
 	}
 
 	// the station is currently located within a star system, but not orbiting any
@@ -290,6 +385,11 @@ public abstract sealed class StationLocation implements Disposable {
 		public boolean isJump() {
 			return false;
 		}
+
+		@Override
+		public SystemId getSystem() {
+			return this.system;
+		}
 	}
 
 	// public static final class GalaxyRelative extends StationLocation {
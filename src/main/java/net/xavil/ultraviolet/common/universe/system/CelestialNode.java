@@ -25,6 +25,7 @@ import net.xavil.hawklib.math.Interval;
 import net.xavil.hawklib.math.OrbitalPlane;
 import net.xavil.hawklib.math.OrbitalShape;
 import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
 
 public abstract sealed class CelestialNode implements IntoIterator<CelestialNode> permits
 		BinaryCelestialNode, UnaryCelestialNode, OtherCelestialNode {
@@ -359,7 +360,16 @@ public abstract sealed class CelestialNode implements IntoIterator<CelestialNode
 
 	public Vec3.Mutable getOrbitalPosition(Vec3.Mutable out, OrbitalPlane plane, OrbitalShape shape, boolean reverse,
 			double time, double phase) {
-		final var ellipse = Ellipse.fromOrbit(this.position, plane, shape, this.apsidalRate * time, reverse);
+		return getOrbitalPosition(out, this.position, plane, shape, reverse, time, phase);
+	}
+
+	/**
+	 * Like {@link #getOrbitalPosition(Vec3.Mutable, OrbitalPlane, OrbitalShape, boolean, double, double)},
+	 * but for when this node is at {@code focus} instead of at {@link #position}.
+	 */
+	public Vec3.Mutable getOrbitalPosition(Vec3.Mutable out, Vec3Access focus, OrbitalPlane plane, OrbitalShape shape,
+			boolean reverse, double time, double phase) {
+		final var ellipse = Ellipse.fromOrbit(focus, plane, shape, this.apsidalRate * time, reverse);
 		return getOrbitalPosition(out, ellipse, shape, reverse, time, phase);
 	}
 
@@ -0,0 +1,379 @@
+package net.xavil.ultraviolet.common.universe.system;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.xavil.hawklib.math.Interval;
+import net.xavil.hawklib.math.OrbitalPlane;
+import net.xavil.hawklib.math.OrbitalShape;
+import net.xavil.hawklib.math.Quat;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.ultraviolet.Mod;
+
+/**
+ * A compact binary format for {@link CelestialNode} trees, used instead of
+ * {@link CelestialNode#writeNbt(CelestialNode)} when a tree is sent over the
+ * network.
+ * <p>
+ * The data starts with a version byte and a flags byte, followed by the root
+ * node. Each node is written as its kind, then the fields shared by every node,
+ * then the fields of its kind in a fixed order, then its children. Small
+ * integers like IDs and counts are written as varints, and real numbers are
+ * written as doubles, or as floats if the tree was written with
+ * {@link Precision#FLOAT}. All multi-byte values are big-endian, like
+ * {@link FriendlyByteBuf}.
+ * </p>
+ * <p>
+ * Codec instances hold on to a scratch buffer that is reused between calls, so
+ * they are not thread-safe.
+ * </p>
+ */
+public final class CelestialNodeCodec {
+
+	public static final int VERSION = 1;
+
+	private static final int FLAG_FLOAT_PRECISION = 1 << 0;
+
+	// the order of these must not change, since they are written as their index.
+	private static final int KIND_BINARY = 0;
+	private static final int KIND_STAR = 1;
+	private static final int KIND_PLANET = 2;
+	private static final int KIND_OTHER = 3;
+
+	// guards against stack overflows from malformed data. Real systems are nowhere
+	// near this deep.
+	private static final int MAX_DEPTH = 64;
+
+	public enum Precision {
+		/** Real numbers are written exactly. */
+		DOUBLE,
+		/**
+		 * Real numbers are rounded to floats, which roughly halves the size of a tree.
+		 * This should only be used for trees that are just for display, since it
+		 * changes things like positions and orbits slightly.
+		 */
+		FLOAT,
+	}
+
+	public final Precision precision;
+	private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+	public CelestialNodeCodec(Precision precision) {
+		this.precision = precision;
+	}
+
+	// =============== writing ===============
+
+	private void reserve(int bytes) {
+		if (this.scratch.remaining() >= bytes)
+			return;
+		final var newCapacity = Math.max(2 * this.scratch.capacity(), this.scratch.position() + bytes);
+		this.scratch = ByteBuffer.wrap(Arrays.copyOf(this.scratch.array(), newCapacity))
+				.position(this.scratch.position());
+	}
+
+	private void writeVarInt(int value) {
+		reserve(5);
+		while ((value & ~0x7f) != 0) {
+			this.scratch.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		this.scratch.put((byte) value);
+	}
+
+	private void writeZigZag(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	private void writeLong(long value) {
+		reserve(Long.BYTES);
+		this.scratch.putLong(value);
+	}
+
+	private void writeReal(double value) {
+		if (this.precision == Precision.FLOAT) {
+			reserve(Float.BYTES);
+			this.scratch.putFloat((float) value);
+		} else {
+			reserve(Double.BYTES);
+			this.scratch.putDouble(value);
+		}
+	}
+
+	private void writeString(@Nullable String value) {
+		// 0 is reserved for null
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+		final var bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length + 1);
+		reserve(bytes.length);
+		this.scratch.put(bytes);
+	}
+
+	private void writePlane(OrbitalPlane plane) {
+		final var q = plane.rotationFromReference();
+		writeReal(q.w);
+		writeReal(q.i);
+		writeReal(q.j);
+		writeReal(q.k);
+	}
+
+	private void writeShape(OrbitalShape shape) {
+		writeReal(shape.eccentricity());
+		writeReal(shape.semiMajor());
+	}
+
+	private void writeNode(CelestialNode node) {
+		if (node instanceof BinaryCelestialNode) {
+			writeVarInt(KIND_BINARY);
+		} else if (node instanceof StellarCelestialNode) {
+			writeVarInt(KIND_STAR);
+		} else if (node instanceof PlanetaryCelestialNode) {
+			writeVarInt(KIND_PLANET);
+		} else {
+			writeVarInt(KIND_OTHER);
+		}
+
+		writeZigZag(node.id);
+		writeLong(node.seed);
+		writeString(node.explicitName);
+		writeReal(node.massYg);
+		writeReal(node.position.x);
+		writeReal(node.position.y);
+		writeReal(node.position.z);
+		writeReal(node.apsidalRate);
+		writePlane(node.referencePlane);
+
+		if (node instanceof BinaryCelestialNode binaryNode) {
+			writeNode(binaryNode.getInner());
+			writeNode(binaryNode.getOuter());
+			writePlane(binaryNode.orbitalPlane);
+			writeShape(binaryNode.orbitalShapeInner);
+			writeShape(binaryNode.orbitalShapeOuter);
+			writeReal(binaryNode.phase);
+		}
+		if (node instanceof UnaryCelestialNode unaryNode) {
+			writeReal(unaryNode.radius);
+			writeReal(unaryNode.obliquityAngle);
+			writeReal(unaryNode.rotationalRate);
+			writeReal(unaryNode.temperature);
+			writeVarInt(unaryNode.rings.size());
+			for (final var ring : unaryNode.rings.iterable()) {
+				writePlane(ring.orbitalPlane);
+				writeReal(ring.eccentricity);
+				writeReal(ring.mass);
+				writeReal(ring.interval.min);
+				writeReal(ring.interval.max);
+			}
+		}
+		if (node instanceof StellarCelestialNode starNode) {
+			writeVarInt(starNode.type.ordinal());
+			writeReal(starNode.luminosityLsol);
+		}
+		if (node instanceof PlanetaryCelestialNode planetNode) {
+			writeVarInt(planetNode.type.ordinal());
+		}
+
+		writeVarInt(node.childNodes.size());
+		for (final var child : node.childNodes.iterable()) {
+			writeNode(child.node);
+			writeReal(child.phase);
+			writePlane(child.orbitalPlane);
+			writeShape(child.orbitalShape);
+		}
+	}
+
+	/**
+	 * Encodes a tree into this codec's scratch buffer.
+	 *
+	 * @return A view of the encoded tree, which is only valid until the next call
+	 *         to any method of this codec.
+	 */
+	public ByteBuffer encode(CelestialNode root) {
+		this.scratch.clear();
+		reserve(2);
+		this.scratch.put((byte) VERSION);
+		this.scratch.put((byte) (this.precision == Precision.FLOAT ? FLAG_FLOAT_PRECISION : 0));
+		writeNode(root);
+		return this.scratch.flip();
+	}
+
+	public byte[] encodeToArray(CelestialNode root) {
+		final var data = encode(root);
+		final var res = new byte[data.remaining()];
+		data.get(res);
+		return res;
+	}
+
+	// =============== reading ===============
+
+	private static final class Reader {
+		private final ByteBuffer in;
+		private final boolean floatPrecision;
+
+		private Reader(ByteBuffer in, boolean floatPrecision) {
+			this.in = in;
+			this.floatPrecision = floatPrecision;
+		}
+
+		private int readVarInt() {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				final var b = this.in.get();
+				value |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new IllegalArgumentException("varint is too long");
+		}
+
+		private int readCount() {
+			final var count = readVarInt();
+			// every entry takes up at least one byte, so this catches garbage counts
+			// before we try to do anything with them.
+			if (count < 0 || count > this.in.remaining())
+				throw new IllegalArgumentException("invalid count " + count);
+			return count;
+		}
+
+		private int readZigZag() {
+			final var value = readVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private double readReal() {
+			return this.floatPrecision ? this.in.getFloat() : this.in.getDouble();
+		}
+
+		@Nullable
+		private String readString() {
+			final var length = readCount();
+			if (length == 0)
+				return null;
+			final var bytes = new byte[length - 1];
+			this.in.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private OrbitalPlane readPlane() {
+			final var w = readReal();
+			final var i = readReal();
+			final var j = readReal();
+			final var k = readReal();
+			return new OrbitalPlane(new Quat(w, i, j, k));
+		}
+
+		private OrbitalShape readShape() {
+			final var eccentricity = readReal();
+			final var semiMajor = readReal();
+			return new OrbitalShape(eccentricity, semiMajor);
+		}
+
+		private static <T extends Enum<T>> T readEnum(T[] values, int index) {
+			if (index < 0 || index >= values.length)
+				throw new IllegalArgumentException("invalid enum index " + index);
+			return values[index];
+		}
+
+		private CelestialNode readNode(int depth) {
+			if (depth > MAX_DEPTH)
+				throw new IllegalArgumentException("node tree is too deep");
+
+			final var kind = readVarInt();
+			final CelestialNode node = switch (kind) {
+				case KIND_BINARY -> new BinaryCelestialNode();
+				case KIND_STAR -> new StellarCelestialNode();
+				case KIND_PLANET -> new PlanetaryCelestialNode();
+				case KIND_OTHER -> new OtherCelestialNode();
+				default -> throw new IllegalArgumentException("invalid node kind " + kind);
+			};
+
+			node.id = readZigZag();
+			node.seed = this.in.getLong();
+			node.explicitName = readString();
+			node.massYg = readReal();
+			final var x = readReal();
+			final var y = readReal();
+			final var z = readReal();
+			Vec3.set(node.position, new Vec3(x, y, z));
+			node.apsidalRate = readReal();
+			node.referencePlane = readPlane();
+
+			if (node instanceof BinaryCelestialNode binaryNode) {
+				binaryNode.setInner(readNode(depth + 1));
+				binaryNode.setOuter(readNode(depth + 1));
+				binaryNode.orbitalPlane = readPlane();
+				binaryNode.orbitalShapeInner = readShape();
+				binaryNode.orbitalShapeOuter = readShape();
+				binaryNode.phase = readReal();
+			}
+			if (node instanceof UnaryCelestialNode unaryNode) {
+				unaryNode.radius = readReal();
+				unaryNode.obliquityAngle = readReal();
+				unaryNode.rotationalRate = readReal();
+				unaryNode.temperature = readReal();
+				final var ringCount = readCount();
+				for (int i = 0; i < ringCount; ++i) {
+					final var plane = readPlane();
+					final var eccentricity = readReal();
+					final var ringMass = readReal();
+					final var lower = readReal();
+					final var higher = readReal();
+					unaryNode.rings.push(new CelestialRing(plane, eccentricity, new Interval(lower, higher), ringMass));
+				}
+			}
+			if (node instanceof StellarCelestialNode starNode) {
+				starNode.type = readEnum(StellarCelestialNode.Type.values(), readVarInt());
+				starNode.luminosityLsol = readReal();
+			}
+			if (node instanceof PlanetaryCelestialNode planetNode) {
+				planetNode.type = readEnum(PlanetaryCelestialNode.Type.values(), readVarInt());
+			}
+
+			final var childCount = readCount();
+			for (int i = 0; i < childCount; ++i) {
+				final var childNode = readNode(depth + 1);
+				final var phase = readReal();
+				final var orbitalPlane = readPlane();
+				final var orbitalShape = readShape();
+				node.insertChild(new CelestialNodeChild<>(node, childNode, orbitalShape, orbitalPlane, phase));
+			}
+
+			return node;
+		}
+	}
+
+	/**
+	 * Reads a tree that was previously written with {@link #encode(CelestialNode)},
+	 * starting at the current position of {@code in}. The position of {@code in} is left just past the end
+	 * of the tree.
+	 *
+	 * @return The root node of the tree, or {@code null} if the data in {@code in}
+	 *         was malformed or written by an unsupported version.
+	 */
+	@Nullable
+	public static CelestialNode read(ByteBuffer in) {
+		try {
+			final var version = in.get() & 0xff;
+			if (version != VERSION) {
+				Mod.LOGGER.error("could not read celestial node tree with unsupported version {}", version);
+				return null;
+			}
+			final var flags = in.get();
+			final var root = new Reader(in, (flags & FLAG_FLOAT_PRECISION) != 0).readNode(0);
+			root.build();
+			return root;
+		} catch (BufferUnderflowException | IllegalArgumentException ex) {
+			Mod.LOGGER.error("could not read malformed celestial node tree: {}", ex.getMessage());
+			return null;
+		}
+	}
+
+}
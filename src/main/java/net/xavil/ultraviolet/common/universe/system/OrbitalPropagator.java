@@ -0,0 +1,505 @@
+package net.xavil.ultraviolet.common.universe.system;
+
+import java.util.Arrays;
+
+import net.minecraft.util.Mth;
+import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.hawklib.collections.impl.VectorInt;
+import net.xavil.hawklib.math.Ellipse;
+import net.xavil.hawklib.math.Formulas;
+import net.xavil.hawklib.math.OrbitalPlane;
+import net.xavil.hawklib.math.OrbitalShape;
+import net.xavil.hawklib.math.Quat;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.hawklib.math.matrices.interfaces.Vec3Access;
+
+/**
+ * A flattened copy of the orbits in a {@link CelestialNode} tree, which can
+ * update the positions of every node in the tree without allocating or
+ * recursing.
+ * <p>
+ * Everything about an orbit that does not depend on time - its shape, its
+ * orbital period, the orientation of its plane relative to the root node - is
+ * worked out once when the propagator is built, and stored in flat arrays.
+ * Orbits are stored in topological order, so each orbit's focus is always
+ * positioned before the orbit itself.
+ * </p>
+ * <p>
+ * {@link #update(double)} does the same floating point operations in the same
+ * order as {@link CelestialNode#updatePositions(double)}, just without the
+ * intermediate {@link Vec3}s, {@link Quat}s, and {@link Ellipse}s. The only
+ * difference is that the Kepler solve for each orbit starts from the previous
+ * update's solution, so the two agree to within
+ * {@link Formulas#DEFAULT_KEPLER_TOLERANCE} rather than bit for bit.
+ * </p>
+ * <p>
+ * {@link #update(double, double)} trades accuracy for speed by only evaluating
+ * orbits that have moved far enough since they were last evaluated, and
+ * extrapolating the rest.
+ * </p>
+ * <p>
+ * {@link Query}s find the position of a single node at an arbitrary time,
+ * without touching the tree or the propagator. Since the orbital parameters
+ * never change once the propagator is built, any number of queries can run at
+ * once, on any thread, alongside updates.
+ * </p>
+ * <p>
+ * The propagator captures the orbital parameters of the tree at the time it was
+ * built, so it must be rebuilt if the tree's structure or any of its orbits
+ * change. It is not safe to update from multiple threads at once.
+ * </p>
+ */
+public final class OrbitalPropagator {
+
+	public final CelestialNode rootNode;
+
+	// index 0 is the root node, which has no orbit, so all the per-orbit arrays
+	// are unused at that index.
+	private final CelestialNode[] nodes;
+	// maps node IDs to indices into the arrays below, or -1 for IDs not in the tree.
+	private final int[] indexById;
+	// the index of the node that each node orbits around. The focus node's mass
+	// and apsidal rate are used for the orbit.
+	private final int[] focus;
+
+	// the orbital plane, relative to the root node
+	private final double[] planeW, planeI, planeJ, planeK;
+	// the shape of the ellipse that the orbit traces out
+	private final double[] semiMajor, semiMinor, focalDistance;
+	// the ellipse's focus is on its right side, rather than its left
+	private final boolean[] rightFocus;
+	// parameters of the kepler solve, which for binary orbits use the combined
+	// shape of both orbits instead of the ellipse's shape
+	private final double[] eccentricity, meanMotion, phase;
+	private final boolean[] reverse;
+	private final double[] apsidalRate;
+	// the eccentric anomaly of each orbit as of the last update, used as the
+	// starting point for the next kepler solve.
+	private final double[] eccentricAnomaly;
+
+	private final double[] posX, posY, posZ;
+	// the last time each orbit was evaluated exactly, along with the offset from
+	// its focus at that time and an estimate of how fast that offset is changing.
+	private final double[] refreshTime;
+	// (rad/s) an upper bound on how fast each node moves around its focus, from
+	// both its orbit and the precession of that orbit.
+	private final double[] angularRate;
+	private final double[] offsetX, offsetY, offsetZ;
+	private final double[] velocityX, velocityY, velocityZ;
+
+	private final Scratch scratch = new Scratch();
+
+	// working space for evaluate(), so that the propagator and each query can
+	// evaluate orbits independently of one another.
+	private static final class Scratch {
+		// the result of the last call to transform()
+		public double tx, ty, tz;
+		// the result of the last call to evaluate()
+		public double x, y, z, eccentricAnomaly;
+	}
+
+	private record Orbit(int focus, Quat plane, OrbitalShape ellipseShape, OrbitalShape periodShape,
+			boolean isOuter, double phase) {
+	}
+
+	public OrbitalPropagator(CelestialNode rootNode) {
+		this.rootNode = rootNode;
+
+		// the root node does not orbit anything, so it gets a null orbit
+		rootNode.referencePlane = OrbitalPlane.ZERO;
+		final var nodes = Vector.<CelestialNode>fromElements(rootNode);
+		final var orbits = Vector.<Orbit>fromElements((Orbit) null);
+
+		// mirrors the traversal in CelestialNode.updatePositions(), but uses a stack
+		// instead of recursing. Nodes are numbered when they are first seen, so every
+		// node comes after the node it orbits.
+		final var stack = VectorInt.fromElements(0);
+		while (!stack.isEmpty()) {
+			final var parentIndex = stack.popOrThrow();
+			final var node = nodes.get(parentIndex);
+			final var referencePlane = node.referencePlane;
+
+			if (node instanceof BinaryCelestialNode binaryNode) {
+				final var combinedShape = binaryNode.getCombinedShape();
+				final var plane = binaryNode.orbitalPlane.withReferencePlane(referencePlane);
+				binaryNode.getInner().referencePlane = plane;
+				binaryNode.getOuter().referencePlane = plane;
+				stack.push(nodes.size());
+				nodes.push(binaryNode.getInner());
+				orbits.push(new Orbit(parentIndex, plane.rotationFromReference(),
+						binaryNode.orbitalShapeInner, combinedShape, false, binaryNode.phase));
+				stack.push(nodes.size());
+				nodes.push(binaryNode.getOuter());
+				orbits.push(new Orbit(parentIndex, plane.rotationFromReference(),
+						binaryNode.orbitalShapeOuter, combinedShape, true, binaryNode.phase));
+			}
+
+			for (final var childOrbit : node.childNodes.iterable()) {
+				final var plane = childOrbit.orbitalPlane.withReferencePlane(referencePlane);
+				childOrbit.node.referencePlane = plane;
+				stack.push(nodes.size());
+				nodes.push(childOrbit.node);
+				orbits.push(new Orbit(parentIndex, plane.rotationFromReference(),
+						childOrbit.orbitalShape, childOrbit.orbitalShape, false, childOrbit.phase));
+			}
+		}
+
+		final var count = nodes.size();
+		this.nodes = nodes.toArray(CelestialNode.class);
+		this.focus = new int[count];
+		this.planeW = new double[count];
+		this.planeI = new double[count];
+		this.planeJ = new double[count];
+		this.planeK = new double[count];
+		this.semiMajor = new double[count];
+		this.semiMinor = new double[count];
+		this.focalDistance = new double[count];
+		this.rightFocus = new boolean[count];
+		this.eccentricity = new double[count];
+		this.meanMotion = new double[count];
+		this.phase = new double[count];
+		this.reverse = new boolean[count];
+		this.apsidalRate = new double[count];
+		this.eccentricAnomaly = new double[count];
+		this.posX = new double[count];
+		this.posY = new double[count];
+		this.posZ = new double[count];
+		this.refreshTime = new double[count];
+		this.angularRate = new double[count];
+		this.offsetX = new double[count];
+		this.offsetY = new double[count];
+		this.offsetZ = new double[count];
+		this.velocityX = new double[count];
+		this.velocityY = new double[count];
+		this.velocityZ = new double[count];
+
+		// every node has a larger ID than its descendants, so the root node has the
+		// largest one.
+		this.indexById = new int[Math.max(0, rootNode.id + 1)];
+		Arrays.fill(this.indexById, -1);
+		for (int i = 0; i < count; ++i) {
+			final var id = this.nodes[i].id;
+			if (id >= 0 && id < this.indexById.length)
+				this.indexById[id] = i;
+		}
+
+		for (int i = 1; i < count; ++i) {
+			final var orbit = orbits.get(i);
+			final var focusNode = this.nodes[orbit.focus];
+			this.focus[i] = orbit.focus;
+			this.planeW[i] = orbit.plane.w;
+			this.planeI[i] = orbit.plane.i;
+			this.planeJ[i] = orbit.plane.j;
+			this.planeK[i] = orbit.plane.k;
+			this.semiMajor[i] = orbit.ellipseShape.semiMajor();
+			this.semiMinor[i] = orbit.ellipseShape.semiMinor();
+			this.focalDistance[i] = orbit.ellipseShape.focalDistance();
+			// the outer node of a binary pair sits on the other side of the ellipse, and
+			// moves in the opposite direction.
+			this.rightFocus[i] = orbit.isOuter;
+			this.reverse[i] = orbit.isOuter;
+			this.eccentricity[i] = orbit.periodShape.eccentricity();
+			final var orbitalPeriod = Formulas.orbitalPeriod(orbit.periodShape.semiMajor(), focusNode.massYg);
+			this.meanMotion[i] = 2 * Math.PI / orbitalPeriod;
+			this.phase[i] = orbit.phase;
+			this.apsidalRate[i] = focusNode.apsidalRate;
+			this.eccentricAnomaly[i] = Double.NaN;
+			this.refreshTime[i] = Double.NaN;
+			this.angularRate[i] = Math.abs(this.meanMotion[i]) + Math.abs(focusNode.apsidalRate);
+		}
+	}
+
+	public int size() {
+		return this.nodes.length;
+	}
+
+	public void storeLastPositions() {
+		for (final var node : this.nodes) {
+			Vec3.set(node.lastPosition, node.position);
+		}
+	}
+
+	/**
+	 * Updates the position of every node in the tree, except for the root node,
+	 * which stays where it is.
+	 *
+	 * @param time The amount of elapsed time, in seconds. Note that this is the
+	 *             total elapsed time, and *not* the delta time.
+	 */
+	public void update(double time) {
+		update(time, 0.0);
+	}
+
+	/**
+	 * Updates the position of every node in the tree, except for the root node,
+	 * which stays where it is.
+	 * <p>
+	 * Orbits that have swept out less than {@code maximumAngle} since they were
+	 * last evaluated exactly are not evaluated again. Instead, their offset from
+	 * their focus is extrapolated linearly from the last two exact evaluations,
+	 * which is off by roughly {@code semiMajor * maximumAngle^2}. Fast orbits end
+	 * up being evaluated on every update, and slow ones only every so often.
+	 * </p>
+	 *
+	 * @param time         The amount of elapsed time, in seconds. Note that this
+	 *                     is the total elapsed time, and *not* the delta time.
+	 * @param maximumAngle (rad) How far an orbit may travel before it needs to be
+	 *                     evaluated again. A value of 0 evaluates every orbit.
+	 * @return The number of orbits that were evaluated exactly.
+	 */
+	public int update(double time, double maximumAngle) {
+		this.posX[0] = this.rootNode.position.x;
+		this.posY[0] = this.rootNode.position.y;
+		this.posZ[0] = this.rootNode.position.z;
+
+		int evaluatedCount = 0;
+		for (int i = 1; i < this.nodes.length; ++i) {
+			final var f = this.focus[i];
+			// NaN if this orbit has never been evaluated, which fails the comparison below.
+			final var sinceRefresh = time - this.refreshTime[i];
+
+			if (Math.abs(sinceRefresh) * this.angularRate[i] < maximumAngle) {
+				this.posX[i] = this.posX[f] + this.offsetX[i] + this.velocityX[i] * sinceRefresh;
+				this.posY[i] = this.posY[f] + this.offsetY[i] + this.velocityY[i] * sinceRefresh;
+				this.posZ[i] = this.posZ[f] + this.offsetZ[i] + this.velocityZ[i] * sinceRefresh;
+			} else {
+				final var rate = this.angularRate[i];
+				// the last exact evaluation is only good for estimating the velocity if it
+				// was recent enough, so if it wasn't, then we make a new one.
+				final var hasPreviousOffset = Math.abs(sinceRefresh) * rate < 2 * maximumAngle && sinceRefresh != 0;
+				var velocityTime = sinceRefresh;
+				if (!hasPreviousOffset && maximumAngle > 0 && rate > 0) {
+					velocityTime = maximumAngle / rate;
+					evaluate(this.scratch, i, this.posX[f], this.posY[f], this.posZ[f], time - velocityTime,
+							this.eccentricAnomaly[i], Double.NaN);
+					this.offsetX[i] = this.scratch.x - this.posX[f];
+					this.offsetY[i] = this.scratch.y - this.posY[f];
+					this.offsetZ[i] = this.scratch.z - this.posZ[f];
+				}
+
+				evaluate(this.scratch, i, this.posX[f], this.posY[f], this.posZ[f], time,
+						this.eccentricAnomaly[i], velocityTime);
+				evaluatedCount += 1;
+				this.posX[i] = this.scratch.x;
+				this.posY[i] = this.scratch.y;
+				this.posZ[i] = this.scratch.z;
+				this.eccentricAnomaly[i] = this.scratch.eccentricAnomaly;
+
+				final var ox = this.posX[i] - this.posX[f];
+				final var oy = this.posY[i] - this.posY[f];
+				final var oz = this.posZ[i] - this.posZ[f];
+				final var hasVelocity = Double.isFinite(velocityTime) && velocityTime != 0;
+				this.velocityX[i] = hasVelocity ? (ox - this.offsetX[i]) / velocityTime : 0;
+				this.velocityY[i] = hasVelocity ? (oy - this.offsetY[i]) / velocityTime : 0;
+				this.velocityZ[i] = hasVelocity ? (oz - this.offsetZ[i]) / velocityTime : 0;
+				this.offsetX[i] = ox;
+				this.offsetY[i] = oy;
+				this.offsetZ[i] = oz;
+				this.refreshTime[i] = time;
+			}
+
+			Vec3.set(this.nodes[i].position, this.posX[i], this.posY[i], this.posZ[i]);
+		}
+		return evaluatedCount;
+	}
+
+	/**
+	 * Moves every node along the linear extrapolation of its orbit from its last
+	 * exact evaluation, like {@link #update(double, double)} does for orbits that
+	 * haven't moved far enough, but without evaluating any orbits at all, no
+	 * matter how far they have moved. Orbits that have never been evaluated stay
+	 * where they are.
+	 *
+	 * @param time The amount of elapsed time, in seconds. Note that this is the
+	 *             total elapsed time, and *not* the delta time.
+	 */
+	public void extrapolate(double time) {
+		this.posX[0] = this.rootNode.position.x;
+		this.posY[0] = this.rootNode.position.y;
+		this.posZ[0] = this.rootNode.position.z;
+
+		for (int i = 1; i < this.nodes.length; ++i) {
+			final var f = this.focus[i];
+			final var sinceRefresh = time - this.refreshTime[i];
+			if (Double.isNaN(sinceRefresh)) {
+				this.posX[i] = this.nodes[i].position.x;
+				this.posY[i] = this.nodes[i].position.y;
+				this.posZ[i] = this.nodes[i].position.z;
+				continue;
+			}
+			this.posX[i] = this.posX[f] + this.offsetX[i] + this.velocityX[i] * sinceRefresh;
+			this.posY[i] = this.posY[f] + this.offsetY[i] + this.velocityY[i] * sinceRefresh;
+			this.posZ[i] = this.posZ[f] + this.offsetZ[i] + this.velocityZ[i] * sinceRefresh;
+			Vec3.set(this.nodes[i].position, this.posX[i], this.posY[i], this.posZ[i]);
+		}
+	}
+
+	/**
+	 * Creates a new query for the positions of nodes in this propagator's tree.
+	 * Each query should only be used by one thread at a time.
+	 */
+	public Query newQuery() {
+		return new Query();
+	}
+
+	/**
+	 * Finds the positions of individual nodes at arbitrary times, without
+	 * modifying the node tree or the propagator it came from.
+	 * <p>
+	 * Only the orbits of the node and its ancestors are evaluated. The position of
+	 * each node evaluated is cached until a query is made for a different time,
+	 * so querying many nodes at the same time only evaluates each shared ancestor
+	 * once.
+	 * </p>
+	 */
+	public final class Query {
+		// the time each node's position was last evaluated at, or NaN if it never
+		// has been. Cached positions are only valid if this matches the query time.
+		private final double[] cachedTime = new double[nodes.length];
+		private final double[] cachedX = new double[nodes.length];
+		private final double[] cachedY = new double[nodes.length];
+		private final double[] cachedZ = new double[nodes.length];
+		private final double[] cachedEccentricAnomaly = new double[nodes.length];
+		// nodes that still need to be evaluated, from the queried node upwards
+		private final int[] chain = new int[nodes.length];
+		private final Scratch scratch = new Scratch();
+
+		private Query() {
+			Arrays.fill(this.cachedTime, Double.NaN);
+			Arrays.fill(this.cachedEccentricAnomaly, Double.NaN);
+		}
+
+		public CelestialNode rootNode() {
+			return rootNode;
+		}
+
+		/**
+		 * Finds where a node is at the given time. The root node is taken to be
+		 * wherever it is right now.
+		 * 
+		 * @param out    Where to store the node's position.
+		 * @param nodeId The ID of the node.
+		 * @param time   The total elapsed time, in seconds.
+		 * @return {@code false} if there is no node with the given ID in the tree, in
+		 *         which case {@code out} is left alone.
+		 */
+		public boolean position(Vec3.Mutable out, int nodeId, double time) {
+			if (nodeId < 0 || nodeId >= indexById.length || indexById[nodeId] < 0)
+				return false;
+
+			// walk up the tree until we find an ancestor whose position we already know
+			int chainLength = 0;
+			int i = indexById[nodeId];
+			while (i != 0 && this.cachedTime[i] != time) {
+				this.chain[chainLength++] = i;
+				i = focus[i];
+			}
+
+			final Vec3Access rootPos = rootNode.position;
+			double x = i == 0 ? rootPos.x() : this.cachedX[i];
+			double y = i == 0 ? rootPos.y() : this.cachedY[i];
+			double z = i == 0 ? rootPos.z() : this.cachedZ[i];
+
+			// ...and then walk back down, evaluating each orbit along the way.
+			while (chainLength > 0) {
+				i = this.chain[--chainLength];
+				evaluate(this.scratch, i, x, y, z, time,
+						this.cachedEccentricAnomaly[i], time - this.cachedTime[i]);
+				x = this.scratch.x;
+				y = this.scratch.y;
+				z = this.scratch.z;
+				this.cachedTime[i] = time;
+				this.cachedX[i] = x;
+				this.cachedY[i] = y;
+				this.cachedZ[i] = z;
+				this.cachedEccentricAnomaly[i] = this.scratch.eccentricAnomaly;
+			}
+
+			Vec3.set(out, x, y, z);
+			return true;
+		}
+	}
+
+	// evaluates orbit `i` exactly, with its focus at `(fx, fy, fz)`, storing the
+	// result in `s`. `lastE` is the eccentric anomaly of the orbit `sinceLast`
+	// seconds ago, which is only used to speed up the kepler solve, and may be NaN.
+	// This only reads from the propagator, so it is safe to call from any thread.
+	private void evaluate(Scratch s, int i, double fx, double fy, double fz, double time,
+			double lastE, double sinceLast) {
+		// @formatter:off
+		// Ellipse.fromOrbit()
+		final var precessionAngle = this.apsidalRate[i] * time;
+		final var ps = Math.sin(precessionAngle / 2);
+		final double r0 = Math.cos(precessionAngle / 2), r1 = 0.0 * ps, r2 = 1.0 * ps, r3 = 0.0 * ps;
+		final double l0 = this.planeW[i], l1 = this.planeI[i], l2 = this.planeJ[i], l3 = this.planeK[i];
+		final double rw = l0 * r0 - l1 * r1 - l2 * r2 - l3 * r3;
+		final double ri = l0 * r1 + l1 * r0 + l2 * r3 - l3 * r2;
+		final double rj = l0 * r2 - l1 * r3 + l2 * r0 + l3 * r1;
+		final double rk = l0 * r3 + l1 * r2 - l2 * r1 + l3 * r0;
+
+		final var flipRight = this.rightFocus[i] ? -1.0 : 1.0;
+		transform(s, rw, ri, rj, rk, 1.0, 0.0, 0.0);
+		final double rdx = s.tx * flipRight, rdy = s.ty * flipRight, rdz = s.tz * flipRight;
+		transform(s, rw, ri, rj, rk, 0.0, 0.0, 1.0);
+		final double udx = s.tx, udy = s.ty, udz = s.tz;
+
+		final var fd = -this.focalDistance[i];
+		final double cx = rdx * fd + fx, cy = rdy * fd + fy, cz = rdz * fd + fz;
+		final var a = this.semiMajor[i];
+		final var b = this.semiMinor[i];
+		final double rx = rdx * a, ry = rdy * a, rz = rdz * a;
+		final double ux = udx * b, uy = udy * b, uz = udz * b;
+
+		// CelestialNode.getOrbitalPosition()
+		final var meanAnomaly = this.phase[i] + this.meanMotion[i] * time;
+		final var eccentricity = this.eccentricity[i];
+		// dE/dt = n / (1 - e * cos(E)), so step the last solution forwards by that much
+		final var guess = lastE + this.meanMotion[i] * sinceLast / (1 - eccentricity * Math.cos(lastE));
+		final var eccentricAnomaly = Formulas.solveKepler(meanAnomaly, eccentricity, guess,
+				Formulas.DEFAULT_KEPLER_TOLERANCE);
+		s.eccentricAnomaly = eccentricAnomaly;
+		final var trueAnomaly = Formulas.trueAnomalyFromEccentricAnomaly(eccentricAnomaly, eccentricity);
+		final var angle = this.reverse[i] ? -trueAnomaly : trueAnomaly;
+
+		// Ellipse.pointFromTrueAnomaly()
+		final var rightLength = Math.sqrt(rx * rx + ry * ry + rz * rz);
+		final var upLength = Math.sqrt(ux * ux + uy * uy + uz * uz);
+		final var e = Ellipse.eccentricity(rightLength, upLength);
+		final var r = rightLength * (1 - e * e) / (1 + e * Math.cos(angle));
+
+		final var invRightLength = 1 / rightLength;
+		final double rnx = rx * invRightLength, rny = ry * invRightLength, rnz = rz * invRightLength;
+		final double nx = rny * uz - rnz * uy, ny = rnz * ux - rnx * uz, nz = rnx * uy - rny * ux;
+		final var invNormalLength = 1 / Math.sqrt(nx * nx + ny * ny + nz * nz);
+		final double ax = nx * invNormalLength, ay = ny * invNormalLength, az = nz * invNormalLength;
+		final var as = Math.sin(angle / 2);
+		transform(s, Math.cos(angle / 2), ax * as, ay * as, az * as, rnx, rny, rnz);
+
+		final var focalDistance = Ellipse.focalDistance(rightLength, upLength);
+		s.x = cx + rnx * focalDistance + s.tx * r;
+		s.y = cy + rny * focalDistance + s.ty * r;
+		s.z = cz + rnz * focalDistance + s.tz * r;
+		// @formatter:on
+	}
+
+	// same as Quat.transform()
+	private static void transform(Scratch s, double w, double i, double j, double k, double x, double y, double z) {
+		// @formatter:off
+		final var f = Mth.fastInvSqrt(w * w + i * i + j * j + k * k);
+		final double normw = f * w, normi = f * i, normj = f * j, normk = f * k;
+
+		final double l00 = normw, l01 =  normi, l02 =  normj, l03 =  normk;
+		final double r00 =     0, r01 =      x, r02 =      y, r03 =      z;
+		final double r10 = normw, r11 = -normi, r12 = -normj, r13 = -normk;
+
+		final double w0 = l00 * r00 - l01 * r01 - l02 * r02 - l03 * r03;
+		final double i0 = l00 * r01 + l01 * r00 + l02 * r03 - l03 * r02;
+		final double j0 = l00 * r02 - l01 * r03 + l02 * r00 + l03 * r01;
+		final double k0 = l00 * r03 + l01 * r02 - l02 * r01 + l03 * r00;
+		s.tx =  w0 * r11 +  i0 * r10 +  j0 * r13 -  k0 * r12;
+		s.ty =  w0 * r12 -  i0 * r13 +  j0 * r10 +  k0 * r11;
+		s.tz =  w0 * r13 +  i0 * r12 -  j0 * r11 +  k0 * r10;
+		// @formatter:on
+	}
+
+}
@@ -12,6 +12,7 @@ public final class StarSystem {
 	public final double metallicity;
 	public CelestialNode rootNode;
 	private GalaxySector.ElementHolder systemInfo;
+	private OrbitalPropagator propagator = null;
 
 	public StarSystem(String name, Galaxy parentGalaxy, GalaxySector.ElementHolder systemInfo, CelestialNode rootNode,
 			double metallicity) {
@@ -27,4 +28,58 @@ public final class StarSystem {
 		info.loadCopyOf(this.systemInfo);
 	}
 
+	// synchronized so that queries made from other threads don't race with the
+	// tick thread to build the propagator.
+	private synchronized OrbitalPropagator propagator() {
+		if (this.propagator == null || this.propagator.rootNode != this.rootNode)
+			this.propagator = new OrbitalPropagator(this.rootNode);
+		return this.propagator;
+	}
+
+	/**
+	 * Creates a query that can find where any node in this system is at any time,
+	 * without moving the nodes themselves. Queries can be made from any thread, but
+	 * each query should only be used by one thread at a time. A query keeps
+	 * referring to the same tree even if {@link #rootNode} is replaced.
+	 */
+	public OrbitalPropagator.Query newPositionQuery() {
+		return propagator().newQuery();
+	}
+
+	/**
+	 * Does the same thing as {@code rootNode.updatePositions(time)}, but reuses a
+	 * flattened copy of the node tree between calls, which is rebuilt whenever
+	 * {@link #rootNode} is replaced.
+	 * 
+	 * @param time The total elapsed time, in seconds.
+	 */
+	public void updatePositions(double time) {
+		updatePositions(time, 0.0);
+	}
+
+	/**
+	 * @see OrbitalPropagator#update(double, double)
+	 */
+	public int updatePositions(double time, double maximumAngle) {
+		return propagator().update(time, maximumAngle);
+	}
+
+	/**
+	 * Moves every node along its extrapolated orbit without evaluating any orbits.
+	 * This is much cheaper than updating the positions, but gets less accurate the
+	 * longer it has been since the last update.
+	 *
+	 * @see OrbitalPropagator#extrapolate(double)
+	 */
+	public void extrapolatePositions(double time) {
+		propagator().extrapolate(time);
+	}
+
+	/**
+	 * Copies the current position of each node into its last position.
+	 */
+	public void storeLastPositions() {
+		propagator().storeLastPositions();
+	}
+
 }
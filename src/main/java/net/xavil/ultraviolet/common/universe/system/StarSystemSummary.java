@@ -0,0 +1,35 @@
+package net.xavil.ultraviolet.common.universe.system;
+
+import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector;
+import net.xavil.hawklib.math.matrices.Vec3;
+
+/**
+ * The parts of a {@link StarSystem} that can be derived from its sector element
+ * alone, without generating its full tree of {@link CelestialNode}s. Meant for
+ * things like UI that only need to show a system's name or primary star.
+ */
+public final class StarSystemSummary {
+
+	public final String name;
+	public final Vec3 pos;
+	public final double metallicity;
+	public final long systemSeed;
+
+	// properties of the system's primary star
+	public final double massYg;
+	public final double luminosityLsol;
+	public final double temperatureK;
+	public final double systemAgeMyr;
+
+	public StarSystemSummary(String name, GalaxySector.ElementHolder systemInfo, double metallicity) {
+		this.name = name;
+		this.pos = systemInfo.systemPosTm.xyz();
+		this.metallicity = metallicity;
+		this.systemSeed = systemInfo.systemSeed;
+		this.massYg = systemInfo.massYg;
+		this.luminosityLsol = systemInfo.luminosityLsol;
+		this.temperatureK = systemInfo.temperatureK;
+		this.systemAgeMyr = systemInfo.systemAgeMyr;
+	}
+
+}
@@ -1,8 +1,6 @@
 package net.xavil.ultraviolet.common.universe.system;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import javax.annotation.Nullable;
 
@@ -16,7 +14,7 @@ import net.xavil.hawklib.Units;
 import net.xavil.hawklib.collections.impl.Vector;
 import net.xavil.hawklib.math.ColorRgba;
 import net.xavil.hawklib.math.matrices.Vec3;
-import net.xavil.ultraviolet.Mod;
+import net.xavil.ultraviolet.common.MappedResources;
 import net.xavil.ultraviolet.common.universe.galaxy.Galaxy;
 import net.xavil.ultraviolet.common.universe.galaxy.GalaxySector;
 import net.xavil.ultraviolet.common.universe.id.GalaxySectorId;
@@ -178,39 +176,19 @@ public non-sealed class StellarCelestialNode extends UnaryCelestialNode {
 
 	public static final class BlackbodyTable {
 		public final int rowCount;
-		private final float[] colorRgb;
-		private final float[] visualBrightnessMultiplier;
 		public final float temperatureMin, temperatureMax;
 
-		private static final class Entry {
-			public float temperature;
-			public float bolometricRatio;
-			public float efficencyY;
-			public float x, y, Y;
-			public float r, g, b;
-
-			private void storeColumn(String column, float value) {
-				switch (column) {
-					case "temperature" -> this.temperature = value;
-					case "bolometric_ratio" -> this.bolometricRatio = value;
-					case "eff_Y" -> this.efficencyY = value;
-					case "x" -> this.x = value;
-					case "y" -> this.y = value;
-					case "Y" -> this.Y = value;
-					case "r" -> this.r = value;
-					case "g" -> this.g = value;
-					case "b" -> this.b = value;
-					default -> {
-					}
-				}
-			}
-		}
+		// rows are read straight out of the table file, which is usually mapped.
+		private final ByteBuffer buf;
+		private final int rowsStart, rowSize;
+		// byte offsets of each column we care about within a row, or -1 if the table
+		// does not have that column.
+		private final int bolometricRatioOffset, efficiencyYOffset, rOffset, gOffset, bOffset;
 
 		private static String readString(ByteBuffer buf) {
-			final var byteCount = buf.getInt();
-			final var startPos = buf.position();
-			buf.position(startPos + byteCount);
-			return new String(buf.array(), startPos, byteCount, Charsets.UTF_8);
+			final var bytes = new byte[buf.getInt()];
+			buf.get(bytes);
+			return new String(bytes, Charsets.UTF_8);
 		}
 
 		// assumes that each row is a constant delta temperature from each other, and
@@ -225,21 +203,33 @@ public non-sealed class StellarCelestialNode extends UnaryCelestialNode {
 			this.rowCount = buf.getInt();
 			this.temperatureMin = buf.getFloat();
 			this.temperatureMax = buf.getFloat();
-			final var entry = new Entry();
-
-			this.colorRgb = new float[3 * this.rowCount];
-			this.visualBrightnessMultiplier = new float[this.rowCount];
 
-			for (int i = 0; i < this.rowCount; ++i) {
-				for (final var column : columns.iterable()) {
-					entry.storeColumn(column, buf.getFloat());
+			this.buf = buf;
+			this.rowsStart = buf.position();
+			this.rowSize = 4 * columnCount;
+			this.bolometricRatioOffset = columnOffset(columns, "bolometric_ratio");
+			this.efficiencyYOffset = columnOffset(columns, "eff_Y");
+			this.rOffset = columnOffset(columns, "r");
+			this.gOffset = columnOffset(columns, "g");
+			this.bOffset = columnOffset(columns, "b");
+		}
 
-					this.visualBrightnessMultiplier[i] = entry.bolometricRatio * entry.efficencyY;
-					this.colorRgb[3 * i + 0] = entry.r;
-					this.colorRgb[3 * i + 1] = entry.g;
-					this.colorRgb[3 * i + 2] = entry.b;
-				}
+		private static int columnOffset(Vector<String> columns, String column) {
+			for (int i = 0; i < columns.size(); ++i) {
+				if (columns.get(i).equals(column))
+					return 4 * i;
 			}
+			return -1;
+		}
+
+		private float get(int row, int columnOffset) {
+			if (columnOffset < 0)
+				return 0;
+			return this.buf.getFloat(this.rowsStart + this.rowSize * row + columnOffset);
+		}
+
+		private float brightnessMultiplier(int row) {
+			return get(row, this.bolometricRatioOffset) * get(row, this.efficiencyYOffset);
 		}
 
 		public float lookupBrightnessMultiplier(double temperatureK) {
@@ -247,11 +237,11 @@ public non-sealed class StellarCelestialNode extends UnaryCelestialNode {
 			final int i = Mth.floor(fi);
 			final var frac = fi - i;
 			if (i >= this.rowCount - 1) {
-				return this.visualBrightnessMultiplier[this.visualBrightnessMultiplier.length - 1];
+				return brightnessMultiplier(this.rowCount - 1);
 			} else if (i < 0) {
-				return this.visualBrightnessMultiplier[0];
+				return brightnessMultiplier(0);
 			}
-			return Mth.lerp((float) frac, this.visualBrightnessMultiplier[i], this.visualBrightnessMultiplier[i + 1]);
+			return Mth.lerp((float) frac, brightnessMultiplier(i), brightnessMultiplier(i + 1));
 		}
 
 		public void lookupColor(Vec3.Mutable out, double temperatureK) {
@@ -259,36 +249,24 @@ public non-sealed class StellarCelestialNode extends UnaryCelestialNode {
 			final int i = Mth.floor(fi);
 			final var frac = fi - i;
 			if (i >= this.rowCount - 1) {
-				out.x = this.colorRgb[this.colorRgb.length - 3];
-				out.y = this.colorRgb[this.colorRgb.length - 2];
-				out.z = this.colorRgb[this.colorRgb.length - 1];
+				out.x = get(this.rowCount - 1, this.rOffset);
+				out.y = get(this.rowCount - 1, this.gOffset);
+				out.z = get(this.rowCount - 1, this.bOffset);
 				return;
 			} else if (i < 0) {
-				out.x = this.colorRgb[0];
-				out.y = this.colorRgb[1];
-				out.z = this.colorRgb[2];
+				out.x = get(0, this.rOffset);
+				out.y = get(0, this.gOffset);
+				out.z = get(0, this.bOffset);
 				return;
 			}
-			out.x = Mth.lerp(frac, this.colorRgb[3 * i + 0], this.colorRgb[3 * i + 3]);
-			out.y = Mth.lerp(frac, this.colorRgb[3 * i + 1], this.colorRgb[3 * i + 4]);
-			out.z = Mth.lerp(frac, this.colorRgb[3 * i + 2], this.colorRgb[3 * i + 5]);
-		}
-	}
-
-	@Nullable
-	private static ByteBuffer loadBlackbodyLut() {
-		try {
-			final var stream = StellarCelestialNode.class.getResourceAsStream("/black_body_lut.bin");
-			return ByteBuffer.wrap(stream.readAllBytes()).order(ByteOrder.BIG_ENDIAN);
-		} catch (IOException ex) {
-			Mod.LOGGER.error("Failed to load star catalog");
-			ex.printStackTrace();
-			return null;
+			out.x = Mth.lerp(frac, get(i, this.rOffset), get(i + 1, this.rOffset));
+			out.y = Mth.lerp(frac, get(i, this.gOffset), get(i + 1, this.gOffset));
+			out.z = Mth.lerp(frac, get(i, this.bOffset), get(i + 1, this.bOffset));
 		}
 	}
 
 	static {
-		BLACK_BODY_COLOR_TABLE = new BlackbodyTable(loadBlackbodyLut());
+		BLACK_BODY_COLOR_TABLE = new BlackbodyTable(MappedResources.load("black_body_lut.bin"));
 	}
 
 	public float getBrightnessMultiplier() {
@@ -1,8 +1,6 @@
 package net.xavil.ultraviolet.common.universe.system;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import javax.annotation.Nullable;
 
@@ -11,8 +9,10 @@ import net.xavil.hawklib.SplittableRng;
 import net.xavil.hawklib.Units;
 import net.xavil.hawklib.collections.impl.VectorFloat;
 import net.xavil.hawklib.collections.impl.VectorInt;
+import net.xavil.hawklib.hash.Hasher;
 import net.xavil.hawklib.math.Interval;
 import net.xavil.ultraviolet.Mod;
+import net.xavil.ultraviolet.common.MappedResources;
 
 public final class StellarProperties {
 	public double massYg;
@@ -25,32 +25,34 @@ public final class StellarProperties {
 
 	private static final Grid GRID;
 
+	// the table checks itself against the tracks it was built from, and is only
+	// used if it agrees with them, see `StellarPropertiesTable`.
+	public static final boolean USE_TABLE = !Boolean
+			.valueOf(System.getProperty("net.xavil.ultraviolet.disable_stellar_table"));
+
+	// a view of a single track in the track file, which reads straight out of the
+	// file's buffer. Each point on the track is stored as
+	// `{ age: f32, mass: f32, luminosity: f32, temperature: f32, radius: f32, phase: i8 }`
 	static final class Track {
+		private static final int POINT_SIZE = 21;
+
+		private final ByteBuffer buf;
+		private final int start;
 		public final int length;
-		public final float[] age;
-		public final float[] mass;
-		public final float[] radius;
-		public final float[] luminosity;
-		public final float[] temperature;
-
-		public Track(int length, float[] age, float[] mass, float[] radius, float[] luminosity,
-				float[] temperature) {
-			this.length = length;
-			this.age = age;
-			this.mass = mass;
-			this.radius = radius;
-			this.luminosity = luminosity;
-			this.temperature = temperature;
-		}
 
-		public Track(int length) {
-			this.length = length;
-			this.age = new float[length];
-			this.mass = new float[length];
-			this.radius = new float[length];
-			this.luminosity = new float[length];
-			this.temperature = new float[length];
+		public Track(ByteBuffer buf, int pointer) {
+			this.buf = buf;
+			this.length = buf.getShort(pointer) & 0xffff;
+			this.start = pointer + 2;
 		}
+
+		// @formatter:off
+		public float age        (int i) { return this.buf.getFloat(this.start + POINT_SIZE * i +  0); }
+		public float mass       (int i) { return this.buf.getFloat(this.start + POINT_SIZE * i +  4); }
+		public float luminosity (int i) { return this.buf.getFloat(this.start + POINT_SIZE * i +  8); }
+		public float temperature(int i) { return this.buf.getFloat(this.start + POINT_SIZE * i + 12); }
+		public float radius     (int i) { return this.buf.getFloat(this.start + POINT_SIZE * i + 16); }
+		// @formatter:on
 	}
 
 	static final class Grid {
@@ -70,22 +72,15 @@ public final class StellarProperties {
 		}
 	}
 
+	// only the metallicities and masses are copied out of the track file, and the
+	// tracks themselves are read from it directly.
 	@Nullable
-	private static ByteBuffer loadStellarEvolutionTracks() {
-		try {
-			final var stream = StellarProperties.class.getResourceAsStream("/star_evolution_tracks.bin");
-			return ByteBuffer.wrap(stream.readAllBytes()).order(ByteOrder.BIG_ENDIAN);
-		} catch (IOException ex) {
+	private static Grid loadMapped() {
+		final var buf = MappedResources.load("star_evolution_tracks.bin");
+		if (buf == null) {
 			Mod.LOGGER.error("Failed to load stellar evolution tracks");
-			ex.printStackTrace();
 			return null;
 		}
-	}
-
-	private static Grid loadInMemory() {
-		final var buf = loadStellarEvolutionTracks();
-		if (buf == null)
-			return null;
 
 		final var metallicityCount = buf.getInt();
 		final var metallicities = new float[metallicityCount];
@@ -101,41 +96,19 @@ public final class StellarProperties {
 
 		// yknow, id expect it to be like `new T[inner][outer]`, but its actually `new
 		// T[outer][inner]` for some reason. i guess it mirrors how you access it? idk.
-		final var trackPointers = new int[metallicityCount][massCount];
-		Mod.LOGGER.error("mass count = {}", massCount);
-		Mod.LOGGER.error("metallicity count = {}", metallicityCount);
-		Mod.LOGGER.error("trackPointers.length = {}", trackPointers.length);
-		Mod.LOGGER.error("trackPointers[0].length = {}", trackPointers[0].length);
-		for (int i = 0; i < metallicityCount; ++i) {
-			for (int j = 0; j < massCount; ++j) {
-				trackPointers[i][j] = buf.getInt();
-			}
-		}
-
 		final var tracks = new Track[metallicityCount][massCount];
 		for (int i = 0; i < metallicityCount; ++i) {
 			for (int j = 0; j < massCount; ++j) {
-				buf.position(trackPointers[i][j]);
-				final var track = new Track(buf.getShort());
-				tracks[i][j] = track;
-				Mod.LOGGER.error("track {}, {} -> len={}", i, j, track.length);
-				for (int k = 0; k < track.length; ++k) {
-					track.age[k] = buf.getFloat();
-					track.mass[k] = buf.getFloat();
-					track.luminosity[k] = buf.getFloat();
-					track.temperature[k] = buf.getFloat();
-					track.radius[k] = buf.getFloat();
-					// skip phase for now
-					buf.get();
-				}
+				tracks[i][j] = new Track(buf, buf.getInt());
 			}
 		}
 
+		Mod.LOGGER.debug("loaded {}x{} stellar evolution tracks", metallicityCount, massCount);
 		return new Grid(metallicities, masses, tracks);
 	}
 
 	static {
-		GRID = loadInMemory();
+		GRID = loadMapped();
 	}
 
 	static final class BinarySearchResultDouble {
@@ -153,6 +126,27 @@ public final class StellarProperties {
 		binarySearch(out, arr, x, 0, arr.length);
 	}
 
+	// finds the first point on `track` that is at least `age` years old
+	static void binarySearch(BinarySearchResultDouble out, Track track, double age) {
+		int il = 0, ih = track.length;
+		while (ih > il) {
+			final var ic = (il + ih) / 2;
+			final var vc = track.age(ic);
+			if (vc < age) {
+				il = ic + 1;
+			} else if (vc > age) {
+				ih = ic;
+			} else {
+				out.found = true;
+				out.index = ic;
+				return;
+			}
+		}
+
+		out.found = false;
+		out.index = il;
+	}
+
 	static void binarySearch(BinarySearchResultDouble out, float[] arr, double x, int il, int ih) {
 		while (ih > il) {
 			final var ic = (il + ih) / 2;
@@ -277,10 +271,10 @@ def get_array_grids(self, recalc=False):
 		final double metallicityT = findIndicesRes.metallicityDist, massT = findIndicesRes.massDist;
 
 		// metallicity,mass
-		final var ageGridNN = grid.tracks[metallicityIndex + 0][massIndex + 0].age;
-		final var ageGridNP = grid.tracks[metallicityIndex + 0][massIndex + 1].age;
-		final var ageGridPN = grid.tracks[metallicityIndex + 1][massIndex + 0].age;
-		final var ageGridPP = grid.tracks[metallicityIndex + 1][massIndex + 1].age;
+		final var ageGridNN = grid.tracks[metallicityIndex + 0][massIndex + 0];
+		final var ageGridNP = grid.tracks[metallicityIndex + 0][massIndex + 1];
+		final var ageGridPN = grid.tracks[metallicityIndex + 1][massIndex + 0];
+		final var ageGridPP = grid.tracks[metallicityIndex + 1][massIndex + 1];
 
 		final var searchRes = new BinarySearchResultDouble();
 		binarySearch(searchRes, ageGridNN, age);
@@ -321,7 +315,7 @@ def get_array_grids(self, recalc=False):
 		return Math.pow(Mth.lerp(ty, massN, massP), 5.0);
 	}
 
-	private void loadInner(SplittableRng rng, Grid grid, double age, double metallicity, double initialMass) {
+	void loadInner(SplittableRng rng, Grid grid, double age, double metallicity, double initialMass) {
 		final var findIndicesRes = new FindIndicesResult();
 		findIndices(findIndicesRes, metallicity, initialMass, grid.metallicities, grid.initialMasses);
 		if (!findIndicesRes.inBounds)
@@ -337,13 +331,13 @@ def get_array_grids(self, recalc=False):
 		final var trackPP = grid.tracks[metallicityIndex + 1][massIndex + 1];
 
 		final var searchRes = new BinarySearchResultDouble();
-		binarySearch(searchRes, trackNN.age, age);
+		binarySearch(searchRes, trackNN, age);
 		int iEepNN = searchRes.index;
-		binarySearch(searchRes, trackNP.age, age);
+		binarySearch(searchRes, trackNP, age);
 		int iEepNP = searchRes.index;
-		binarySearch(searchRes, trackPN.age, age);
+		binarySearch(searchRes, trackPN, age);
 		int iEepPN = searchRes.index;
-		binarySearch(searchRes, trackPP.age, age);
+		binarySearch(searchRes, trackPP, age);
 		int iEepPP = searchRes.index;
 
 		// max_i_eep = weight_arrays.shape[1] - 1
@@ -359,27 +353,27 @@ def get_array_grids(self, recalc=False):
 		// 	eepPN = eepPP;
 		// if (iEepPP >= trackPP.age.length)
 		// 	eepPP = eepPN;
-		if (iEepNN >= trackNN.age.length)
-			iEepNN = trackNN.age.length - 1;
-		if (iEepNP >= trackNP.age.length)
-			iEepNP = trackNP.age.length - 1;
-		if (iEepPN >= trackPN.age.length)
-			iEepPN = trackPN.age.length - 1;
-		if (iEepPP >= trackPP.age.length)
-			iEepPP = trackPP.age.length - 1;
+		if (iEepNN >= trackNN.length)
+			iEepNN = trackNN.length - 1;
+		if (iEepNP >= trackNP.length)
+			iEepNP = trackNP.length - 1;
+		if (iEepPN >= trackPN.length)
+			iEepPN = trackPN.length - 1;
+		if (iEepPP >= trackPP.length)
+			iEepPP = trackPP.length - 1;
 
 		final var mass = interp(massT, metallicityT,
-				trackNN.mass[iEepNN], trackNP.mass[iEepNP],
-				trackPN.mass[iEepPN], trackPP.mass[iEepPP]);
+				trackNN.mass(iEepNN), trackNP.mass(iEepNP),
+				trackPN.mass(iEepPN), trackPP.mass(iEepPP));
 		final var radius = interp(massT, metallicityT,
-				trackNN.radius[iEepNN], trackNP.radius[iEepNP],
-				trackPN.radius[iEepPN], trackPP.radius[iEepPP]);
+				trackNN.radius(iEepNN), trackNP.radius(iEepNP),
+				trackPN.radius(iEepPN), trackPP.radius(iEepPP));
 		final var luminosity = interp(massT, metallicityT,
-				trackNN.luminosity[iEepNN], trackNP.luminosity[iEepNP],
-				trackPN.luminosity[iEepPN], trackPP.luminosity[iEepPP]);
+				trackNN.luminosity(iEepNN), trackNP.luminosity(iEepNP),
+				trackPN.luminosity(iEepPN), trackPP.luminosity(iEepPP));
 		final var temperature = interp(massT, metallicityT,
-				trackNN.temperature[iEepNN], trackNP.temperature[iEepNP],
-				trackPN.temperature[iEepPN], trackPP.temperature[iEepPP]);
+				trackNN.temperature(iEepNN), trackNP.temperature(iEepNP),
+				trackPN.temperature(iEepPN), trackPP.temperature(iEepPP));
 
 		this.massYg = Units.Yg_PER_Msol * mass;
 		this.radiusRsol = radius;
@@ -391,4 +385,39 @@ def get_array_grids(self, recalc=False):
 		loadInner(rng, GRID, 1e6 * ageMyr, metallicity, Units.Msol_PER_Yg * massYg);
 	}
 
+	// the table is only built once something asks for it, since it takes a moment.
+	private static final class TableHolder {
+		public static final StellarPropertiesTable TABLE = USE_TABLE ? StellarPropertiesTable.build(GRID) : null;
+	}
+
+	/**
+	 * Like {@link #load}, but looks the star up in a precomputed table when
+	 * possible, which is much faster but only approximately the same. Stars outside
+	 * of the table or in parts of it that don't match the exact path closely
+	 * enough, and all stars if the table is disabled with
+	 * {@code -Dnet.xavil.ultraviolet.disable_stellar_table=true} or failed to
+	 * validate, go through the exact path.
+	 */
+	public void loadApproximate(SplittableRng rng, double massYg, double ageMyr, double metallicity) {
+		final var table = TableHolder.TABLE;
+		if (table == null || !table.load(this, 1e6 * ageMyr, metallicity, Units.Msol_PER_Yg * massYg))
+			load(rng, massYg, ageMyr, metallicity);
+	}
+
+	/**
+	 * Appends everything that changes the output of {@link #loadApproximate}.
+	 */
+	public static void appendApproximationHash(Hasher hasher) {
+		// whether the table is used at all is only known once it's been validated, so
+		// this builds it if it hasn't been built yet.
+		final var useTable = TableHolder.TABLE != null;
+		hasher.appendInt(useTable ? 1 : 0);
+		if (useTable) {
+			hasher.appendInt(StellarPropertiesTable.METALLICITY_RESOLUTION);
+			hasher.appendInt(StellarPropertiesTable.MASS_RESOLUTION);
+			hasher.appendInt(StellarPropertiesTable.AGE_RESOLUTION);
+			hasher.appendDouble(StellarPropertiesTable.CELL_TOLERANCE);
+		}
+	}
+
 }
@@ -0,0 +1,330 @@
+package net.xavil.ultraviolet.common.universe.system;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+import net.xavil.ultraviolet.Mod;
+
+/**
+ * A precomputed approximation of {@link StellarProperties#load}, sampled on a
+ * regular (log metallicity, log initial mass, log age) grid.
+ * <p>
+ * The exact path does a handful of binary searches over the evolutionary
+ * tracks for every star, which adds up when generating thousands of stars per
+ * sector. Looking up a star in this table instead just finds the grid cell
+ * containing it and interpolates trilinearly between the cell's corners.
+ * </p>
+ * <p>
+ * Like the exact path, values are interpolated between their fifth roots. The
+ * exact path picks the first point on each track that is at least as old as
+ * the star, so it jumps around a bit with age, which this table smooths over.
+ * This mostly matters for stars that are evolving very quickly at the age in
+ * question. To keep those stars accurate, every cell of the table is checked
+ * against the exact path at its center when the table is built, and cells that
+ * are off by more than {@link #CELL_TOLERANCE} are left to the exact path.
+ * </p>
+ * <p>
+ * The error of the finished table against the exact path is then measured at
+ * random points, and a table that is still too far off is not used at all, so
+ * that whichever evolutionary tracks are shipped, the table is validated
+ * against them before it replaces the exact path.
+ * </p>
+ */
+final class StellarPropertiesTable {
+
+	// resolution of each axis of the table. Each grid point takes up 16 bytes, so
+	// the defaults come out to about 14 MiB. Most of the error comes from the mass
+	// axis, since stars of different masses evolve at wildly different rates.
+	public static final int METALLICITY_RESOLUTION = Integer.getInteger(
+			"net.xavil.ultraviolet.stellar_table_metallicity_resolution", 10);
+	public static final int MASS_RESOLUTION = Integer.getInteger(
+			"net.xavil.ultraviolet.stellar_table_mass_resolution", 384);
+	public static final int AGE_RESOLUTION = Integer.getInteger(
+			"net.xavil.ultraviolet.stellar_table_age_resolution", 240);
+	public static final int ERROR_REPORT_SAMPLE_COUNT = 4096;
+
+	// the largest relative error allowed at the center of a cell before that cell is
+	// left to the exact path.
+	public static final double CELL_TOLERANCE = 1e-2;
+	// the largest 99th percentile relative error a finished table may have before
+	// it is thrown out entirely.
+	public static final double MAX_P99_ERROR = 1e-2;
+
+	private static final int MASS = 0, RADIUS = 1, LUMINOSITY = 2, TEMPERATURE = 3, VALUE_COUNT = 4;
+
+	private final int metallicityCount, massCount, ageCount;
+	private final double logMetallicityMin, logMassMin, logAgeMin;
+	private final double invLogMetallicityStep, invLogMassStep, invLogAgeStep;
+	// indexed by `[metallicity][mass][age][value]`, so that the corners on either
+	// side of a cell along the age axis are next to each other. Holds the fifth root
+	// of each value, or NaN for grid points the exact path could not evaluate.
+	private final float[] values;
+	// one bit per cell, indexed by `[metallicity][mass][age]`, set for cells that
+	// are left to the exact path.
+	private final long[] rejectedCells;
+
+	public record ErrorReport(int sampleCount, int fallbackCount, double medianError, double p99Error,
+			double maxError) {
+		@Override
+		public String toString() {
+			return String.format(
+					"%d samples, %d fell back to the exact path, relative error: median %.2e, p99 %.2e, max %.2e",
+					this.sampleCount, this.fallbackCount, this.medianError, this.p99Error, this.maxError);
+		}
+	}
+
+	private StellarPropertiesTable(int metallicityCount, int massCount, int ageCount,
+			double logMetallicityMin, double logMetallicityMax,
+			double logMassMin, double logMassMax,
+			double logAgeMin, double logAgeMax) {
+		this.metallicityCount = metallicityCount;
+		this.massCount = massCount;
+		this.ageCount = ageCount;
+		this.logMetallicityMin = logMetallicityMin;
+		this.logMassMin = logMassMin;
+		this.logAgeMin = logAgeMin;
+		this.invLogMetallicityStep = (metallicityCount - 1) / (logMetallicityMax - logMetallicityMin);
+		this.invLogMassStep = (massCount - 1) / (logMassMax - logMassMin);
+		this.invLogAgeStep = (ageCount - 1) / (logAgeMax - logAgeMin);
+		this.values = new float[metallicityCount * massCount * ageCount * VALUE_COUNT];
+		final var cellCount = (metallicityCount - 1) * (massCount - 1) * (ageCount - 1);
+		this.rejectedCells = new long[(cellCount + 63) / 64];
+	}
+
+	/**
+	 * Evaluates the exact path at every point of a new table with the default
+	 * resolution, and checks the finished table against it.
+	 *
+	 * @return The new table, or {@code null} if there are no evolutionary tracks to
+	 *         build it from, or if the table is too far off from them.
+	 */
+	@Nullable
+	public static StellarPropertiesTable build(@Nullable StellarProperties.Grid grid) {
+		if (grid == null)
+			return null;
+		final var start = System.nanoTime();
+		final var table = build(grid, METALLICITY_RESOLUTION, MASS_RESOLUTION, AGE_RESOLUTION);
+		final var end = System.nanoTime();
+		Mod.LOGGER.info("built {}x{}x{} stellar property table in {} ms, {} of {} cells left to the exact path",
+				table.metallicityCount, table.massCount, table.ageCount, (end - start) / 1e6,
+				table.rejectedCellCount(), table.cellCount());
+
+		final var report = table.measureError(grid, new Random(0), ERROR_REPORT_SAMPLE_COUNT);
+		// written this way so that a NaN error rejects the table too
+		if (!(report.p99Error() <= MAX_P99_ERROR)) {
+			Mod.LOGGER.warn("not using stellar property table, since it is too inaccurate: {}", report);
+			return null;
+		}
+		Mod.LOGGER.info("stellar property table error: {}", report);
+		return table;
+	}
+
+	public static StellarPropertiesTable build(StellarProperties.Grid grid,
+			int metallicityResolution, int massResolution, int ageResolution) {
+		final float minMetallicity = grid.metallicities[0];
+		final float maxMetallicity = grid.metallicities[grid.metallicities.length - 1];
+		final float minMass = grid.initialMasses[0];
+		final float maxMass = grid.initialMasses[grid.initialMasses.length - 1];
+
+		final var table = new StellarPropertiesTable(
+				Math.max(2, metallicityResolution), Math.max(2, massResolution), Math.max(2, ageResolution),
+				Math.log10(minMetallicity), Math.log10(maxMetallicity),
+				Math.log10(minMass), Math.log10(maxMass),
+				StellarProperties.LOG_AGE_BOUNDS.min, StellarProperties.LOG_AGE_BOUNDS.max);
+
+		// grid points are clamped so that floating point error can't push the edges of
+		// the table out of the bounds of the tracks. The exact path can't handle stars
+		// that land exactly on the last track, so the upper edges are kept just below
+		// it.
+		final var upperMetallicity = Math.nextDown((double) maxMetallicity);
+		final var upperMass = Math.nextDown((double) maxMass);
+
+		final var props = new StellarProperties();
+		int i = 0;
+		for (int iz = 0; iz < table.metallicityCount; ++iz) {
+			var metallicity = Math.pow(10, table.logMetallicityMin + iz / table.invLogMetallicityStep);
+			metallicity = Math.max(minMetallicity, Math.min(upperMetallicity, metallicity));
+			for (int im = 0; im < table.massCount; ++im) {
+				var initialMass = Math.pow(10, table.logMassMin + im / table.invLogMassStep);
+				initialMass = Math.max(minMass, Math.min(upperMass, initialMass));
+				for (int ia = 0; ia < table.ageCount; ++ia) {
+					final var age = Math.pow(10, table.logAgeMin + ia / table.invLogAgeStep);
+					loadExact(props, grid, age, metallicity, initialMass);
+					table.values[i++] = (float) Math.pow(props.massYg, 0.2);
+					table.values[i++] = (float) Math.pow(props.radiusRsol, 0.2);
+					table.values[i++] = (float) Math.pow(props.luminosityLsol, 0.2);
+					table.values[i++] = (float) Math.pow(props.temperatureK, 0.2);
+				}
+			}
+		}
+
+		table.rejectInaccurateCells(grid);
+		return table;
+	}
+
+	// the exact path jumps between track points, so a cell that straddles a jump is
+	// off by about half of it at its center.
+	private void rejectInaccurateCells(StellarProperties.Grid grid) {
+		final var exact = new StellarProperties();
+		final var approx = new StellarProperties();
+		int cell = 0;
+		for (int iz = 0; iz < this.metallicityCount - 1; ++iz) {
+			final var metallicity = Math.pow(10, this.logMetallicityMin + (iz + 0.5) / this.invLogMetallicityStep);
+			for (int im = 0; im < this.massCount - 1; ++im) {
+				final var initialMass = Math.pow(10, this.logMassMin + (im + 0.5) / this.invLogMassStep);
+				for (int ia = 0; ia < this.ageCount - 1; ++ia, ++cell) {
+					final var age = Math.pow(10, this.logAgeMin + (ia + 0.5) / this.invLogAgeStep);
+					loadExact(exact, grid, age, metallicity, initialMass);
+					final var accurate = !Double.isNaN(exact.massYg)
+							&& interpolateCell(approx, iz, im, ia, 0.5, 0.5, 0.5)
+							&& relativeError(approx, exact) <= CELL_TOLERANCE;
+					if (!accurate)
+						this.rejectedCells[cell >>> 6] |= 1L << cell;
+				}
+			}
+		}
+	}
+
+	private int cellCount() {
+		return (this.metallicityCount - 1) * (this.massCount - 1) * (this.ageCount - 1);
+	}
+
+	private int rejectedCellCount() {
+		int count = 0;
+		for (final var bits : this.rejectedCells)
+			count += Long.bitCount(bits);
+		return count;
+	}
+
+	// leaves everything as NaN if the exact path can't handle the inputs
+	private static void loadExact(StellarProperties out, StellarProperties.Grid grid,
+			double ageYr, double metallicity, double initialMassMsol) {
+		out.massYg = out.radiusRsol = out.luminosityLsol = out.temperatureK = Double.NaN;
+		out.loadInner(null, grid, ageYr, metallicity, initialMassMsol);
+	}
+
+	private static double pow5(double x) {
+		final var x2 = x * x;
+		return x2 * x2 * x;
+	}
+
+	/**
+	 * Looks up the properties of a star in this table.
+	 *
+	 * @return {@code false} if the star is outside of the table, or in a cell that
+	 *         is left to the exact path, in which case {@code out} is left alone.
+	 */
+	public boolean load(StellarProperties out, double ageYr, double metallicity, double initialMassMsol) {
+		final var fz = (Math.log10(metallicity) - this.logMetallicityMin) * this.invLogMetallicityStep;
+		final var fm = (Math.log10(initialMassMsol) - this.logMassMin) * this.invLogMassStep;
+		final var fa = (Math.log10(ageYr) - this.logAgeMin) * this.invLogAgeStep;
+		// written this way so that NaNs are rejected too
+		if (!(fz >= 0 && fz <= this.metallicityCount - 1))
+			return false;
+		if (!(fm >= 0 && fm <= this.massCount - 1))
+			return false;
+		if (!(fa >= 0 && fa <= this.ageCount - 1))
+			return false;
+
+		final int iz = Math.min((int) fz, this.metallicityCount - 2);
+		final int im = Math.min((int) fm, this.massCount - 2);
+		final int ia = Math.min((int) fa, this.ageCount - 2);
+		final int cell = (iz * (this.massCount - 1) + im) * (this.ageCount - 1) + ia;
+		if ((this.rejectedCells[cell >>> 6] & (1L << cell)) != 0)
+			return false;
+		return interpolateCell(out, iz, im, ia, fz - iz, fm - im, fa - ia);
+	}
+
+	private boolean interpolateCell(StellarProperties out, int iz, int im, int ia,
+			double tz, double tm, double ta) {
+
+		// metallicity,mass
+		final var strideMass = this.ageCount * VALUE_COUNT;
+		final var strideMetallicity = this.massCount * strideMass;
+		final var nnn = iz * strideMetallicity + im * strideMass + ia * VALUE_COUNT;
+		final var npn = nnn + strideMass;
+		final var pnn = nnn + strideMetallicity;
+		final var ppn = pnn + strideMass;
+
+		final var mass = interpolate(nnn + MASS, npn + MASS, pnn + MASS, ppn + MASS, ta, tm, tz);
+		final var radius = interpolate(nnn + RADIUS, npn + RADIUS, pnn + RADIUS, ppn + RADIUS, ta, tm, tz);
+		final var luminosity = interpolate(nnn + LUMINOSITY, npn + LUMINOSITY, pnn + LUMINOSITY, ppn + LUMINOSITY,
+				ta, tm, tz);
+		final var temperature = interpolate(nnn + TEMPERATURE, npn + TEMPERATURE, pnn + TEMPERATURE,
+				ppn + TEMPERATURE, ta, tm, tz);
+
+		// any corner that the exact path couldn't evaluate poisons the whole cell
+		if (Double.isNaN(mass) || Double.isNaN(radius) || Double.isNaN(luminosity) || Double.isNaN(temperature))
+			return false;
+
+		out.massYg = mass;
+		out.radiusRsol = radius;
+		out.luminosityLsol = luminosity;
+		out.temperatureK = temperature;
+		return true;
+	}
+
+	// each index points at the younger of two corners along the age axis
+	private double interpolate(int nn, int np, int pn, int pp, double ta, double tm, double tz) {
+		final var v = this.values;
+		final var nnv = v[nn] + ta * (v[nn + VALUE_COUNT] - v[nn]);
+		final var npv = v[np] + ta * (v[np + VALUE_COUNT] - v[np]);
+		final var pnv = v[pn] + ta * (v[pn + VALUE_COUNT] - v[pn]);
+		final var ppv = v[pp] + ta * (v[pp + VALUE_COUNT] - v[pp]);
+		final var n = nnv + tm * (npv - nnv);
+		final var p = pnv + tm * (ppv - pnv);
+		return pow5(n + tz * (p - n));
+	}
+
+	// the largest relative error of any of the values looked up
+	private static double relativeError(StellarProperties approx, StellarProperties exact) {
+		double error = 0;
+		error = Math.max(error, Math.abs(approx.massYg / exact.massYg - 1));
+		error = Math.max(error, Math.abs(approx.radiusRsol / exact.radiusRsol - 1));
+		error = Math.max(error, Math.abs(approx.luminosityLsol / exact.luminosityLsol - 1));
+		error = Math.max(error, Math.abs(approx.temperatureK / exact.temperatureK - 1));
+		return error;
+	}
+
+	/**
+	 * Compares this table against the exact path at random points within the
+	 * table. The error of a sample is the largest relative error of any of the
+	 * values looked up. Samples in cells that are left to the exact path count as
+	 * fallbacks.
+	 */
+	public ErrorReport measureError(StellarProperties.Grid grid, Random random, int sampleCount) {
+		final var exact = new StellarProperties();
+		final var approx = new StellarProperties();
+		final var errors = new double[sampleCount];
+		int errorCount = 0, fallbackCount = 0;
+		for (int i = 0; i < sampleCount; ++i) {
+			final var metallicity = Math.pow(10, this.logMetallicityMin
+					+ random.nextDouble() * (this.metallicityCount - 1) / this.invLogMetallicityStep);
+			final var initialMass = Math.pow(10, this.logMassMin
+					+ random.nextDouble() * (this.massCount - 1) / this.invLogMassStep);
+			final var age = Math.pow(10, this.logAgeMin
+					+ random.nextDouble() * (this.ageCount - 1) / this.invLogAgeStep);
+
+			loadExact(exact, grid, age, metallicity, initialMass);
+			if (Double.isNaN(exact.massYg))
+				continue;
+			if (!load(approx, age, metallicity, initialMass)) {
+				fallbackCount += 1;
+				continue;
+			}
+
+			errors[errorCount++] = relativeError(approx, exact);
+		}
+
+		if (errorCount == 0)
+			return new ErrorReport(sampleCount, fallbackCount, Double.NaN, Double.NaN, Double.NaN);
+		Arrays.sort(errors, 0, errorCount);
+		return new ErrorReport(sampleCount, fallbackCount,
+				errors[errorCount / 2],
+				errors[Math.min(errorCount - 1, (int) (errorCount * 0.99))],
+				errors[errorCount - 1]);
+	}
+
+}
@@ -1,14 +1,22 @@
 package net.xavil.ultraviolet.common.universe.universe;
 
+import java.nio.ByteBuffer;
+
 import net.minecraft.client.Minecraft;
 import net.minecraft.world.level.Level;
 import net.xavil.hawklib.Disposable;
+import net.xavil.ultraviolet.Mod;
+import net.xavil.ultraviolet.common.universe.galaxy.Galaxy;
+import net.xavil.ultraviolet.common.universe.galaxy.RemoteSectorElements;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorManager;
 import net.xavil.ultraviolet.common.universe.galaxy.StarCatalogGalaxyGenerationLayer;
 import net.xavil.ultraviolet.common.universe.galaxy.StartingSystemGalaxyGenerationLayer;
 import net.xavil.ultraviolet.common.universe.galaxy.SystemTicket;
 import net.xavil.ultraviolet.common.universe.station.SpaceStation;
 import net.xavil.ultraviolet.common.universe.station.StationLocation;
-import net.xavil.ultraviolet.common.universe.system.CelestialNode;
+import net.xavil.ultraviolet.common.universe.system.CelestialNodeCodec;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorElementsPacket;
+import net.xavil.ultraviolet.networking.s2c.ClientboundSectorStreamUnavailablePacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundSpaceStationInfoPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundStationJumpBeginPacket;
 import net.xavil.ultraviolet.networking.s2c.ClientboundSyncCelestialTimePacket;
@@ -49,16 +57,35 @@ public final class ClientUniverse extends Universe {
 		return null;
 	}
 
-	public void updateFromInfoPacket(ClientboundUniverseSyncPacket packet) {
+	@Override
+	protected SectorManager.ElementSource createRemoteElementSource(Galaxy galaxy) {
+		if (!RemoteSectorElements.ENABLED)
+			return null;
+		return new RemoteSectorElements(galaxy, packet -> {
+			if (this.client.player != null)
+				this.client.player.connection.send(packet);
+		});
+	}
+
+	/**
+	 * @return Whether the sync succeeded. If it didn't, this universe is unusable,
+	 *         and the connection should be closed.
+	 */
+	public boolean updateFromInfoPacket(ClientboundUniverseSyncPacket packet) {
 		this.commonUniverseSeed = packet.commonSeed;
 		this.uniqueUniverseSeed = packet.uniqueSeed;
 
+		final var node = CelestialNodeCodec.read(ByteBuffer.wrap(packet.startingSystemData));
+		if (node == null) {
+			Mod.LOGGER.error("could not read starting system {} sent by the server", packet.startingId);
+			return false;
+		}
+
 		try (final var disposer = Disposable.scope()) {
 			final var sectorPos = packet.startingId.system().universeSector();
 			final var tempTicket = this.sectorManager.createGalaxyTicket(disposer, sectorPos);
 			final var galaxy = this.sectorManager.forceLoad(tempTicket).unwrap();
 
-			final var node = CelestialNode.readNbt(packet.startingSystemNbt);
 			this.startingGenerator = new StartingSystemGalaxyGenerationLayer(galaxy,
 					packet.startingSystemAge,
 					packet.startingSystemName,
@@ -69,8 +96,10 @@ public final class ClientUniverse extends Universe {
 
 			this.startingSystemTicket = galaxy.sectorManager.createSystemTicket(this.disposer,
 					startingId.system().galaxySector());
+			this.startingSystemTicket.interest = SystemTicket.Interest.BACKGROUND;
 			galaxy.sectorManager.forceLoad(this.startingSystemTicket);
 		}
+		return true;
 	}
 
 	public void applyPacket(ClientboundSyncCelestialTimePacket packet) {
@@ -80,6 +109,18 @@ public final class ClientUniverse extends Universe {
 		this.celestialTimeRate = packet.celestialTimeRate;
 	}
 
+	public void applyPacket(ClientboundSectorElementsPacket packet) {
+		final var galaxy = this.sectorManager.getGalaxy(packet.galaxyId).unwrapOrNull();
+		if (galaxy != null && galaxy.sectorManager.getRemoteElementSource() instanceof RemoteSectorElements remote)
+			remote.accept(packet);
+	}
+
+	public void applyPacket(ClientboundSectorStreamUnavailablePacket packet) {
+		final var galaxy = this.sectorManager.getGalaxy(packet.galaxyId).unwrapOrNull();
+		if (galaxy != null && galaxy.sectorManager.getRemoteElementSource() instanceof RemoteSectorElements remote)
+			remote.streamUnavailable();
+	}
+
 	public void applyPacket(ClientboundStationJumpBeginPacket packet) {
 		final var entry = this.spaceStations.entry(packet.stationId);
 		if (entry.exists()) {
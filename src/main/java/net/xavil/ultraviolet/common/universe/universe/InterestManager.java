@@ -0,0 +1,283 @@
+package net.xavil.ultraviolet.common.universe.universe;
+
+import java.util.UUID;
+import java.util.function.BinaryOperator;
+
+import javax.annotation.Nullable;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.hawklib.collections.interfaces.MutableMap;
+import net.xavil.ultraviolet.common.universe.WorldType;
+import net.xavil.ultraviolet.common.universe.id.SystemId;
+import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
+import net.xavil.ultraviolet.common.universe.station.StationLocation;
+import net.xavil.ultraviolet.mixin.accessor.EntityAccessor;
+import net.xavil.ultraviolet.networking.ModPacket;
+
+/**
+ * Decides which players should receive universe updates, and sends them out
+ * once per tick.
+ * <p>
+ * Each player is interested in the station they are on (if any) and in the
+ * system they are in, which is recomputed every tick from the world they are
+ * in. Updates are queued with an {@link Audience} describing who they are
+ * relevant to, and a key; queueing a second update under the same key in the
+ * same tick replaces (or merges with) the first, so that only the latest state
+ * goes out. When a player starts observing a station, they are sent its
+ * current state, since they will have missed every update before that.
+ * </p>
+ */
+public final class InterestManager {
+
+	public static final boolean DISABLE_INTEREST_MANAGEMENT = Boolean
+			.valueOf(System.getProperty("net.xavil.ultraviolet.disable_interest_management"));
+
+	/**
+	 * What a single player can currently observe.
+	 *
+	 * @param stationId The station that the player is on, or -1 if they are not on
+	 *                  a station.
+	 * @param system    The system that the player is in, or null if they are not
+	 *                  in any system.
+	 */
+	public record Interest(int stationId, @Nullable SystemId system) {
+		public static final Interest NONE = new Interest(-1, null);
+
+		@Nullable
+		public UniverseSectorId galaxy() {
+			return this.system == null ? null : this.system.universeSector();
+		}
+	}
+
+	/**
+	 * A description of which players an update is relevant to.
+	 */
+	@FunctionalInterface
+	public interface Audience {
+		boolean includes(Interest interest);
+
+		default Audience or(Audience other) {
+			return interest -> this.includes(interest) || other.includes(interest);
+		}
+
+		static Audience everyone() {
+			return interest -> true;
+		}
+
+		/**
+		 * Players that are on the station, or in the same system as it.
+		 */
+		static Audience station(int stationId, @Nullable SystemId system) {
+			return interest -> interest.stationId == stationId
+					|| (system != null && system.equals(interest.system));
+		}
+
+		static Audience system(SystemId system) {
+			return interest -> system.equals(interest.system);
+		}
+
+		static Audience galaxy(UniverseSectorId galaxy) {
+			return interest -> galaxy.equals(interest.galaxy());
+		}
+	}
+
+	private static final class Pending {
+		public final Object key;
+		public Audience audience;
+		public ModPacket<ClientGamePacketListener> packet;
+		// the number of updates that were merged into this one.
+		public int coalescedCount = 0;
+
+		public Pending(Object key, Audience audience, ModPacket<ClientGamePacketListener> packet) {
+			this.key = key;
+			this.audience = audience;
+			this.packet = packet;
+		}
+	}
+
+	private final ServerUniverse universe;
+	private MutableMap<UUID, Interest> interests = MutableMap.hashMap();
+	// in the order they were first queued, so that updates to different keys are
+	// still received in the order they were made.
+	private final Vector<Pending> pending = new Vector<>();
+	private final MutableMap<Object, Pending> pendingByKey = MutableMap.hashMap();
+
+	// how long packet sizes are measured for after stats are requested, since
+	// writing every packet out a second time just to count its bytes isn't free.
+	private static final int MEASUREMENT_TICKS = 200;
+
+	private long tickCount = 0;
+	private long lastTickPacketsSent = 0, lastTickPacketsSaved = 0;
+	private long totalPacketsSent = 0, totalPacketsSaved = 0;
+	private long measureUntilTick = 0, measuredTicks = 0;
+	private long measuredBytesSent = 0, measuredBytesSaved = 0;
+
+	public InterestManager(ServerUniverse universe) {
+		this.universe = universe;
+	}
+
+	/**
+	 * Queues {@code packet} to be sent at the end of this tick to every player in
+	 * {@code audience}, replacing any packet that was queued under {@code key}
+	 * earlier in this tick.
+	 */
+	public void send(Object key, Audience audience, ModPacket<ClientGamePacketListener> packet) {
+		send(key, audience, packet, (prev, next) -> next);
+	}
+
+	/**
+	 * Like {@link #send(Object, Audience, ModPacket)}, but combines the two
+	 * packets using {@code merge} if there is already one queued under
+	 * {@code key}. Both packets passed to {@code merge} will always be of type
+	 * {@code P}, so packets of different types must not share a key.
+	 */
+	@SuppressWarnings("unchecked")
+	public <P extends ModPacket<ClientGamePacketListener>> void send(Object key, Audience audience, P packet,
+			BinaryOperator<P> merge) {
+		if (DISABLE_INTEREST_MANAGEMENT) {
+			this.universe.server.getPlayerList().broadcastAll(packet);
+			return;
+		}
+		final var existing = this.pendingByKey.get(key).unwrapOrNull();
+		if (existing != null) {
+			existing.packet = merge.apply((P) existing.packet, packet);
+			existing.audience = audience;
+			existing.coalescedCount += 1;
+		} else {
+			final var entry = new Pending(key, audience, packet);
+			this.pending.push(entry);
+			this.pendingByKey.insert(key, entry);
+		}
+	}
+
+	public Interest getInterest(ServerPlayer player) {
+		return this.interests.get(player.getUUID()).unwrapOr(Interest.NONE);
+	}
+
+	public void tick(ProfilerFiller profiler) {
+		profiler.push("interest");
+		updateInterests();
+		profiler.popPush("flush");
+		flush();
+		profiler.pop();
+	}
+
+	private void updateInterests() {
+		final MutableMap<UUID, Interest> newInterests = MutableMap.hashMap();
+		final var changedPlayers = new Vector<ServerPlayer>();
+		for (final var player : this.universe.server.getPlayerList().getPlayers()) {
+			final var interest = computeInterest(player);
+			final var prev = this.interests.get(player.getUUID()).unwrapOrNull();
+			newInterests.insert(player.getUUID(), interest);
+			if (!interest.equals(prev))
+				changedPlayers.push(player);
+		}
+
+		// catch players up on all the stations they can see now, but couldn't before.
+		// Players that just joined have no previous interest, and so are sent
+		// everything they can see. Players whose interest didn't change can't have
+		// gained sight of anything.
+		if (!DISABLE_INTEREST_MANAGEMENT && !changedPlayers.isEmpty()) {
+			this.universe.spaceStations.entries().forEach(entry -> {
+				final var id = entry.key;
+				final var station = entry.get().unwrap();
+				final var audience = Audience.station(id, systemOf(station.getLocation()));
+				for (final var player : changedPlayers.iterable()) {
+					final var interest = newInterests.get(player.getUUID()).unwrap();
+					final var prev = this.interests.get(player.getUUID()).unwrapOrNull();
+					if (audience.includes(interest) && (prev == null || !audience.includes(prev)))
+						player.connection.send(this.universe.createStationInfoPacket(id, station));
+				}
+			});
+		}
+
+		// this also forgets about players that have left.
+		this.interests = newInterests;
+	}
+
+	private Interest computeInterest(ServerPlayer player) {
+		final var worldType = EntityAccessor.getWorldType(player);
+		if (worldType instanceof WorldType.SystemNode node) {
+			return new Interest(-1, node.id.system());
+		} else if (worldType instanceof WorldType.Station type) {
+			final var station = this.universe.getStation(type.id).unwrapOrNull();
+			return new Interest(type.id, station == null ? null : systemOf(station.getLocation()));
+		}
+		return Interest.NONE;
+	}
+
+	@Nullable
+	public static SystemId systemOf(@Nullable StationLocation location) {
+		return location == null ? null : location.getSystem();
+	}
+
+	private void flush() {
+		this.tickCount += 1;
+		this.lastTickPacketsSent = this.lastTickPacketsSaved = 0;
+		final var measuring = this.tickCount <= this.measureUntilTick;
+		if (measuring)
+			this.measuredTicks += 1;
+		if (this.pending.isEmpty())
+			return;
+
+		final var players = this.universe.server.getPlayerList().getPlayers();
+		final var buf = measuring ? new FriendlyByteBuf(Unpooled.buffer()) : null;
+		try {
+			for (final var entry : this.pending.iterable()) {
+				int recipientCount = 0;
+				for (final var player : players) {
+					if (entry.audience.includes(getInterest(player))) {
+						player.connection.send(entry.packet);
+						recipientCount += 1;
+					}
+				}
+
+				// what broadcasting every update to every player would have cost
+				final long naiveCount = (long) players.size() * (1 + entry.coalescedCount);
+				this.lastTickPacketsSent += recipientCount;
+				this.lastTickPacketsSaved += naiveCount - recipientCount;
+				if (buf != null) {
+					buf.clear();
+					entry.packet.write(buf);
+					final long size = buf.readableBytes();
+					this.measuredBytesSent += size * recipientCount;
+					this.measuredBytesSaved += size * (naiveCount - recipientCount);
+				}
+			}
+		} finally {
+			if (buf != null)
+				buf.release();
+		}
+
+		this.totalPacketsSent += this.lastTickPacketsSent;
+		this.totalPacketsSaved += this.lastTickPacketsSaved;
+		this.pending.clear();
+		this.pendingByKey.clear();
+	}
+
+	/**
+	 * Describes how many packets have been sent and saved so far. Packet sizes
+	 * are only measured for a while after this is called, so each call reports
+	 * the bytes measured since the previous one.
+	 */
+	public String debugSummary() {
+		var summary = String.format("%d players tracked, last tick: %d packets sent, %d saved; total: %d sent, %d saved",
+				this.interests.size(), this.lastTickPacketsSent, this.lastTickPacketsSaved,
+				this.totalPacketsSent, this.totalPacketsSaved);
+		if (this.measuredTicks > 0) {
+			summary += String.format("; over %d measured ticks: %d bytes sent, %d saved",
+					this.measuredTicks, this.measuredBytesSent, this.measuredBytesSaved);
+		} else {
+			summary += String.format("; measuring packet sizes for the next %d ticks", MEASUREMENT_TICKS);
+		}
+		this.measuredTicks = this.measuredBytesSent = this.measuredBytesSaved = 0;
+		this.measureUntilTick = this.tickCount + MEASUREMENT_TICKS;
+		return summary;
+	}
+
+}
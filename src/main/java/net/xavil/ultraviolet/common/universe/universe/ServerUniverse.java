@@ -11,6 +11,7 @@ import net.minecraft.util.profiling.ProfilerFiller;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.dimension.DimensionType;
 import net.minecraft.world.level.dimension.LevelStem;
+import net.minecraft.world.level.storage.LevelResource;
 import net.xavil.hawklib.Disposable;
 import net.xavil.hawklib.Maybe;
 import net.xavil.hawklib.Rng;
@@ -21,11 +22,14 @@ import net.xavil.ultraviolet.Mod;
 import net.xavil.ultraviolet.common.dimension.DynamicDimensionManager;
 import net.xavil.ultraviolet.common.level.EmptyChunkGenerator;
 import net.xavil.ultraviolet.common.universe.WorldType;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorElementCache;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorElementStreamer;
 import net.xavil.ultraviolet.common.universe.galaxy.StarCatalogGalaxyGenerationLayer;
 import net.xavil.ultraviolet.common.universe.galaxy.StartingSystemGalaxyGenerationLayer;
 import net.xavil.ultraviolet.common.universe.galaxy.SystemTicket;
 import net.xavil.ultraviolet.common.universe.id.SystemId;
 import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
+import net.xavil.ultraviolet.common.universe.station.SpaceStation;
 import net.xavil.ultraviolet.common.universe.station.StationLocation;
 import net.xavil.ultraviolet.common.universe.system.BinaryCelestialNode;
 import net.xavil.ultraviolet.common.universe.system.CelestialNode;
@@ -51,9 +55,28 @@ public final class ServerUniverse extends Universe {
 	private int ticksUntilTimeSync = timeSyncIntervalTicks;
 
 	protected SystemTicket startingSystemTicket = null;
+	private final SectorElementCache sectorElementCache;
+	public final SectorElementStreamer sectorStreamer = this.disposer.attach(new SectorElementStreamer(this));
+	public final InterestManager interestManager = new InterestManager(this);
+
+	public static final boolean DISABLE_SECTOR_CACHE = Boolean
+			.valueOf(System.getProperty("net.xavil.ultraviolet.disable_sector_cache"));
+	public static final long SECTOR_CACHE_MAX_SIZE_BYTES = Long.getLong(
+			"net.xavil.ultraviolet.sector_cache_max_bytes", SectorElementCache.DEFAULT_MAX_SIZE_BYTES);
 
 	public ServerUniverse(MinecraftServer server) {
 		this.server = server;
+		if (DISABLE_SECTOR_CACHE) {
+			this.sectorElementCache = null;
+		} else {
+			final var cacheDir = server.getWorldPath(LevelResource.ROOT).resolve(Mod.MOD_ID).resolve("sector_cache");
+			this.sectorElementCache = SectorElementCache.open(cacheDir, SECTOR_CACHE_MAX_SIZE_BYTES);
+		}
+	}
+
+	@Override
+	public SectorElementCache getSectorElementCache() {
+		return this.sectorElementCache;
 	}
 
 	// TODO: allow changing the universe seed via configs
@@ -84,16 +107,28 @@ public final class ServerUniverse extends Universe {
 		final var res = super.createStation(name, location);
 		res.ifSome(id -> {
 			final var station = this.spaceStations.get(id).unwrap();
-			final var packet = new ClientboundSpaceStationInfoPacket();
-			packet.id = id;
-			packet.name = station.name;
-			packet.orientation = station.orientation;
-			packet.locationNbt = StationLocation.toNbt(station.getLocation());
-			this.server.getPlayerList().broadcastAll(packet);
+			final var audience = InterestManager.Audience.station(id,
+					InterestManager.systemOf(station.getLocation()));
+			this.interestManager.send(new StationInfoKey(id), audience, createStationInfoPacket(id, station));
 		});
 		return res;
 	}
 
+	// coalescing keys for `interestManager`
+	private record StationInfoKey(int id) {
+	}
+
+	private static final Object TIME_SYNC_KEY = new Object();
+
+	public ClientboundSpaceStationInfoPacket createStationInfoPacket(int id, SpaceStation station) {
+		final var packet = new ClientboundSpaceStationInfoPacket();
+		packet.id = id;
+		packet.name = station.name;
+		packet.orientation = station.orientation;
+		packet.locationNbt = StationLocation.toNbt(station.getLocation());
+		return packet;
+	}
+
 	public static final DimensionType STATION_DIM_TYPE = DimensionType.create(OptionalLong.of(1000), true, false, false,
 			false, 1, false, false, true, true, false, 0, 384, 384, BlockTags.INFINIBURN_OVERWORLD,
 			DimensionType.OVERWORLD_EFFECTS, 0.0f);
@@ -118,6 +153,7 @@ public final class ServerUniverse extends Universe {
 	@Override
 	public void tick(ProfilerFiller profiler, boolean isPaused) {
 		super.tick(profiler, isPaused);
+		this.sectorStreamer.tick(profiler);
 		if (!isPaused) {
 			this.ticksUntilTimeSync -= 1;
 			if (this.ticksUntilTimeSync <= 0) {
@@ -125,13 +161,20 @@ public final class ServerUniverse extends Universe {
 				this.ticksUntilTimeSync = this.timeSyncIntervalTicks;
 			}
 		}
+		this.interestManager.tick(profiler);
 	}
 
 	public void syncTime(boolean isDiscontinuous) {
 		final var syncPacket = new ClientboundSyncCelestialTimePacket(this.celestialTime);
 		syncPacket.celestialTimeRate = this.celestialTimeRate;
 		syncPacket.isDiscontinuous = isDiscontinuous;
-		this.server.getPlayerList().broadcastAll(syncPacket);
+		// celestial time is global, so everyone needs it. Several syncs in the same
+		// tick are merged into the latest one, which must still be discontinuous if
+		// any of them were.
+		this.interestManager.send(TIME_SYNC_KEY, InterestManager.Audience.everyone(), syncPacket, (prev, next) -> {
+			next.isDiscontinuous |= prev.isDiscontinuous;
+			return next;
+		});
 	}
 
 	public void syncTime(ServerPlayer player, boolean isDiscontinuous) {
@@ -400,6 +443,7 @@ public final class ServerUniverse extends Universe {
 
 			this.startingSystemTicket = galaxy.sectorManager.createSystemTicket(this.disposer,
 					startingId.system().galaxySector());
+			this.startingSystemTicket.interest = SystemTicket.Interest.BACKGROUND;
 			galaxy.sectorManager.forceLoad(this.startingSystemTicket);
 		}
 	}
@@ -0,0 +1,175 @@
+package net.xavil.ultraviolet.common.universe.universe;
+
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import net.xavil.hawklib.Disposable;
+import net.xavil.hawklib.Maybe;
+import net.xavil.hawklib.collections.impl.Vector;
+import net.xavil.ultraviolet.Mod;
+import net.xavil.ultraviolet.common.universe.galaxy.SystemTicket;
+import net.xavil.ultraviolet.common.universe.id.SystemId;
+import net.xavil.ultraviolet.common.universe.system.StarSystem;
+
+/**
+ * Keeps a system loaded on behalf of something that lives in it, like a level,
+ * without blocking until the system has been generated.
+ * <p>
+ * The galaxy and then the system are loaded in the background, and the
+ * attachment is advanced by its universe each tick. Work that needs the system
+ * can be deferred with {@link #whenReady(Consumer)} until it is available.
+ * </p>
+ */
+public final class SystemAttachment implements Disposable {
+
+	public enum State {
+		/**
+		 * Waiting for the galaxy that the system is in to be generated.
+		 */
+		LOADING_GALAXY,
+		/**
+		 * Waiting for the system itself to be generated.
+		 */
+		LOADING_SYSTEM,
+		/**
+		 * The system is loaded, and will stay loaded until this attachment is closed.
+		 */
+		READY,
+		/**
+		 * The system does not exist or could not be generated. Deferred work is
+		 * dropped.
+		 */
+		FAILED,
+	}
+
+	public final Universe universe;
+	public final SystemId id;
+
+	private final GalaxyTicket galaxyTicket;
+	@Nullable
+	private SystemTicket systemTicket = null;
+	private State state = State.LOADING_GALAXY;
+	private boolean isClosed = false;
+	private final Vector<Consumer<StarSystem>> deferred = new Vector<>();
+
+	public SystemAttachment(Universe universe, SystemId id) {
+		this.universe = universe;
+		this.id = id;
+		this.galaxyTicket = universe.sectorManager.createGalaxyTicketManual(id.universeSector());
+		// the system is often already loaded, in which case we're ready right away.
+		poll();
+		if (isPending())
+			universe.pendingAttachments.push(this);
+	}
+
+	public State state() {
+		return this.state;
+	}
+
+	public boolean isSettled() {
+		return this.state == State.READY || this.state == State.FAILED;
+	}
+
+	boolean isPending() {
+		return !this.isClosed && !isSettled();
+	}
+
+	/**
+	 * @return The ticket that keeps the system loaded, or null if the galaxy it is
+	 *         in has not been loaded yet.
+	 */
+	@Nullable
+	public SystemTicket getSystemTicket() {
+		return this.systemTicket;
+	}
+
+	/**
+	 * Runs {@code task} with the system once it is loaded, or right away if it
+	 * already is. The task is never run if the system fails to load.
+	 */
+	public void whenReady(Consumer<StarSystem> task) {
+		if (this.state == State.READY) {
+			final var system = this.systemTicket.get();
+			if (system != null)
+				task.accept(system);
+		} else if (this.state != State.FAILED) {
+			this.deferred.push(task);
+		}
+	}
+
+	/**
+	 * Advances this attachment as far as it can go without waiting on any
+	 * generation.
+	 */
+	public State poll() {
+		if (this.isClosed)
+			return this.state;
+
+		if (this.state == State.LOADING_GALAXY) {
+			final var galaxyId = this.id.universeSector();
+			final var galaxy = this.universe.sectorManager.getGalaxy(galaxyId).unwrapOrNull();
+			if (galaxy == null) {
+				final var sector = this.universe.sectorManager.getSector(galaxyId.sectorPos()).unwrapOrNull();
+				if (sector != null && sector.isComplete() && sector.initialElements.size() <= galaxyId.id())
+					fail("its galaxy does not exist");
+				return this.state;
+			}
+			this.systemTicket = galaxy.sectorManager.createSystemTicketManual(this.id.galaxySector());
+			this.state = State.LOADING_SYSTEM;
+		}
+
+		if (this.state == State.LOADING_SYSTEM) {
+			if (!this.systemTicket.isLoaded())
+				return this.state;
+			final var system = this.systemTicket.get();
+			if (system == null) {
+				fail("it failed to generate");
+				return this.state;
+			}
+			this.state = State.READY;
+			final var tasks = this.deferred.iter().collectTo(Vector::new);
+			this.deferred.clear();
+			tasks.forEach(task -> task.accept(system));
+		}
+
+		return this.state;
+	}
+
+	/**
+	 * Waits for the system to be loaded. This should only be used where the system
+	 * is needed immediately, since it may take a while.
+	 */
+	public Maybe<StarSystem> forceLoad() {
+		if (this.state == State.LOADING_GALAXY) {
+			if (this.galaxyTicket.forceLoad().isNone()) {
+				fail("its galaxy does not exist");
+				return Maybe.none();
+			}
+			poll();
+		}
+		if (this.state == State.LOADING_SYSTEM) {
+			this.systemTicket.forceLoad();
+			poll();
+		}
+		return this.state == State.READY ? Maybe.fromNullable(this.systemTicket.get()) : Maybe.none();
+	}
+
+	private void fail(String reason) {
+		Mod.LOGGER.error("could not attach to system {}, because {}", this.id, reason);
+		this.state = State.FAILED;
+		this.deferred.clear();
+	}
+
+	@Override
+	public void close() {
+		if (this.isClosed)
+			return;
+		this.isClosed = true;
+		this.deferred.clear();
+		if (this.systemTicket != null)
+			this.systemTicket.close();
+		this.galaxyTicket.close();
+	}
+
+}
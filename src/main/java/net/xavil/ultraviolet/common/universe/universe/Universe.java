@@ -2,6 +2,8 @@ package net.xavil.ultraviolet.common.universe.universe;
 
 import java.util.Random;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.util.Mth;
 import net.minecraft.util.profiling.ProfilerFiller;
 import net.minecraft.world.level.Level;
@@ -11,6 +13,8 @@ import net.xavil.hawklib.SplittableRng;
 import net.xavil.hawklib.Units;
 import net.xavil.ultraviolet.common.universe.galaxy.Galaxy;
 import net.xavil.ultraviolet.common.universe.galaxy.GalaxyType;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorElementCache;
+import net.xavil.ultraviolet.common.universe.galaxy.SectorManager;
 import net.xavil.ultraviolet.common.universe.galaxy.StartingSystemGalaxyGenerationLayer;
 import net.xavil.ultraviolet.common.universe.id.SystemId;
 import net.xavil.ultraviolet.common.universe.id.SystemNodeId;
@@ -39,6 +43,8 @@ public abstract class Universe implements Disposable {
 	public final Disposable.Multi disposer = new Disposable.Multi();
 	protected final MutableMap<Integer, SpaceStation> spaceStations = MutableMap.hashMap();
 	private int nextStationId = 0;
+	// attachments that are still waiting on their system to be generated
+	final Vector<SystemAttachment> pendingAttachments = new Vector<>();
 
 	@Override
 	public void close() {
@@ -57,6 +63,13 @@ public abstract class Universe implements Disposable {
 
 	public abstract StartingSystemGalaxyGenerationLayer getStartingSystemGenerator();
 
+	// the persistent cache that galaxies in this universe use to avoid regenerating
+	// sectors. null if this universe does not have a place to store one.
+	@Nullable
+	public SectorElementCache getSectorElementCache() {
+		return null;
+	}
+
 	// abstract because ClientUniverse will produce a ClientLevel and ServerUniverse
 	// will produce a ServerLevel
 	public abstract Level createLevelForStation(String name, int id);
@@ -104,6 +117,20 @@ public abstract class Universe implements Disposable {
 			this.spaceStations.values().forEach(station -> station.tick());
 		}
 		this.sectorManager.tick(profiler);
+		tickAttachments(profiler);
+	}
+
+	private void tickAttachments(ProfilerFiller profiler) {
+		if (this.pendingAttachments.isEmpty())
+			return;
+		profiler.push("system_attachments");
+		// deferred work that runs when an attachment becomes ready might create new
+		// attachments, so don't poll the list we're modifying.
+		final var attachments = this.pendingAttachments.iter().collectTo(Vector::new);
+		this.pendingAttachments.clear();
+		attachments.forEach(SystemAttachment::poll);
+		this.pendingAttachments.extend(attachments.iter().filter(SystemAttachment::isPending));
+		profiler.pop();
 	}
 
 	public final double getCelestialTime() {
@@ -187,7 +214,18 @@ public abstract class Universe implements Disposable {
 		rng.advanceWith(galaxyId.sectorPos().y);
 		rng.advanceWith(galaxyId.sectorPos().z);
 		rng.advanceWith(galaxyId.id());
-		return new Galaxy(this, galaxyId, info, info.createGalaxyParameters(rng));
+		final var galaxy = new Galaxy(this, galaxyId, info, info.createGalaxyParameters(rng));
+		galaxy.sectorManager.setRemoteElementSource(createRemoteElementSource(galaxy));
+		return galaxy;
+	}
+
+	/**
+	 * @return Where the given galaxy's sector elements should be fetched from, or
+	 *         null if they should be generated locally.
+	 */
+	@Nullable
+	protected SectorManager.ElementSource createRemoteElementSource(Galaxy galaxy) {
+		return null;
 	}
 
 }
@@ -25,6 +25,21 @@ public interface EntityAccessor {
 		return LevelAccessor.getWorldType(entity.level) instanceof WorldType.Station type ? type.id : -1;
 	}
 
+	/**
+	 * Finds the gravity that things in {@code level} should fall with.
+	 * <p>
+	 * Levels load their system in the background (see
+	 * {@link net.xavil.ultraviolet.common.universe.universe.SystemAttachment}),
+	 * and until it is loaded, the node that a planet level is on can't be looked
+	 * up. This returns nothing in the meantime, so entities fall with vanilla
+	 * gravity for the few ticks it takes to generate the system. Gravity is needed
+	 * on every tick, so there is nothing to defer with
+	 * {@link LevelAccessor#whenSystemReady}.
+	 * </p>
+	 *
+	 * @return The acceleration due to gravity, or nothing if vanilla gravity
+	 *         should be used.
+	 */
 	static Maybe<Vec3> getGravityAt(Level level, Vec3Access pos) {
 		final var config = LevelAccessor.getConfigProvider(level);
 
@@ -37,6 +52,7 @@ public interface EntityAccessor {
 		final var universe = LevelAccessor.getUniverse(level);
 		if (universe != null && type != null) {
 			if (type instanceof WorldType.SystemNode ty) {
+				// none while the level's system is still loading
 				final var node = universe.getSystemNode(ty.id).unwrapOrNull();
 				if (node instanceof PlanetaryCelestialNode planetNode) {
 					var gravity = planetNode.surfaceGravityEarthRelative();
@@ -1,8 +1,13 @@
 package net.xavil.ultraviolet.mixin.accessor;
 
+import java.util.function.Consumer;
+
 import net.minecraft.world.level.Level;
 import net.xavil.ultraviolet.common.config.ConfigProvider;
 import net.xavil.ultraviolet.common.universe.WorldType;
+import net.xavil.ultraviolet.common.universe.galaxy.SystemTicket;
+import net.xavil.ultraviolet.common.universe.system.StarSystem;
+import net.xavil.ultraviolet.common.universe.universe.SystemAttachment;
 import net.xavil.ultraviolet.common.universe.universe.Universe;
 
 public interface LevelAccessor {
@@ -19,6 +24,12 @@ public interface LevelAccessor {
 
 	void ultraviolet_setConfigProvider(ConfigProvider provider);
 
+	// null until the level's galaxy has been loaded
+	SystemTicket ultraviolet_getSystemTicket();
+
+	// null if the level is not in a system
+	SystemAttachment ultraviolet_getSystemAttachment();
+
 	public static Universe getUniverse(Level level) {
 		return ((LevelAccessor) level).ultraviolet_getUniverse();
 	}
@@ -43,4 +54,22 @@ public interface LevelAccessor {
 		((LevelAccessor) level).ultraviolet_setConfigProvider(provider);
 	}
 
+	public static SystemTicket getSystemTicket(Level level) {
+		return ((LevelAccessor) level).ultraviolet_getSystemTicket();
+	}
+
+	public static SystemAttachment getSystemAttachment(Level level) {
+		return ((LevelAccessor) level).ultraviolet_getSystemAttachment();
+	}
+
+	/**
+	 * Runs {@code task} once the system that {@code level} is in has been loaded.
+	 * Does nothing if the level is not in a system, or if it fails to load.
+	 */
+	public static void whenSystemReady(Level level, Consumer<StarSystem> task) {
+		final var attachment = getSystemAttachment(level);
+		if (attachment != null)
+			attachment.whenReady(task);
+	}
+
 }
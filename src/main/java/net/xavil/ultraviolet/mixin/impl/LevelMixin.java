@@ -13,6 +13,7 @@ import net.xavil.ultraviolet.common.PerLevelData;
 import net.xavil.ultraviolet.common.config.ConfigProvider;
 import net.xavil.ultraviolet.common.universe.WorldType;
 import net.xavil.ultraviolet.common.universe.galaxy.SystemTicket;
+import net.xavil.ultraviolet.common.universe.universe.SystemAttachment;
 import net.xavil.ultraviolet.common.universe.universe.Universe;
 import net.xavil.ultraviolet.mixin.accessor.LevelAccessor;
 
@@ -23,7 +24,7 @@ public abstract class LevelMixin implements LevelAccessor {
 	private Universe universe = null;
 
 	private Disposable.Multi disposer = new Disposable.Multi();
-	private SystemTicket systemTicket;
+	private SystemAttachment systemAttachment;
 	private ConfigProvider configProvider;
 
 	@Override
@@ -39,15 +40,20 @@ public abstract class LevelMixin implements LevelAccessor {
 			return;
 		this.type = id;
 
+		// the level might have moved to a different system, in which case it doesn't
+		// need to keep the old one loaded anymore.
+		if (this.systemAttachment != null) {
+			this.systemAttachment.close();
+			this.systemAttachment = null;
+		}
 		if (this.type instanceof WorldType.SystemNode world) {
-			// NOTE: all worlds posses a ticket that keeps themselves loaded.
-			try (final var disposer = Disposable.scope()) {
-				final var sysId = world.id.system();
-				final var galaxy = universe.loadGalaxy(disposer, sysId.universeSector()).unwrap();
-				this.systemTicket = galaxy.sectorManager.createSystemTicket(this.disposer, sysId.galaxySector());
-				galaxy.sectorManager.forceLoad(this.systemTicket);
+			// NOTE: all worlds posses a ticket that keeps themselves loaded. The system
+			// is generated in the background, so that creating a level in a system that
+			// hasn't been visited before doesn't stall the thread creating it.
+			this.systemAttachment = this.disposer.attach(new SystemAttachment(this.universe, world.id.system()));
+			this.systemAttachment.whenReady(system -> {
 				Mod.LOGGER.info("loaded system ticket for Level with id of {}", world.id);
-			}
+			});
 		}
 		if (self instanceof ServerLevel serverLevel) {
 			final var savedData = PerLevelData.get(serverLevel);
@@ -78,6 +84,16 @@ public abstract class LevelMixin implements LevelAccessor {
 		this.configProvider = provider;
 	}
 
+	@Override
+	public SystemTicket ultraviolet_getSystemTicket() {
+		return this.systemAttachment == null ? null : this.systemAttachment.getSystemTicket();
+	}
+
+	@Override
+	public SystemAttachment ultraviolet_getSystemAttachment() {
+		return this.systemAttachment;
+	}
+
 	@Inject(method = "close", at = @At("TAIL"))
 	private void onClose(CallbackInfo info) {
 		this.disposer.close();
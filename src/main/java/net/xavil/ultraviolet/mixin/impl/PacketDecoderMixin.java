@@ -0,0 +1,28 @@
+package net.xavil.ultraviolet.mixin.impl;
+
+import java.util.List;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import net.minecraft.network.PacketDecoder;
+import net.xavil.ultraviolet.networking.NetworkContext;
+
+@Mixin(PacketDecoder.class)
+public abstract class PacketDecoderMixin {
+
+	@Inject(method = "decode", at = @At("HEAD"))
+	private void onDecodeStart(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out, CallbackInfo info) {
+		NetworkContext.set(NetworkContext.forDecoding(ctx.channel()));
+	}
+
+	@Inject(method = "decode", at = @At("RETURN"))
+	private void onDecodeEnd(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out, CallbackInfo info) {
+		NetworkContext.clear();
+	}
+
+}
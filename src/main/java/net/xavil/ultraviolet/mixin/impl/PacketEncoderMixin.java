@@ -0,0 +1,32 @@
+package net.xavil.ultraviolet.mixin.impl;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import net.minecraft.network.PacketEncoder;
+import net.minecraft.network.protocol.Packet;
+import net.xavil.ultraviolet.networking.NetworkContext;
+
+@Mixin(PacketEncoder.class)
+public abstract class PacketEncoderMixin {
+
+	@Inject(method = "encode(Lio/netty/channel/ChannelHandlerContext;Lnet/minecraft/network/protocol/Packet;Lio/netty/buffer/ByteBuf;)V", at = @At("HEAD"))
+	private void onEncodeStart(ChannelHandlerContext ctx, Packet<?> packet, ByteBuf buf, CallbackInfo info) {
+		final var context = NetworkContext.forEncoding(ctx.channel());
+		context.beginEncode();
+		NetworkContext.set(context);
+	}
+
+	@Inject(method = "encode(Lio/netty/channel/ChannelHandlerContext;Lnet/minecraft/network/protocol/Packet;Lio/netty/buffer/ByteBuf;)V", at = @At("RETURN"))
+	private void onEncodeEnd(ChannelHandlerContext ctx, Packet<?> packet, ByteBuf buf, CallbackInfo info) {
+		// this is not reached if the packet threw while being written, in which case
+		// the next call to beginEncode() rolls back whatever it recorded.
+		NetworkContext.forEncoding(ctx.channel()).commitEncode();
+		NetworkContext.clear();
+	}
+
+}
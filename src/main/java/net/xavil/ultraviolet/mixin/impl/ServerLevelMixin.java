@@ -1,5 +1,6 @@
 package net.xavil.ultraviolet.mixin.impl;
 
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
 import org.spongepowered.asm.mixin.Final;
@@ -20,6 +21,7 @@ import net.minecraft.world.level.storage.WritableLevelData;
 import net.xavil.ultraviolet.common.PerLevelData;
 import net.xavil.ultraviolet.common.config.ConfigKey;
 import net.xavil.ultraviolet.common.config.ConfigProvider;
+import net.xavil.ultraviolet.common.universe.galaxy.SystemTicket;
 import net.xavil.ultraviolet.mixin.accessor.LevelAccessor;
 import net.xavil.ultraviolet.mixin.accessor.MinecraftServerAccessor;
 
@@ -57,4 +59,16 @@ public abstract class ServerLevelMixin extends Level {
 		LevelAccessor.setWorldType(self, savedData.worldType);
 	}
 
+	// a level's own ticket is only there to keep its system loaded, so unless
+	// someone is actually in the level, its system doesn't need precise updates.
+	@Inject(method = "tick", at = @At("HEAD"))
+	private void updateSystemTicketInterest(BooleanSupplier hasTimeLeft, CallbackInfo info) {
+		final var ticket = LevelAccessor.getSystemTicket(this);
+		if (ticket != null) {
+			ticket.interest = this.players().isEmpty()
+					? SystemTicket.Interest.BACKGROUND
+					: SystemTicket.Interest.OBSERVED;
+		}
+	}
+
 }
@@ -0,0 +1,107 @@
+package net.xavil.ultraviolet.networking;
+
+import javax.annotation.Nullable;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import net.xavil.ultraviolet.common.universe.id.SystemId;
+
+/**
+ * State that {@link NetworkSerializers} keeps for one direction of one
+ * connection, so that IDs which were already sent can be written as a
+ * reference to the last one instead of in full.
+ * <p>
+ * The encoding side and the decoding side of a connection each have their own
+ * context, and both update it in lockstep, which works because packets are
+ * always decoded in the same order that they were encoded in. Contexts are
+ * installed around each call to the vanilla packet encoder and decoder, which
+ * always run on the connection's event loop, so a thread local is enough to
+ * find the right one.
+ * </p>
+ */
+public final class NetworkContext {
+
+	private static final AttributeKey<NetworkContext> ENCODE_KEY = AttributeKey
+			.valueOf("ultraviolet:network_context_encode");
+	private static final AttributeKey<NetworkContext> DECODE_KEY = AttributeKey
+			.valueOf("ultraviolet:network_context_decode");
+
+	private static final ThreadLocal<NetworkContext> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * Whether this context uses the compact encoding. Every connection does; the
+	 * legacy fixed-width encoding is only kept so that
+	 * {@code /ultraviolet benchmark packets} has something to compare against.
+	 */
+	public final boolean compact;
+
+	// the last system ID that went through this context, or null if none has yet.
+	@Nullable
+	SystemId lastSystemId = null;
+	// the value of `lastSystemId` after the last packet that was fully encoded.
+	@Nullable
+	private SystemId committedSystemId = null;
+
+	public NetworkContext(boolean compact) {
+		this.compact = compact;
+	}
+
+	/**
+	 * Called before a packet is encoded with this context. Throws away anything
+	 * that was recorded by a packet that failed partway through encoding, since
+	 * the vanilla encoder drops skippable packets that throw instead of sending
+	 * them, and the decoding side would never see the IDs they referred to.
+	 */
+	public void beginEncode() {
+		this.lastSystemId = this.committedSystemId;
+	}
+
+	/**
+	 * Called after a packet was encoded with this context without throwing, so
+	 * that later packets may refer to the IDs it contained.
+	 */
+	public void commitEncode() {
+		this.committedSystemId = this.lastSystemId;
+	}
+
+	/**
+	 * @return The context of the packet that is currently being encoded or
+	 *         decoded on this thread, or null if there is none, such as when a
+	 *         packet is written outside of a connection.
+	 */
+	@Nullable
+	public static NetworkContext current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Makes {@code context} the current context on this thread until the next
+	 * call to this method, or until {@link #clear()} is called.
+	 */
+	public static void set(@Nullable NetworkContext context) {
+		CURRENT.set(context);
+	}
+
+	public static void clear() {
+		CURRENT.remove();
+	}
+
+	public static NetworkContext forEncoding(Channel channel) {
+		return get(channel, ENCODE_KEY);
+	}
+
+	public static NetworkContext forDecoding(Channel channel) {
+		return get(channel, DECODE_KEY);
+	}
+
+	private static NetworkContext get(Channel channel, AttributeKey<NetworkContext> key) {
+		final var attr = channel.attr(key);
+		var context = attr.get();
+		if (context == null) {
+			context = new NetworkContext(true);
+			attr.set(context);
+		}
+		return context;
+	}
+
+}
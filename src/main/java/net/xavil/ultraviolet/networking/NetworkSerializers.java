@@ -6,6 +6,7 @@ import javax.annotation.Nullable;
 
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.EncoderException;
 import net.minecraft.CrashReport;
 import net.minecraft.ReportedException;
@@ -24,22 +25,47 @@ import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
 
 public class NetworkSerializers {
 
+	// tags written in front of each compact system ID
+	private static final int SYSTEM_ID_SAME = 0;
+	private static final int SYSTEM_ID_SAME_UNIVERSE_SECTOR = 1;
+	private static final int SYSTEM_ID_FULL = 2;
+
 	protected NetworkSerializers() {
 	}
 
+	// IDs, coordinates and enums are written as varints, unless the current
+	// context asks for the fixed-width ints that they used to be written as.
+	private static boolean isCompact() {
+		final var context = NetworkContext.current();
+		return context == null || context.compact;
+	}
+
+	public static void writeZigzagVarInt(FriendlyByteBuf buf, int value) {
+		buf.writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	public static int readZigzagVarInt(FriendlyByteBuf buf) {
+		final var value = buf.readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
 	public static final <T extends Enum<T>> NetworkSerializer<T> forEnum(Class<T> clazz) {
 		return new NetworkSerializer<T>() {
+			// enums with fewer than 128 members only take up a single byte when compact.
 			@Override
 			public void write(FriendlyByteBuf buf, T value) {
-				buf.writeInt(value.ordinal());
+				if (isCompact())
+					buf.writeVarInt(value.ordinal());
+				else
+					buf.writeInt(value.ordinal());
 			}
 
 			@Override
 			@Nullable
 			public T read(FriendlyByteBuf buf) {
-				final var index = buf.readInt();
+				final var index = isCompact() ? buf.readVarInt() : buf.readInt();
 				final var members = clazz.getEnumConstants();
-				return index >= members.length ? null : members[index];
+				return index < 0 || index >= members.length ? null : members[index];
 			}
 		};
 	}
@@ -72,6 +98,12 @@ public class NetworkSerializers {
 		@Override
 		@Nullable
 		public Vec3i read(FriendlyByteBuf buf) {
+			if (isCompact()) {
+				final var x = readZigzagVarInt(buf);
+				final var y = readZigzagVarInt(buf);
+				final var z = readZigzagVarInt(buf);
+				return new Vec3i(x, y, z);
+			}
 			final var x = buf.readInt();
 			final var y = buf.readInt();
 			final var z = buf.readInt();
@@ -79,6 +111,12 @@ public class NetworkSerializers {
 		}
 
 		public void write(FriendlyByteBuf buf, Vec3i value) {
+			if (isCompact()) {
+				writeZigzagVarInt(buf, value.x);
+				writeZigzagVarInt(buf, value.y);
+				writeZigzagVarInt(buf, value.z);
+				return;
+			}
 			buf.writeInt(value.x);
 			buf.writeInt(value.y);
 			buf.writeInt(value.z);
@@ -134,6 +172,36 @@ public class NetworkSerializers {
 		}
 	};
 
+	public static final NetworkSerializer<byte[]> BYTE_ARRAY = new NetworkSerializer<byte[]>() {
+		@Override
+		@Nullable
+		public byte[] read(FriendlyByteBuf buf) {
+			return buf.readByteArray();
+		}
+
+		public void write(FriendlyByteBuf buf, byte[] value) {
+			buf.writeByteArray(value);
+		}
+	};
+
+	/**
+	 * Reading an array that is longer than {@code maxLength} fails, before
+	 * anything is allocated for it.
+	 */
+	public static final NetworkSerializer<long[]> longArray(int maxLength) {
+		return new NetworkSerializer<long[]>() {
+			@Override
+			@Nullable
+			public long[] read(FriendlyByteBuf buf) {
+				return buf.readLongArray(null, maxLength);
+			}
+
+			public void write(FriendlyByteBuf buf, long[] value) {
+				buf.writeLongArray(value);
+			}
+		};
+	}
+
 	public static final NetworkSerializer<String> UTF = new NetworkSerializer<String>() {
 		@Override
 		@Nullable
@@ -162,14 +230,17 @@ public class NetworkSerializers {
 		@Override
 		public void write(FriendlyByteBuf buf, UniverseSectorId value) {
 			VEC3I.write(buf, value.sectorPos());
-			buf.writeInt(value.id());
+			if (isCompact())
+				buf.writeVarInt(value.id());
+			else
+				buf.writeInt(value.id());
 		}
 
 		@Override
 		@Nullable
 		public UniverseSectorId read(FriendlyByteBuf buf) {
 			final var sectorPos = VEC3I.read(buf);
-			final var id = buf.readInt();
+			final var id = isCompact() ? buf.readVarInt() : buf.readInt();
 			return new UniverseSectorId(sectorPos, id);
 		}
 	};
@@ -178,14 +249,17 @@ public class NetworkSerializers {
 		@Override
 		public void write(FriendlyByteBuf buf, GalaxySectorId value) {
 			VEC3I.write(buf, value.levelCoords());
-			buf.writeInt(value.packedInfo());
+			if (isCompact())
+				writeCompactPackedInfo(buf, value.packedInfo());
+			else
+				buf.writeInt(value.packedInfo());
 		}
 
 		@Override
 		@Nullable
 		public GalaxySectorId read(FriendlyByteBuf buf) {
 			final var levelCoords = VEC3I.read(buf);
-			final var packedInfo = buf.readInt();
+			final var packedInfo = isCompact() ? readCompactPackedInfo(buf) : buf.readInt();
 			return new GalaxySectorId(levelCoords, packedInfo);
 		}
 	};
@@ -193,6 +267,10 @@ public class NetworkSerializers {
 	public static final NetworkSerializer<SystemId> SYSTEM_ID = new NetworkSerializer<SystemId>() {
 		@Override
 		public void write(FriendlyByteBuf buf, SystemId value) {
+			if (isCompact()) {
+				writeCompactSystemId(buf, value);
+				return;
+			}
 			UNIVERSE_SECTOR_ID.write(buf, value.universeSector());
 			GALAXY_SECTOR_ID.write(buf, value.galaxySector());
 		}
@@ -200,6 +278,8 @@ public class NetworkSerializers {
 		@Override
 		@Nullable
 		public SystemId read(FriendlyByteBuf buf) {
+			if (isCompact())
+				return readCompactSystemId(buf);
 			final var universeSector = UNIVERSE_SECTOR_ID.read(buf);
 			final var galaxySector = GALAXY_SECTOR_ID.read(buf);
 			return new SystemId(universeSector, galaxySector);
@@ -210,14 +290,17 @@ public class NetworkSerializers {
 		@Override
 		public void write(FriendlyByteBuf buf, SystemNodeId value) {
 			SYSTEM_ID.write(buf, value.system());
-			buf.writeInt(value.nodeId());
+			if (isCompact())
+				writeZigzagVarInt(buf, value.nodeId());
+			else
+				buf.writeInt(value.nodeId());
 		}
 
 		@Override
 		@Nullable
 		public SystemNodeId read(FriendlyByteBuf buf) {
 			final var system = SYSTEM_ID.read(buf);
-			final var nodeId = buf.readInt();
+			final var nodeId = isCompact() ? readZigzagVarInt(buf) : buf.readInt();
 			return new SystemNodeId(system, nodeId);
 		}
 	};
@@ -242,7 +325,10 @@ public class NetworkSerializers {
 				SYSTEM_NODE_ID.write(buf, world.id);
 			} else if (value instanceof WorldType.Station station) {
 				KIND.write(buf, WorldTypeKind.STATION);
-				buf.writeInt(station.id);
+				if (isCompact())
+					buf.writeVarInt(station.id);
+				else
+					buf.writeInt(station.id);
 			}
 		}
 
@@ -260,11 +346,80 @@ public class NetworkSerializers {
 				if (systemNodeId == null)
 					return null;
 				return new WorldType.SystemNode(systemNodeId);
-			} else if (type == WorldTypeKind.WORLD) {
-				return new WorldType.Station(buf.readInt());
+			} else if (type == WorldTypeKind.STATION) {
+				return new WorldType.Station(isCompact() ? buf.readVarInt() : buf.readInt());
 			}
 			return null;
 		}
 	};
 
+	// the level is moved into the low bits of the packed info, so that small element
+	// indices in low levels fit into a single byte. No bits are lost, even if the
+	// packed info contains more than what `GalaxySectorId` knows about.
+	private static void writeCompactPackedInfo(FriendlyByteBuf buf, int packedInfo) {
+		final long level = (packedInfo & GalaxySectorId.MASK_LEVEL) >>> 20;
+		final long rest = Integer.toUnsignedLong(packedInfo & ~GalaxySectorId.MASK_LEVEL);
+		buf.writeVarLong((rest << 4) | level);
+	}
+
+	private static int readCompactPackedInfo(FriendlyByteBuf buf) {
+		final var value = buf.readVarLong();
+		final var level = (int) (value & 0xf);
+		final var rest = (int) (value >>> 4);
+		return rest | (level << 20);
+	}
+
+	// system IDs are written relative to the last system ID that went through the
+	// current context, since most packets in a session end up referring to the
+	// same handful of systems, which all live in the same universe sector.
+	private static void writeCompactSystemId(FriendlyByteBuf buf, SystemId value) {
+		final var context = NetworkContext.current();
+		final var last = context == null ? null : context.lastSystemId;
+		if (last != null && last.equals(value)) {
+			buf.writeByte(SYSTEM_ID_SAME);
+		} else if (last != null && last.universeSector().equals(value.universeSector())) {
+			buf.writeByte(SYSTEM_ID_SAME_UNIVERSE_SECTOR);
+			final var coords = value.galaxySector().levelCoords();
+			final var lastCoords = last.galaxySector().levelCoords();
+			writeZigzagVarInt(buf, coords.x - lastCoords.x);
+			writeZigzagVarInt(buf, coords.y - lastCoords.y);
+			writeZigzagVarInt(buf, coords.z - lastCoords.z);
+			writeCompactPackedInfo(buf, value.galaxySector().packedInfo());
+		} else {
+			buf.writeByte(SYSTEM_ID_FULL);
+			UNIVERSE_SECTOR_ID.write(buf, value.universeSector());
+			GALAXY_SECTOR_ID.write(buf, value.galaxySector());
+		}
+		if (context != null)
+			context.lastSystemId = value;
+	}
+
+	private static SystemId readCompactSystemId(FriendlyByteBuf buf) {
+		final var context = NetworkContext.current();
+		final var last = context == null ? null : context.lastSystemId;
+		final var tag = buf.readByte();
+		final SystemId value;
+		if (tag == SYSTEM_ID_FULL) {
+			final var universeSector = UNIVERSE_SECTOR_ID.read(buf);
+			final var galaxySector = GALAXY_SECTOR_ID.read(buf);
+			value = new SystemId(universeSector, galaxySector);
+		} else if (last == null) {
+			throw new DecoderException("system ID refers to a previous system ID, but there is none");
+		} else if (tag == SYSTEM_ID_SAME) {
+			value = last;
+		} else if (tag == SYSTEM_ID_SAME_UNIVERSE_SECTOR) {
+			final var lastCoords = last.galaxySector().levelCoords();
+			final var x = lastCoords.x + readZigzagVarInt(buf);
+			final var y = lastCoords.y + readZigzagVarInt(buf);
+			final var z = lastCoords.z + readZigzagVarInt(buf);
+			final var packedInfo = readCompactPackedInfo(buf);
+			value = new SystemId(last.universeSector(), new GalaxySectorId(new Vec3i(x, y, z), packedInfo));
+		} else {
+			throw new DecoderException("unknown system ID tag " + tag);
+		}
+		if (context != null)
+			context.lastSystemId = value;
+		return value;
+	}
+
 }
@@ -0,0 +1,71 @@
+package net.xavil.ultraviolet.networking.c2s;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.game.ServerGamePacketListener;
+import net.xavil.hawklib.math.matrices.Vec3;
+import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
+import net.xavil.ultraviolet.networking.ModPacket;
+import net.xavil.ultraviolet.networking.NetworkSerializer;
+import net.xavil.ultraviolet.networking.NetworkSerializers;
+
+public class ServerboundSectorElementRequestPacket extends ModPacket<ServerGamePacketListener> {
+
+	// the most sector positions that may be requested or cancelled in a single
+	// packet. Clients send anything beyond this in later packets.
+	public static final int MAX_KEYS = 1024;
+	private static final NetworkSerializer<long[]> KEYS = NetworkSerializers.longArray(MAX_KEYS);
+
+	public UniverseSectorId galaxyId;
+	// the client's `Galaxy.generationFingerprint()`, so that the server can refuse
+	// to send sectors that the client would have generated differently.
+	public long generationFingerprint;
+	// the point that the client wants sectors around first
+	@Nullable
+	public Vec3 focusPos;
+	// packed sector positions
+	public long[] requested;
+	public long[] cancelled;
+
+	public ServerboundSectorElementRequestPacket() {
+	}
+
+	public ServerboundSectorElementRequestPacket(UniverseSectorId galaxyId, long generationFingerprint,
+			@Nullable Vec3 focusPos, long[] requested, long[] cancelled) {
+		this.galaxyId = galaxyId;
+		this.generationFingerprint = generationFingerprint;
+		this.focusPos = focusPos;
+		this.requested = requested;
+		this.cancelled = cancelled;
+	}
+
+	@Override
+	public void read(FriendlyByteBuf buf) {
+		this.galaxyId = read(buf, NetworkSerializers.UNIVERSE_SECTOR_ID);
+		this.generationFingerprint = readLong(buf);
+		if (readBoolean(buf)) {
+			final var x = readDouble(buf);
+			final var y = readDouble(buf);
+			final var z = readDouble(buf);
+			this.focusPos = new Vec3(x, y, z);
+		}
+		this.requested = read(buf, KEYS);
+		this.cancelled = read(buf, KEYS);
+	}
+
+	@Override
+	public void write(FriendlyByteBuf buf) {
+		write(buf, this.galaxyId, NetworkSerializers.UNIVERSE_SECTOR_ID);
+		writeLong(buf, this.generationFingerprint);
+		writeBoolean(buf, this.focusPos != null);
+		if (this.focusPos != null) {
+			writeDouble(buf, this.focusPos.x);
+			writeDouble(buf, this.focusPos.y);
+			writeDouble(buf, this.focusPos.z);
+		}
+		write(buf, this.requested, KEYS);
+		write(buf, this.cancelled, KEYS);
+	}
+
+}
@@ -0,0 +1,54 @@
+package net.xavil.ultraviolet.networking.s2c;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
+import net.xavil.ultraviolet.networking.ModPacket;
+import net.xavil.ultraviolet.networking.NetworkSerializers;
+
+public class ClientboundSectorElementsPacket extends ModPacket<ClientGamePacketListener> {
+
+	public UniverseSectorId galaxyId;
+	// packed sector position
+	public long sectorKey;
+	public int uncompressedSize;
+	// the sector's elements, as written by `PackedElements.writeTo()` and then
+	// deflated, or null if the client should generate this sector itself.
+	@Nullable
+	public byte[] data;
+
+	public ClientboundSectorElementsPacket() {
+	}
+
+	public ClientboundSectorElementsPacket(UniverseSectorId galaxyId, long sectorKey, int uncompressedSize,
+			@Nullable byte[] data) {
+		this.galaxyId = galaxyId;
+		this.sectorKey = sectorKey;
+		this.uncompressedSize = uncompressedSize;
+		this.data = data;
+	}
+
+	@Override
+	public void read(FriendlyByteBuf buf) {
+		this.galaxyId = read(buf, NetworkSerializers.UNIVERSE_SECTOR_ID);
+		this.sectorKey = readLong(buf);
+		if (readBoolean(buf)) {
+			this.uncompressedSize = buf.readVarInt();
+			this.data = read(buf, NetworkSerializers.BYTE_ARRAY);
+		}
+	}
+
+	@Override
+	public void write(FriendlyByteBuf buf) {
+		write(buf, this.galaxyId, NetworkSerializers.UNIVERSE_SECTOR_ID);
+		writeLong(buf, this.sectorKey);
+		writeBoolean(buf, this.data != null);
+		if (this.data != null) {
+			buf.writeVarInt(this.uncompressedSize);
+			write(buf, this.data, NetworkSerializers.BYTE_ARRAY);
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package net.xavil.ultraviolet.networking.s2c;
+
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.xavil.ultraviolet.common.universe.id.UniverseSectorId;
+import net.xavil.ultraviolet.networking.ModPacket;
+import net.xavil.ultraviolet.networking.NetworkSerializers;
+
+/**
+ * Sent in response to a sector request that the server refused as a whole. The
+ * client generates every sector of the galaxy that it's still waiting on, and
+ * every sector it needs later, by itself.
+ */
+public class ClientboundSectorStreamUnavailablePacket extends ModPacket<ClientGamePacketListener> {
+
+	public UniverseSectorId galaxyId;
+
+	public ClientboundSectorStreamUnavailablePacket() {
+	}
+
+	public ClientboundSectorStreamUnavailablePacket(UniverseSectorId galaxyId) {
+		this.galaxyId = galaxyId;
+	}
+
+	@Override
+	public void read(FriendlyByteBuf buf) {
+		this.galaxyId = read(buf, NetworkSerializers.UNIVERSE_SECTOR_ID);
+	}
+
+	@Override
+	public void write(FriendlyByteBuf buf) {
+		write(buf, this.galaxyId, NetworkSerializers.UNIVERSE_SECTOR_ID);
+	}
+
+}
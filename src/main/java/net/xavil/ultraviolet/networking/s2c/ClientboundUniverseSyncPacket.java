@@ -1,6 +1,5 @@
 package net.xavil.ultraviolet.networking.s2c;
 
-import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.protocol.game.ClientGamePacketListener;
 import net.xavil.ultraviolet.common.universe.WorldType;
@@ -15,7 +14,8 @@ public class ClientboundUniverseSyncPacket extends ModPacket<ClientGamePacketLis
 	public double startingSystemAge;
 	public String startingSystemName;
 	public SystemNodeId startingId;
-	public CompoundTag startingSystemNbt;
+	// encoded with `CelestialNodeCodec`
+	public byte[] startingSystemData;
 	public WorldType worldType;
 
 	@Override
@@ -25,7 +25,7 @@ public class ClientboundUniverseSyncPacket extends ModPacket<ClientGamePacketLis
 		this.startingSystemAge = readDouble(buf);
 		this.startingSystemName = read(buf, NetworkSerializers.UTF);
 		this.startingId = read(buf, NetworkSerializers.SYSTEM_NODE_ID);
-		this.startingSystemNbt = read(buf, NetworkSerializers.NBT_COMPOUND);
+		this.startingSystemData = read(buf, NetworkSerializers.BYTE_ARRAY);
 		this.worldType = read(buf, NetworkSerializers.WORLD_TYPE);
 	}
 
@@ -36,7 +36,7 @@ public class ClientboundUniverseSyncPacket extends ModPacket<ClientGamePacketLis
 		writeDouble(buf, this.startingSystemAge);
 		write(buf, this.startingSystemName, NetworkSerializers.UTF);
 		write(buf, this.startingId, NetworkSerializers.SYSTEM_NODE_ID);
-		write(buf, this.startingSystemNbt, NetworkSerializers.NBT_COMPOUND);
+		write(buf, this.startingSystemData, NetworkSerializers.BYTE_ARRAY);
 		write(buf, this.worldType, NetworkSerializers.WORLD_TYPE);
 	}
 